@@ -0,0 +1,287 @@
+package org.apache.helix.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.I0Itec.zkclient.DataUpdater;
+import org.I0Itec.zkclient.IZkChildListener;
+import org.I0Itec.zkclient.IZkDataListener;
+import org.apache.helix.BaseDataAccessor;
+import org.apache.helix.HelixException;
+import org.apache.helix.ZNRecord;
+import org.apache.zookeeper.data.Stat;
+
+/**
+ * A ZooKeeper-free {@link BaseDataAccessor} that keeps znodes in a sorted in-memory map, so
+ * children of a path can be found with a range scan. Unlike MockBaseDataAccessor it does not
+ * simulate write latency, which makes it usable for building large cluster snapshots offline.
+ */
+public class InMemoryBaseDataAccessor implements BaseDataAccessor<ZNRecord> {
+  private static class ZNode {
+    private ZNRecord _record;
+    private final Stat _stat;
+
+    ZNode(ZNRecord record) {
+      _record = record;
+      _stat = new Stat();
+      _stat.setCtime(System.currentTimeMillis());
+      _stat.setMtime(_stat.getCtime());
+    }
+
+    void set(ZNRecord record) {
+      _record = record;
+      _stat.setMtime(System.currentTimeMillis());
+      _stat.setVersion(_stat.getVersion() + 1);
+    }
+  }
+
+  private final ConcurrentSkipListMap<String, ZNode> _nodes = new ConcurrentSkipListMap<>();
+
+  @Override
+  public boolean create(String path, ZNRecord record, int options) {
+    if (_nodes.containsKey(path)) {
+      return false;
+    }
+    _nodes.put(path, new ZNode(record));
+    return true;
+  }
+
+  @Override
+  public boolean set(String path, ZNRecord record, int options) {
+    ZNode node = _nodes.get(path);
+    if (node == null) {
+      _nodes.put(path, new ZNode(record));
+    } else {
+      node.set(record);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean set(String path, ZNRecord record, int expectVersion, int options) {
+    ZNode node = _nodes.get(path);
+    if (node != null && expectVersion >= 0 && node._stat.getVersion() != expectVersion) {
+      return false;
+    }
+    return set(path, record, options);
+  }
+
+  @Override
+  public boolean update(String path, DataUpdater<ZNRecord> updater, int options) {
+    ZNode node = _nodes.get(path);
+    ZNRecord newRecord = updater.update(node == null ? null : node._record);
+    return newRecord != null && set(path, newRecord, options);
+  }
+
+  @Override
+  public boolean remove(String path, int options) {
+    _nodes.subMap(path + "/", path + "0").clear();
+    return _nodes.remove(path) != null;
+  }
+
+  @Override
+  public boolean[] createChildren(List<String> paths, List<ZNRecord> records, int options) {
+    boolean[] success = new boolean[paths.size()];
+    for (int i = 0; i < paths.size(); i++) {
+      success[i] = create(paths.get(i), records.get(i), options);
+    }
+    return success;
+  }
+
+  @Override
+  public boolean[] setChildren(List<String> paths, List<ZNRecord> records, int options) {
+    boolean[] success = new boolean[paths.size()];
+    for (int i = 0; i < paths.size(); i++) {
+      success[i] = set(paths.get(i), records.get(i), options);
+    }
+    return success;
+  }
+
+  @Override
+  public boolean[] updateChildren(List<String> paths, List<DataUpdater<ZNRecord>> updaters,
+      int options) {
+    boolean[] success = new boolean[paths.size()];
+    for (int i = 0; i < paths.size(); i++) {
+      success[i] = update(paths.get(i), updaters.get(i), options);
+    }
+    return success;
+  }
+
+  @Override
+  public boolean[] remove(List<String> paths, int options) {
+    boolean[] success = new boolean[paths.size()];
+    for (int i = 0; i < paths.size(); i++) {
+      success[i] = remove(paths.get(i), options);
+    }
+    return success;
+  }
+
+  @Override
+  public ZNRecord get(String path, Stat stat, int options) {
+    ZNode node = _nodes.get(path);
+    if (node == null) {
+      return null;
+    }
+    copyStat(node._stat, stat);
+    return node._record;
+  }
+
+  @Override
+  public List<ZNRecord> get(List<String> paths, List<Stat> stats, int options) {
+    return get(paths, stats, options, false);
+  }
+
+  @Override
+  public List<ZNRecord> get(List<String> paths, List<Stat> stats, int options,
+      boolean throwException) throws HelixException {
+    List<ZNRecord> records = new ArrayList<>(paths.size());
+    if (stats != null) {
+      stats.clear();
+    }
+    for (int i = 0; i < paths.size(); i++) {
+      Stat stat = stats == null ? null : new Stat();
+      ZNRecord record = get(paths.get(i), stat, options);
+      records.add(record);
+      if (stats != null) {
+        stats.add(record != null ? stat : null);
+      }
+    }
+    return records;
+  }
+
+  @Override
+  public List<ZNRecord> getChildren(String parentPath, List<Stat> stats, int options) {
+    List<ZNRecord> children = new ArrayList<>();
+    for (Map.Entry<String, ZNode> entry : descendants(parentPath).entrySet()) {
+      if (isDirectChild(parentPath, entry.getKey())) {
+        children.add(entry.getValue()._record);
+        if (stats != null) {
+          Stat stat = new Stat();
+          copyStat(entry.getValue()._stat, stat);
+          stats.add(stat);
+        }
+      }
+    }
+    return children;
+  }
+
+  @Override
+  public List<ZNRecord> getChildren(String parentPath, List<Stat> stats, int options,
+      int retryCount, int retryInterval) throws HelixException {
+    return getChildren(parentPath, stats, options);
+  }
+
+  @Override
+  public List<String> getChildNames(String parentPath, int options) {
+    // intermediate znodes are implicit, so report every distinct first path segment once
+    Set<String> names = new LinkedHashSet<>();
+    int prefixLength = parentPath.length() + 1;
+    for (String path : descendants(parentPath).keySet()) {
+      int end = path.indexOf('/', prefixLength);
+      names.add(end < 0 ? path.substring(prefixLength) : path.substring(prefixLength, end));
+    }
+    return new ArrayList<>(names);
+  }
+
+  @Override
+  public boolean exists(String path, int options) {
+    return _nodes.containsKey(path) || !descendants(path).isEmpty();
+  }
+
+  @Override
+  public boolean[] exists(List<String> paths, int options) {
+    boolean[] exists = new boolean[paths.size()];
+    for (int i = 0; i < paths.size(); i++) {
+      exists[i] = exists(paths.get(i), options);
+    }
+    return exists;
+  }
+
+  @Override
+  public Stat[] getStats(List<String> paths, int options) {
+    Stat[] stats = new Stat[paths.size()];
+    for (int i = 0; i < paths.size(); i++) {
+      stats[i] = getStat(paths.get(i), options);
+    }
+    return stats;
+  }
+
+  @Override
+  public Stat getStat(String path, int options) {
+    ZNode node = _nodes.get(path);
+    if (node == null) {
+      return null;
+    }
+    Stat stat = new Stat();
+    copyStat(node._stat, stat);
+    return stat;
+  }
+
+  @Override
+  public void subscribeDataChanges(String path, IZkDataListener listener) {
+    // no watches in memory
+  }
+
+  @Override
+  public void unsubscribeDataChanges(String path, IZkDataListener listener) {
+    // no watches in memory
+  }
+
+  @Override
+  public List<String> subscribeChildChanges(String path, IZkChildListener listener) {
+    return getChildNames(path, 0);
+  }
+
+  @Override
+  public void unsubscribeChildChanges(String path, IZkChildListener listener) {
+    // no watches in memory
+  }
+
+  @Override
+  public void reset() {
+    _nodes.clear();
+  }
+
+  /**
+   * All descendants of the given path. '0' sorts right after '/', so the sub map is exactly the
+   * set of keys prefixed by "parentPath/".
+   */
+  private NavigableMap<String, ZNode> descendants(String parentPath) {
+    return _nodes.subMap(parentPath + "/", true, parentPath + "0", false);
+  }
+
+  private static boolean isDirectChild(String parentPath, String path) {
+    return path.indexOf('/', parentPath.length() + 1) < 0;
+  }
+
+  private static void copyStat(Stat from, Stat to) {
+    if (to != null) {
+      to.setCtime(from.getCtime());
+      to.setMtime(from.getMtime());
+      to.setVersion(from.getVersion());
+    }
+  }
+}
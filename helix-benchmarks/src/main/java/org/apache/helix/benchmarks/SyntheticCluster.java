@@ -0,0 +1,204 @@
+package org.apache.helix.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixManager;
+import org.apache.helix.PropertyKey.Builder;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.controller.stages.ClusterDataCache;
+import org.apache.helix.manager.zk.ZKHelixDataAccessor;
+import org.apache.helix.mock.MockManager;
+import org.apache.helix.model.BuiltInStateModelDefinitions;
+import org.apache.helix.model.ClusterConfig;
+import org.apache.helix.model.CurrentState;
+import org.apache.helix.model.IdealState;
+import org.apache.helix.model.IdealState.RebalanceMode;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.LiveInstance;
+import org.apache.helix.model.StateModelDefinition;
+
+/**
+ * Builds a synthetic cluster entirely in memory, so controller stages can be exercised against
+ * realistic ClusterDataCache snapshots without a ZooKeeper server.
+ * <p>
+ * Replica r of partition p of resource i is placed on instance (i * numPartitions + p + r) mod
+ * numInstances. The first replica is in the top state and the rest in the second top state, so
+ * with no offline instances the current states already match the preference lists. Instances in
+ * the offline range [numInstances - numOfflineInstances, numInstances) have an InstanceConfig but
+ * neither a LiveInstance nor current states, which emulates a node loss.
+ */
+public class SyntheticCluster {
+  public static final String INSTANCE_PREFIX = "localhost_";
+  public static final String SESSION_PREFIX = "session_";
+  public static final String RESOURCE_PREFIX = "resource_";
+
+  private final String _clusterName;
+  private final HelixDataAccessor _accessor;
+  private final HelixManager _manager;
+
+  private SyntheticCluster(String clusterName) {
+    _clusterName = clusterName;
+    _accessor = new ZKHelixDataAccessor(clusterName, new InMemoryBaseDataAccessor());
+    _manager = new SnapshotManager(clusterName, _accessor);
+  }
+
+  /**
+   * Create and populate a synthetic cluster.
+   * @param numInstances total number of instances, live or not
+   * @param numOfflineInstances number of instances that are configured but not live
+   * @param numResources number of resources
+   * @param numPartitions number of partitions per resource
+   * @param numReplicas number of replicas per partition
+   * @param rebalanceMode rebalance mode of every resource
+   * @param stateModel state model of every resource
+   * @return the populated cluster
+   */
+  public static SyntheticCluster create(int numInstances, int numOfflineInstances,
+      int numResources, int numPartitions, int numReplicas, RebalanceMode rebalanceMode,
+      BuiltInStateModelDefinitions stateModel) {
+    SyntheticCluster cluster = new SyntheticCluster("benchmarkCluster");
+    cluster.setup(numInstances, numOfflineInstances, numResources, numPartitions, numReplicas,
+        rebalanceMode, stateModel);
+    return cluster;
+  }
+
+  public String getClusterName() {
+    return _clusterName;
+  }
+
+  public HelixDataAccessor getAccessor() {
+    return _accessor;
+  }
+
+  public HelixManager getManager() {
+    return _manager;
+  }
+
+  /**
+   * @return a controller-side ClusterDataCache fully refreshed from this cluster
+   */
+  public ClusterDataCache newClusterDataCache() {
+    ClusterDataCache cache = new ClusterDataCache(_clusterName);
+    cache.refresh(_accessor);
+    return cache;
+  }
+
+  private void setup(int numInstances, int numOfflineInstances, int numResources,
+      int numPartitions, int numReplicas, RebalanceMode rebalanceMode,
+      BuiltInStateModelDefinitions stateModel) {
+    Builder keyBuilder = _accessor.keyBuilder();
+    int numLiveInstances = numInstances - numOfflineInstances;
+
+    _accessor.setProperty(keyBuilder.clusterConfig(), new ClusterConfig(_clusterName));
+    for (BuiltInStateModelDefinitions def : BuiltInStateModelDefinitions.values()) {
+      _accessor.setProperty(keyBuilder.stateModelDef(def.getStateModelDefinition().getId()),
+          def.getStateModelDefinition());
+    }
+
+    for (int i = 0; i < numInstances; i++) {
+      String instance = INSTANCE_PREFIX + i;
+      InstanceConfig config = new InstanceConfig(instance);
+      config.setHostName("localhost");
+      config.setPort(String.valueOf(i));
+      config.setInstanceEnabled(true);
+      _accessor.setProperty(keyBuilder.instanceConfig(instance), config);
+      if (i < numLiveInstances) {
+        LiveInstance liveInstance = new LiveInstance(instance);
+        liveInstance.setSessionId(SESSION_PREFIX + i);
+        liveInstance.setHelixVersion("0.8.4");
+        _accessor.setProperty(keyBuilder.liveInstance(instance), liveInstance);
+      }
+    }
+
+    StateModelDefinition stateModelDef = stateModel.getStateModelDefinition();
+    String topState = stateModelDef.getTopState();
+    String secondState = stateModelDef.isSingleTopStateModel() ? stateModelDef.getSecondTopStates()
+        .iterator().next() : topState;
+
+    for (int i = 0; i < numResources; i++) {
+      String resource = RESOURCE_PREFIX + i;
+      ZNRecord record = new ZNRecord(resource);
+      Map<Integer, CurrentState> currentStates = new HashMap<>();
+      for (int p = 0; p < numPartitions; p++) {
+        String partition = resource + "_" + p;
+        List<String> preferenceList = new ArrayList<>(numReplicas);
+        for (int r = 0; r < numReplicas; r++) {
+          int instanceId = (i * numPartitions + p + r) % numInstances;
+          preferenceList.add(INSTANCE_PREFIX + instanceId);
+          if (instanceId >= numLiveInstances) {
+            continue;
+          }
+          CurrentState currentState = currentStates.get(instanceId);
+          if (currentState == null) {
+            currentState = new CurrentState(resource);
+            currentState.setSessionId(SESSION_PREFIX + instanceId);
+            currentState.setStateModelDefRef(stateModelDef.getId());
+            currentStates.put(instanceId, currentState);
+          }
+          currentState.setState(partition, r == 0 ? topState : secondState);
+        }
+        record.setListField(partition, rebalanceMode == RebalanceMode.FULL_AUTO
+            ? Collections.<String>emptyList() : preferenceList);
+      }
+
+      IdealState idealState = new IdealState(record);
+      idealState.setStateModelDefRef(stateModelDef.getId());
+      idealState.setRebalanceMode(rebalanceMode);
+      idealState.setNumPartitions(numPartitions);
+      idealState.setReplicas(String.valueOf(numReplicas));
+      _accessor.setProperty(keyBuilder.idealStates(resource), idealState);
+
+      for (Map.Entry<Integer, CurrentState> entry : currentStates.entrySet()) {
+        String instance = INSTANCE_PREFIX + entry.getKey();
+        _accessor.setProperty(
+            keyBuilder.currentState(instance, SESSION_PREFIX + entry.getKey(), resource),
+            entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * A leader controller manager that reads and writes the in-memory cluster.
+   */
+  private static class SnapshotManager extends MockManager {
+    private final HelixDataAccessor _snapshotAccessor;
+
+    SnapshotManager(String clusterName, HelixDataAccessor accessor) {
+      super(clusterName);
+      _snapshotAccessor = accessor;
+    }
+
+    @Override
+    public HelixDataAccessor getHelixDataAccessor() {
+      return _snapshotAccessor;
+    }
+
+    @Override
+    public boolean isLeader() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package org.apache.helix.benchmarks.controller;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.benchmarks.SyntheticCluster;
+import org.apache.helix.controller.rebalancer.strategy.AutoRebalanceStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures AutoRebalanceStrategy.computePartitionAssignment of one resource, from 100 to 5000
+ * instances. The current mapping is the assignment on all instances, and the offline instances
+ * are the last numOfflinePercent percent of them, so their replicas are orphans to be reassigned.
+ * <p>
+ * Run the same benchmark on an earlier build to compare against another AutoRebalanceStrategy
+ * implementation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class AutoRebalanceStrategyBenchmark {
+  private static final String RESOURCE = SyntheticCluster.RESOURCE_PREFIX + "0";
+
+  @Param({ "100", "500", "1500", "5000" })
+  public int numInstances;
+
+  /** Partitions per instance. */
+  @Param("10")
+  public int numPartitionsPerInstance;
+
+  @Param("3")
+  public int numReplicas;
+
+  @Param("10")
+  public int numOfflinePercent;
+
+  private List<String> _allNodes;
+  private List<String> _liveNodes;
+  private List<String> _partitions;
+  private LinkedHashMap<String, Integer> _states;
+  private Map<String, Map<String, String>> _assignment;
+  private Map<String, Map<String, String>> _currentMapping;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    _allNodes = new ArrayList<>();
+    for (int i = 0; i < numInstances; i++) {
+      _allNodes.add(SyntheticCluster.INSTANCE_PREFIX + i);
+    }
+    _liveNodes = _allNodes.subList(0, numInstances - numInstances * numOfflinePercent / 100);
+    _partitions = new ArrayList<>();
+    for (int p = 0; p < numInstances * numPartitionsPerInstance; p++) {
+      _partitions.add(RESOURCE + "_" + p);
+    }
+    _states = new LinkedHashMap<>();
+    _states.put("MASTER", 1);
+    _states.put("SLAVE", numReplicas - 1);
+
+    _assignment = new AutoRebalanceStrategy(RESOURCE, _partitions, _states)
+        .computePartitionAssignment(_allNodes, _allNodes,
+            new HashMap<String, Map<String, String>>(), null).getMapFields();
+  }
+
+  /**
+   * The strategy removes the offline instances from the current mapping, so each invocation gets
+   * a copy.
+   */
+  @Setup(Level.Invocation)
+  public void copyCurrentMapping() {
+    _currentMapping = new HashMap<>();
+    for (Map.Entry<String, Map<String, String>> entry : _assignment.entrySet()) {
+      _currentMapping.put(entry.getKey(), new TreeMap<>(entry.getValue()));
+    }
+  }
+
+  @Benchmark
+  public ZNRecord computePartitionAssignment() {
+    return new AutoRebalanceStrategy(RESOURCE, _partitions, _states)
+        .computePartitionAssignment(_allNodes, _liveNodes, _currentMapping, null);
+  }
+}
@@ -0,0 +1,163 @@
+package org.apache.helix.benchmarks.controller;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.List;
+import org.apache.helix.api.config.StateTransitionThrottleConfig;
+import org.apache.helix.benchmarks.SyntheticCluster;
+import org.apache.helix.controller.pipeline.Stage;
+import org.apache.helix.controller.stages.AttributeName;
+import org.apache.helix.controller.stages.BestPossibleStateCalcStage;
+import org.apache.helix.controller.stages.ClusterDataCache;
+import org.apache.helix.controller.stages.ClusterEvent;
+import org.apache.helix.controller.stages.ClusterEventType;
+import org.apache.helix.controller.stages.CurrentStateComputationStage;
+import org.apache.helix.controller.stages.IntermediateStateCalcStage;
+import org.apache.helix.controller.stages.ResourceComputationStage;
+import org.apache.helix.controller.stages.ResourceValidationStage;
+import org.apache.helix.controller.stages.resource.ResourceMessageGenerationPhase;
+import org.apache.helix.model.BuiltInStateModelDefinitions;
+import org.apache.helix.model.IdealState.RebalanceMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Shared benchmark state: a synthetic cluster, its refreshed ClusterDataCache and the outputs of
+ * every rebalance stage computed once at trial setup, so that each stage can be measured in
+ * isolation with realistic inputs. The default parameters model 1000 instances hosting
+ * 500 resources x 100 partitions x 3 replicas (50k partitions); use -p to scale them.
+ */
+@State(Scope.Benchmark)
+public class ControllerPipelineState {
+  @Param("1000")
+  public int numInstances;
+
+  /** Configured instances without a LiveInstance, i.e. the size of a node loss. */
+  @Param("0")
+  public int numOfflineInstances;
+
+  @Param("500")
+  public int numResources;
+
+  /** Partitions per resource. */
+  @Param("100")
+  public int numPartitions;
+
+  @Param("3")
+  public int numReplicas;
+
+  @Param({ "SEMI_AUTO", "FULL_AUTO" })
+  public String rebalanceMode;
+
+  @Param("MasterSlave")
+  public String stateModel;
+
+  /**
+   * Drop the rebalancers' cached assignments before every invocation, as an IdealState,
+   * LiveInstance or config change does in ClusterDataCache.refresh. If false, the cached mappings
+   * of FULL_AUTO resources are reused the way they are across CurrentState events.
+   */
+  @Param("true")
+  public boolean clearRebalancerCache;
+
+  /**
+   * Limit the pending state transitions in the cluster and in each instance, so that
+   * IntermediateStateCalcStage throttles the FULL_AUTO resources.
+   */
+  @Param("false")
+  public boolean throttleTransitions;
+
+  SyntheticCluster _cluster;
+  ClusterDataCache _cache;
+  ClusterEvent _preparedEvent;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    _cluster = SyntheticCluster
+        .create(numInstances, numOfflineInstances, numResources, numPartitions, numReplicas,
+            RebalanceMode.valueOf(rebalanceMode),
+            BuiltInStateModelDefinitions.valueOf(stateModel));
+    _cache = _cluster.newClusterDataCache();
+    if (throttleTransitions) {
+      _cache.getClusterConfig().setStateTransitionThrottleConfigs(Arrays.asList(
+          new StateTransitionThrottleConfig(StateTransitionThrottleConfig.RebalanceType.ANY,
+              StateTransitionThrottleConfig.ThrottleScope.CLUSTER, 1000),
+          new StateTransitionThrottleConfig(StateTransitionThrottleConfig.RebalanceType.ANY,
+              StateTransitionThrottleConfig.ThrottleScope.INSTANCE, 10)));
+    }
+
+    // Run every stage once so each one has the inputs it reads from upstream stages
+    _preparedEvent = newEvent(null);
+    for (Stage stage : computeStages()) {
+      stage.process(_preparedEvent);
+    }
+  }
+
+  /**
+   * @return the stages of the default rebalance pipeline that only compute, i.e. everything
+   *         between ReadClusterDataStage and MessageSelectionStage that does not write to ZK
+   */
+  static List<Stage> computeStages() {
+    return Arrays.<Stage>asList(new ResourceComputationStage(), new ResourceValidationStage(),
+        new CurrentStateComputationStage(), new BestPossibleStateCalcStage(),
+        new IntermediateStateCalcStage(), new ResourceMessageGenerationPhase());
+  }
+
+  /**
+   * @return a new event carrying the cache, the manager and all outputs of the prepared run
+   */
+  ClusterEvent newEvent() {
+    return newEvent(_preparedEvent);
+  }
+
+  /**
+   * @return a new event carrying only the cache and the manager, as after ReadClusterDataStage
+   */
+  ClusterEvent newPipelineEvent() {
+    return newEvent(null);
+  }
+
+  private ClusterEvent newEvent(ClusterEvent prepared) {
+    if (clearRebalancerCache) {
+      _cache.clearCachedResourceAssignments();
+    }
+    ClusterEvent event =
+        new ClusterEvent(_cluster.getClusterName(), ClusterEventType.CurrentStateChange);
+    event.addAttribute(AttributeName.helixmanager.name(), _cluster.getManager());
+    event.addAttribute(AttributeName.ClusterDataCache.name(), _cache);
+    if (prepared != null) {
+      for (AttributeName attribute : new AttributeName[] {
+          AttributeName.RESOURCES, AttributeName.RESOURCES_TO_REBALANCE,
+          AttributeName.CURRENT_STATE, AttributeName.BEST_POSSIBLE_STATE,
+          AttributeName.INTERMEDIATE_STATE, AttributeName.MESSAGES_ALL
+      }) {
+        Object value = prepared.getAttribute(attribute.name());
+        if (value != null) {
+          event.addAttribute(attribute.name(), value);
+        }
+      }
+    }
+    return event;
+  }
+}
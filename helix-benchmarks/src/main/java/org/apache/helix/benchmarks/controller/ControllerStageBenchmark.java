@@ -0,0 +1,85 @@
+package org.apache.helix.benchmarks.controller;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.apache.helix.controller.pipeline.Stage;
+import org.apache.helix.controller.stages.AttributeName;
+import org.apache.helix.controller.stages.BestPossibleStateCalcStage;
+import org.apache.helix.controller.stages.ClusterEvent;
+import org.apache.helix.controller.stages.CurrentStateComputationStage;
+import org.apache.helix.controller.stages.IntermediateStateCalcStage;
+import org.apache.helix.controller.stages.resource.ResourceMessageGenerationPhase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures Stage.process(ClusterEvent) of the CPU-heavy controller stages in isolation. Each
+ * invocation gets a fresh event pre-populated with the outputs of the upstream stages, see
+ * {@link ControllerPipelineState}.
+ * <p>
+ * Run with "-prof gc" to also report allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class ControllerStageBenchmark {
+  private final Stage _currentStateComputationStage = new CurrentStateComputationStage();
+  private final Stage _bestPossibleStateCalcStage = new BestPossibleStateCalcStage();
+  private final Stage _intermediateStateCalcStage = new IntermediateStateCalcStage();
+  private final Stage _messageGenerationPhase = new ResourceMessageGenerationPhase();
+
+  @Benchmark
+  public Object currentStateComputation(ControllerPipelineState state) throws Exception {
+    return run(state, _currentStateComputationStage, AttributeName.CURRENT_STATE);
+  }
+
+  @Benchmark
+  public Object bestPossibleStateCalc(ControllerPipelineState state) throws Exception {
+    return run(state, _bestPossibleStateCalcStage, AttributeName.BEST_POSSIBLE_STATE);
+  }
+
+  @Benchmark
+  public Object intermediateStateCalc(ControllerPipelineState state) throws Exception {
+    return run(state, _intermediateStateCalcStage, AttributeName.INTERMEDIATE_STATE);
+  }
+
+  @Benchmark
+  public Object messageGeneration(ControllerPipelineState state) throws Exception {
+    return run(state, _messageGenerationPhase, AttributeName.MESSAGES_ALL);
+  }
+
+  private static Object run(ControllerPipelineState state, Stage stage, AttributeName output)
+      throws Exception {
+    ClusterEvent event = state.newEvent();
+    stage.process(event);
+    return event.getAttribute(output.name());
+  }
+}
@@ -0,0 +1,158 @@
+package org.apache.helix.benchmarks.controller;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.benchmarks.SyntheticCluster;
+import org.apache.helix.controller.rebalancer.strategy.CrushRebalanceStrategy;
+import org.apache.helix.controller.rebalancer.strategy.crushMapping.CRUSHPlacementAlgorithm;
+import org.apache.helix.controller.rebalancer.topology.Node;
+import org.apache.helix.controller.rebalancer.topology.Topology;
+import org.apache.helix.controller.stages.ClusterDataCache;
+import org.apache.helix.model.ClusterConfig;
+import org.apache.helix.model.InstanceConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the CRUSH placement of one resource on a Rack/Host/Instance topology:
+ * CrushRebalanceStrategy.computePartitionAssignment end to end, and the selections of the
+ * partitions with the straws precomputed once for the topology against computing them in every
+ * selection.
+ * <p>
+ * Run the same benchmark on an earlier build to compare computePartitionAssignment against
+ * another CrushRebalanceStrategy implementation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CrushRebalanceStrategyBenchmark {
+  private static final String CLUSTER_NAME = "CrushRebalanceStrategyBenchmark";
+
+  @Param("1000")
+  public int numInstances;
+
+  @Param("20")
+  public int numRacks;
+
+  /** Instances per host. */
+  @Param("4")
+  public int numInstancesPerHost;
+
+  @Param("10000")
+  public int numPartitions;
+
+  @Param("3")
+  public int numReplicas;
+
+  private List<String> _instances;
+  private List<String> _partitions;
+  private ClusterDataCache _cache;
+  private LinkedHashMap<String, Integer> _states;
+  private Node _root;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    ClusterConfig clusterConfig = new ClusterConfig(CLUSTER_NAME);
+    clusterConfig.setTopology("/Rack/Host/Instance");
+    clusterConfig.setFaultZoneType("Rack");
+    clusterConfig.setTopologyAwareEnabled(true);
+
+    _instances = new ArrayList<>();
+    Map<String, InstanceConfig> instanceConfigs = new HashMap<>();
+    for (int i = 0; i < numInstances; i++) {
+      String instance = SyntheticCluster.INSTANCE_PREFIX + i;
+      InstanceConfig config = new InstanceConfig(instance);
+      config.setDomain(String.format("Rack=rack_%d, Host=host_%d, Instance=%s", i % numRacks,
+          i / numInstancesPerHost, instance));
+      _instances.add(instance);
+      instanceConfigs.put(instance, config);
+    }
+    _cache = new ClusterDataCache(CLUSTER_NAME);
+    _cache.setClusterConfig(clusterConfig);
+    _cache.setInstanceConfigMap(instanceConfigs);
+
+    _partitions = new ArrayList<>();
+    for (int p = 0; p < numPartitions; p++) {
+      _partitions.add(SyntheticCluster.RESOURCE_PREFIX + "0_" + p);
+    }
+    _states = new LinkedHashMap<>();
+    _states.put("MASTER", 1);
+    _states.put("SLAVE", numReplicas - 1);
+
+    _root = new Topology(_instances, _instances, instanceConfigs, clusterConfig).getRootNode();
+  }
+
+  @Benchmark
+  public ZNRecord computePartitionAssignment() {
+    CrushRebalanceStrategy strategy = new CrushRebalanceStrategy();
+    strategy.init(SyntheticCluster.RESOURCE_PREFIX + "0", _partitions, _states, Integer.MAX_VALUE);
+    return strategy.computePartitionAssignment(_instances, _instances,
+        Collections.<String, Map<String, String>>emptyMap(), _cache);
+  }
+
+  /**
+   * The selection of the racks and one instance in each rack for every partition, computing the
+   * straws in every selection.
+   */
+  @Benchmark
+  public int selectComputingStraws() {
+    return selectAll(new CRUSHPlacementAlgorithm());
+  }
+
+  /**
+   * The same selections with the straws precomputed once for the topology.
+   */
+  @Benchmark
+  public int selectPrecomputedStraws() {
+    return selectAll(new CRUSHPlacementAlgorithm(_root));
+  }
+
+  private int selectAll(CRUSHPlacementAlgorithm algorithm) {
+    int selected = 0;
+    for (String partition : _partitions) {
+      long input = partition.hashCode();
+      for (Node rack : algorithm.select(_root, input, numReplicas, "Rack")) {
+        selected += algorithm.select(rack, input, 1, "Instance").size();
+      }
+    }
+    return selected;
+  }
+}
@@ -0,0 +1,79 @@
+package org.apache.helix.benchmarks.controller;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.apache.helix.controller.pipeline.Pipeline;
+import org.apache.helix.controller.pipeline.Stage;
+import org.apache.helix.controller.stages.AttributeName;
+import org.apache.helix.controller.stages.ClusterEvent;
+import org.apache.helix.controller.stages.CurrentStateComputationStage;
+import org.apache.helix.controller.stages.MessageSelectionStage;
+import org.apache.helix.controller.stages.MessageThrottleStage;
+import org.apache.helix.controller.stages.TopStateHandoffReportStage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the default rebalance pipeline end to end, from ResourceComputationStage to
+ * MessageThrottleStage, on a cluster that has already been read into the ClusterDataCache.
+ * Stages that write to ZooKeeper (message dispatch, assignment persistence, target external
+ * view) are left out so every invocation sees the same cluster state.
+ * <p>
+ * Run with "-prof gc" to also report allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class RebalancePipelineBenchmark {
+  private Pipeline _pipeline;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    _pipeline = new Pipeline("DEFAULT");
+    for (Stage stage : ControllerPipelineState.computeStages()) {
+      _pipeline.addStage(stage);
+      if (stage instanceof CurrentStateComputationStage) {
+        _pipeline.addStage(new TopStateHandoffReportStage());
+      }
+    }
+    _pipeline.addStage(new MessageSelectionStage());
+    _pipeline.addStage(new MessageThrottleStage());
+  }
+
+  @Benchmark
+  public Object rebalancePipeline(ControllerPipelineState state) throws Exception {
+    ClusterEvent event = state.newPipelineEvent();
+    _pipeline.handle(event);
+    return event.getAttribute(AttributeName.MESSAGES_THROTTLE.name());
+  }
+}
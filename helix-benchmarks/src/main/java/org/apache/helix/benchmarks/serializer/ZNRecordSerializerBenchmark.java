@@ -0,0 +1,113 @@
+package org.apache.helix.benchmarks.serializer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.I0Itec.zkclient.serialize.ZkSerializer;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.benchmarks.SyntheticCluster;
+import org.apache.helix.manager.zk.ZNRecordBinarySerializer;
+import org.apache.helix.manager.zk.ZNRecordSerializer;
+import org.apache.helix.manager.zk.ZNRecordStreamingSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the ZkSerializers every ZooKeeper read and write goes through, on a record shaped like
+ * an IdealState: one list field (preference list) and one map field (instance -> state) per
+ * partition.
+ * <p>
+ * Run with "-prof gc" to also report the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZNRecordSerializerBenchmark {
+  @Param({ "ZNRecordSerializer", "ZNRecordStreamingSerializer", "ZNRecordBinarySerializer" })
+  public String serializer;
+
+  @Param({ "10", "1000" })
+  public int numPartitions;
+
+  @Param("3")
+  public int numReplicas;
+
+  private ZkSerializer _serializer;
+  private ZNRecord _record;
+  private byte[] _bytes;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    if ("ZNRecordStreamingSerializer".equals(serializer)) {
+      _serializer = new ZNRecordStreamingSerializer();
+    } else if ("ZNRecordBinarySerializer".equals(serializer)) {
+      _serializer = new ZNRecordBinarySerializer();
+    } else {
+      _serializer = new ZNRecordSerializer();
+    }
+
+    String resource = SyntheticCluster.RESOURCE_PREFIX + 0;
+    _record = new ZNRecord(resource);
+    _record.setSimpleField("NUM_PARTITIONS", String.valueOf(numPartitions));
+    _record.setSimpleField("REBALANCE_MODE", "SEMI_AUTO");
+    _record.setSimpleField("REPLICAS", String.valueOf(numReplicas));
+    _record.setSimpleField("STATE_MODEL_DEF_REF", "MasterSlave");
+    for (int p = 0; p < numPartitions; p++) {
+      String partition = resource + "_" + p;
+      List<String> preferenceList = new ArrayList<>(numReplicas);
+      Map<String, String> stateMap = new TreeMap<>();
+      for (int r = 0; r < numReplicas; r++) {
+        String instance = SyntheticCluster.INSTANCE_PREFIX + (p + r);
+        preferenceList.add(instance);
+        stateMap.put(instance, r == 0 ? "MASTER" : "SLAVE");
+      }
+      _record.setListField(partition, preferenceList);
+      _record.setMapField(partition, stateMap);
+    }
+    _bytes = _serializer.serialize(_record);
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return _serializer.serialize(_record);
+  }
+
+  @Benchmark
+  public Object deserialize() {
+    return _serializer.deserialize(_bytes);
+  }
+}
@@ -0,0 +1,158 @@
+package org.apache.helix.benchmarks.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.helix.benchmarks.SyntheticCluster;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.LiveInstance;
+import org.apache.helix.spectator.RoutingTableProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the RoutingTableProvider a spectator routes requests with: the lookup of the instances
+ * of a {resource, partition, state}, a refresh after one ExternalView changed, and a refresh after
+ * all of them changed. The ExternalViews are laid out like the ones of SyntheticCluster.
+ * <p>
+ * Run the same benchmark on an earlier build to compare against another RoutingTable
+ * implementation, and with "-prof gc" to also report the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingTableBenchmark {
+  @Param("100")
+  public int numInstances;
+
+  @Param("500")
+  public int numResources;
+
+  /** Partitions per resource. */
+  @Param("100")
+  public int numPartitions;
+
+  @Param("3")
+  public int numReplicas;
+
+  private BenchmarkRoutingTableProvider _provider;
+  private List<InstanceConfig> _instanceConfigs;
+  // two copies of every ExternalView, so that a refresh can replace them with new objects
+  private List<List<ExternalView>> _externalViews;
+  private List<ExternalView> _currentExternalViews;
+  private int _refreshCount;
+  private int _lookupCount;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    _instanceConfigs = new ArrayList<>();
+    for (int i = 0; i < numInstances; i++) {
+      _instanceConfigs.add(new InstanceConfig(SyntheticCluster.INSTANCE_PREFIX + i));
+    }
+    _externalViews = new ArrayList<>();
+    for (int copy = 0; copy < 2; copy++) {
+      List<ExternalView> externalViews = new ArrayList<>();
+      for (int i = 0; i < numResources; i++) {
+        externalViews.add(createExternalView(i));
+      }
+      _externalViews.add(externalViews);
+    }
+    _currentExternalViews = new ArrayList<>(_externalViews.get(0));
+    _provider = new BenchmarkRoutingTableProvider();
+    _provider.refresh(_currentExternalViews, _instanceConfigs);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    _provider.shutdown();
+  }
+
+  private ExternalView createExternalView(int resourceIndex) {
+    String resource = SyntheticCluster.RESOURCE_PREFIX + resourceIndex;
+    ExternalView externalView = new ExternalView(resource);
+    for (int p = 0; p < numPartitions; p++) {
+      Map<String, String> stateMap = new TreeMap<>();
+      for (int r = 0; r < numReplicas; r++) {
+        int instance = (resourceIndex * numPartitions + p + r) % numInstances;
+        stateMap.put(SyntheticCluster.INSTANCE_PREFIX + instance, r == 0 ? "MASTER" : "SLAVE");
+      }
+      externalView.setStateMap(resource + "_" + p, stateMap);
+    }
+    return externalView;
+  }
+
+  @Benchmark
+  public List<InstanceConfig> lookup() {
+    int i = _lookupCount++;
+    int resource = (i / numPartitions) % numResources;
+    String resourceName = _currentExternalViews.get(resource).getResourceName();
+    return _provider.getInstancesForResource(resourceName,
+        resourceName + "_" + (i % numPartitions), (i & 1) == 0 ? "MASTER" : "SLAVE");
+  }
+
+  /**
+   * The refresh after an ExternalView change event of a single resource.
+   */
+  @Benchmark
+  public void refreshOneChanged() {
+    int i = _refreshCount++;
+    int resource = i % numResources;
+    _currentExternalViews.set(resource, _externalViews.get((i / numResources + 1) & 1)
+        .get(resource));
+    _provider.refresh(_currentExternalViews, _instanceConfigs);
+  }
+
+  /**
+   * The refresh after every ExternalView changed, which rebuilds the whole routing table.
+   */
+  @Benchmark
+  public void refreshAllChanged() {
+    int i = _refreshCount++;
+    _currentExternalViews = new ArrayList<>(_externalViews.get((i + 1) & 1));
+    _provider.refresh(_currentExternalViews, _instanceConfigs);
+  }
+
+  private static class BenchmarkRoutingTableProvider extends RoutingTableProvider {
+    void refresh(Collection<ExternalView> externalViews, List<InstanceConfig> instanceConfigs) {
+      refresh(externalViews, instanceConfigs, Collections.<LiveInstance>emptyList());
+    }
+  }
+}
@@ -20,12 +20,17 @@ package org.apache.helix;
  */
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.I0Itec.zkclient.exception.ZkBadVersionException;
 import org.I0Itec.zkclient.exception.ZkNoNodeException;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +41,7 @@ import org.slf4j.LoggerFactory;
 public class GroupCommit {
   private static Logger LOG = LoggerFactory.getLogger(GroupCommit.class);
   private static int MAX_RETRY = 3;
+  private static int MAX_COMMITTED_RECORDS = 1000;
 
   private static class Queue {
     final AtomicReference<Thread> _running = new AtomicReference<Thread>();
@@ -53,8 +59,34 @@ public class GroupCommit {
     }
   }
 
+  /**
+   * The last record committed for a key together with its znode version
+   */
+  private static class Committed {
+    final ZNRecord _record;
+    final int _version;
+
+    Committed(ZNRecord record, int version) {
+      _record = record;
+      _version = version;
+    }
+  }
+
   private final Queue[] _queues = new Queue[100];
 
+  /**
+   * Records this committer wrote, so the next commit to the same key merges into them and writes
+   * with a version check instead of reading the znode back first. Bounded, least recently
+   * committed keys are dropped first.
+   */
+  private final Map<String, Committed> _committed =
+      Collections.synchronizedMap(new LinkedHashMap<String, Committed>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Committed> eldest) {
+          return size() > MAX_COMMITTED_RECORDS;
+        }
+      });
+
   /**
    * Set up a group committer and its associated queues
    */
@@ -103,12 +135,18 @@ public class GroupCommit {
 
           String mergedKey = first._key;
           ZNRecord merged = null;
-
-          try {
-            // accessor will fallback to zk if not found in cache
-            merged = accessor.get(mergedKey, null, options);
-          } catch (ZkNoNodeException e) {
-            // OK.
+          int version = -1;
+
+          Committed committed = _committed.remove(mergedKey);
+          if (committed != null) {
+            merged = committed._record;
+            version = committed._version;
+          } else {
+            Stat stat = new Stat();
+            merged = read(accessor, mergedKey, stat, options);
+            if (merged != null) {
+              version = stat.getVersion();
+            }
           }
 
           /**
@@ -141,6 +179,24 @@ public class GroupCommit {
               } else {
                 LOG.info("Removed " + mergedKey);
               }
+            } else if (version >= 0) {
+              success = setIfVersion(accessor, mergedKey, merged, version, options);
+              if (success) {
+                _committed.put(mergedKey, new Committed(merged, version + 1));
+              } else {
+                // someone else changed or removed the znode since it was read, so merge the
+                // updates into what is there now and fall back to an unconditional write
+                LOG.info("Version " + version + " of " + mergedKey + " is stale, re-read it");
+                merged = read(accessor, mergedKey, null, options);
+                if (merged == null) {
+                  merged = new ZNRecord(first._record);
+                }
+                for (Entry ent : processed) {
+                  merged.merge(ent._record);
+                }
+                version = -1;
+                retry--;
+              }
             } else {
               success = accessor.set(mergedKey, merged, options);
               if (!success) {
@@ -173,4 +229,23 @@ public class GroupCommit {
     return success;
   }
 
+  private static ZNRecord read(BaseDataAccessor<ZNRecord> accessor, String key, Stat stat,
+      int options) {
+    try {
+      // accessor will fallback to zk if not found in cache
+      return accessor.get(key, stat, options);
+    } catch (ZkNoNodeException e) {
+      // OK.
+      return null;
+    }
+  }
+
+  private static boolean setIfVersion(BaseDataAccessor<ZNRecord> accessor, String key,
+      ZNRecord record, int version, int options) {
+    try {
+      return accessor.set(key, record, version, options);
+    } catch (ZkBadVersionException e) {
+      return false;
+    }
+  }
 }
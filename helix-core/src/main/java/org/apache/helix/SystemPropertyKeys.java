@@ -20,11 +20,53 @@ public class SystemPropertyKeys {
   public static final String ZK_REESTABLISHMENT_CONNECTION_TIMEOUT =
       "zk.connectionReEstablishment.timeout";
 
+  // number of threads delivering the zk events of a ZkClient to its listeners. The events of a
+  // path are always delivered in order, but not the events of different paths if more than 1.
+  public static final String ZK_EVENT_DISPATCH_THREADS = "zk.eventDispatchThreads";
+
   public static final String ZK_WAIT_CONNECTED_TIMEOUT = "helixmanager.waitForConnectedTimeout";
 
   public static final String PARTICIPANT_HEALTH_REPORT_LATENCY =
       "helixmanager.participantHealthReport.reportLatency";
 
+  // comma separated cluster-relative paths, e.g. "IDEALSTATES,INSTANCES", whose ZNRecords are
+  // written with ZNRecordBinarySerializer
+  public static final String ZNRECORD_BINARY_PATHS = "helixmanager.znRecordBinaryPaths";
+
+  // HelixGroupCommit, max time in microseconds to wait for more updates before committing a batch,
+  // 0 disables waiting
+  public static final String GROUP_COMMIT_MAX_BATCH_WINDOW_US =
+      "helixmanager.groupCommitMaxBatchWindowUs";
+
+  // ZkCacheBaseDataAccessor, max number of cached znodes without children of each of its caches,
+  // 0 for no limit
+  public static final String ZK_CACHE_MAX_ENTRIES = "helixmanager.zkCacheMaxEntries";
+
+  // ZkCacheBaseDataAccessor, max total length in bytes of the paths and data of the cached znodes
+  // without children of each of its caches, 0 for no limit. Exclusive with ZK_CACHE_MAX_ENTRIES.
+  public static final String ZK_CACHE_MAX_WEIGHT_BYTES = "helixmanager.zkCacheMaxWeightBytes";
+
+  // HelixTaskExecutor, "true" to run the queued state transitions of a participant by the
+  // transition priority of their state model, shared fairly among resources, instead of in
+  // arrival order
+  public static final String STATE_TRANSITION_PRIORITY_SCHEDULING_ENABLED =
+      "helixmanager.stateTransitionPrioritySchedulingEnabled";
+
+  // StatusUpdateUtil, where the status updates and errors of the messages are written: "ZK" to
+  // write them to ZooKeeper on the message handling thread (default), "ASYNC" to buffer them and
+  // write them to ZooKeeper in the background, "FILE" to append them to a local file, or the class
+  // name of a StatusUpdateSink implementation with a default constructor
+  public static final String STATUS_UPDATE_SINK = "helixmanager.statusUpdateSink";
+
+  // StatusUpdateUtil, ASYNC sink, max number of buffered status updates, and the interval in
+  // milliseconds of the flushes of the buffer
+  public static final String STATUS_UPDATE_BUFFER_SIZE = "helixmanager.statusUpdateBufferSize";
+  public static final String STATUS_UPDATE_FLUSH_INTERVAL_MS =
+      "helixmanager.statusUpdateFlushIntervalMs";
+
+  // StatusUpdateUtil, FILE sink, path of the status update journal
+  public static final String STATUS_UPDATE_FILE = "helixmanager.statusUpdateFile";
+
   // CallbackHandler
   public static final String ASYNC_BATCH_MODE_ENABLED = "helix.callbackhandler.isAsyncBatchModeEnabled";
 
@@ -25,12 +25,14 @@ import java.util.Map;
 import java.util.TreeMap;
 
 import org.apache.helix.ZNRecordDelta.MergeOperation;
+import org.apache.helix.manager.zk.serializer.InterningDeserializers;
 import org.apache.helix.manager.zk.serializer.JacksonPayloadSerializer;
 import org.apache.helix.manager.zk.serializer.PayloadSerializer;
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.annotate.JsonDeserialize;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
 import org.codehaus.jackson.map.annotate.JsonSerialize.Inclusion;
 import org.slf4j.Logger;
@@ -167,10 +169,13 @@ public class ZNRecord {
   }
 
   /**
-   * Set all fields whose values are key, value properties
+   * Set all fields whose values are key, value properties. When read from JSON, the keys and
+   * values are interned and each small field is a {@link org.apache.helix.util.CompactStringMap}.
    * @param mapFields
    */
   @JsonProperty
+  @JsonDeserialize(keyUsing = InterningDeserializers.Key.class,
+      contentUsing = InterningDeserializers.MapField.class)
   public void setMapFields(Map<String, Map<String, String>> mapFields) {
     this.mapFields = mapFields;
   }
@@ -185,10 +190,13 @@ public class ZNRecord {
   }
 
   /**
-   * Set all fields whose values are a list of values
+   * Set all fields whose values are a list of values. When read from JSON, the keys and values
+   * are interned.
    * @param listFields
    */
   @JsonProperty
+  @JsonDeserialize(keyUsing = InterningDeserializers.Key.class,
+      contentUsing = InterningDeserializers.ListField.class)
   public void setListFields(Map<String, List<String>> listFields) {
     this.listFields = listFields;
   }
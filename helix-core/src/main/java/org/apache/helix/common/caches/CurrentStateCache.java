@@ -20,11 +20,16 @@ package org.apache.helix.common.caches;
  */
 
 import com.google.common.collect.Maps;
+import org.apache.helix.BaseDataAccessor;
 import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixProperty;
 import org.apache.helix.PropertyKey;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.ZNRecordAssembler;
 import org.apache.helix.controller.LogUtil;
 import org.apache.helix.model.CurrentState;
 import org.apache.helix.model.LiveInstance;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,6 +37,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,6 +54,10 @@ public class CurrentStateCache extends AbstractDataCache {
   // If the cache is already refreshed with current state data.
   private boolean _initialized = false;
   private CurrentStateSnapshot _snapshot;
+  // Resources with a CurrentState created, updated or removed in the last refresh
+  private Set<String> _changedResources = Collections.emptySet();
+  // Parent and bucket records of the bucketized CurrentStates, see refreshBucketizedCurrentStates()
+  private Map<PropertyKey, BucketizedCurrentState> _bucketizedCache = Maps.newHashMap();
 
   public CurrentStateCache(String clusterName) {
     _clusterName = clusterName;
@@ -132,9 +142,24 @@ public class CurrentStateCache extends AbstractDataCache {
     Set<PropertyKey> cachedKeys = new HashSet<>(_currentStateCache.keySet());
     cachedKeys.retainAll(currentStateKeys);
 
-    Map<PropertyKey, CurrentState> newStateCache = Collections.unmodifiableMap(
+    // Participants write bucketized CurrentStates bucket by bucket, without touching the parent
+    // node, so those are refreshed by comparing the stats of their buckets.
+    List<PropertyKey> bucketizedKeys = new ArrayList<>();
+    Iterator<PropertyKey> cachedKeyIter = cachedKeys.iterator();
+    while (cachedKeyIter.hasNext()) {
+      PropertyKey key = cachedKeyIter.next();
+      if (_currentStateCache.get(key).getBucketSize() > 0) {
+        bucketizedKeys.add(key);
+        cachedKeyIter.remove();
+      }
+    }
+
+    Map<PropertyKey, CurrentState> refreshedStateCache =
         refreshProperties(accessor, new ArrayList<>(reloadKeys), new ArrayList<>(cachedKeys),
-            _currentStateCache));
+            _currentStateCache);
+    refreshedStateCache.putAll(refreshBucketizedCurrentStates(accessor, bucketizedKeys));
+    Map<PropertyKey, CurrentState> newStateCache =
+        Collections.unmodifiableMap(refreshedStateCache);
 
     // if the cache was not initialized, the previous state should not be included in the snapshot
     if (_initialized) {
@@ -144,6 +169,20 @@ public class CurrentStateCache extends AbstractDataCache {
       _initialized = true;
     }
 
+    // Unchanged CurrentStates are kept as the same cached objects by refreshProperties()
+    Set<String> changedResources = new HashSet<>();
+    for (Map.Entry<PropertyKey, CurrentState> entry : newStateCache.entrySet()) {
+      if (_currentStateCache.get(entry.getKey()) != entry.getValue()) {
+        changedResources.add(entry.getValue().getResourceName());
+      }
+    }
+    for (Map.Entry<PropertyKey, CurrentState> entry : _currentStateCache.entrySet()) {
+      if (!newStateCache.containsKey(entry.getKey())) {
+        changedResources.add(entry.getValue().getResourceName());
+      }
+    }
+    _changedResources = changedResources;
+
     _currentStateCache = newStateCache;
 
     if (LOG.isDebugEnabled()) {
@@ -154,6 +193,131 @@ public class CurrentStateCache extends AbstractDataCache {
     }
   }
 
+  /**
+   * Refresh the cached bucketized CurrentStates. Only the buckets whose stat changed since the last
+   * refresh are read from zk, and a CurrentState is re-assembled only if its parent node or any of
+   * its buckets changed; otherwise the cached object is kept.
+   *
+   * @param accessor
+   * @param keys keys of the cached bucketized CurrentStates
+   *
+   * @return refreshed map of propertykey -> CurrentState
+   */
+  private Map<PropertyKey, CurrentState> refreshBucketizedCurrentStates(HelixDataAccessor accessor,
+      List<PropertyKey> keys) {
+    Map<PropertyKey, CurrentState> refreshedStateMap = Maps.newHashMap();
+    Map<PropertyKey, BucketizedCurrentState> refreshedBucketizedCache = Maps.newHashMap();
+    if (keys.isEmpty()) {
+      _bucketizedCache = refreshedBucketizedCache;
+      return refreshedStateMap;
+    }
+    BaseDataAccessor<ZNRecord> baseAccessor = accessor.getBaseDataAccessor();
+
+    // list the buckets of every CurrentState and get the stats of all of them in one batch
+    List<HelixProperty.Stat> parentStats = accessor.getPropertyStats(keys);
+    List<List<String>> bucketNames = new ArrayList<>(keys.size());
+    List<String> bucketPaths = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i++) {
+      List<String> names = null;
+      if (parentStats.get(i) != null) {
+        names = baseAccessor.getChildNames(keys.get(i).getPath(), 0);
+      }
+      if (names == null) {
+        names = Collections.emptyList();
+      }
+      bucketNames.add(names);
+      for (String name : names) {
+        bucketPaths.add(keys.get(i).getPath() + "/" + name);
+      }
+    }
+    Stat[] bucketStats = baseAccessor.getStats(bucketPaths, 0);
+
+    // read the parents and buckets that changed
+    List<String> reloadPaths = new ArrayList<>();
+    int bucketIndex = 0;
+    for (int i = 0; i < keys.size(); i++) {
+      PropertyKey key = keys.get(i);
+      BucketizedCurrentState cached = _bucketizedCache.get(key);
+      HelixProperty.Stat parentStat = parentStats.get(i);
+      if (parentStat != null && (cached == null || !parentStat.equals(getStat(cached._parent)))) {
+        reloadPaths.add(key.getPath());
+      }
+      for (String name : bucketNames.get(i)) {
+        Stat bucketStat = bucketStats[bucketIndex++];
+        ZNRecord cachedBucket = cached == null ? null : cached._buckets.get(name);
+        if (bucketStat != null && (cachedBucket == null || !getStat(cachedBucket)
+            .equals(new HelixProperty.Stat(bucketStat.getVersion(), bucketStat.getCtime(),
+                bucketStat.getMtime())))) {
+          reloadPaths.add(key.getPath() + "/" + name);
+        }
+      }
+    }
+    List<Stat> reloadStats = new ArrayList<>();
+    List<ZNRecord> reloadedRecords = baseAccessor.get(reloadPaths, reloadStats, 0);
+    Map<String, ZNRecord> reloadedRecordMap = Maps.newHashMap();
+    for (int i = 0; i < reloadPaths.size(); i++) {
+      ZNRecord record = reloadedRecords.get(i);
+      if (record != null) {
+        Stat stat = reloadStats.get(i);
+        record.setCreationTime(stat.getCtime());
+        record.setModifiedTime(stat.getMtime());
+        record.setVersion(stat.getVersion());
+        reloadedRecordMap.put(reloadPaths.get(i), record);
+      }
+    }
+
+    for (int i = 0; i < keys.size(); i++) {
+      PropertyKey key = keys.get(i);
+      BucketizedCurrentState cached = _bucketizedCache.get(key);
+      boolean changed = cached == null;
+
+      ZNRecord parent = reloadedRecordMap.get(key.getPath());
+      if (parent != null) {
+        // @see HELIX-574, same as ZKHelixDataAccessor
+        parent.getMapFields().clear();
+        parent.getListFields().clear();
+        changed = true;
+      } else if (parentStats.get(i) != null && cached != null) {
+        parent = cached._parent;
+      } else {
+        LogUtil.logWarn(LOG, getEventId(), "znode is null for key: " + key);
+        continue;
+      }
+
+      Map<String, ZNRecord> buckets = Maps.newTreeMap();
+      for (String name : bucketNames.get(i)) {
+        ZNRecord bucket = reloadedRecordMap.get(key.getPath() + "/" + name);
+        if (bucket != null) {
+          changed = true;
+        } else if (cached != null) {
+          bucket = cached._buckets.get(name);
+        }
+        if (bucket != null) {
+          buckets.put(name, bucket);
+        }
+      }
+      if (cached != null && !buckets.keySet().equals(cached._buckets.keySet())) {
+        changed = true;
+      }
+
+      BucketizedCurrentState bucketized =
+          changed ? new BucketizedCurrentState(parent, buckets) : cached;
+      refreshedBucketizedCache.put(key, bucketized);
+      refreshedStateMap.put(key,
+          changed ? new CurrentState(bucketized.assemble()) : _currentStateCache.get(key));
+    }
+    _bucketizedCache = refreshedBucketizedCache;
+
+    LogUtil.logInfo(LOG, getEventId(), reloadPaths.size() + " of " + (keys.size()
+        + bucketPaths.size()) + " bucketized current state znodes refreshed from zk.");
+    return refreshedStateMap;
+  }
+
+  private static HelixProperty.Stat getStat(ZNRecord record) {
+    return new HelixProperty.Stat(record.getVersion(), record.getCreationTime(),
+        record.getModifiedTime());
+  }
+
   /**
    * Return CurrentStates map for all instances.
    *
@@ -194,8 +358,43 @@ public class CurrentStateCache extends AbstractDataCache {
     return Collections.unmodifiableMap(_currentStateMap.get(instance).get(clientSessionId));
   }
 
+  /**
+   * Return the resources with a CurrentState created, updated or removed in the last refresh.
+   *
+   * @return
+   */
+  public Set<String> getChangedResources() {
+    return Collections.unmodifiableSet(_changedResources);
+  }
+
   @Override
   public CurrentStateSnapshot getSnapshot() {
     return _snapshot;
   }
+
+  /**
+   * The parent record, without list and map fields, and the bucket records of a bucketized
+   * CurrentState, keyed by bucket name.
+   */
+  private static class BucketizedCurrentState {
+    final ZNRecord _parent;
+    final Map<String, ZNRecord> _buckets;
+
+    BucketizedCurrentState(ZNRecord parent, Map<String, ZNRecord> buckets) {
+      _parent = parent;
+      _buckets = buckets;
+    }
+
+    ZNRecord assemble() {
+      ZNRecord record = new ZNRecord(_parent);
+      ZNRecord assembledRecord =
+          new ZNRecordAssembler().assemble(new ArrayList<>(_buckets.values()));
+      if (assembledRecord != null) {
+        record.getSimpleFields().putAll(assembledRecord.getSimpleFields());
+        record.getListFields().putAll(assembledRecord.getListFields());
+        record.getMapFields().putAll(assembledRecord.getMapFields());
+      }
+      return record;
+    }
+  }
 }
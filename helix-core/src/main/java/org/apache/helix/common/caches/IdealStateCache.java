@@ -43,6 +43,8 @@ public class IdealStateCache extends AbstractDataCache {
 
   private Map<String, IdealState> _idealStateMap;
   private Map<String, IdealState> _idealStateCache;
+  // Resources whose IdealState was created, updated or removed in the last refresh
+  private Set<String> _changedResources = Collections.emptySet();
 
   private String _clusterName;
 
@@ -89,6 +91,20 @@ public class IdealStateCache extends AbstractDataCache {
       newIdealStateMap.put(idealState.getResourceName(), idealState);
     }
 
+    // Unchanged IdealStates are kept as the same cached objects by refreshProperties()
+    Set<String> changedResources = new HashSet<>();
+    for (Map.Entry<String, IdealState> entry : newIdealStateMap.entrySet()) {
+      if (_idealStateCache.get(entry.getKey()) != entry.getValue()) {
+        changedResources.add(entry.getKey());
+      }
+    }
+    for (String resource : _idealStateCache.keySet()) {
+      if (!newIdealStateMap.containsKey(resource)) {
+        changedResources.add(resource);
+      }
+    }
+    _changedResources = changedResources;
+
     _idealStateCache = new HashMap<>(newIdealStateMap);
     _idealStateMap = new HashMap<>(newIdealStateMap);
 
@@ -107,6 +123,15 @@ public class IdealStateCache extends AbstractDataCache {
     return Collections.unmodifiableMap(_idealStateMap);
   }
 
+  /**
+   * Return the resources whose IdealState was created, updated or removed in the last refresh.
+   *
+   * @return
+   */
+  public Set<String> getChangedResources() {
+    return Collections.unmodifiableSet(_changedResources);
+  }
+
   public void clear() {
     _idealStateMap.clear();
     _idealStateCache.clear();
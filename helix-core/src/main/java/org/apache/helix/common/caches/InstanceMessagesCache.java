@@ -22,9 +22,11 @@ package org.apache.helix.common.caches;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +37,7 @@ import org.apache.helix.model.CurrentState;
 import org.apache.helix.model.LiveInstance;
 import org.apache.helix.model.Message;
 import org.apache.helix.util.HelixUtil;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,10 +49,17 @@ public class InstanceMessagesCache {
   private Map<String, Map<String, Message>> _messageMap;
   private Map<String, Map<String, Message>> _relayMessageMap;
 
+  // Resources with a message created or removed in the last refresh
+  private Set<String> _changedResources = Collections.emptySet();
+
   // maintain a cache of participant messages across pipeline runs
   // <instance -> {<MessageId, Message>}>
   private Map<String, Map<String, Message>> _messageCache = Maps.newHashMap();
 
+  // stat of the message folder of each instance when its message names were last listed
+  // <instance -> Stat>
+  private Map<String, Stat> _messageFolderStats = Maps.newHashMap();
+
   // maintain a set of valid pending P2P messages.
   // <instance -> {<MessageId, Message>}>
   private Map<String, Map<String, Message>> _relayMessageCache = Maps.newHashMap();
@@ -89,8 +99,26 @@ public class InstanceMessagesCache {
     PropertyKey.Builder keyBuilder = accessor.keyBuilder();
     Map<String, Map<String, Message>> msgMap = new HashMap<>();
     List<PropertyKey> newMessageKeys = Lists.newLinkedList();
+    Set<String> changedResources = new HashSet<>();
     long purgeSum = 0;
-    for (String instanceName : liveInstanceMap.keySet()) {
+
+    // get the stats of all message folders in one batch of async calls, so the names are only
+    // listed for the folders that had messages created or removed since the last refresh
+    List<String> instanceNames = new ArrayList<>(liveInstanceMap.keySet());
+    Map<String, Stat> messageFolderStats = Maps.newHashMap();
+    if (!instanceNames.isEmpty()) {
+      List<String> messageFolderPaths = new ArrayList<>(instanceNames.size());
+      for (String instanceName : instanceNames) {
+        messageFolderPaths.add(keyBuilder.messages(instanceName).getPath());
+      }
+      Stat[] stats = accessor.getBaseDataAccessor().getStats(messageFolderPaths, 0);
+      for (int i = 0; i < instanceNames.size(); i++) {
+        messageFolderStats.put(instanceNames.get(i), stats[i]);
+      }
+    }
+    int listedFolders = 0;
+
+    for (String instanceName : instanceNames) {
       // get the cache
       Map<String, Message> cachedMap = _messageCache.get(instanceName);
       if (cachedMap == null) {
@@ -99,17 +127,24 @@ public class InstanceMessagesCache {
       }
       msgMap.put(instanceName, cachedMap);
 
+      Stat folderStat = messageFolderStats.get(instanceName);
+      if (isChildrenUnchanged(_messageFolderStats.get(instanceName), folderStat)) {
+        continue;
+      }
+      listedFolders++;
+
       // get the current names
       Set<String> messageNames =
           Sets.newHashSet(accessor.getChildNames(keyBuilder.messages(instanceName)));
 
       long purgeStart = System.currentTimeMillis();
       // clear stale names
-      Iterator<String> cachedNamesIter = cachedMap.keySet().iterator();
-      while (cachedNamesIter.hasNext()) {
-        String messageName = cachedNamesIter.next();
-        if (!messageNames.contains(messageName)) {
-          cachedNamesIter.remove();
+      Iterator<Map.Entry<String, Message>> cachedMessageIter = cachedMap.entrySet().iterator();
+      while (cachedMessageIter.hasNext()) {
+        Map.Entry<String, Message> cachedMessage = cachedMessageIter.next();
+        if (!messageNames.contains(cachedMessage.getKey())) {
+          changedResources.add(cachedMessage.getValue().getResourceName());
+          cachedMessageIter.remove();
         }
       }
       long purgeEnd = System.currentTimeMillis();
@@ -130,14 +165,18 @@ public class InstanceMessagesCache {
         if (message != null) {
           Map<String, Message> cachedMap = _messageCache.get(message.getTgtName());
           cachedMap.put(message.getId(), message);
+          changedResources.add(message.getResourceName());
         }
       }
     }
 
     _messageMap = Collections.unmodifiableMap(msgMap);
+    _changedResources = changedResources;
+    _messageFolderStats = messageFolderStats;
 
     if (LOG.isDebugEnabled()) {
       LOG.debug("Message purge took: " + purgeSum);
+      LOG.debug("Listed " + listedFolders + " of " + instanceNames.size() + " message folders.");
       LOG.debug("# of Messages read from ZooKeeper " + newMessageKeys.size() + ". took " + (
           System.currentTimeMillis() - startTime) + " ms.");
     }
@@ -147,6 +186,15 @@ public class InstanceMessagesCache {
     return true;
   }
 
+  /**
+   * The children of a znode are the same if it is the same znode (same creation zxid) and no
+   * child was created or removed since (same cversion).
+   */
+  private static boolean isChildrenUnchanged(Stat cachedStat, Stat stat) {
+    return cachedStat != null && stat != null && cachedStat.getCzxid() == stat.getCzxid()
+        && cachedStat.getCversion() == stat.getCversion();
+  }
+
   // update all valid relay messages attached to existing state transition messages into message map.
   public void updateRelayMessages(Map<String, LiveInstance> liveInstanceMap,
       Map<String, Map<String, Map<String, CurrentState>>> currentStateMap) {
@@ -357,6 +405,16 @@ public class InstanceMessagesCache {
     return Collections.emptyMap();
   }
 
+  /**
+   * Return the resources with a pending message created or removed in the last refresh. Messages
+   * that are not bound to a resource are reported with a null resource name.
+   *
+   * @return
+   */
+  public Set<String> getChangedResources() {
+    return Collections.unmodifiableSet(_changedResources);
+  }
+
   public void cacheMessages(Collection<Message> messages) {
     for (Message message : messages) {
       String instanceName = message.getTgtName();
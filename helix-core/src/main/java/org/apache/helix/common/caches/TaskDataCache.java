@@ -39,6 +39,7 @@ import org.apache.helix.task.JobContext;
 import org.apache.helix.task.TaskConstants;
 import org.apache.helix.task.WorkflowConfig;
 import org.apache.helix.task.WorkflowContext;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +54,10 @@ public class TaskDataCache extends AbstractDataCache {
   private Map<String, JobConfig> _jobConfigMap = new HashMap<>();
   private Map<String, WorkflowConfig> _workflowConfigMap = new ConcurrentHashMap<>();
   private Map<String, ZNRecord> _contextMap = new HashMap<>();
+  // Contexts as they are in zookeeper, with their znode versions, by context node name
+  private Map<String, CachedContext> _contextCache = new HashMap<>();
+  // Contexts in _contextMap that are copies owned by this pipeline run, and may be modified
+  private Set<String> _contextCopies = new HashSet<>();
   private Set<String> _contextToUpdate = new HashSet<>();
   private Set<String> _contextToRemove = new HashSet<>();
   // The following fields have been added for quota-based task scheduling
@@ -90,9 +95,9 @@ public class TaskDataCache extends AbstractDataCache {
   }
 
   private void refreshJobContexts(HelixDataAccessor accessor) {
-    // TODO: Need an optimize for reading context only if the refresh is needed.
     long start = System.currentTimeMillis();
     _contextMap.clear();
+    _contextCopies.clear();
     if (_clusterName == null) {
       return;
     }
@@ -101,28 +106,64 @@ public class TaskDataCache extends AbstractDataCache {
     List<String> contextPaths = new ArrayList<>();
     List<String> childNames = accessor.getBaseDataAccessor().getChildNames(path, 0);
     if (childNames == null) {
+      _contextCache.clear();
       return;
     }
     for (String context : childNames) {
       contextPaths.add(Joiner.on("/").join(path, context, TaskConstants.CONTEXT_NODE));
     }
 
-    List<ZNRecord> contexts = accessor.getBaseDataAccessor().get(contextPaths, null, 0);
-    for (int i = 0; i < contexts.size(); i++) {
-      ZNRecord context = contexts.get(i);
+    // only read the contexts whose znode version changed since they were cached
+    Stat[] stats = contextPaths.isEmpty()
+        ? new Stat[0]
+        : accessor.getBaseDataAccessor().getStats(contextPaths, 0);
+    Map<String, CachedContext> contextCache = new HashMap<>();
+    List<String> reloadNames = new ArrayList<>();
+    List<String> reloadPaths = new ArrayList<>();
+    for (int i = 0; i < childNames.size(); i++) {
+      String childName = childNames.get(i);
+      CachedContext cached = _contextCache.get(childName);
+      // a context that failed to be persisted is read again, as it is not what zookeeper has
+      if (cached != null && stats[i] != null && cached._version == stats[i].getVersion()
+          && !_contextToUpdate.contains(childName)) {
+        contextCache.put(childName, cached);
+      } else {
+        reloadNames.add(childName);
+        reloadPaths.add(contextPaths.get(i));
+      }
+    }
+    if (!reloadPaths.isEmpty()) {
+      List<Stat> reloadStats = new ArrayList<>();
+      List<ZNRecord> contexts =
+          accessor.getBaseDataAccessor().get(reloadPaths, reloadStats, 0);
+      for (int i = 0; i < contexts.size(); i++) {
+        if (contexts.get(i) != null) {
+          // a context without a stat never matches a version, so it is read every time
+          int version = i < reloadStats.size() && reloadStats.get(i) != null
+              ? reloadStats.get(i).getVersion()
+              : -1;
+          contextCache.put(reloadNames.get(i), new CachedContext(contexts.get(i), version));
+        }
+      }
+    }
+    _contextCache = contextCache;
+
+    for (String childName : childNames) {
+      CachedContext cached = _contextCache.get(childName);
+      ZNRecord context = cached != null ? cached._record : null;
       if (context != null && context.getSimpleField(NAME) != null) {
         _contextMap.put(context.getSimpleField(NAME), context);
       } else {
-        _contextMap.put(childNames.get(i), context);
+        _contextMap.put(childName, context);
         LogUtil.logDebug(LOG, getEventId(),
-            String.format("Context for %s is null or miss the context NAME!", childNames.get((i))));
+            String.format("Context for %s is null or miss the context NAME!", childName));
       }
     }
 
     if (LOG.isDebugEnabled()) {
       LogUtil.logDebug(LOG, getEventId(),
-          "# of workflow/job context read from zk: " + _contextMap.size() + ". Take " + (
-              System.currentTimeMillis() - start) + " ms");
+          "# of workflow/job context read from zk: " + reloadPaths.size() + " of " + _contextMap
+              .size() + ". Take " + (System.currentTimeMillis() - start) + " ms");
     }
   }
 
@@ -166,10 +207,8 @@ public class TaskDataCache extends AbstractDataCache {
    * @return
    */
   public JobContext getJobContext(String resourceName) {
-    if (_contextMap.containsKey(resourceName) && _contextMap.get(resourceName) != null) {
-      return new JobContext(_contextMap.get(resourceName));
-    }
-    return null;
+    ZNRecord context = getContextCopy(resourceName);
+    return context != null ? new JobContext(context) : null;
   }
 
   /**
@@ -178,10 +217,33 @@ public class TaskDataCache extends AbstractDataCache {
    * @return
    */
   public WorkflowContext getWorkflowContext(String resourceName) {
-    if (_contextMap.containsKey(resourceName) && _contextMap.get(resourceName) != null) {
-      return new WorkflowContext(_contextMap.get(resourceName));
+    ZNRecord context = getContextCopy(resourceName);
+    return context != null ? new WorkflowContext(context) : null;
+  }
+
+  /**
+   * Contexts are modified in place by the task rebalancers. The cached context is copied the first
+   * time it is asked for in a pipeline run, so the changes of a run that are not persisted do not
+   * stay in the cache.
+   */
+  private ZNRecord getContextCopy(String resourceName) {
+    ZNRecord context = _contextMap.get(resourceName);
+    if (context != null && _contextCopies.add(resourceName)) {
+      context = copyRecord(context);
+      _contextMap.put(resourceName, context);
+    }
+    return context;
+  }
+
+  private static ZNRecord copyRecord(ZNRecord record) {
+    ZNRecord copy = new ZNRecord(record);
+    for (Map.Entry<String, Map<String, String>> entry : record.getMapFields().entrySet()) {
+      copy.setMapField(entry.getKey(), new HashMap<>(entry.getValue()));
+    }
+    for (Map.Entry<String, List<String>> entry : record.getListFields().entrySet()) {
+      copy.setListField(entry.getKey(), new ArrayList<>(entry.getValue()));
     }
-    return null;
+    return copy;
   }
 
   /**
@@ -203,6 +265,7 @@ public class TaskDataCache extends AbstractDataCache {
    */
   private void updateContext(String resourceName, ZNRecord record) {
     _contextMap.put(resourceName, record);
+    _contextCopies.add(resourceName);
     _contextToUpdate.add(resourceName);
   }
 
@@ -224,8 +287,16 @@ public class TaskDataCache extends AbstractDataCache {
         accessor.getBaseDataAccessor().setChildren(contextUpdatePaths, contextUpdateData, AccessOption.PERSISTENT);
 
     for (int i = 0; i < updateSuccess.length; i++) {
+      String resourceName = contextUpdateNames.get(i);
       if (updateSuccess[i]) {
-        _contextToUpdate.remove(contextUpdateNames.get(i));
+        _contextToUpdate.remove(resourceName);
+        // write through: the write bumped the version of the cached context by one. If anyone
+        // else wrote the context in between, the versions differ and the context is read again.
+        CachedContext cached = _contextCache.get(resourceName);
+        if (cached != null) {
+          _contextCache.put(resourceName,
+              new CachedContext(contextUpdateData.get(i), cached._version + 1));
+        }
       }
     }
 
@@ -244,11 +315,13 @@ public class TaskDataCache extends AbstractDataCache {
     // not allow same workflow name recreation.
     accessor.getBaseDataAccessor().remove(contextPathsToRemove, AccessOption.PERSISTENT);
 
+    _contextCache.keySet().removeAll(_contextToRemove);
     _contextToRemove.clear();
   }
 
   /**
-   * Return map of WorkflowContexts or JobContexts
+   * Return map of WorkflowContexts or JobContexts. The records must not be modified, use
+   * {@link #getJobContext(String)} or {@link #getWorkflowContext(String)} to change a context.
    * @return
    */
   public Map<String, ZNRecord> getContexts() {
@@ -284,6 +357,16 @@ public class TaskDataCache extends AbstractDataCache {
         + '\'' + '}';
   }
 
+  private static class CachedContext {
+    private final ZNRecord _record;
+    private final int _version;
+
+    CachedContext(ZNRecord record, int version) {
+      _record = record;
+      _version = version;
+    }
+  }
+
   private String getContextPath(String resourceName) {
     return String.format("/%s/%s%s/%s/%s", _clusterName, PropertyType.PROPERTYSTORE.name(),
         TaskConstants.REBALANCER_CONTEXT_ROOT, resourceName, TaskConstants.CONTEXT_NODE);
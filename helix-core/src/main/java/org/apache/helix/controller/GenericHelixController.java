@@ -45,7 +45,9 @@ import org.apache.helix.common.DedupEventProcessor;
 import org.apache.helix.controller.pipeline.AsyncWorkerType;
 import org.apache.helix.controller.pipeline.Pipeline;
 import org.apache.helix.controller.pipeline.PipelineRegistry;
+import org.apache.helix.controller.pipeline.ResourceShardedPipeline;
 import org.apache.helix.controller.stages.*;
+import org.apache.helix.controller.stages.BestPossibleComputePool;
 import org.apache.helix.controller.stages.BestPossibleStateCalcStage;
 import org.apache.helix.controller.stages.resource.ResourceMessageDispatchStage;
 import org.apache.helix.controller.stages.resource.ResourceMessageGenerationPhase;
@@ -142,6 +144,7 @@ public class GenericHelixController implements IdealStateChangeListener,
   private ClusterDataCache _cache;
   private ClusterDataCache _taskCache;
   private ScheduledExecutorService _asyncTasksThreadPool;
+  private final BestPossibleComputePool _bestPossibleComputePool = new BestPossibleComputePool();
 
   /**
    * A record of last pipeline finish duration
@@ -256,7 +259,7 @@ public class GenericHelixController implements IdealStateChangeListener,
     }
   }
 
-  private static PipelineRegistry createDefaultRegistry(String pipelineName) {
+  private static PipelineRegistry createDefaultRegistry(final String pipelineName) {
     logger.info("createDefaultRegistry");
     synchronized (GenericHelixController.class) {
       PipelineRegistry registry = new PipelineRegistry();
@@ -272,16 +275,14 @@ public class GenericHelixController implements IdealStateChangeListener,
       dataPreprocess.addStage(new CurrentStateComputationStage());
       dataPreprocess.addStage(new TopStateHandoffReportStage());
 
-      // rebalance pipeline
-      Pipeline rebalancePipeline = new Pipeline(pipelineName);
-      rebalancePipeline.addStage(new BestPossibleStateCalcStage());
-      rebalancePipeline.addStage(new IntermediateStateCalcStage());
-      rebalancePipeline.addStage(new ResourceMessageGenerationPhase());
-      rebalancePipeline.addStage(new MessageSelectionStage());
-      rebalancePipeline.addStage(new MessageThrottleStage());
-      rebalancePipeline.addStage(new ResourceMessageDispatchStage());
-      rebalancePipeline.addStage(new PersistAssignmentStage());
-      rebalancePipeline.addStage(new TargetExteralViewCalcStage());
+      // rebalance pipeline, optionally run per resource shard
+      Pipeline rebalancePipeline = new ResourceShardedPipeline(pipelineName,
+          new ResourceShardedPipeline.PipelineFactory() {
+            @Override
+            public Pipeline createPipeline() {
+              return createRebalancePipeline(pipelineName);
+            }
+          });
 
       // external view generation
       Pipeline externalViewPipeline = new Pipeline(pipelineName);
@@ -304,6 +305,19 @@ public class GenericHelixController implements IdealStateChangeListener,
     }
   }
 
+  private static Pipeline createRebalancePipeline(String pipelineName) {
+    Pipeline rebalancePipeline = new Pipeline(pipelineName);
+    rebalancePipeline.addStage(new BestPossibleStateCalcStage());
+    rebalancePipeline.addStage(new IntermediateStateCalcStage());
+    rebalancePipeline.addStage(new ResourceMessageGenerationPhase());
+    rebalancePipeline.addStage(new MessageSelectionStage());
+    rebalancePipeline.addStage(new MessageThrottleStage());
+    rebalancePipeline.addStage(new ResourceMessageDispatchStage());
+    rebalancePipeline.addStage(new PersistAssignmentStage());
+    rebalancePipeline.addStage(new TargetExteralViewCalcStage());
+    return rebalancePipeline;
+  }
+
   private static PipelineRegistry createTaskRegistry(String pipelineName) {
     logger.info("createDefaultRegistry");
     synchronized (GenericHelixController.class) {
@@ -806,6 +820,8 @@ public class GenericHelixController implements IdealStateChangeListener,
       _clusterStatusMonitor.setMaintenance(_inMaintenanceMode);
     } else {
       enableClusterStatusMonitor(false);
+      // the next leadership recreates the pool if it is still configured
+      _bestPossibleComputePool.shutdown();
     }
 
     logger.info("END: GenericClusterController.onControllerChange() for cluster " + _clusterName);
@@ -907,6 +923,8 @@ public class GenericHelixController implements IdealStateChangeListener,
     // shutdown async workers
     shutdownAsyncFIFOWorkers();
 
+    _bestPossibleComputePool.shutdown();
+
     enableClusterStatusMonitor(false);
 
     // TODO controller shouldn't be used in anyway after shutdown.
@@ -1023,6 +1041,7 @@ public class GenericHelixController implements IdealStateChangeListener,
   private void initPipelines(Thread eventThread, ClusterDataCache cache, boolean isTask) {
     cache.setTaskCache(isTask);
     cache.setAsyncTasksThreadPool(_asyncTasksThreadPool);
+    cache.setBestPossibleComputePool(_bestPossibleComputePool);
 
     eventThread.setDaemon(true);
     eventThread.start();
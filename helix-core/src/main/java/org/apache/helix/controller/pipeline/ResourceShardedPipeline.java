@@ -0,0 +1,210 @@
+package org.apache.helix.controller.pipeline;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.controller.stages.AttributeName;
+import org.apache.helix.controller.stages.ClusterDataCache;
+import org.apache.helix.controller.stages.ClusterEvent;
+import org.apache.helix.controller.stages.ResourceShardContext;
+import org.apache.helix.model.ClusterConfig;
+import org.apache.helix.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pipeline that partitions the resources into the number of shards set by
+ * {@link org.apache.helix.model.ClusterConfig#getRebalancePipelineShards()}, and runs a copy of
+ * the pipeline for each shard on the shard's own thread. All shards read the same
+ * ClusterDataCache, so handle() returns only when every shard is done, before the cache is
+ * refreshed again. The shards share a {@link ResourceShardContext} to apply the message
+ * constraints to the whole cluster.
+ * Resources of the same resource group are always in the same shard. With one shard, for the
+ * task pipeline, or for a cluster with state transition throttling (see
+ * {@link #getNumShards(ClusterConfig)}), the pipeline runs on the calling thread like a plain
+ * {@link Pipeline}.
+ */
+public class ResourceShardedPipeline extends Pipeline {
+  private static final Logger logger = LoggerFactory.getLogger(ResourceShardedPipeline.class);
+  private static final long SHARD_THREAD_KEEP_ALIVE_SEC = 60;
+
+  /**
+   * Creates the pipeline of a shard. Stages keep per-run state, so every shard needs its own.
+   */
+  public interface PipelineFactory {
+    Pipeline createPipeline();
+  }
+
+  private final PipelineFactory _pipelineFactory;
+  private final List<Pipeline> _shardPipelines = new ArrayList<>();
+  private final List<ExecutorService> _shardExecutors = new ArrayList<>();
+
+  public ResourceShardedPipeline(String pipelineType, PipelineFactory pipelineFactory) {
+    super(pipelineType);
+    _pipelineFactory = pipelineFactory;
+    _shardPipelines.add(pipelineFactory.createPipeline());
+    _stages = _shardPipelines.get(0).getStages();
+  }
+
+  @Override
+  public void addStage(Stage stage) {
+    throw new UnsupportedOperationException("Stages are created by the pipeline factory");
+  }
+
+  @Override
+  public void handle(ClusterEvent event) throws Exception {
+    ClusterDataCache cache = event.getAttribute(AttributeName.ClusterDataCache.name());
+    Map<String, Resource> resourceMap = event.getAttribute(AttributeName.RESOURCES.name());
+    Map<String, Resource> resourcesToRebalance =
+        event.getAttribute(AttributeName.RESOURCES_TO_REBALANCE.name());
+    int numShards = 1;
+    if (cache != null && !cache.isTaskCache() && cache.getClusterConfig() != null) {
+      numShards = getNumShards(cache.getClusterConfig());
+    }
+    if (numShards <= 1 || resourceMap == null || resourcesToRebalance == null
+        || resourcesToRebalance.size() <= 1) {
+      _shardPipelines.get(0).handle(event);
+      return;
+    }
+
+    List<Map<String, Resource>> shardResources = partition(resourceMap, numShards);
+    List<Map<String, Resource>> shardResourcesToRebalance =
+        partition(resourcesToRebalance, numShards);
+    ResourceShardContext shardContext = new ResourceShardContext(resourcesToRebalance.keySet());
+
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < numShards; i++) {
+      if (shardResourcesToRebalance.get(i).isEmpty()) {
+        continue;
+      }
+      final ClusterEvent shardEvent =
+          event.clone(String.format("%s_shard%d", event.getEventId(), i));
+      shardEvent.addAttribute(AttributeName.RESOURCES.name(), shardResources.get(i));
+      shardEvent.addAttribute(AttributeName.RESOURCES_TO_REBALANCE.name(),
+          shardResourcesToRebalance.get(i));
+      shardEvent.addAttribute(AttributeName.RESOURCE_SHARD_CONTEXT.name(), shardContext);
+      final Pipeline pipeline = getShardPipeline(i);
+      futures.add(getShardExecutor(i, event.getClusterName()).submit(new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          pipeline.handle(shardEvent);
+          return null;
+        }
+      }));
+    }
+
+    Exception failure = null;
+    try {
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          logger.error("Resource shard pipeline failed for event " + event.getEventId(),
+              e.getCause());
+          if (failure == null) {
+            failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+      throw e;
+    }
+    // Messages sent by the successful shards are cached even if another shard failed
+    shardContext.apply(event);
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * The state transition quota of a throttled cluster goes to the resources in order of decreasing
+   * priority. Shards charging the quota concurrently would hand it out in the order their threads
+   * happen to run, so a cluster with throttle configs or a resource priority field is not sharded.
+   * @return the number of shards to rebalance the resources of the cluster in
+   */
+  static int getNumShards(ClusterConfig clusterConfig) {
+    if (!clusterConfig.getStateTransitionThrottleConfigs().isEmpty()
+        || clusterConfig.getResourcePriorityField() != null) {
+      return 1;
+    }
+    return clusterConfig.getRebalancePipelineShards();
+  }
+
+  /**
+   * Partition the resources by resource group name, or by resource name if a resource is not in
+   * a group. The resource order is kept within each shard.
+   */
+  static List<Map<String, Resource>> partition(Map<String, Resource> resourceMap, int numShards) {
+    List<Map<String, Resource>> shards = new ArrayList<>(numShards);
+    for (int i = 0; i < numShards; i++) {
+      shards.add(new LinkedHashMap<String, Resource>());
+    }
+    for (Map.Entry<String, Resource> entry : resourceMap.entrySet()) {
+      String shardKey = entry.getValue().getResourceGroupName() != null
+          ? entry.getValue().getResourceGroupName()
+          : entry.getKey();
+      shards.get((shardKey.hashCode() & Integer.MAX_VALUE) % numShards)
+          .put(entry.getKey(), entry.getValue());
+    }
+    return shards;
+  }
+
+  private Pipeline getShardPipeline(int shard) {
+    while (_shardPipelines.size() <= shard) {
+      _shardPipelines.add(_pipelineFactory.createPipeline());
+    }
+    return _shardPipelines.get(shard);
+  }
+
+  private synchronized ExecutorService getShardExecutor(int shard, final String clusterName) {
+    while (_shardExecutors.size() <= shard) {
+      final String threadName =
+          String.format("%s-%s-shard-%d", getPipelineType(), clusterName, _shardExecutors.size());
+      // Idle shard threads exit, so a controller that stops leading holds no threads
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, SHARD_THREAD_KEEP_ALIVE_SEC,
+          TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, threadName);
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      executor.allowCoreThreadTimeOut(true);
+      _shardExecutors.add(executor);
+    }
+    return _shardExecutors.get(shard);
+  }
+}
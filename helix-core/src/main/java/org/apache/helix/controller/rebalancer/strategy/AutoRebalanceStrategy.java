@@ -20,6 +20,7 @@ package org.apache.helix.controller.rebalancer.strategy;
  */
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -51,6 +52,12 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
   private Map<String, Node> _nodeMap;
   private List<Node> _liveNodesList;
   private Map<Integer, String> _stateMap;
+  // index of each partition in _partitions, the bit of the partition in Node.partitions
+  private Map<String, Integer> _partitionIndex;
+  // indexes in _liveNodesList of the nodes that have spare capacity
+  private BitSet _spareNodes;
+  // indexes in _liveNodesList of the nodes that are full and could borrow ceiling capacity
+  private BitSet _fullNodes;
 
   private Map<Replica, Node> _preferredAssignment;
   private Map<Replica, Node> _existingPreferredAssignment;
@@ -101,11 +108,17 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
     int distFloor = (numReplicas * _partitions.size()) / sortedLiveNodes.size();
     _nodeMap = new HashMap<String, Node>();
     _liveNodesList = new ArrayList<Node>();
+    _spareNodes = new BitSet(sortedLiveNodes.size());
+    _fullNodes = new BitSet(sortedLiveNodes.size());
+    _partitionIndex = new HashMap<String, Integer>();
+    for (String partition : _partitions) {
+      if (!_partitionIndex.containsKey(partition)) {
+        _partitionIndex.put(partition, _partitionIndex.size());
+      }
+    }
 
     for (String id : sortedAllNodes) {
       Node node = new Node(id);
-      node.capacity = 0;
-      node.hasCeilingCapacity = false;
       _nodeMap.put(id, node);
     }
     for (int i = 0; i < sortedLiveNodes.size(); i++) {
@@ -118,8 +131,8 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
       }
       Node node = _nodeMap.get(sortedLiveNodes.get(i));
       node.isAlive = true;
-      node.capacity = targetSize;
-      node.hasCeilingCapacity = usingCeiling;
+      node.liveIndex = i;
+      node.setCapacity(targetSize, usingCeiling);
       _liveNodesList.add(node);
     }
 
@@ -172,10 +185,8 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
       Node receiver = _preferredAssignment.get(replica);
       if (donor.capacity < donor.currentlyAssigned
           && receiver.capacity > receiver.currentlyAssigned && receiver.canAdd(replica)) {
-        donor.currentlyAssigned = donor.currentlyAssigned - 1;
-        receiver.currentlyAssigned = receiver.currentlyAssigned + 1;
-        donor.nonPreferred.remove(replica);
-        receiver.preferred.add(replica);
+        donor.removeNonPreferred(replica);
+        receiver.addPreferred(replica);
         donor.newReplicas.remove(replica);
         receiver.newReplicas.add(replica);
         iterator.remove();
@@ -198,22 +209,16 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
       // first find if it preferred node still has capacity
       Node preferred = _preferredAssignment.get(replica);
       if (preferred.capacity > preferred.currentlyAssigned && preferred.canAdd(replica)) {
-        preferred.currentlyAssigned ++;
-        preferred.preferred.add(replica);
+        preferred.addPreferred(replica);
         preferred.newReplicas.add(replica);
         added = true;
       } else {
         // if preferred node has no capacity, search all nodes and find one that has capacity.
-        int startIndex = computeRandomStartIndex(replica);
-        for (int index = startIndex; index < startIndex + _liveNodesList.size(); index++) {
-          Node receiver = _liveNodesList.get(index % _liveNodesList.size());
-          if (receiver.capacity > receiver.currentlyAssigned && receiver.canAdd(replica)) {
-            receiver.currentlyAssigned = receiver.currentlyAssigned + 1;
-            receiver.nonPreferred.add(replica);
-            receiver.newReplicas.add(replica);
-            added = true;
-            break;
-          }
+        Node receiver = findReceiver(replica);
+        if (receiver != null) {
+          receiver.addNonPreferred(replica);
+          receiver.newReplicas.add(replica);
+          added = true;
         }
       }
       if (!added) {
@@ -235,25 +240,31 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
    * @return true if the assignment succeeded, false otherwise
    */
   private boolean assignOrphanByMakingRoom(Replica replica) {
-    Node capacityDonor = null;
-    Node capacityAcceptor = null;
     int startIndex = computeRandomStartIndex(replica);
-    for (int index = startIndex; index < startIndex + _liveNodesList.size(); index++) {
+    // this node has space but cannot accept the node
+    Node capacityDonor = null;
+    for (int index = nextIndex(_spareNodes, startIndex, startIndex); index >= 0;
+        index = nextIndex(_spareNodes, index + 1, startIndex)) {
       Node current = _liveNodesList.get(index % _liveNodesList.size());
-      if (current.hasCeilingCapacity && current.capacity > current.currentlyAssigned
-          && !current.canAddIfCapacity(replica) && capacityDonor == null) {
-        // this node has space but cannot accept the node
+      if (current.hasCeilingCapacity && !current.canAddIfCapacity(replica)) {
         capacityDonor = current;
-      } else if (!current.hasCeilingCapacity && current.capacity == current.currentlyAssigned
-          && current.canAddIfCapacity(replica) && capacityAcceptor == null) {
-        // this node would be able to accept the replica if it has ceiling capacity
-        capacityAcceptor = current;
+        break;
       }
-      if (capacityDonor != null && capacityAcceptor != null) {
+    }
+    if (capacityDonor == null) {
+      return false;
+    }
+    // this node would be able to accept the replica if it has ceiling capacity
+    Node capacityAcceptor = null;
+    for (int index = nextIndex(_fullNodes, startIndex, startIndex); index >= 0;
+        index = nextIndex(_fullNodes, index + 1, startIndex)) {
+      Node current = _liveNodesList.get(index % _liveNodesList.size());
+      if (current.canAddIfCapacity(replica)) {
+        capacityAcceptor = current;
         break;
       }
     }
-    if (capacityDonor != null && capacityAcceptor != null) {
+    if (capacityAcceptor != null) {
       // transfer ceiling capacity and add the node
       capacityAcceptor.steal(capacityDonor, replica);
       return true;
@@ -261,6 +272,46 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
     return false;
   }
 
+  /**
+   * Find the first live node, starting from the random start index of the replica and wrapping
+   * around, that can accept the replica. Only the nodes with spare capacity are checked, and each
+   * of them can only refuse the replica if it already has a replica of the partition.
+   * @param replica The replica to assign
+   * @return the node to assign the replica to, or null if no node can accept it
+   */
+  private Node findReceiver(Replica replica) {
+    int startIndex = computeRandomStartIndex(replica);
+    for (int index = nextIndex(_spareNodes, startIndex, startIndex); index >= 0;
+        index = nextIndex(_spareNodes, index + 1, startIndex)) {
+      Node receiver = _liveNodesList.get(index % _liveNodesList.size());
+      if (receiver.canAdd(replica)) {
+        return receiver;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get the next set index in circular order over the live nodes.
+   * @param nodes indexes of live nodes
+   * @param fromIndex the index to search from, in [startIndex, startIndex + number of live nodes]
+   *          where the indexes from the number of live nodes on mean the ones wrapped around
+   * @param startIndex the index the circular search started from
+   * @return the next set index, or -1 if the search is back at the start index
+   */
+  private int nextIndex(BitSet nodes, int fromIndex, int startIndex) {
+    int size = _liveNodesList.size();
+    if (fromIndex < size) {
+      int index = nodes.nextSetBit(fromIndex);
+      if (index >= 0) {
+        return index;
+      }
+      fromIndex = size;
+    }
+    int index = nodes.nextSetBit(fromIndex - size);
+    return index >= 0 && index < startIndex ? index + size : -1;
+  }
+
   /**
    * Move replicas from too-full nodes to nodes that can accept the replicas
    */
@@ -273,16 +324,11 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
         it = donor.nonPreferred.iterator();
         while (it.hasNext()) {
           Replica replica = it.next();
-          int startIndex = computeRandomStartIndex(replica);
-          for (int index = startIndex; index < startIndex + _liveNodesList.size(); index++) {
-            Node receiver = _liveNodesList.get(index % _liveNodesList.size());
-            if (receiver.canAdd(replica)) {
-              receiver.currentlyAssigned ++;
-              receiver.nonPreferred.add(replica);
-              donor.currentlyAssigned --;
-              it.remove();
-              break;
-            }
+          Node receiver = findReceiver(replica);
+          if (receiver != null) {
+            receiver.addNonPreferred(replica);
+            donor.unassignNonPreferred(replica);
+            it.remove();
           }
           if (donor.capacity >= donor.currentlyAssigned) {
             break;
@@ -351,20 +397,18 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
 
   private void forceToAssignOrphans() {
     for (Replica replica : _orphaned) {
-      int minOverloadedCapacity = Integer.MAX_VALUE;
+      // the last node that can accept the replica regardless of its capacity
       Node nodeToAssign = null;
-      for (int i = 0; i < _liveNodesList.size(); i++) {
+      for (int i = _liveNodesList.size() - 1; i >= 0; i--) {
         Node receiver = _liveNodesList.get(i);
-        if ((nodeToAssign == null || receiver.capacity < minOverloadedCapacity)
-            && receiver.currentlyAssigned < _maximumPerNode && receiver
-            .canAddIfCapacity(replica)) {
+        if (receiver.currentlyAssigned < _maximumPerNode && receiver.canAddIfCapacity(replica)) {
           nodeToAssign = receiver;
+          break;
         }
       }
 
       if (nodeToAssign != null) {
-        nodeToAssign.currentlyAssigned = nodeToAssign.currentlyAssigned + 1;
-        nodeToAssign.nonPreferred.add(replica);
+        nodeToAssign.addNonPreferred(replica);
         nodeToAssign.newReplicas.add(replica);
       }
     }
@@ -476,14 +520,8 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
       nodeStateMap.keySet().retainAll(_nodeMap.keySet());
       for (String nodeId : nodeStateMap.keySet()) {
         Node node = _nodeMap.get(nodeId);
-        boolean skip = false;
-        for (Replica replica : node.preferred) {
-          if (replica.partition.equals(partition)) {
-            skip = true;
-            break;
-          }
-        }
-        if (skip) {
+        if (node.hasPartition(partition)) {
+          // already in its preferred position
           continue;
         }
         // check if its in one of the preferred position
@@ -501,6 +539,7 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
               && !existingNonPreferredAssignment.containsKey(replica)) {
             existingNonPreferredAssignment.put(replica, node);
             node.nonPreferred.add(replica);
+            node.addPartition(replica);
 
             break;
           }
@@ -525,19 +564,16 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
    * @return Unassigned replicas
    */
   private Set<Replica> computeOrphaned() {
-    Set<Replica> orphanedPartitions = new TreeSet<Replica>(_preferredAssignment.keySet());
-    for (Replica r : _existingPreferredAssignment.keySet()) {
-      if (orphanedPartitions.contains(r)) {
-        orphanedPartitions.remove(r);
-      }
-    }
-    for (Replica r : _existingNonPreferredAssignment.keySet()) {
-      if (orphanedPartitions.contains(r)) {
-        orphanedPartitions.remove(r);
+    // only the orphans are sorted, not all the replicas
+    List<Replica> orphanedPartitions = new ArrayList<Replica>();
+    for (Replica r : _preferredAssignment.keySet()) {
+      if (!_existingPreferredAssignment.containsKey(r)
+          && !_existingNonPreferredAssignment.containsKey(r)) {
+        orphanedPartitions.add(r);
       }
     }
 
-    return orphanedPartitions;
+    return new TreeSet<Replica>(orphanedPartitions);
   }
 
   /**
@@ -547,14 +583,15 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
    */
   private Map<Replica, Node> computeExistingPreferredPlacement(
       final Map<String, Map<String, String>> currentMapping) {
-    Map<Replica, Node> existingPreferredAssignment = new TreeMap<Replica, Node>();
+    // only looked up, so not sorted
+    Map<Replica, Node> existingPreferredAssignment = new HashMap<Replica, Node>();
     int count = countStateReplicas();
     for (String partition : currentMapping.keySet()) {
       Map<String, String> nodeStateMap = currentMapping.get(partition);
       nodeStateMap.keySet().retainAll(_nodeMap.keySet());
       for (String nodeId : nodeStateMap.keySet()) {
         Node node = _nodeMap.get(nodeId);
-        node.currentlyAssigned = node.currentlyAssigned + 1;
+        node.setCurrentlyAssigned(node.currentlyAssigned + 1);
         // check if its in one of the preferred position
         for (int replicaId = 0; replicaId < count; replicaId++) {
           Replica replica = new Replica(partition, replicaId);
@@ -563,6 +600,7 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
               && _preferredAssignment.get(replica).id == node.id) {
             existingPreferredAssignment.put(replica, node);
             node.preferred.add(replica);
+            node.addPartition(replica);
             break;
           }
         }
@@ -631,24 +669,98 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
    * of replicas assigned to it, so it can decide if it can receive additional replicas.
    */
   class Node {
-    public int currentlyAssigned;
-    public int capacity;
-    public boolean hasCeilingCapacity;
+    private int currentlyAssigned;
+    private int capacity;
+    private boolean hasCeilingCapacity;
     private final String id;
     boolean isAlive;
+    // index in _liveNodesList, -1 if not alive
+    int liveIndex;
     private final List<Replica> preferred;
     private final List<Replica> nonPreferred;
     private final Set<Replica> newReplicas;
+    // the partitions that have a replica on this node, by their index
+    private final BitSet partitions;
 
     public Node(String id) {
       preferred = new ArrayList<Replica>();
       nonPreferred = new ArrayList<Replica>();
       newReplicas = new TreeSet<Replica>();
+      partitions = new BitSet(_partitionIndex.size());
       currentlyAssigned = 0;
+      capacity = 0;
+      hasCeilingCapacity = false;
       isAlive = false;
+      liveIndex = -1;
       this.id = id;
     }
 
+    void setCapacity(int capacity, boolean hasCeilingCapacity) {
+      this.capacity = capacity;
+      this.hasCeilingCapacity = hasCeilingCapacity;
+      updateCapacityIndex();
+    }
+
+    void setCurrentlyAssigned(int currentlyAssigned) {
+      this.currentlyAssigned = currentlyAssigned;
+      updateCapacityIndex();
+    }
+
+    /**
+     * Keep _spareNodes and _fullNodes up to date with the capacity of this node.
+     */
+    private void updateCapacityIndex() {
+      if (liveIndex >= 0) {
+        _spareNodes.set(liveIndex, capacity > currentlyAssigned);
+        _fullNodes.set(liveIndex, !hasCeilingCapacity && capacity == currentlyAssigned);
+      }
+    }
+
+    boolean hasPartition(String partition) {
+      Integer index = _partitionIndex.get(partition);
+      return index != null && partitions.get(index);
+    }
+
+    void addPartition(Replica replica) {
+      partitions.set(_partitionIndex.get(replica.partition));
+    }
+
+    void removePartition(Replica replica) {
+      partitions.clear(_partitionIndex.get(replica.partition));
+    }
+
+    /**
+     * Assign a replica in its preferred position to this node.
+     */
+    void addPreferred(Replica replica) {
+      setCurrentlyAssigned(currentlyAssigned + 1);
+      preferred.add(replica);
+      addPartition(replica);
+    }
+
+    /**
+     * Assign a replica that is not in its preferred position to this node.
+     */
+    void addNonPreferred(Replica replica) {
+      setCurrentlyAssigned(currentlyAssigned + 1);
+      nonPreferred.add(replica);
+      addPartition(replica);
+    }
+
+    /**
+     * Unassign a replica that is not in its preferred position from this node. The caller
+     * removes it from nonPreferred if it is iterating over it.
+     */
+    void unassignNonPreferred(Replica replica) {
+      setCurrentlyAssigned(currentlyAssigned - 1);
+      removePartition(replica);
+    }
+
+    void removeNonPreferred(Replica replica) {
+      nonPreferred.remove(replica);
+      unassignNonPreferred(replica);
+    }
+
     /**
      * Check if this replica can be legally added to this node
      * @param replica The replica to test
@@ -671,17 +783,7 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
       if (!isAlive) {
         return false;
       }
-      for (Replica r : preferred) {
-        if (r.partition.equals(replica.partition)) {
-          return false;
-        }
-      }
-      for (Replica r : nonPreferred) {
-        if (r.partition.equals(replica.partition)) {
-          return false;
-        }
-      }
-      return true;
+      return !hasPartition(replica.partition);
     }
 
     /**
@@ -690,12 +792,10 @@ public class AutoRebalanceStrategy implements RebalanceStrategy {
      * @param replica The replica to receive
      */
     public void steal(Node donor, Replica replica) {
-      donor.hasCeilingCapacity = false;
-      donor.capacity--;
-      hasCeilingCapacity = true;
+      donor.setCapacity(donor.capacity - 1, false);
       capacity++;
-      currentlyAssigned++;
-      nonPreferred.add(replica);
+      hasCeilingCapacity = true;
+      addNonPreferred(replica);
       newReplicas.add(replica);
     }
 
@@ -26,6 +26,13 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
@@ -48,6 +55,15 @@ import org.slf4j.LoggerFactory;
 public class CrushRebalanceStrategy implements RebalanceStrategy {
   private static final Logger Log = LoggerFactory.getLogger(CrushRebalanceStrategy.class.getName());
 
+  /**
+   * Resources with at least this many partitions are placed in ranges of this many partitions in
+   * parallel. The placement of a partition does not depend on the others, so the result is the
+   * same either way.
+   */
+  private static final int PARALLEL_PARTITION_RANGE = 1024;
+  private static final int PLACEMENT_THREAD_KEEP_ALIVE_SEC = 60;
+  private static final ThreadPoolExecutor PLACEMENT_EXECUTOR = createPlacementExecutor();
+
   private String _resourceName;
   private List<String> _partitions;
   private Topology _clusterTopo;
@@ -78,13 +94,65 @@ public class CrushRebalanceStrategy implements RebalanceStrategy {
     Map<String, InstanceConfig> instanceConfigMap = clusterData.getInstanceConfigMap();
     _clusterTopo =
         new Topology(allNodes, liveNodes, instanceConfigMap, clusterData.getClusterConfig());
-    Node topNode = _clusterTopo.getRootNode();
+    final Node topNode = _clusterTopo.getRootNode();
+    // the straws of the topology are computed once and shared by all partitions
+    placementAlgorithm = new CRUSHPlacementAlgorithm(topNode);
 
     // for log only
-    String eventId = clusterData.getEventId();
+    final String eventId = clusterData.getEventId();
 
     Map<String, List<String>> newPreferences = new HashMap<>();
-    for (int i = 0; i < _partitions.size(); i++) {
+    if (_partitions.size() < 2 * PARALLEL_PARTITION_RANGE
+        || PLACEMENT_EXECUTOR.getMaximumPoolSize() < 2) {
+      computePreferences(topNode, 0, _partitions.size(), eventId, newPreferences);
+    } else {
+      List<Future<Map<String, List<String>>>> futures = new ArrayList<>();
+      for (int start = PARALLEL_PARTITION_RANGE; start < _partitions.size();
+          start += PARALLEL_PARTITION_RANGE) {
+        final int rangeStart = start;
+        final int rangeEnd = Math.min(start + PARALLEL_PARTITION_RANGE, _partitions.size());
+        futures.add(PLACEMENT_EXECUTOR.submit(new Callable<Map<String, List<String>>>() {
+          @Override
+          public Map<String, List<String>> call() {
+            Map<String, List<String>> preferences = new HashMap<>();
+            computePreferences(topNode, rangeStart, rangeEnd, eventId, preferences);
+            return preferences;
+          }
+        }));
+      }
+      // the calling thread places the first range
+      computePreferences(topNode, 0, PARALLEL_PARTITION_RANGE, eventId, newPreferences);
+      try {
+        for (Future<Map<String, List<String>>> future : futures) {
+          newPreferences.putAll(future.get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new HelixException(
+            "Interrupted while computing the partition assignment of resource " + _resourceName, e);
+      } catch (ExecutionException e) {
+        throw new HelixException(
+            "Failed to compute the partition assignment of resource " + _resourceName,
+            e.getCause());
+      } finally {
+        for (Future<Map<String, List<String>>> future : futures) {
+          future.cancel(true);
+        }
+      }
+    }
+
+    ZNRecord result = new ZNRecord(_resourceName);
+    result.setListFields(newPreferences);
+
+    return result;
+  }
+
+  /**
+   * Compute the preference lists of the partitions in the index range [start, end).
+   */
+  private void computePreferences(Node topNode, int start, int end, String eventId,
+      Map<String, List<String>> preferences) {
+    for (int i = start; i < end; i++) {
       String partitionName = _partitions.get(i);
       long data = partitionName.hashCode();
 
@@ -108,13 +176,25 @@ public class CrushRebalanceStrategy implements RebalanceStrategy {
         }
       }
 
-      newPreferences.put(partitionName, nodeList);
+      preferences.put(partitionName, nodeList);
     }
+  }
 
-    ZNRecord result = new ZNRecord(_resourceName);
-    result.setListFields(newPreferences);
-
-    return result;
+  private static ThreadPoolExecutor createPlacementExecutor() {
+    int numThreads = Runtime.getRuntime().availableProcessors();
+    // Idle threads exit, so a controller that is not rebalancing holds no threads
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(numThreads, numThreads, PLACEMENT_THREAD_KEEP_ALIVE_SEC,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "CrushRebalanceStrategy-placement");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
 
   /**
@@ -122,7 +202,8 @@ public class CrushRebalanceStrategy implements RebalanceStrategy {
    */
   private static final int MAX_RETRY = 10;
   private final JenkinsHash hashFun = new JenkinsHash();
-  private CRUSHPlacementAlgorithm placementAlgorithm = new CRUSHPlacementAlgorithm();
+  // created for the topology of each computation
+  private CRUSHPlacementAlgorithm placementAlgorithm;
 
   /**
    * Enforce isolation on the specified fault zone.
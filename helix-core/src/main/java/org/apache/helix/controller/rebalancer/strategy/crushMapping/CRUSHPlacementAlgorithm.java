@@ -22,9 +22,11 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.helix.controller.rebalancer.topology.Node;
 import org.apache.helix.util.JenkinsHash;
@@ -46,9 +48,12 @@ public class CRUSHPlacementAlgorithm {
    */
   private static final int MAX_LOOPBACK_COUNT = 50;
   private static final Logger logger = LoggerFactory.getLogger(CRUSHPlacementAlgorithm.class);
+  private static final JenkinsHash hashFunction = new JenkinsHash();
 
   private final boolean keepOffset;
   private final Map<Long,Integer> roundOffset;
+  // the precomputed nodes of a tree by node identity, null if they are computed for each selection
+  private final Map<Node, CompiledNode> compiledNodes;
 
   /**
    * Creates the crush placement object.
@@ -64,6 +69,50 @@ public class CRUSHPlacementAlgorithm {
   public CRUSHPlacementAlgorithm(boolean keepOffset) {
     this.keepOffset = keepOffset;
     roundOffset = keepOffset ? new HashMap<Long,Integer>() : null;
+    compiledNodes = null;
+  }
+
+  /**
+   * Creates the crush placement object for selecting nodes in the tree of the root. The straws and
+   * the node counts of the tree are computed once here instead of in every selection, so the tree
+   * must not be changed while this object is used. The selections may be made concurrently.
+   */
+  public CRUSHPlacementAlgorithm(Node root) {
+    keepOffset = false;
+    roundOffset = null;
+    compiledNodes = new IdentityHashMap<>();
+    compile(root);
+  }
+
+  private CompiledNode compile(Node node) {
+    CompiledNode compiledNode = new CompiledNode(node);
+    if (!node.isLeaf()) {
+      for (Node child : compiledNode.selector.children) {
+        for (Map.Entry<String, Integer> e : compile(child).childrenCounts.entrySet()) {
+          Integer count = compiledNode.childrenCounts.get(e.getKey());
+          compiledNode.childrenCounts
+              .put(e.getKey(), count == null ? e.getValue() : count + e.getValue());
+        }
+      }
+    }
+    // same as Node.getChildrenCount(), a node of the type is counted without its children
+    compiledNode.childrenCounts.put(node.getType(), 1);
+    compiledNodes.put(node, compiledNode);
+    return compiledNode;
+  }
+
+  private int getChildrenCount(Node parent, String type) {
+    CompiledNode compiledNode = compiledNodes == null ? null : compiledNodes.get(parent);
+    if (compiledNode == null) {
+      return parent.getChildrenCount(type);
+    }
+    Integer count = compiledNode.childrenCounts.get(type);
+    return count == null ? 0 : count;
+  }
+
+  private Selector getSelector(Node node) {
+    CompiledNode compiledNode = compiledNodes == null ? null : compiledNodes.get(node);
+    return compiledNode == null ? new Selector(node) : compiledNode.selector;
   }
 
   /**
@@ -79,7 +128,7 @@ public class CRUSHPlacementAlgorithm {
 
   public List<Node> select(Node parent, long input, int count, String type,
       Predicate<Node> nodePredicate) {
-    int childCount = parent.getChildrenCount(type);
+    int childCount = getChildrenCount(parent, type);
     if (childCount < count) {
       logger.error(count + " nodes of type " + type +
           " were requested but the tree has only " + childCount + " nodes!");
@@ -115,7 +164,7 @@ public class CRUSHPlacementAlgorithm {
           retryNode = false; // initialize at the outset
           rPrime = r + offset + failure;
           logger.trace("{}.select({}, {})", new Object[] {in, input, rPrime});
-          Selector selector = new Selector(in);
+          Selector selector = getSelector(in);
           out = selector.select(input, rPrime);
           if (!out.getType().equalsIgnoreCase(type)) {
             logger.trace("selected output {} for data {} didn't match the type {}: walking down " +
@@ -218,11 +267,14 @@ public class CRUSHPlacementAlgorithm {
   /**
    * Selection algorithm based on the "straw" bucket type as described in the CRUSH algorithm.
    */
-  private class Selector {
-    private final Map<Node,Long> straws = new HashMap<Node,Long>();
-    private final JenkinsHash hashFunction;
+  private static class Selector {
+    // the children and their straws, in the iteration order of the HashMap the straws were
+    // originally kept in, which decides the selected child if the scores are equal
+    private final Node[] children;
+    private final long[] straws;
 
     public Selector(Node node) {
+      Map<Node,Long> straws = new HashMap<Node,Long>();
       if (!node.isLeaf()) {
         // create a map from the nodes to their values
         List<Node> sortedNodes = sortNodes(node.getChildren()); // do a reverse sort by weight
@@ -265,7 +317,14 @@ public class CRUSHPlacementAlgorithm {
           lastw = previous.getWeight();
         }
       }
-      hashFunction = new JenkinsHash();
+      children = new Node[straws.size()];
+      this.straws = new long[straws.size()];
+      int index = 0;
+      for (Map.Entry<Node,Long> e : straws.entrySet()) {
+        children[index] = e.getKey();
+        this.straws[index] = e.getValue();
+        index++;
+      }
     }
 
     /**
@@ -295,10 +354,9 @@ public class CRUSHPlacementAlgorithm {
     public Node select(long input, long round) {
       Node selected = null;
       long hiScore = -1;
-      for (Map.Entry<Node,Long> e: straws.entrySet()) {
-        Node child = e.getKey();
-        long straw = e.getValue();
-        long score = weightedScore(child, straw, input, round);
+      for (int i = 0; i < children.length; i++) {
+        Node child = children[i];
+        long score = weightedScore(child, straws[i], input, round);
         if (score > hiScore) {
           selected = child;
           hiScore = score;
@@ -317,4 +375,18 @@ public class CRUSHPlacementAlgorithm {
       return weightedScore;
     }
   }
+
+  /**
+   * A node of a tree with its straws and the number of the nodes of each type under it.
+   */
+  private static class CompiledNode {
+    private final Selector selector;
+    // keyed case-insensitively, the same as Node.getChildrenCount() matches the types
+    private final Map<String, Integer> childrenCounts =
+        new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    CompiledNode(Node node) {
+      selector = new Selector(node);
+    }
+  }
 }
@@ -23,14 +23,18 @@ public enum AttributeName {
   RESOURCES,
   RESOURCES_TO_REBALANCE,
   BEST_POSSIBLE_STATE,
+  CONVERGED_RESOURCES,
+  RESOURCE_SHARD_CONTEXT,
   CURRENT_STATE,
   INTERMEDIATE_STATE,
+  CHANGED_EXTERNAL_VIEW_PARTITIONS,
   MESSAGES_ALL,
   MESSAGES_SELECTED,
   MESSAGES_THROTTLE,
   LOCAL_STATE,
   EVENT_CREATE_TIME,
   ClusterDataCache,
+  ClusterDataVersion,
   helixmanager,
   clusterStatusMonitor,
   changeContext,
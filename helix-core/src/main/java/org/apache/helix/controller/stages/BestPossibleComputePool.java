@@ -0,0 +1,57 @@
+package org.apache.helix.controller.stages;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The pool the best possible states of the resources are computed in when the ClusterConfig
+ * enables parallel best possible calculation. A controller owns one pool, which all its rebalance
+ * pipelines share, and shuts it down when it loses the leadership or is shut down. The pool is
+ * created on first use, and recreated when the configured parallelism changes.
+ */
+public class BestPossibleComputePool {
+  private ForkJoinPool _pool;
+
+  /**
+   * @param parallelism the configured best possible calculation parallelism
+   * @return the pool, with the given parallelism
+   */
+  public synchronized ForkJoinPool getPool(int parallelism) {
+    if (_pool == null || _pool.getParallelism() != parallelism) {
+      if (_pool != null) {
+        _pool.shutdown();
+      }
+      _pool = new ForkJoinPool(parallelism);
+    }
+    return _pool;
+  }
+
+  /**
+   * Shut down the pool. The computations already submitted run to completion, a later
+   * {@link #getPool(int)} creates a new pool.
+   */
+  public synchronized void shutdown() {
+    if (_pool != null) {
+      _pool.shutdown();
+      _pool = null;
+    }
+  }
+}
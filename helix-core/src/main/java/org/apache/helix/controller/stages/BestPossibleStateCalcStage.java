@@ -20,14 +20,23 @@ package org.apache.helix.controller.stages;
  */
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.apache.helix.HelixException;
 import org.apache.helix.HelixManager;
 import org.apache.helix.controller.LogUtil;
+import org.apache.helix.controller.common.PartitionStateMap;
 import org.apache.helix.controller.pipeline.AbstractBaseStage;
 import org.apache.helix.controller.pipeline.StageException;
 import org.apache.helix.controller.rebalancer.AutoRebalancer;
@@ -74,32 +83,48 @@ public class BestPossibleStateCalcStage extends AbstractBaseStage {
     }
 
     // Reset current INIT/RUNNING tasks on participants for throttling
-    cache.resetActiveTaskCount(currentStateOutput);
+    ResourceShardContext shardContext =
+        event.getAttribute(AttributeName.RESOURCE_SHARD_CONTEXT.name());
+    if (shardContext == null || shardContext.markActiveTaskCountReset()) {
+      cache.resetActiveTaskCount(currentStateOutput);
+    }
 
     final BestPossibleStateOutput bestPossibleStateOutput =
         compute(event, resourceMap, currentStateOutput);
     event.addAttribute(AttributeName.BEST_POSSIBLE_STATE.name(), bestPossibleStateOutput);
 
     if (!cache.isTaskCache()) {
-      final Map<String, InstanceConfig> instanceConfigMap = cache.getInstanceConfigMap();
-      final Map<String, StateModelDefinition> stateModelDefMap = cache.getStateModelDefMap();
-      asyncExecute(cache.getAsyncTasksThreadPool(), new Callable<Object>() {
-        @Override
-        public Object call() {
-          try {
-            if (clusterStatusMonitor != null) {
-              clusterStatusMonitor
-                  .setPerInstanceResourceStatus(bestPossibleStateOutput, instanceConfigMap,
-                      resourceMap, stateModelDefMap);
-            }
-          } catch (Exception e) {
-            LogUtil
-                .logError(logger, _eventId, "Could not update cluster status metrics!", e);
+      if (shardContext != null) {
+        // the status of all resources is reported once all shards are done
+        shardContext.addBestPossibleStates(bestPossibleStateOutput);
+      } else {
+        reportPerInstanceResourceStatus(cache, clusterStatusMonitor, bestPossibleStateOutput,
+            resourceMap, _eventId);
+      }
+    }
+  }
+
+  static void reportPerInstanceResourceStatus(ClusterDataCache cache,
+      final ClusterStatusMonitor clusterStatusMonitor,
+      final BestPossibleStateOutput bestPossibleStateOutput,
+      final Map<String, Resource> resourceMap, final String eventId) {
+    final Map<String, InstanceConfig> instanceConfigMap = cache.getInstanceConfigMap();
+    final Map<String, StateModelDefinition> stateModelDefMap = cache.getStateModelDefMap();
+    asyncExecute(cache.getAsyncTasksThreadPool(), new Callable<Object>() {
+      @Override
+      public Object call() {
+        try {
+          if (clusterStatusMonitor != null) {
+            clusterStatusMonitor
+                .setPerInstanceResourceStatus(bestPossibleStateOutput, instanceConfigMap,
+                    resourceMap, stateModelDefMap);
           }
-          return null;
+        } catch (Exception e) {
+          LogUtil.logError(logger, eventId, "Could not update cluster status metrics!", e);
         }
-      });
-    }
+        return null;
+      }
+    });
   }
 
   private BestPossibleStateOutput compute(ClusterEvent event, Map<String, Resource> resourceMap,
@@ -111,43 +136,221 @@ public class BestPossibleStateCalcStage extends AbstractBaseStage {
     ClusterStatusMonitor clusterStatusMonitor =
         event.getAttribute(AttributeName.clusterStatusMonitor.name());
 
+    ResourceShardContext shardContext =
+        event.getAttribute(AttributeName.RESOURCE_SHARD_CONTEXT.name());
+
     // Check whether the offline/disabled instance count in the cluster reaches the set limit,
-    // if yes, pause the rebalancer.
-    boolean isValid = validateOfflineInstancesLimit(cache,
-        (HelixManager) event.getAttribute(AttributeName.helixmanager.name()));
+    // if yes, pause the rebalancer. The resource shards of an event check it only once.
+    boolean isValid = shardContext == null
+        ? validateOfflineInstancesLimit(cache, helixManager, _eventId)
+        : shardContext.validateOfflineInstancesLimit(cache, helixManager, _eventId);
+
+    // Resources that converged and did not change since the last run keep their best possible
+    // states, only the others are rebalanced
+    Set<String> convergedResources = new HashSet<>();
+    Map<String, Resource> resourcesToCompute = resourceMap;
+    if (isValid && isIncrementalRebalance(event, cache)) {
+      Map<String, BestPossibleStateOutput> convergedStates =
+          cache.getConvergedBestPossibleStates();
+      resourcesToCompute = new LinkedHashMap<>();
+      for (Resource resource : resourceMap.values()) {
+        String resourceName = resource.getResourceName();
+        BestPossibleStateOutput convergedState = convergedStates.get(resourceName);
+        if (convergedState != null) {
+          mergeResourceOutput(resourceName, convergedState, output);
+          convergedResources.add(resourceName);
+        } else {
+          resourcesToCompute.put(resourceName, resource);
+        }
+      }
+      LogUtil.logInfo(logger, _eventId, String
+          .format("Incremental rebalance: reuse best possible states of %d resources, compute %d",
+              convergedResources.size(), resourcesToCompute.size()));
+    }
+    event.addAttribute(AttributeName.CONVERGED_RESOURCES.name(), convergedResources);
 
     final List<String> failureResources = new ArrayList<>();
-    Iterator<Resource> itr = resourceMap.values().iterator();
-    while (itr.hasNext()) {
-      Resource resource = itr.next();
-      boolean result = false;
-      try {
-        result =
-            computeResourceBestPossibleState(event, cache, currentStateOutput, resource, output);
-      } catch (HelixException ex) {
-        LogUtil.logError(logger, _eventId,
-            "Exception when calculating best possible states for " + resource.getResourceName(),
-            ex);
+    int parallelism = cache.getClusterConfig() == null
+        ? 1
+        : cache.getClusterConfig().getBestPossibleCalcParallelism();
+    BestPossibleComputePool computePool = cache.getBestPossibleComputePool();
+    if (parallelism > 1 && computePool != null && !cache.isTaskCache()
+        && resourcesToCompute.size() > 1) {
+      computeInParallel(event, cache, currentStateOutput, resourcesToCompute, output,
+          failureResources, computePool.getPool(parallelism));
+    } else {
+      Iterator<Resource> itr = resourcesToCompute.values().iterator();
+      while (itr.hasNext()) {
+        Resource resource = itr.next();
+        if (!computeResourceBestPossibleStateSafely(event, cache, currentStateOutput, resource,
+            output)) {
+          failureResources.add(resource.getResourceName());
+        }
+      }
+    }
+
+    // Check and report if resource rebalance has failure. The failures of all resource shards are
+    // reported together once all shards are done.
+    if (shardContext != null) {
+      shardContext.addRebalanceFailures(!isValid, failureResources);
+    } else {
+      updateRebalanceStatus(!isValid || !failureResources.isEmpty(), failureResources, cache,
+          clusterStatusMonitor, _eventId);
+    }
+
+    if (!cache.isTaskCache()) {
+      updateConvergedBestPossibleStates(cache, shardContext, resourceMap, currentStateOutput,
+          output, failureResources,
+          isValid && cache.getClusterConfig() != null && cache.getClusterConfig()
+              .isIncrementalRebalanceEnabled());
+    }
+
+    return output;
+  }
+
+  /**
+   * Previous best possible states can only be reused on events caused by IdealState, CurrentState
+   * or message changes. The cache drops the states of every resource on other cluster changes, and
+   * periodic or retried rebalances recompute all resources, e.g. to apply delayed rebalances.
+   */
+  private boolean isIncrementalRebalance(ClusterEvent event, ClusterDataCache cache) {
+    if (cache.isTaskCache() || cache.getClusterConfig() == null || !cache.getClusterConfig()
+        .isIncrementalRebalanceEnabled()) {
+      return false;
+    }
+    switch (event.getEventType()) {
+    case IdealStateChange:
+    case CurrentStateChange:
+    case MessageChange:
+      return true;
+    default:
+      return false;
+    }
+  }
 
+  /**
+   * Record the resources whose current states match their best possible states and that have no
+   * pending messages. With no input change, rebalancing such a resource again yields the same
+   * best possible states and no state transition. A resource shard only computes part of the
+   * resources, so its states are merged into the cache once all shards are done.
+   */
+  private void updateConvergedBestPossibleStates(ClusterDataCache cache,
+      ResourceShardContext shardContext, Map<String, Resource> resourceMap,
+      CurrentStateOutput currentStateOutput, BestPossibleStateOutput output,
+      List<String> failureResources, boolean enabled) {
+    Map<String, BestPossibleStateOutput> convergedStates = new HashMap<>();
+    if (enabled) {
+      for (Resource resource : resourceMap.values()) {
+        String resourceName = resource.getResourceName();
+        if (!failureResources.contains(resourceName) && output.getResourceStatesMap()
+            .containsKey(resourceName) && isConverged(resource, currentStateOutput,
+            output.getPartitionStateMap(resourceName))) {
+          BestPossibleStateOutput convergedState = new BestPossibleStateOutput();
+          mergeResourceOutput(resourceName, output, convergedState);
+          convergedStates.put(resourceName, convergedState);
+        }
       }
-      if (!result) {
-        failureResources.add(resource.getResourceName());
-        LogUtil.logWarn(logger, _eventId,
-            "Failed to calculate best possible states for " + resource.getResourceName());
+    }
+    if (shardContext != null) {
+      shardContext.addConvergedBestPossibleStates(convergedStates);
+    } else if (!convergedStates.isEmpty() || !cache.getConvergedBestPossibleStates().isEmpty()) {
+      cache.setConvergedBestPossibleStates(convergedStates);
+    }
+  }
+
+  private boolean isConverged(Resource resource, CurrentStateOutput currentStateOutput,
+      PartitionStateMap bestPossibleStateMap) {
+    String resourceName = resource.getResourceName();
+    for (Partition partition : resource.getPartitions()) {
+      if (!bestPossibleStateMap.getPartitionMap(partition)
+          .equals(currentStateOutput.getCurrentStateMap(resourceName, partition))
+          || !currentStateOutput.getPendingMessageMap(resourceName, partition).isEmpty()
+          || !currentStateOutput.getPendingRelayMessageMap(resourceName, partition).isEmpty()) {
+        return false;
       }
     }
+    return true;
+  }
 
-    // Check and report if resource rebalance has failure
-    updateRebalanceStatus(!isValid || !failureResources.isEmpty(), failureResources, helixManager,
-        cache, clusterStatusMonitor,
-        "Failed to calculate best possible states for " + failureResources.size() + " resources.");
+  static void mergeResourceOutput(String resourceName, BestPossibleStateOutput from,
+      BestPossibleStateOutput to) {
+    if (from.getPreferenceLists(resourceName) != null) {
+      to.setPreferenceLists(resourceName, from.getPreferenceLists(resourceName));
+    }
+    PartitionStateMap partitionStateMap = from.getResourceStatesMap().get(resourceName);
+    if (partitionStateMap != null) {
+      to.setState(resourceName, partitionStateMap);
+    }
+  }
 
-    return output;
+  /**
+   * Fan the per-resource computation out over the compute pool. Every resource is computed into
+   * its own output, and the outputs are merged in resource map order on the calling thread, so the
+   * result is the same as the serial computation.
+   */
+  private void computeInParallel(final ClusterEvent event, final ClusterDataCache cache,
+      final CurrentStateOutput currentStateOutput, Map<String, Resource> resourceMap,
+      BestPossibleStateOutput output, List<String> failureResources, ForkJoinPool pool) {
+    List<Future<BestPossibleStateOutput>> futures = new ArrayList<>(resourceMap.size());
+    final List<Resource> resources = new ArrayList<>(resourceMap.values());
+    final boolean[] results = new boolean[resources.size()];
+    for (int i = 0; i < resources.size(); i++) {
+      final int index = i;
+      futures.add(pool.submit(new Callable<BestPossibleStateOutput>() {
+        @Override
+        public BestPossibleStateOutput call() {
+          BestPossibleStateOutput resourceOutput = new BestPossibleStateOutput();
+          results[index] = computeResourceBestPossibleStateSafely(event, cache,
+              currentStateOutput, resources.get(index), resourceOutput);
+          return resourceOutput;
+        }
+      }));
+    }
+
+    for (int i = 0; i < resources.size(); i++) {
+      String resourceName = resources.get(i).getResourceName();
+      BestPossibleStateOutput resourceOutput;
+      try {
+        resourceOutput = futures.get(i).get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new HelixException(
+            "Interrupted while calculating best possible states for " + resourceName, e);
+      } catch (ExecutionException e) {
+        LogUtil.logError(logger, _eventId,
+            "Exception when calculating best possible states for " + resourceName, e);
+        failureResources.add(resourceName);
+        continue;
+      }
+      mergeResourceOutput(resourceName, resourceOutput, output);
+      if (!results[i]) {
+        failureResources.add(resourceName);
+      }
+    }
+  }
+
+  private boolean computeResourceBestPossibleStateSafely(ClusterEvent event,
+      ClusterDataCache cache, CurrentStateOutput currentStateOutput, Resource resource,
+      BestPossibleStateOutput output) {
+    boolean result = false;
+    try {
+      result = computeResourceBestPossibleState(event, cache, currentStateOutput, resource, output);
+    } catch (HelixException ex) {
+      LogUtil.logError(logger, _eventId,
+          "Exception when calculating best possible states for " + resource.getResourceName(), ex);
+    }
+    if (!result) {
+      LogUtil.logWarn(logger, _eventId,
+          "Failed to calculate best possible states for " + resource.getResourceName());
+    }
+    return result;
   }
 
-  private void updateRebalanceStatus(final boolean hasFailure, final List<String> failedResources,
-      final HelixManager helixManager, final ClusterDataCache cache,
-      final ClusterStatusMonitor clusterStatusMonitor, final String errorMessage) {
+  static void updateRebalanceStatus(final boolean hasFailure,
+      final Collection<String> failedResources, final ClusterDataCache cache,
+      final ClusterStatusMonitor clusterStatusMonitor, final String eventId) {
+    final String errorMessage =
+        "Failed to calculate best possible states for " + failedResources.size() + " resources.";
     asyncExecute(cache.getAsyncTasksThreadPool(), new Callable<Object>() {
       @Override
       public Object call() {
@@ -160,7 +363,7 @@ public class BestPossibleStateCalcStage extends AbstractBaseStage {
                       errorMessage, helixManager);
             }
             */
-            LogUtil.logWarn(logger, _eventId, errorMessage);
+            LogUtil.logWarn(logger, eventId, errorMessage);
           }
           if (clusterStatusMonitor != null) {
             clusterStatusMonitor.setRebalanceFailureGauge(hasFailure);
@@ -168,7 +371,7 @@ public class BestPossibleStateCalcStage extends AbstractBaseStage {
                 ResourceMonitor.RebalanceStatus.BEST_POSSIBLE_STATE_CAL_FAILED);
           }
         } catch (Exception e) {
-          LogUtil.logError(logger, _eventId, "Could not update cluster status!", e);
+          LogUtil.logError(logger, eventId, "Could not update cluster status!", e);
         }
         return null;
       }
@@ -177,8 +380,8 @@ public class BestPossibleStateCalcStage extends AbstractBaseStage {
 
   // Check whether the offline/disabled instance count in the cluster reaches the set limit,
   // if yes, pause the rebalancer, and throw exception to terminate rebalance cycle.
-  private boolean validateOfflineInstancesLimit(final ClusterDataCache cache,
-      final HelixManager manager) {
+  static boolean validateOfflineInstancesLimit(final ClusterDataCache cache,
+      final HelixManager manager, String eventId) {
     int maxOfflineInstancesAllowed = cache.getClusterConfig().getMaxOfflineInstancesAllowed();
     if (maxOfflineInstancesAllowed >= 0) {
       int offlineCount = cache.getAllInstances().size() - cache.getEnabledLiveInstances().size();
@@ -191,10 +394,10 @@ public class BestPossibleStateCalcStage extends AbstractBaseStage {
               .getProperty(manager.getHelixDataAccessor().keyBuilder().maintenance()) == null) {
             manager.getClusterManagmentTool()
                 .enableMaintenanceMode(manager.getClusterName(), true, errMsg);
-            LogUtil.logWarn(logger, _eventId, errMsg);
+            LogUtil.logWarn(logger, eventId, errMsg);
           }
         } else {
-          LogUtil.logError(logger, _eventId, "Failed to put cluster " + cache.getClusterName()
+          LogUtil.logError(logger, eventId, "Failed to put cluster " + cache.getClusterName()
               + " into maintenance mode, HelixManager is not set!");
         }
         return false;
@@ -31,6 +31,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.PropertyKey;
 import org.apache.helix.PropertyKey.Builder;
@@ -100,16 +101,35 @@ public class ClusterDataCache extends AbstractDataCache {
 
   // maintain a cache of bestPossible assignment across pipeline runs
   // TODO: this is only for customRebalancer, remove it and merge it with _idealMappingCache.
-  private Map<String, ResourceAssignment> _resourceAssignmentCache = new HashMap<>();
+  // Concurrent maps, as rebalancers may update them from the parallel best possible calculation.
+  private Map<String, ResourceAssignment> _resourceAssignmentCache = new ConcurrentHashMap<>();
 
   // maintain a cache of idealmapping (preference list) for full-auto resource across pipeline runs
-  private Map<String, ZNRecord> _idealMappingCache = new HashMap<>();
+  private Map<String, ZNRecord> _idealMappingCache = new ConcurrentHashMap<>();
+
+  // maintain the best possible states of resources that converged in the last pipeline run, for
+  // incremental rebalance. Entries are dropped as soon as the inputs of the resource change.
+  private Map<String, BestPossibleStateOutput> _convergedBestPossibleStates = new HashMap<>();
+
+  // maintain the pending state transitions of the throttled resources across pipeline runs
+  private final StateTransitionThrottleLedger _throttleLedger =
+      new StateTransitionThrottleLedger();
+
+  // versions of the cluster data for the incremental external view computation: every refresh
+  // and every resource marked changed takes the next version
+  private final AtomicLong _dataVersion = new AtomicLong();
+  private volatile long _refreshVersion;
+  private volatile long _clusterDataVersion;
+  private final Map<String, Long> _resourceDataVersions = new ConcurrentHashMap<>();
+  // the version of the data the cached external views were last computed from, 0 if none
+  private volatile long _externalViewVersion;
 
   private Map<ChangeType, Boolean> _propertyDataChangedMap;
 
   private Map<String, Integer> _participantActiveTaskCount = new HashMap<>();
 
   private ExecutorService _asyncTasksThreadPool;
+  private BestPossibleComputePool _bestPossibleComputePool;
 
   boolean _updateInstanceOfflineTime = true;
   boolean _isTaskCache;
@@ -154,10 +174,15 @@ public class ClusterDataCache extends AbstractDataCache {
     // Reset the LiveInstance/CurrentState change flag
     _existsLiveInstanceOrCurrentStateChange = false;
 
+    // Any change other than IdealStates, CurrentStates and messages may affect every resource
+    boolean clusterDataChanged = false;
+    Set<String> changedResources = new HashSet<>();
+
     if (_propertyDataChangedMap.get(ChangeType.IDEAL_STATE)) {
       _propertyDataChangedMap.put(ChangeType.IDEAL_STATE, false);
       clearCachedResourceAssignments();
       _idealStateCache.refresh(accessor);
+      changedResources.addAll(_idealStateCache.getChangedResources());
       LogUtil.logInfo(LOG, _eventId,
           "Refresh IdealStates for cluster " + _clusterName + ", took "
               + (System.currentTimeMillis() - startTime) + " ms for "
@@ -168,6 +193,7 @@ public class ClusterDataCache extends AbstractDataCache {
       startTime = System.currentTimeMillis();
       _propertyDataChangedMap.put(ChangeType.LIVE_INSTANCE, false);
       clearCachedResourceAssignments();
+      clusterDataChanged = true;
       _liveInstanceCacheMap = accessor.getChildValuesMap(keyBuilder.liveInstances(), true);
       _updateInstanceOfflineTime = true;
       LogUtil.logInfo(LOG, _eventId,
@@ -180,6 +206,7 @@ public class ClusterDataCache extends AbstractDataCache {
       _existsInstanceChange = true;
       _propertyDataChangedMap.put(ChangeType.INSTANCE_CONFIG, false);
       clearCachedResourceAssignments();
+      clusterDataChanged = true;
       _instanceConfigCacheMap = accessor.getChildValuesMap(keyBuilder.instanceConfigs(), true);
       LogUtil.logInfo(LOG, _eventId,
           "Reload InstanceConfig for cluster " + _clusterName + " : " + _instanceConfigCacheMap
@@ -189,6 +216,7 @@ public class ClusterDataCache extends AbstractDataCache {
     if (_propertyDataChangedMap.get(ChangeType.RESOURCE_CONFIG)) {
       _propertyDataChangedMap.put(ChangeType.RESOURCE_CONFIG, false);
       clearCachedResourceAssignments();
+      clusterDataChanged = true;
 
       _resourceConfigCacheMap = refreshResourceConfigs(accessor);
       LogUtil.logInfo(LOG, _eventId,
@@ -208,6 +236,7 @@ public class ClusterDataCache extends AbstractDataCache {
     if (_propertyDataChangedMap.get(ChangeType.CLUSTER_CONFIG)) {
       _existsClusterConfigChange = true;
       _propertyDataChangedMap.put(ChangeType.CLUSTER_CONFIG, false);
+      clusterDataChanged = true;
     }
 
     _liveInstanceMap = new HashMap<>(_liveInstanceCacheMap);
@@ -220,6 +249,9 @@ public class ClusterDataCache extends AbstractDataCache {
 
     Map<String, StateModelDefinition> stateDefMap =
         accessor.getChildValuesMap(keyBuilder.stateModelDefs(), true);
+    if (_stateModelDefMap != null && !_stateModelDefMap.equals(stateDefMap)) {
+      clusterDataChanged = true;
+    }
     _stateModelDefMap = new ConcurrentHashMap<>(stateDefMap);
     _constraintMap = accessor.getChildValuesMap(keyBuilder.constraints(), true);
     _clusterConfig = accessor.getProperty(keyBuilder.clusterConfig());
@@ -247,6 +279,8 @@ public class ClusterDataCache extends AbstractDataCache {
     // because we need to use current state to validate all relay messages.
     _instanceMessagesCache.updateRelayMessages(_liveInstanceMap,
         _currentStateCache.getCurrentStatesMap());
+    changedResources.addAll(_instanceMessagesCache.getChangedResources());
+    changedResources.addAll(_currentStateCache.getChangedResources());
 
     if (_clusterConfig != null) {
       _idealStateRuleMap = _clusterConfig.getIdealStateRules();
@@ -257,8 +291,26 @@ public class ClusterDataCache extends AbstractDataCache {
     }
 
     MaintenanceSignal maintenanceSignal = accessor.getProperty(keyBuilder.maintenance());
+    if (_isMaintenanceModeEnabled != (maintenanceSignal != null)) {
+      clusterDataChanged = true;
+    }
     _isMaintenanceModeEnabled = maintenanceSignal != null;
 
+    if (clusterDataChanged) {
+      _convergedBestPossibleStates.clear();
+    } else {
+      _convergedBestPossibleStates.keySet().removeAll(changedResources);
+    }
+
+    long version = _dataVersion.incrementAndGet();
+    if (clusterDataChanged) {
+      _clusterDataVersion = version;
+    }
+    for (String resourceName : changedResources) {
+      _resourceDataVersions.put(resourceName, version);
+    }
+    _refreshVersion = version;
+
     updateDisabledInstances();
 
     if (_externalViewMap == null) {
@@ -266,8 +318,9 @@ public class ClusterDataCache extends AbstractDataCache {
     }
 
     if (_clusterConfig.isTargetExternalViewEnabled() && _targetExternalViewMap == null) {
-      _targetExternalViewMap =
-          accessor.getChildValuesMap(accessor.keyBuilder().targetExternalViews());
+      // updated concurrently by the rebalance pipelines of resource shards
+      _targetExternalViewMap = new ConcurrentHashMap<>(
+          accessor.<ExternalView>getChildValuesMap(accessor.keyBuilder().targetExternalViews()));
     }
 
     long endTime = System.currentTimeMillis();
@@ -500,6 +553,14 @@ public class ClusterDataCache extends AbstractDataCache {
 
   public void cacheMessages(Collection<Message> messages) {
     _instanceMessagesCache.cacheMessages(messages);
+    // the sent messages are pending in the next computation, without being read as a change
+    Set<String> resourceNames = new HashSet<>();
+    for (Message message : messages) {
+      if (message.getResourceName() != null) {
+        resourceNames.add(message.getResourceName());
+      }
+    }
+    markResourcesChanged(resourceNames);
   }
 
   /**
@@ -833,6 +894,59 @@ public class ClusterDataCache extends AbstractDataCache {
     }
   }
 
+  /**
+   * @return the version of the cluster data read by the last refresh
+   */
+  public long getRefreshVersion() {
+    return _refreshVersion;
+  }
+
+  /**
+   * Mark resources changed after the last refresh, so their external views are computed again
+   * even if their data is not changed by the next refresh.
+   * @param resourceNames
+   */
+  public void markResourcesChanged(Collection<String> resourceNames) {
+    if (resourceNames.isEmpty()) {
+      return;
+    }
+    long version = _dataVersion.incrementAndGet();
+    for (String resourceName : resourceNames) {
+      _resourceDataVersions.put(resourceName, version);
+    }
+  }
+
+  /**
+   * Get the resources whose data changed since the cached external views were computed.
+   * @return the changed resources, or null if any resource may have changed
+   */
+  public Set<String> getExternalViewChangedResources() {
+    long externalViewVersion = _externalViewVersion;
+    if (externalViewVersion == 0 || _clusterDataVersion > externalViewVersion) {
+      return null;
+    }
+    Set<String> changedResources = new HashSet<>();
+    for (Map.Entry<String, Long> entry : _resourceDataVersions.entrySet()) {
+      if (entry.getValue() > externalViewVersion) {
+        changedResources.add(entry.getKey());
+      }
+    }
+    return changedResources;
+  }
+
+  /**
+   * Record the version of the data the cached external views were computed from.
+   * @param version a version returned by {@link #getRefreshVersion()}
+   */
+  public void setExternalViewVersion(long version) {
+    _externalViewVersion = version;
+    for (Map.Entry<String, Long> entry : _resourceDataVersions.entrySet()) {
+      if (entry.getValue() <= version) {
+        _resourceDataVersions.remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
   /**
    * Indicate that a full read should be done on the next refresh
    */
@@ -850,6 +964,14 @@ public class ClusterDataCache extends AbstractDataCache {
     return _asyncTasksThreadPool;
   }
 
+  /**
+   * Get the pool for parallel best possible calculation
+   * @return the pool, or null if the best possible states are always computed serially
+   */
+  public BestPossibleComputePool getBestPossibleComputePool() {
+    return _bestPossibleComputePool;
+  }
+
   /**
    * Get cached resourceAssignment (bestPossible mapping) for a resource
    * @param resource
@@ -910,6 +1032,33 @@ public class ClusterDataCache extends AbstractDataCache {
     _idealMappingCache.put(resource, mapping);
   }
 
+  /**
+   * Get the best possible states of the resources that converged in the last pipeline run and
+   * whose IdealState, CurrentStates and pending messages have not changed since.
+   * @return map of resource name to a best possible state output holding only that resource
+   */
+  public Map<String, BestPossibleStateOutput> getConvergedBestPossibleStates() {
+    return Collections.unmodifiableMap(_convergedBestPossibleStates);
+  }
+
+  /**
+   * Cache the best possible states of the resources that have converged, replacing the previous
+   * ones
+   * @param convergedBestPossibleStates map of resource name to its best possible state output
+   */
+  public void setConvergedBestPossibleStates(
+      Map<String, BestPossibleStateOutput> convergedBestPossibleStates) {
+    _convergedBestPossibleStates = new HashMap<>(convergedBestPossibleStates);
+  }
+
+  /**
+   * Get the pending state transitions of the throttled resources, updated by each pipeline run.
+   * @return the state transition throttle ledger
+   */
+  StateTransitionThrottleLedger getThrottleLedger() {
+    return _throttleLedger;
+  }
+
   public void clearCachedResourceAssignments() {
     _resourceAssignmentCache.clear();
     _idealMappingCache.clear();
@@ -923,6 +1072,14 @@ public class ClusterDataCache extends AbstractDataCache {
     _asyncTasksThreadPool = asyncTasksThreadPool;
   }
 
+  /**
+   * Set the pool for parallel best possible calculation
+   * @param bestPossibleComputePool
+   */
+  public void setBestPossibleComputePool(BestPossibleComputePool bestPossibleComputePool) {
+    _bestPossibleComputePool = bestPossibleComputePool;
+  }
+
   /**
    * Set the cache is serving for Task pipeline or not
    * @param taskCache
@@ -946,6 +1103,8 @@ public class ClusterDataCache extends AbstractDataCache {
   public void clearMonitoringRecords() {
     _missingTopStateMap.clear();
     _lastTopStateLocationMap.clear();
+    // the resource monitors are set in the external view computation, compute all of them again
+    _clusterDataVersion = _dataVersion.incrementAndGet();
   }
 
   public String getEventId() {
@@ -321,6 +321,18 @@ public class CurrentStateOutput {
     return Collections.emptyMap();
   }
 
+  /**
+   * Given resource, returns pending message map (partition -> instance -> pendingMessage)
+   * @param resourceName
+   * @return pending messages map
+   */
+  public Map<Partition, Map<String, Message>> getPendingMessageMap(String resourceName) {
+    if (_pendingMessageMap.containsKey(resourceName)) {
+      return _pendingMessageMap.get(resourceName);
+    }
+    return Collections.emptyMap();
+  }
+
   /**
    * Given (resource, partition), returns (instance->pendingMessage) map
    * @param resourceName
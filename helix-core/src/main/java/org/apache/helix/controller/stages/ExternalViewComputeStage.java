@@ -20,6 +20,7 @@ package org.apache.helix.controller.stages;
  */
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -64,6 +65,19 @@ public class ExternalViewComputeStage extends AbstractAsyncBaseStage {
     return AsyncWorkerType.ExternalViewComputeWorker;
   }
 
+  /**
+   * Record the version of the cluster data of the event before queueing the computation, so the
+   * next computation knows which resources changed since this one.
+   */
+  @Override
+  public void process(final ClusterEvent event) throws Exception {
+    ClusterDataCache cache = event.getAttribute(AttributeName.ClusterDataCache.name());
+    if (cache != null) {
+      event.addAttribute(AttributeName.ClusterDataVersion.name(), cache.getRefreshVersion());
+    }
+    super.process(event);
+  }
+
   @Override
   public void execute(final ClusterEvent event) throws Exception {
     _eventId = event.getEventId();
@@ -89,13 +103,32 @@ public class ExternalViewComputeStage extends AbstractAsyncBaseStage {
 
     Map<String, ExternalView> curExtViews = cache.getExternalViews();
 
+    // Only the resources changed since the last computation can have a different external view.
+    // Without the data version of the event, compute all of them.
+    Long dataVersion = event.getAttribute(AttributeName.ClusterDataVersion.name());
+    Set<String> changedResources =
+        dataVersion == null ? null : cache.getExternalViewChangedResources();
+    List<String> failedResources = new ArrayList<>();
+
     for (Resource resource : resourceMap.values()) {
+      String resourceName = resource.getResourceName();
+      IdealState idealState = cache.getIdealState(resourceName);
+      if (changedResources != null && !changedResources.contains(resourceName)
+          && (curExtViews.containsKey(resourceName)
+          || idealState != null && idealState.isExternalViewDisabled())) {
+        // The external view and the resource monitor are up to date
+        if (isMonitored(resourceName, idealState, cache, clusterStatusMonitor)) {
+          monitoringResources.add(resourceName);
+        }
+        continue;
+      }
       try {
         computeExternalView(resource, currentStateOutput, cache, clusterStatusMonitor, curExtViews,
             manager, monitoringResources, newExtViews);
       } catch (HelixException ex) {
         LogUtil.logError(LOG, _eventId,
-            "Failed to calculate external view for resource " + resource.getResourceName(), ex);
+            "Failed to calculate external view for resource " + resourceName, ex);
+        failedResources.add(resourceName);
       }
     }
 
@@ -129,10 +162,27 @@ public class ExternalViewComputeStage extends AbstractAsyncBaseStage {
       }
     }
 
+    // The partitions whose states changed in this computation, per resource
+    Map<String, Set<String>> changedPartitions = new HashMap<>();
+
     // add/update external-views
     if (newExtViews.size() > 0) {
-      dataAccessor.setChildren(keys, newExtViews);
-      cache.updateExternalViews(newExtViews);
+      boolean[] success = dataAccessor.setChildren(keys, newExtViews);
+      List<ExternalView> updatedExtViews = new ArrayList<>();
+      for (int i = 0; i < newExtViews.size(); i++) {
+        ExternalView view = newExtViews.get(i);
+        if (success != null && success.length > i && !success[i]) {
+          // keep the old view cached, so the view is written again in the next computation
+          LogUtil.logWarn(LOG, _eventId,
+              "Failed to write externalView for resource: " + view.getResourceName());
+          failedResources.add(view.getResourceName());
+        } else {
+          updatedExtViews.add(view);
+          changedPartitions.put(view.getResourceName(),
+              getChangedPartitions(curExtViews.get(view.getResourceName()), view));
+        }
+      }
+      cache.updateExternalViews(updatedExtViews);
     }
 
     // remove dead external-views
@@ -143,7 +193,17 @@ public class ExternalViewComputeStage extends AbstractAsyncBaseStage {
         externalViewsToRemove.add(resourceName);
       }
     }
+    for (String resourceName : externalViewsToRemove) {
+      changedPartitions.put(resourceName,
+          new HashSet<>(curExtViews.get(resourceName).getPartitionSet()));
+    }
     cache.removeExternalViews(externalViewsToRemove);
+
+    cache.markResourcesChanged(failedResources);
+    if (dataVersion != null) {
+      cache.setExternalViewVersion(dataVersion);
+    }
+    event.addAttribute(AttributeName.CHANGED_EXTERNAL_VIEW_PARTITIONS.name(), changedPartitions);
   }
 
   private void computeExternalView(final Resource resource,
@@ -176,21 +236,13 @@ public class ExternalViewComputeStage extends AbstractAsyncBaseStage {
 
     // Update cluster status monitor mbean
     IdealState idealState = cache.getIdealState(resourceName);
-    if (!cache.isTaskCache()) {
-      ResourceConfig resourceConfig = cache.getResourceConfig(resourceName);
-      if (clusterStatusMonitor != null) {
-        if (idealState != null // has ideal state
-            && (resourceConfig == null || !resourceConfig.isMonitoringDisabled()) // monitoring not disabled
-            && !idealState.getStateModelDefRef() // and not a job resource
-            .equalsIgnoreCase(DefaultSchedulerMessageHandlerFactory.SCHEDULER_TASK_QUEUE)) {
-          StateModelDefinition stateModelDef =
-              cache.getStateModelDef(idealState.getStateModelDefRef());
-          clusterStatusMonitor
-              .setResourceStatus(view, cache.getIdealState(view.getResourceName()),
-                  stateModelDef, totalPendingMessageCount);
-          monitoringResources.add(resourceName);
-        }
-      }
+    if (isMonitored(resourceName, idealState, cache, clusterStatusMonitor)) {
+      StateModelDefinition stateModelDef =
+          cache.getStateModelDef(idealState.getStateModelDefRef());
+      clusterStatusMonitor
+          .setResourceStatus(view, cache.getIdealState(view.getResourceName()),
+              stateModelDef, totalPendingMessageCount);
+      monitoringResources.add(resourceName);
     }
     ExternalView curExtView = curExtViews.get(resourceName);
     // copy simplefields from IS, in cases where IS is deleted copy it from existing ExternalView
@@ -216,6 +268,41 @@ public class ExternalViewComputeStage extends AbstractAsyncBaseStage {
     }
   }
 
+  private boolean isMonitored(String resourceName, IdealState idealState,
+      ClusterDataCache cache, ClusterStatusMonitor clusterStatusMonitor) {
+    if (cache.isTaskCache() || clusterStatusMonitor == null) {
+      return false;
+    }
+    ResourceConfig resourceConfig = cache.getResourceConfig(resourceName);
+    // has ideal state, monitoring not disabled and not a job resource
+    return idealState != null
+        && (resourceConfig == null || !resourceConfig.isMonitoringDisabled())
+        && !idealState.getStateModelDefRef()
+        .equalsIgnoreCase(DefaultSchedulerMessageHandlerFactory.SCHEDULER_TASK_QUEUE);
+  }
+
+  /**
+   * Get the partitions whose replica states differ between two views of a resource.
+   */
+  private static Set<String> getChangedPartitions(ExternalView curView, ExternalView newView) {
+    Map<String, Map<String, String>> curStates = curView == null
+        ? Collections.<String, Map<String, String>>emptyMap()
+        : curView.getRecord().getMapFields();
+    Map<String, Map<String, String>> newStates = newView.getRecord().getMapFields();
+    Set<String> changedPartitions = new HashSet<>();
+    for (Map.Entry<String, Map<String, String>> entry : newStates.entrySet()) {
+      if (!entry.getValue().equals(curStates.get(entry.getKey()))) {
+        changedPartitions.add(entry.getKey());
+      }
+    }
+    for (String partition : curStates.keySet()) {
+      if (!newStates.containsKey(partition)) {
+        changedPartitions.add(partition);
+      }
+    }
+    return changedPartitions;
+  }
+
   private void updateScheduledTaskStatus(ExternalView ev, HelixManager manager,
       IdealState taskQueueIdealState) {
     HelixDataAccessor accessor = manager.getHelixDataAccessor();
@@ -20,13 +20,17 @@ package org.apache.helix.controller.stages;
  */
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 import org.apache.helix.HelixDefinedState;
@@ -83,8 +87,16 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
     // it does, pause the rebalance and put the cluster on maintenance mode
     int maxPartitionPerInstance = cache.getClusterConfig().getMaxPartitionsPerInstance();
     if (maxPartitionPerInstance > 0) {
-      validateMaxPartitionsPerInstance(event, cache, intermediateStateOutput,
-          maxPartitionPerInstance);
+      // Resource shards count the partitions of all shards
+      ResourceShardContext shardContext =
+          event.getAttribute(AttributeName.RESOURCE_SHARD_CONTEXT.name());
+      Map<String, Integer> instancePartitionCounts = shardContext != null
+          ? shardContext.getInstancePartitionCounts()
+          : new HashMap<String, Integer>();
+      synchronized (instancePartitionCounts) {
+        validateMaxPartitionsPerInstance(event, cache, intermediateStateOutput,
+            maxPartitionPerInstance, instancePartitionCounts);
+      }
     }
   }
 
@@ -104,8 +116,13 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
     IntermediateStateOutput output = new IntermediateStateOutput();
     ClusterDataCache dataCache = event.getAttribute(AttributeName.ClusterDataCache.name());
 
-    StateTransitionThrottleController throttleController = new StateTransitionThrottleController(
-        resourceMap.keySet(), dataCache.getClusterConfig(), dataCache.getLiveInstances().keySet());
+    // Throttled clusters are not sharded, see ResourceShardedPipeline#getNumShards, so the limits
+    // apply to all resources of the cluster in order of their priority
+    ResourceShardContext shardContext =
+        event.getAttribute(AttributeName.RESOURCE_SHARD_CONTEXT.name());
+    StateTransitionThrottleController throttleController =
+        new StateTransitionThrottleController(resourceMap.keySet(), dataCache.getClusterConfig(),
+            dataCache.getLiveInstances().keySet());
 
     // Resource level prioritization based on the numerical (sortable) priority field.
     // If the resource priority field is null/not set, the resource will be treated as lowest
@@ -140,6 +157,16 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
     ClusterStatusMonitor clusterStatusMonitor =
         event.getAttribute(AttributeName.clusterStatusMonitor.name());
     List<String> failedResources = new ArrayList<>();
+    // Computed once for all partitions, ClusterDataCache builds a new set on each call
+    Set<String> enabledLiveInstances = dataCache.getEnabledLiveInstances();
+
+    // Converged resources have no pending or required state transition, so their intermediate
+    // states are the best possible states and they take no part in throttling
+    Set<String> convergedResources =
+        event.getAttribute(AttributeName.CONVERGED_RESOURCES.name());
+    if (convergedResources == null) {
+      convergedResources = Collections.emptySet();
+    }
 
     // Priority is applied in assignment computation because higher priority by looping in order of
     // decreasing priority
@@ -153,6 +180,12 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
         continue;
       }
 
+      if (convergedResources.contains(resourceName)) {
+        output.setState(resourceName, bestPossibleStateOutput.getPartitionStateMap(resourceName));
+        removePendingTransitions(dataCache, clusterStatusMonitor, resourceName);
+        continue;
+      }
+
       Resource resource = resourceMap.get(resourceName);
       IdealState idealState = dataCache.getIdealState(resourceName);
       if (idealState == null) {
@@ -169,7 +202,8 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
             computeIntermediatePartitionState(dataCache, clusterStatusMonitor, idealState,
                 resourceMap.get(resourceName), currentStateOutput,
                 bestPossibleStateOutput.getPartitionStateMap(resourceName),
-                bestPossibleStateOutput.getPreferenceLists(resourceName), throttleController));
+                bestPossibleStateOutput.getPreferenceLists(resourceName), throttleController,
+                enabledLiveInstances));
       } catch (HelixException ex) {
         LogUtil.logInfo(logger, _eventId,
             "Failed to calculate intermediate partition states for resource " + resourceName, ex);
@@ -177,11 +211,20 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
       }
     }
 
+    // Forget the pending transitions of the deleted resources
+    StateTransitionThrottleLedger throttleLedger = dataCache.getThrottleLedger();
+    throttleLedger
+        .retain(shardContext != null ? shardContext.getResources() : resourceMap.keySet());
+
     if (clusterStatusMonitor != null) {
       clusterStatusMonitor.setResourceRebalanceStates(failedResources,
           ResourceMonitor.RebalanceStatus.INTERMEDIATE_STATE_CAL_FAILED);
       clusterStatusMonitor
           .setResourceRebalanceStates(output.resourceSet(), ResourceMonitor.RebalanceStatus.NORMAL);
+      if (!dataCache.isTaskCache()) {
+        clusterStatusMonitor
+            .updateInstancePendingTransitions(throttleLedger.getInstancePendingTransitionCounts());
+      }
     }
 
     return output;
@@ -198,12 +241,13 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
    * @param cache
    * @param intermediateStateOutput
    * @param maxPartitionPerInstance
+   * @param instancePartitionCounts partitions already counted per instance
    */
   private void validateMaxPartitionsPerInstance(ClusterEvent event, ClusterDataCache cache,
-      IntermediateStateOutput intermediateStateOutput, int maxPartitionPerInstance) {
+      IntermediateStateOutput intermediateStateOutput, int maxPartitionPerInstance,
+      Map<String, Integer> instancePartitionCounts) {
     Map<String, PartitionStateMap> resourceStatesMap =
         intermediateStateOutput.getResourceStatesMap();
-    Map<String, Integer> instancePartitionCounts = new HashMap<>();
 
     for (String resource : resourceStatesMap.keySet()) {
       IdealState idealState = cache.getIdealState(resource);
@@ -275,13 +319,14 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
    * @param bestPossiblePartitionStateMap
    * @param preferenceLists
    * @param throttleController
+   * @param enabledLiveInstances
    * @return
    */
   private PartitionStateMap computeIntermediatePartitionState(ClusterDataCache cache,
       ClusterStatusMonitor clusterStatusMonitor, IdealState idealState, Resource resource,
       CurrentStateOutput currentStateOutput, PartitionStateMap bestPossiblePartitionStateMap,
       Map<String, List<String>> preferenceLists,
-      StateTransitionThrottleController throttleController) {
+      StateTransitionThrottleController throttleController, Set<String> enabledLiveInstances) {
     String resourceName = resource.getResourceName();
     LogUtil.logDebug(logger, _eventId, String.format("Processing resource: %s", resourceName));
 
@@ -289,6 +334,7 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
     if (!throttleController.isThrottleEnabled()
         || !IdealState.RebalanceMode.FULL_AUTO.equals(idealState.getRebalanceMode())
         || cache.isTaskCache()) {
+      removePendingTransitions(cache, clusterStatusMonitor, resourceName);
       return bestPossiblePartitionStateMap;
     }
 
@@ -306,8 +352,8 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
           bestPossiblePartitionStateMap.getPartitionMap(partition);
       List<String> preferenceList = preferenceLists.get(partition.getPartitionName());
 
-      RebalanceType rebalanceType = getRebalanceType(cache, bestPossibleMap, preferenceList,
-          stateModelDef, currentStateMap, idealState);
+      RebalanceType rebalanceType = getRebalanceType(enabledLiveInstances, bestPossibleMap,
+          preferenceList, stateModelDef, currentStateMap, idealState);
 
       // TODO: refine getRebalanceType to return more accurate rebalance types. So the following
       // logic doesn't need to check for more details.
@@ -355,8 +401,9 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
               partitionsWithErrorStateReplica));
     }
 
-    chargePendingTransition(resource, currentStateOutput, throttleController,
-        partitionsNeedRecovery, partitionsNeedLoadBalance);
+    int pendingTransitionPartitions = chargePendingTransition(resource, currentStateOutput,
+        throttleController, cache.getThrottleLedger(), partitionsNeedRecovery,
+        partitionsNeedLoadBalance);
 
     // Perform recovery balance
     Set<Partition> recoveryThrottledPartitions =
@@ -398,6 +445,8 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
       clusterStatusMonitor.updateRebalancerStats(resourceName, partitionsNeedRecovery.size(),
           partitionsNeedLoadBalance.size(), recoveryThrottledPartitions.size(),
           loadbalanceThrottledPartitions.size());
+      clusterStatusMonitor
+          .updatePendingTransitionPartitions(resourceName, pendingTransitionPartitions);
     }
 
     if (logger.isDebugEnabled()) {
@@ -451,22 +500,21 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
   }
 
   /**
-   * Check and charge all pending transitions for throttling.
+   * Check and charge all pending transitions for throttling. Only the partitions with pending
+   * messages are visited, the throttle ledger keeps them across pipeline runs.
+   * @return the number of partitions with pending messages
    */
-  private void chargePendingTransition(Resource resource, CurrentStateOutput currentStateOutput,
-      StateTransitionThrottleController throttleController, Set<Partition> partitionsNeedRecovery,
+  private int chargePendingTransition(Resource resource, CurrentStateOutput currentStateOutput,
+      StateTransitionThrottleController throttleController,
+      StateTransitionThrottleLedger throttleLedger, Set<Partition> partitionsNeedRecovery,
       Set<Partition> partitionsNeedLoadbalance) {
     String resourceName = resource.getResourceName();
+    Map<Partition, Set<String>> pendingTransitions =
+        throttleLedger.update(resource, currentStateOutput);
 
     // check and charge pending transitions
-    for (Partition partition : resource.getPartitions()) {
-      // Maps instance to its current state
-      Map<String, String> currentStateMap =
-          currentStateOutput.getCurrentStateMap(resourceName, partition);
-      // Maps instance to its pending (next) state
-      Map<String, String> pendingMap =
-          currentStateOutput.getPendingStateMap(resourceName, partition);
-
+    for (Map.Entry<Partition, Set<String>> entry : pendingTransitions.entrySet()) {
+      Partition partition = entry.getKey();
       StateTransitionThrottleConfig.RebalanceType rebalanceType = RebalanceType.NONE;
       if (partitionsNeedRecovery.contains(partition)) {
         rebalanceType = StateTransitionThrottleConfig.RebalanceType.RECOVERY_BALANCE;
@@ -474,24 +522,29 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
         rebalanceType = StateTransitionThrottleConfig.RebalanceType.LOAD_BALANCE;
       }
 
-      if (pendingMap.size() > 0) {
-        throttleController.chargeCluster(rebalanceType);
-        throttleController.chargeResource(rebalanceType, resourceName);
+      throttleController.chargeCluster(rebalanceType);
+      throttleController.chargeResource(rebalanceType, resourceName);
 
-        // charge each instance.
-        for (String instance : pendingMap.keySet()) {
-          String currentState = currentStateMap.get(instance);
-          String pendingState = pendingMap.get(instance);
-          if (pendingState != null && !pendingState.equals(currentState)) {
-            throttleController.chargeInstance(rebalanceType, instance);
-          }
-        }
+      // charge each instance with a pending transition to a state other than its current state
+      for (String instance : entry.getValue()) {
+        throttleController.chargeInstance(rebalanceType, instance);
       }
     }
+    return pendingTransitions.size();
+  }
+
+  /**
+   * Forget the pending transitions of a resource that is not throttled in this pipeline run.
+   */
+  private void removePendingTransitions(ClusterDataCache cache,
+      ClusterStatusMonitor clusterStatusMonitor, String resourceName) {
+    if (cache.getThrottleLedger().remove(resourceName) && clusterStatusMonitor != null) {
+      clusterStatusMonitor.updatePendingTransitionPartitions(resourceName, 0);
+    }
   }
 
   /**
-   * Sort partitions according to partition priority {@link PartitionPriorityComparator}, and for
+   * Iterate partitions in the order of partition priority {@link PartitionPriority}, and for
    * each partition, throttle state transitions if needed. Also populate
    * intermediatePartitionStateMap either with BestPossibleState (if no throttling is necessary) or
    * CurrentState (if throttled).
@@ -515,23 +568,19 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
     // Maps Partition -> Instance -> State
     Map<Partition, Map<String, String>> currentStateMap =
         currentStateOutput.getCurrentStateMap(resourceName);
-    List<Partition> partitionsNeedRecoveryPrioritized = new ArrayList<>(partitionsNeedRecovery);
-
-    // TODO: Remove this sort by partition name when Java 1.8 is used
-    // We want the result of the intermediate state calculation to be deterministic. We sort here by
-    // partition name to ensure that the order is consistent for inputs fed into
-    // PartitionPriorityComparator sort
-    Collections.sort(partitionsNeedRecoveryPrioritized, new Comparator<Partition>() {
-      @Override
-      public int compare(Partition partition1, Partition partition2) {
-        return partition1.getPartitionName().compareTo(partition2.getPartitionName());
-      }
-    });
-    Collections.sort(partitionsNeedRecoveryPrioritized, new PartitionPriorityComparator(
-        bestPossiblePartitionStateMap.getStateMap(), currentStateMap, topState, true));
+    List<PartitionPriority> partitionPriorities = new ArrayList<>(partitionsNeedRecovery.size());
+    for (Partition partition : partitionsNeedRecovery) {
+      partitionPriorities.add(PartitionPriority.forRecovery(partition,
+          bestPossiblePartitionStateMap.getPartitionMap(partition), currentStateMap.get(partition),
+          topState));
+    }
 
     // For each partition, apply throttling if needed.
-    for (Partition partition : partitionsNeedRecoveryPrioritized) {
+    Iterator<Partition> partitionsNeedRecoveryPrioritized =
+        new PrioritizedPartitionIterator(partitionPriorities, throttleController,
+            RebalanceType.RECOVERY_BALANCE, resourceName);
+    while (partitionsNeedRecoveryPrioritized.hasNext()) {
+      Partition partition = partitionsNeedRecoveryPrioritized.next();
       throttleStateTransitionsForPartition(throttleController, resourceName, partition,
           currentStateOutput, bestPossiblePartitionStateMap, partitionRecoveryBalanceThrottled,
           intermediatePartitionStateMap, RebalanceType.RECOVERY_BALANCE);
@@ -544,7 +593,7 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
   }
 
   /**
-   * Sort partitions according to partition priority {@link PartitionPriorityComparator}, and for
+   * Iterate partitions in the order of partition priority {@link PartitionPriority}, and for
    * each partition, throttle state transitions if needed. Also populate
    * intermediatePartitionStateMap either with BestPossibleState (if no throttling is necessary) or
    * CurrentState (if throttled).
@@ -568,23 +617,19 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
     String resourceName = resource.getResourceName();
     Set<Partition> partitionsLoadbalanceThrottled = new HashSet<>();
 
-    List<Partition> partitionsNeedLoadRebalancePrioritized =
-        new ArrayList<>(partitionsNeedLoadbalance);
-
-    // TODO: Remove this sort by partition name when Java 1.8 is used
-    // We want the result of the intermediate state calculation to be deterministic. We sort here by
-    // partition name to ensure that the order is consistent for inputs fed into
-    // PartitionPriorityComparator sort
-    Collections.sort(partitionsNeedLoadRebalancePrioritized, new Comparator<Partition>() {
-      @Override
-      public int compare(Partition partition1, Partition partition2) {
-        return partition1.getPartitionName().compareTo(partition2.getPartitionName());
-      }
-    });
-    Collections.sort(partitionsNeedLoadRebalancePrioritized, new PartitionPriorityComparator(
-        bestPossiblePartitionStateMap.getStateMap(), currentStateMap, "", false));
+    List<PartitionPriority> partitionPriorities =
+        new ArrayList<>(partitionsNeedLoadbalance.size());
+    for (Partition partition : partitionsNeedLoadbalance) {
+      partitionPriorities.add(PartitionPriority
+          .forLoadBalance(partition, bestPossiblePartitionStateMap.getPartitionMap(partition),
+              currentStateMap.get(partition)));
+    }
 
-    for (Partition partition : partitionsNeedLoadRebalancePrioritized) {
+    Iterator<Partition> partitionsNeedLoadRebalancePrioritized =
+        new PrioritizedPartitionIterator(partitionPriorities, throttleController,
+            RebalanceType.LOAD_BALANCE, resourceName);
+    while (partitionsNeedLoadRebalancePrioritized.hasNext()) {
+      Partition partition = partitionsNeedLoadRebalancePrioritized.next();
       // If this is a downward load balance, check if the partition's transition is strictly
       // downward
       if (onlyDownwardLoadBalance) {
@@ -695,7 +740,7 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
    *         LOAD_BALANCE - although all replicas required exist, Helix needs to optimize the
    *         allocation
    */
-  private RebalanceType getRebalanceType(ClusterDataCache cache,
+  private RebalanceType getRebalanceType(Set<String> enabledLiveInstances,
       Map<String, String> bestPossibleMap, List<String> preferenceList,
       StateModelDefinition stateModelDef, Map<String, String> currentStateMap,
       IdealState idealState) {
@@ -705,7 +750,7 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
 
     int replica = idealState.getReplicaCount(preferenceList.size());
     Set<String> activeList = new HashSet<>(preferenceList);
-    activeList.retainAll(cache.getEnabledLiveInstances());
+    activeList.retainAll(enabledLiveInstances);
 
     // For each state, check that this partition currently has the required number of that state as
     // required by StateModelDefinition.
@@ -821,88 +866,129 @@ public class IntermediateStateCalcStage extends AbstractBaseStage {
     }
   }
 
-  // Compare partitions according following standard:
-  // 1) Partition without top state always is the highest priority.
-  // 2) For partition with top-state, the more number of active replica it has, the less priority.
-  private class PartitionPriorityComparator implements Comparator<Partition> {
-    private Map<Partition, Map<String, String>> _bestPossibleMap;
-    private Map<Partition, Map<String, String>> _currentStateMap;
-    private String _topState;
-    private boolean _recoveryRebalance;
+  /**
+   * The priority of a partition in the throttled rebalance, packed into one key computed once per
+   * pipeline run. Lower keys go first:
+   * 1) Partition without top state always is the highest priority.
+   * 2) For partition with top-state, the more number of active replica it has, the less priority.
+   * 3) In load balance, the more replicas with states matching with IdealState, the less priority.
+   * Partitions with the same key are ordered by name, so the result is deterministic.
+   */
+  static class PartitionPriority implements Comparable<PartitionPriority> {
+    private final Partition _partition;
+    private final long _key;
 
-    PartitionPriorityComparator(Map<Partition, Map<String, String>> bestPossibleMap,
-        Map<Partition, Map<String, String>> currentStateMap, String topState,
-        boolean recoveryRebalance) {
-      _bestPossibleMap = bestPossibleMap;
-      _currentStateMap = currentStateMap;
-      _topState = topState;
-      _recoveryRebalance = recoveryRebalance;
+    private PartitionPriority(Partition partition, long key) {
+      _partition = partition;
+      _key = key;
     }
 
-    @Override
-    public int compare(Partition p1, Partition p2) {
-      if (_recoveryRebalance) {
-        int missTopState1 = getMissTopStateIndex(p1);
-        int missTopState2 = getMissTopStateIndex(p2);
-        // Highest priority for the partition without top state
-        if (missTopState1 != missTopState2) {
-          return Integer.compare(missTopState1, missTopState2);
-        }
-        // Higher priority for the partition with fewer active replicas
-        int currentActiveReplicas1 = getCurrentActiveReplicas(p1);
-        int currentActiveReplicas2 = getCurrentActiveReplicas(p2);
-        return Integer.compare(currentActiveReplicas1, currentActiveReplicas2);
+    static PartitionPriority forRecovery(Partition partition, Map<String, String> bestPossibleMap,
+        Map<String, String> currentStateMap, String topState) {
+      if (currentStateMap == null) {
+        return new PartitionPriority(partition, 0L);
       }
-      // Higher priority for the partition with fewer replicas with states matching with IdealState
-      int idealStateMatched1 = getIdealStateMatched(p1);
-      int idealStateMatched2 = getIdealStateMatched(p2);
-      return Integer.compare(idealStateMatched1, idealStateMatched2);
+      // 0 if no replicas in top-state, 1 if it has at least one replica in top-state.
+      long missTopStateIndex = currentStateMap.values().contains(topState) ? 1L : 0L;
+      return new PartitionPriority(partition,
+          missTopStateIndex << 32 | getCurrentActiveReplicas(bestPossibleMap, currentStateMap));
     }
 
-    private int getMissTopStateIndex(Partition partition) {
-      // 0 if no replicas in top-state, 1 if it has at least one replica in top-state.
-      if (!_currentStateMap.containsKey(partition)
-          || !_currentStateMap.get(partition).values().contains(_topState)) {
-        return 0;
+    static PartitionPriority forLoadBalance(Partition partition,
+        Map<String, String> bestPossibleMap, Map<String, String> currentStateMap) {
+      int matchedState = 0;
+      if (currentStateMap != null) {
+        for (Map.Entry<String, String> entry : bestPossibleMap.entrySet()) {
+          if (entry.getValue().equals(currentStateMap.get(entry.getKey()))) {
+            matchedState++;
+          }
+        }
       }
-      return 1;
+      return new PartitionPriority(partition, matchedState);
     }
 
-    private int getCurrentActiveReplicas(Partition partition) {
+    private static int getCurrentActiveReplicas(Map<String, String> bestPossibleMap,
+        Map<String, String> currentStateMap) {
       int currentActiveReplicas = 0;
-      if (!_currentStateMap.containsKey(partition)) {
-        return currentActiveReplicas;
-      }
       // Initialize state -> number of this state map
       Map<String, Integer> stateCountMap = new HashMap<>();
-      for (String state : _bestPossibleMap.get(partition).values()) {
-        if (!stateCountMap.containsKey(state)) {
-          stateCountMap.put(state, 0);
-        }
-        stateCountMap.put(state, stateCountMap.get(state) + 1);
+      for (String state : bestPossibleMap.values()) {
+        Integer count = stateCountMap.get(state);
+        stateCountMap.put(state, count == null ? 1 : count + 1);
       }
       // Search the state map
-      for (String state : _currentStateMap.get(partition).values()) {
-        if (stateCountMap.containsKey(state) && stateCountMap.get(state) > 0) {
+      for (String state : currentStateMap.values()) {
+        Integer count = stateCountMap.get(state);
+        if (count != null && count > 0) {
           currentActiveReplicas++;
-          stateCountMap.put(state, stateCountMap.get(state) - 1);
+          stateCountMap.put(state, count - 1);
         }
       }
       return currentActiveReplicas;
     }
 
-    private int getIdealStateMatched(Partition partition) {
-      int matchedState = 0;
-      if (!_currentStateMap.containsKey(partition)) {
-        return matchedState;
+    Partition getPartition() {
+      return _partition;
+    }
+
+    @Override
+    public int compareTo(PartitionPriority other) {
+      int result = Long.compare(_key, other._key);
+      if (result != 0) {
+        return result;
       }
-      for (String instance : _bestPossibleMap.get(partition).keySet()) {
-        if (_bestPossibleMap.get(partition).get(instance)
-            .equals(_currentStateMap.get(partition).get(instance))) {
-          matchedState++;
+      return _partition.getPartitionName().compareTo(other._partition.getPartitionName());
+    }
+  }
+
+  /**
+   * Iterates partitions by priority, highest first. The partitions are not sorted upfront: they are
+   * heapified in linear time and polled one at a time. Once the resource has no throttle quota
+   * left, or is not throttled at all, every remaining partition gets the same result whatever its
+   * priority, so the rest is returned unordered. When the quota is much smaller than the backlog,
+   * only the partitions that fit in the quota are ordered.
+   */
+  static class PrioritizedPartitionIterator implements Iterator<Partition> {
+    private final PriorityQueue<PartitionPriority> _queue;
+    private final StateTransitionThrottleController _throttleController;
+    private final RebalanceType _rebalanceType;
+    private final String _resourceName;
+    private Iterator<PartitionPriority> _unordered;
+
+    PrioritizedPartitionIterator(Collection<PartitionPriority> partitionPriorities,
+        StateTransitionThrottleController throttleController, RebalanceType rebalanceType,
+        String resourceName) {
+      _queue = new PriorityQueue<>(partitionPriorities);
+      _throttleController = throttleController;
+      _rebalanceType = rebalanceType;
+      _resourceName = resourceName;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return _unordered == null ? !_queue.isEmpty() : _unordered.hasNext();
+    }
+
+    @Override
+    public Partition next() {
+      if (_unordered == null) {
+        if (_throttleController.isThrottleEnabled()
+            && !_throttleController.shouldThrottleForResource(_rebalanceType, _resourceName)) {
+          PartitionPriority partitionPriority = _queue.poll();
+          if (partitionPriority == null) {
+            throw new NoSuchElementException();
+          }
+          return partitionPriority.getPartition();
         }
+        // Charges only grow, the resource stays throttled for the rest of the iteration
+        _unordered = _queue.iterator();
       }
-      return matchedState;
+      return _unordered.next().getPartition();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
     }
   }
 }
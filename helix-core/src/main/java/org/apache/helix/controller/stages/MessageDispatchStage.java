@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -34,6 +35,8 @@ import org.apache.helix.PropertyKey.Builder;
 import org.apache.helix.controller.LogUtil;
 import org.apache.helix.controller.pipeline.AbstractBaseStage;
 import org.apache.helix.controller.pipeline.StageException;
+import org.apache.helix.manager.zk.ZKHelixDataAccessor;
+import org.apache.helix.model.ClusterConfig;
 import org.apache.helix.model.LiveInstance;
 import org.apache.helix.model.Message;
 import org.apache.helix.model.Partition;
@@ -76,17 +79,33 @@ public abstract class MessageDispatchStage extends AbstractBaseStage {
         batchMessage(dataAccessor.keyBuilder(), messagesToSend, resourceMap, liveInstanceMap,
             manager.getProperties());
 
-    List<Message> messagesSent = sendMessages(dataAccessor, outputMessages);
     // TODO: Need also count messages from task rebalancer
-    if (!cache.isTaskCache()) {
-      ClusterStatusMonitor clusterStatusMonitor =
-          event.getAttribute(AttributeName.clusterStatusMonitor.name());
-      if (clusterStatusMonitor != null) {
-        clusterStatusMonitor.increaseMessageReceived(outputMessages);
+    ClusterStatusMonitor clusterStatusMonitor =
+        cache.isTaskCache() ? null : event.<ClusterStatusMonitor>getAttribute(
+            AttributeName.clusterStatusMonitor.name());
+    ClusterConfig clusterConfig = cache.getClusterConfig();
+    int transactionSize =
+        clusterConfig == null ? 1 : clusterConfig.getMessageDispatchTransactionSize();
+
+    long sendStart = System.currentTimeMillis();
+    List<Message> messagesSent =
+        sendMessages(dataAccessor, outputMessages, transactionSize, clusterStatusMonitor);
+    if (clusterStatusMonitor != null) {
+      clusterStatusMonitor.increaseMessageReceived(outputMessages);
+      if (!outputMessages.isEmpty()) {
+        clusterStatusMonitor.updateMessageDispatch(outputMessages.size(),
+            outputMessages.size() - messagesSent.size(), System.currentTimeMillis() - sendStart);
       }
     }
     long cacheStart = System.currentTimeMillis();
-    cache.cacheMessages(messagesSent);
+    ResourceShardContext shardContext =
+        event.getAttribute(AttributeName.RESOURCE_SHARD_CONTEXT.name());
+    if (shardContext != null) {
+      // other shards may still read the message cache
+      shardContext.addMessagesSent(messagesSent);
+    } else {
+      cache.cacheMessages(messagesSent);
+    }
     long cacheEnd = System.currentTimeMillis();
     LogUtil.logDebug(logger, _eventId, "Caching messages took " + (cacheEnd - cacheStart) + " ms");
   }
@@ -136,6 +155,16 @@ public abstract class MessageDispatchStage extends AbstractBaseStage {
 
   // return the messages actually sent
   protected List<Message> sendMessages(HelixDataAccessor dataAccessor, List<Message> messages) {
+    return sendMessages(dataAccessor, messages, 1, null);
+  }
+
+  /**
+   * Send the messages, in zk multi() transactions of at most transactionSize messages to the same
+   * instance if transactionSize is more than 1.
+   * @return the messages actually sent
+   */
+  protected List<Message> sendMessages(HelixDataAccessor dataAccessor, List<Message> messages,
+      int transactionSize, ClusterStatusMonitor clusterStatusMonitor) {
     List<Message> messageSent = new ArrayList<>();
     if (messages == null || messages.isEmpty()) {
       return messageSent;
@@ -165,7 +194,13 @@ public abstract class MessageDispatchStage extends AbstractBaseStage {
       keys.add(keyBuilder.message(message.getTgtName(), message.getId()));
     }
 
-    boolean[] results = dataAccessor.createChildren(keys, new ArrayList<>(messages));
+    boolean[] results;
+    if (transactionSize > 1 && dataAccessor instanceof ZKHelixDataAccessor) {
+      results = createInTransactions((ZKHelixDataAccessor) dataAccessor, keys, messages,
+          transactionSize, clusterStatusMonitor);
+    } else {
+      results = dataAccessor.createChildren(keys, new ArrayList<>(messages));
+    }
     for (int i = 0; i < results.length; i++) {
       if (!results[i]) {
         LogUtil.logError(logger, _eventId, "Failed to send message: " + keys.get(i));
@@ -176,4 +211,75 @@ public abstract class MessageDispatchStage extends AbstractBaseStage {
 
     return messageSent;
   }
+
+  /**
+   * Create the messages of each instance in multi() transactions of at most transactionSize
+   * messages, so a failed transaction, e.g. a message that already exists, only delays the
+   * messages of the same instance. The messages of the failed transactions are created again one
+   * by one.
+   */
+  private boolean[] createInTransactions(ZKHelixDataAccessor dataAccessor, List<PropertyKey> keys,
+      List<Message> messages, int transactionSize, ClusterStatusMonitor clusterStatusMonitor) {
+    Map<String, List<Integer>> instanceMessages = new LinkedHashMap<>();
+    for (int i = 0; i < messages.size(); i++) {
+      String instanceName = messages.get(i).getTgtName();
+      List<Integer> indexes = instanceMessages.get(instanceName);
+      if (indexes == null) {
+        indexes = new ArrayList<>();
+        instanceMessages.put(instanceName, indexes);
+      }
+      indexes.add(i);
+    }
+
+    List<List<Integer>> txnIndexes = new ArrayList<>();
+    List<List<PropertyKey>> txnKeys = new ArrayList<>();
+    List<List<Message>> txnMessages = new ArrayList<>();
+    for (List<Integer> indexes : instanceMessages.values()) {
+      for (int start = 0; start < indexes.size(); start += transactionSize) {
+        List<Integer> txn =
+            indexes.subList(start, Math.min(start + transactionSize, indexes.size()));
+        List<PropertyKey> txnKey = new ArrayList<>(txn.size());
+        List<Message> txnMessage = new ArrayList<>(txn.size());
+        for (int index : txn) {
+          txnKey.add(keys.get(index));
+          txnMessage.add(messages.get(index));
+        }
+        txnIndexes.add(txn);
+        txnKeys.add(txnKey);
+        txnMessages.add(txnMessage);
+      }
+    }
+
+    boolean[] results = new boolean[messages.size()];
+    boolean[] txnResults = dataAccessor.createChildrenInTransactions(txnKeys, txnMessages);
+    List<Integer> retryIndexes = new ArrayList<>();
+    for (int i = 0; i < txnResults.length; i++) {
+      if (clusterStatusMonitor != null) {
+        clusterStatusMonitor.updateMessageTransaction(txnIndexes.get(i).size(), txnResults[i]);
+      }
+      for (int index : txnIndexes.get(i)) {
+        if (txnResults[i]) {
+          results[index] = true;
+        } else {
+          retryIndexes.add(index);
+        }
+      }
+    }
+
+    if (!retryIndexes.isEmpty()) {
+      LogUtil.logWarn(logger, _eventId, "Failed to send " + retryIndexes.size()
+          + " messages in transactions, sending them one by one");
+      List<PropertyKey> retryKeys = new ArrayList<>(retryIndexes.size());
+      List<Message> retryMessages = new ArrayList<>(retryIndexes.size());
+      for (int index : retryIndexes) {
+        retryKeys.add(keys.get(index));
+        retryMessages.add(messages.get(index));
+      }
+      boolean[] retryResults = dataAccessor.createChildren(retryKeys, retryMessages);
+      for (int i = 0; i < retryResults.length; i++) {
+        results[retryIndexes.get(i)] = retryResults[i];
+      }
+    }
+    return results;
+  }
 }
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -91,7 +92,14 @@ public abstract class MessageGenerationPhase extends AbstractBaseStage {
     }
     MessageOutput output = new MessageOutput();
 
+    // Converged resources need no state transition, see BestPossibleStateCalcStage
+    Set<String> convergedResources =
+        event.getAttribute(AttributeName.CONVERGED_RESOURCES.name());
+
     for (Resource resource : resourceMap.values()) {
+      if (convergedResources != null && convergedResources.contains(resource.getResourceName())) {
+        continue;
+      }
       try {
         generateMessage(resource, cache, resourcesStateMap, currentStateOutput, manager,
             sessionIdMap, event.getEventType(), output, pendingMessagesToCleanUp);
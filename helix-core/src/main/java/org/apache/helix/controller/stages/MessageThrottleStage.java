@@ -130,26 +130,34 @@ public class MessageThrottleStage extends AbstractBaseStage {
     MessageOutput output = new MessageOutput();
 
     ClusterConstraints constraint = cache.getConstraint(ConstraintType.MESSAGE_CONSTRAINT);
-    Map<String, Integer> throttleCounterMap = new HashMap<String, Integer>();
-
-    if (constraint != null) {
-      // go through all pending messages, they should be counted but not throttled
-      for (String instance : cache.getLiveInstances().keySet()) {
-        throttle(throttleCounterMap, constraint, new ArrayList<>(cache.getMessages(instance)
-            .values()), false);
+    // resource shards throttle their messages against the same counters
+    ResourceShardContext shardContext =
+        event.getAttribute(AttributeName.RESOURCE_SHARD_CONTEXT.name());
+    Map<String, Integer> throttleCounterMap = shardContext == null
+        ? new HashMap<String, Integer>()
+        : shardContext.getMessageThrottleCounters();
+
+    synchronized (throttleCounterMap) {
+      if (constraint != null && (shardContext == null || shardContext
+          .markPendingMessagesCounted())) {
+        // go through all pending messages, they should be counted but not throttled
+        for (String instance : cache.getLiveInstances().keySet()) {
+          throttle(throttleCounterMap, constraint, new ArrayList<>(cache.getMessages(instance)
+              .values()), false);
+        }
       }
-    }
 
-    // go through all new messages, throttle if necessary
-    // assume messages should be sorted by state transition priority in messageSelection stage
-    for (String resourceName : resourceMap.keySet()) {
-      Resource resource = resourceMap.get(resourceName);
-      for (Partition partition : resource.getPartitions()) {
-        List<Message> messages = msgSelectionOutput.getMessages(resourceName, partition);
-        if (constraint != null && messages != null && messages.size() > 0) {
-          messages = throttle(throttleCounterMap, constraint, messages, true);
+      // go through all new messages, throttle if necessary
+      // assume messages should be sorted by state transition priority in messageSelection stage
+      for (String resourceName : resourceMap.keySet()) {
+        Resource resource = resourceMap.get(resourceName);
+        for (Partition partition : resource.getPartitions()) {
+          List<Message> messages = msgSelectionOutput.getMessages(resourceName, partition);
+          if (constraint != null && messages != null && messages.size() > 0) {
+            messages = throttle(throttleCounterMap, constraint, messages, true);
+          }
+          output.addMessages(resourceName, partition, messages);
         }
-        output.addMessages(resourceName, partition, messages);
       }
     }
 
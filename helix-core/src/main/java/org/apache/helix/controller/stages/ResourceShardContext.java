@@ -0,0 +1,173 @@
+package org.apache.helix.controller.stages;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.helix.HelixManager;
+import org.apache.helix.model.Message;
+import org.apache.helix.model.Resource;
+import org.apache.helix.monitoring.mbeans.ClusterStatusMonitor;
+
+/**
+ * State shared by the rebalance pipelines of the resource shards that process the same event.
+ * The shards charge messages against the same message constraint counters, so the cluster and
+ * instance level constraints still apply to the whole cluster. Updates to the
+ * ClusterDataCache that other shards may read are collected here and applied once all shards are
+ * done, see {@link #apply(ClusterEvent)}.
+ */
+public class ResourceShardContext {
+  private final Set<String> _resources;
+
+  private final Map<String, Integer> _messageThrottleCounters = new HashMap<>();
+  private boolean _pendingMessagesCounted = false;
+  private final Map<String, Integer> _instancePartitionCounts = new HashMap<>();
+  private boolean _activeTaskCountReset = false;
+  private Boolean _offlineInstancesLimitValid;
+
+  private final BestPossibleStateOutput _bestPossibleStates = new BestPossibleStateOutput();
+  private final List<Message> _messagesSent = new ArrayList<>();
+  private final Map<String, BestPossibleStateOutput> _convergedBestPossibleStates =
+      new HashMap<>();
+  // null until a shard computes its best possible states
+  private Boolean _rebalanceFailure;
+  private final List<String> _rebalanceFailedResources = new ArrayList<>();
+
+  /**
+   * @param resources all the resources to rebalance, over all shards
+   */
+  public ResourceShardContext(Collection<String> resources) {
+    _resources = new HashSet<>(resources);
+  }
+
+  /**
+   * @return all the resources to rebalance, over all shards
+   */
+  Set<String> getResources() {
+    return _resources;
+  }
+
+  /**
+   * The message constraint counters of all shards. Callers must synchronize on the returned map.
+   */
+  Map<String, Integer> getMessageThrottleCounters() {
+    return _messageThrottleCounters;
+  }
+
+  /**
+   * @return true for the first caller only, which counts the pending messages of the cluster
+   */
+  boolean markPendingMessagesCounted() {
+    synchronized (_messageThrottleCounters) {
+      boolean first = !_pendingMessagesCounted;
+      _pendingMessagesCounted = true;
+      return first;
+    }
+  }
+
+  /**
+   * The partition counts per instance of all shards. Callers must synchronize on the returned map.
+   */
+  Map<String, Integer> getInstancePartitionCounts() {
+    return _instancePartitionCounts;
+  }
+
+  /**
+   * @return true for the first caller only, which resets the active task counts in the cache
+   */
+  synchronized boolean markActiveTaskCountReset() {
+    boolean first = !_activeTaskCountReset;
+    _activeTaskCountReset = true;
+    return first;
+  }
+
+  /**
+   * Check the offline instances limit once for all shards, so only one of them may put the
+   * cluster into maintenance mode.
+   * @return the result of the check
+   */
+  synchronized boolean validateOfflineInstancesLimit(ClusterDataCache cache, HelixManager manager,
+      String eventId) {
+    if (_offlineInstancesLimitValid == null) {
+      _offlineInstancesLimitValid =
+          BestPossibleStateCalcStage.validateOfflineInstancesLimit(cache, manager, eventId);
+    }
+    return _offlineInstancesLimitValid;
+  }
+
+  /**
+   * @param hasFailure true if the shard failed to rebalance for another reason than the failures
+   *          of its resources
+   * @param failedResources the resources of the shard whose best possible states failed
+   */
+  synchronized void addRebalanceFailures(boolean hasFailure, Collection<String> failedResources) {
+    _rebalanceFailure = (_rebalanceFailure != null && _rebalanceFailure) || hasFailure
+        || !failedResources.isEmpty();
+    _rebalanceFailedResources.addAll(failedResources);
+  }
+
+  synchronized void addBestPossibleStates(BestPossibleStateOutput bestPossibleStates) {
+    for (String resourceName : bestPossibleStates.resourceSet()) {
+      BestPossibleStateCalcStage
+          .mergeResourceOutput(resourceName, bestPossibleStates, _bestPossibleStates);
+    }
+  }
+
+  synchronized void addMessagesSent(Collection<Message> messages) {
+    _messagesSent.addAll(messages);
+  }
+
+  synchronized void addConvergedBestPossibleStates(
+      Map<String, BestPossibleStateOutput> convergedStates) {
+    _convergedBestPossibleStates.putAll(convergedStates);
+  }
+
+  /**
+   * Apply the cache updates of all shards and report their status, once none of them reads the
+   * cache any more.
+   * @param event the event the shards processed
+   */
+  public synchronized void apply(ClusterEvent event) {
+    ClusterDataCache cache = event.getAttribute(AttributeName.ClusterDataCache.name());
+    cache.cacheMessages(_messagesSent);
+    if (!_convergedBestPossibleStates.isEmpty() || !cache.getConvergedBestPossibleStates()
+        .isEmpty()) {
+      cache.setConvergedBestPossibleStates(_convergedBestPossibleStates);
+    }
+
+    Map<String, Resource> resourceMap =
+        event.getAttribute(AttributeName.RESOURCES_TO_REBALANCE.name());
+    ClusterStatusMonitor clusterStatusMonitor =
+        event.getAttribute(AttributeName.clusterStatusMonitor.name());
+    BestPossibleStateCalcStage
+        .reportPerInstanceResourceStatus(cache, clusterStatusMonitor, _bestPossibleStates,
+            resourceMap, event.getEventId());
+    if (_rebalanceFailure != null) {
+      BestPossibleStateCalcStage.updateRebalanceStatus(_rebalanceFailure,
+          _rebalanceFailedResources, cache, clusterStatusMonitor, event.getEventId());
+    }
+  }
+}
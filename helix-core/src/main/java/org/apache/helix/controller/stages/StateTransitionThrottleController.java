@@ -19,39 +19,55 @@ package org.apache.helix.controller.stages;
  * under the License.
  */
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.helix.api.config.StateTransitionThrottleConfig;
+import org.apache.helix.api.config.StateTransitionThrottleConfig.RebalanceType;
 import org.apache.helix.model.ClusterConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * StateTransitionThrottleController is used to compute IntermediateState; it caches allowed
- * transition counts to see if any state transitions depending on the rebalance type must be held
- * off.
+ * StateTransitionThrottleController is used to compute IntermediateState; it counts the state
+ * transitions charged in the cluster, and in each instance and resource, to see if any state
+ * transitions depending on the rebalance type must be held off. The limits are the same for all
+ * resources and for all instances, so they are kept once per scope and the counts of a resource
+ * or an instance are only created when a transition is charged on it.
  */
 class StateTransitionThrottleController {
   private static Logger logger = LoggerFactory.getLogger(StateTransitionThrottleController.class);
 
-  // pending allowed transition counts in the cluster level for recovery and load balance
-  private Map<StateTransitionThrottleConfig.RebalanceType, Long> _pendingTransitionAllowedInCluster;
+  private static final int ANY = RebalanceType.ANY.ordinal();
+  // no limit configured for a rebalance type
+  private static final long UNLIMITED = Long.MAX_VALUE;
 
-  // pending allowed transition counts for each instance and resource
-  private Map<String, Map<StateTransitionThrottleConfig.RebalanceType, Long>> _pendingTransitionAllowedPerInstance;
-  private Map<String, Map<StateTransitionThrottleConfig.RebalanceType, Long>> _pendingTransitionAllowedPerResource;
+  // pending transition limits per rebalance type in the cluster level, and for each resource and
+  // instance
+  private final long[] _clusterLimits = newLimits();
+  private final long[] _resourceLimits = newLimits();
+  private final long[] _instanceLimits = newLimits();
+
+  // charged transition counts per rebalance type
+  private final long[] _chargedInCluster = new long[RebalanceType.values().length];
+  private final Map<String, long[]> _chargedPerResource = new HashMap<>();
+  private final Map<String, long[]> _chargedPerInstance = new HashMap<>();
+
+  private final Set<String> _resources;
+  private final Set<String> _liveInstances;
 
   private boolean _throttleEnabled = false;
+  private boolean _resourceThrottleEnabled = false;
+  private boolean _instanceThrottleEnabled = false;
 
   public StateTransitionThrottleController(Set<String> resources, ClusterConfig clusterConfig,
       Set<String> liveInstances) {
     super();
-    _pendingTransitionAllowedInCluster = new HashMap<>();
-    _pendingTransitionAllowedPerInstance = new HashMap<>();
-    _pendingTransitionAllowedPerResource = new HashMap<>();
+    _resources = resources;
+    _liveInstances = liveInstances;
 
     if (clusterConfig == null) {
       logger.warn("Cluster config is not found, no throttle config set!");
@@ -67,32 +83,20 @@ class StateTransitionThrottleController {
     }
 
     for (StateTransitionThrottleConfig config : throttleConfigs) {
+      int rebalanceType = config.getRebalanceType().ordinal();
       switch (config.getThrottleScope()) {
         case CLUSTER:
-          _pendingTransitionAllowedInCluster.put(config.getRebalanceType(),
-              config.getMaxPartitionInTransition());
+          _clusterLimits[rebalanceType] = config.getMaxPartitionInTransition();
           _throttleEnabled = true;
           break;
         case RESOURCE:
-          for (String resource : resources) {
-            if (!_pendingTransitionAllowedPerResource.containsKey(resource)) {
-              _pendingTransitionAllowedPerResource.put(resource,
-                  new HashMap<StateTransitionThrottleConfig.RebalanceType, Long>());
-            }
-            _pendingTransitionAllowedPerResource.get(resource).put(config.getRebalanceType(),
-                config.getMaxPartitionInTransition());
-          }
+          _resourceLimits[rebalanceType] = config.getMaxPartitionInTransition();
+          _resourceThrottleEnabled = true;
           _throttleEnabled = true;
           break;
         case INSTANCE:
-          for (String instance : liveInstances) {
-            if (!_pendingTransitionAllowedPerInstance.containsKey(instance)) {
-              _pendingTransitionAllowedPerInstance.put(instance,
-                  new HashMap<StateTransitionThrottleConfig.RebalanceType, Long>());
-            }
-            _pendingTransitionAllowedPerInstance.get(instance).put(config.getRebalanceType(),
-                config.getMaxPartitionInTransition());
-          }
+          _instanceLimits[rebalanceType] = config.getMaxPartitionInTransition();
+          _instanceThrottleEnabled = true;
           _throttleEnabled = true;
           break;
       }
@@ -109,149 +113,118 @@ class StateTransitionThrottleController {
   }
 
   /**
-   * Check if state transitions for a particular Rebalance type must be throttled. Assuming the
-   * "charging" already happened at this level, this method purely checks whether the throttle value
-   * has reached 0 or below.
+   * Check if state transitions for a particular Rebalance type must be throttled. This method
+   * purely checks whether the charged transitions have reached the limit.
    * @return true if it should be throttled, otherwise, false
    */
-  protected boolean shouldThrottleForCluster(
-      StateTransitionThrottleConfig.RebalanceType rebalanceType) {
-    if (shouldThrottleForANYType(_pendingTransitionAllowedInCluster)) {
-      return true;
-    }
-    Long clusterThrottle = _pendingTransitionAllowedInCluster.get(rebalanceType);
-    return clusterThrottle != null && clusterThrottle <= 0;
+  protected boolean shouldThrottleForCluster(RebalanceType rebalanceType) {
+    return shouldThrottle(_clusterLimits, _chargedInCluster, rebalanceType);
   }
 
   /**
    * Check if state transitions for a particular Rebalance type must be throttled at the resource
-   * level. Assuming the "charging" already happened at this level and the throttle value did not
-   * dip below 0 at the higher level, this method purely checks whether the throttle value has
-   * reached 0 or below.
+   * level. Assuming the throttle limit was not reached at the higher level, this method purely
+   * checks whether the charged transitions have reached the limit.
    * @return true if it should be throttled, otherwise, false
    */
-  protected boolean shouldThrottleForResource(
-      StateTransitionThrottleConfig.RebalanceType rebalanceType, String resourceName) {
+  protected boolean shouldThrottleForResource(RebalanceType rebalanceType, String resourceName) {
     if (shouldThrottleForCluster(rebalanceType)) {
       return true;
     }
-    Long resourceThrottle;
-    if (_pendingTransitionAllowedPerResource.containsKey(resourceName)) {
-      resourceThrottle = _pendingTransitionAllowedPerResource.get(resourceName).get(rebalanceType);
-      if (shouldThrottleForANYType(_pendingTransitionAllowedPerResource.get(resourceName))
-          || (resourceThrottle != null && resourceThrottle <= 0)) {
-        return true;
-      }
-    }
-    return false;
+    return _resourceThrottleEnabled && _resources.contains(resourceName) && shouldThrottle(
+        _resourceLimits, _chargedPerResource.get(resourceName), rebalanceType);
   }
 
   /**
-   * Check if state transitions for a particular Rebalance type must be throttled at the resource
-   * level. Assuming the "charging" already happened at this level and the throttle value did not
-   * dip below 0 at the higher level, this method purely checks whether the throttle value has
-   * reached 0 or below.
+   * Check if state transitions for a particular Rebalance type must be throttled at the instance
+   * level. Assuming the throttle limit was not reached at the higher level, this method purely
+   * checks whether the charged transitions have reached the limit.
    * @return true if it should be throttled, otherwise, false
    */
-  protected boolean shouldThrottleForInstance(
-      StateTransitionThrottleConfig.RebalanceType rebalanceType, String instanceName) {
+  protected boolean shouldThrottleForInstance(RebalanceType rebalanceType, String instanceName) {
     if (shouldThrottleForCluster(rebalanceType)) {
       return true;
     }
-    Long instanceThrottle;
-    if (_pendingTransitionAllowedPerInstance.containsKey(instanceName)) {
-      instanceThrottle = _pendingTransitionAllowedPerInstance.get(instanceName).get(rebalanceType);
-      if (shouldThrottleForANYType(_pendingTransitionAllowedPerInstance.get(instanceName))
-          || (instanceThrottle != null && instanceThrottle <= 0)) {
-        return true;
-      }
-    }
-    return false;
+    return _instanceThrottleEnabled && _liveInstances.contains(instanceName) && shouldThrottle(
+        _instanceLimits, _chargedPerInstance.get(instanceName), rebalanceType);
   }
 
   /**
-   * "Charge" for a pending state for a particular Rebalance type by subtracting one pending state
-   * from number of total pending states allowed (set by user application).
+   * "Charge" for a pending state for a particular Rebalance type by counting one more pending
+   * state against the number of total pending states allowed (set by user application).
    * @param rebalanceType
    */
-  protected void chargeCluster(StateTransitionThrottleConfig.RebalanceType rebalanceType) {
-    if (_pendingTransitionAllowedInCluster.containsKey(rebalanceType)) {
-      Long clusterThrottle = _pendingTransitionAllowedInCluster.get(rebalanceType);
-      chargeANYType(_pendingTransitionAllowedInCluster);
-      if (clusterThrottle > 0) {
-        _pendingTransitionAllowedInCluster.put(rebalanceType, clusterThrottle - 1);
-      }
-    }
+  protected void chargeCluster(RebalanceType rebalanceType) {
+    charge(_clusterLimits, _chargedInCluster, rebalanceType);
   }
 
   /**
-   * "Charge" for a pending state for a particular Rebalance type by subtracting one pending state
-   * from number of total pending states allowed (set by user application).
+   * "Charge" for a pending state for a particular Rebalance type by counting one more pending
+   * state against the number of total pending states allowed (set by user application).
    * @param rebalanceType
    */
-  protected void chargeResource(StateTransitionThrottleConfig.RebalanceType rebalanceType,
-      String resource) {
-    if (_pendingTransitionAllowedPerResource.containsKey(resource)
-        && _pendingTransitionAllowedPerResource.get(resource).containsKey(rebalanceType)) {
-      chargeANYType(_pendingTransitionAllowedPerResource.get(resource));
-      Long resourceThrottle = _pendingTransitionAllowedPerResource.get(resource).get(rebalanceType);
-      if (resourceThrottle > 0) {
-        _pendingTransitionAllowedPerResource.get(resource).put(rebalanceType, resourceThrottle - 1);
-      }
+  protected void chargeResource(RebalanceType rebalanceType, String resource) {
+    if (_resourceThrottleEnabled && isLimited(_resourceLimits, rebalanceType) && _resources
+        .contains(resource)) {
+      charge(_resourceLimits, getOrCreateCharged(_chargedPerResource, resource), rebalanceType);
     }
   }
 
   /**
-   * "Charge" for a pending state for a particular Rebalance type by subtracting one pending state
-   * from number of total pending states allowed (set by user application).
+   * "Charge" for a pending state for a particular Rebalance type by counting one more pending
+   * state against the number of total pending states allowed (set by user application).
    * @param rebalanceType
    */
-  protected void chargeInstance(StateTransitionThrottleConfig.RebalanceType rebalanceType,
-      String instance) {
-    if (_pendingTransitionAllowedPerInstance.containsKey(instance)
-        && _pendingTransitionAllowedPerInstance.get(instance).containsKey(rebalanceType)) {
-      chargeANYType(_pendingTransitionAllowedPerInstance.get(instance));
-      Long instanceThrottle = _pendingTransitionAllowedPerInstance.get(instance).get(rebalanceType);
-      if (instanceThrottle > 0) {
-        _pendingTransitionAllowedPerInstance.get(instance).put(rebalanceType, instanceThrottle - 1);
-      }
+  protected void chargeInstance(RebalanceType rebalanceType, String instance) {
+    if (_instanceThrottleEnabled && isLimited(_instanceLimits, rebalanceType) && _liveInstances
+        .contains(instance)) {
+      charge(_instanceLimits, getOrCreateCharged(_chargedPerInstance, instance), rebalanceType);
     }
   }
 
   /**
-   * Check if state transitions must be throttled overall regardless of the rebalance type.
-   * Assuming the "charging" already happened, this method purely checks whether the throttle value
-   * has reached 0 or below.
-   * @param pendingTransitionAllowed
+   * Check if the charged transitions reached the limit of the rebalance type, or the limit of all
+   * types.
    * @return true if it should be throttled, otherwise, false
    */
-  private boolean shouldThrottleForANYType(
-      Map<StateTransitionThrottleConfig.RebalanceType, Long> pendingTransitionAllowed) {
-    if (pendingTransitionAllowed.containsKey(StateTransitionThrottleConfig.RebalanceType.ANY)) {
-      Long anyTypeThrottle =
-          pendingTransitionAllowed.get(StateTransitionThrottleConfig.RebalanceType.ANY);
-      if (anyTypeThrottle != null && anyTypeThrottle <= 0) {
-        return true;
-      }
+  private static boolean shouldThrottle(long[] limits, long[] charged,
+      RebalanceType rebalanceType) {
+    if (charged == null) {
+      // nothing charged yet, only a limit of 0 or below throttles
+      return limits[ANY] <= 0 || limits[rebalanceType.ordinal()] <= 0;
     }
-    return false;
+    return charged[ANY] >= limits[ANY]
+        || charged[rebalanceType.ordinal()] >= limits[rebalanceType.ordinal()];
   }
 
   /**
-   * "Charge" for a pending state regardless of the rebalance type by subtracting one pending state
-   * from number of total pending state from number of total pending states allowed (set by user
-   * application).
-   * @param pendingTransitionAllowed
+   * Charge one transition of a rebalance type, and of all types, if that type is limited.
    */
-  private void chargeANYType(
-      Map<StateTransitionThrottleConfig.RebalanceType, Long> pendingTransitionAllowed) {
-    if (pendingTransitionAllowed.containsKey(StateTransitionThrottleConfig.RebalanceType.ANY)) {
-      Long anyTypeThrottle =
-          pendingTransitionAllowed.get(StateTransitionThrottleConfig.RebalanceType.ANY);
-      if (anyTypeThrottle > 0) {
-        pendingTransitionAllowed.put(StateTransitionThrottleConfig.RebalanceType.ANY,
-            anyTypeThrottle - 1);
+  private static void charge(long[] limits, long[] charged, RebalanceType rebalanceType) {
+    if (isLimited(limits, rebalanceType)) {
+      charged[rebalanceType.ordinal()]++;
+      if (rebalanceType.ordinal() != ANY) {
+        charged[ANY]++;
       }
     }
   }
-}
\ No newline at end of file
+
+  private static boolean isLimited(long[] limits, RebalanceType rebalanceType) {
+    return limits[rebalanceType.ordinal()] != UNLIMITED;
+  }
+
+  private static long[] getOrCreateCharged(Map<String, long[]> chargedMap, String name) {
+    long[] charged = chargedMap.get(name);
+    if (charged == null) {
+      charged = new long[RebalanceType.values().length];
+      chargedMap.put(name, charged);
+    }
+    return charged;
+  }
+
+  private static long[] newLimits() {
+    long[] limits = new long[RebalanceType.values().length];
+    Arrays.fill(limits, UNLIMITED);
+    return limits;
+  }
+}
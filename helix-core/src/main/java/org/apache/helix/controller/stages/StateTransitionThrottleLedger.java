@@ -0,0 +1,173 @@
+package org.apache.helix.controller.stages;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.helix.model.Message;
+import org.apache.helix.model.Partition;
+import org.apache.helix.model.Resource;
+
+/**
+ * The pending state transitions of the throttled resources, kept by the ClusterDataCache across
+ * pipeline runs. Each run updates the ledger of a resource from the pending messages of that
+ * resource only: the partitions whose messages were created or completed since the previous run
+ * are added or removed, the others are kept as they are. The partitions without pending messages
+ * are never visited, so the accounting follows the number of transitions in flight instead of the
+ * number of partitions.
+ * <p>
+ * The ledger may be updated by the rebalance pipelines of several resource shards at once, all
+ * methods are synchronized.
+ */
+class StateTransitionThrottleLedger {
+  // resource -> partition with pending messages -> instances with a pending transition to a state
+  // other than their current state
+  private final Map<String, Map<Partition, Set<String>>> _pendingTransitions = new HashMap<>();
+  // instance -> pending transitions on it, over all resources
+  private final Map<String, Integer> _instancePendingTransitions = new HashMap<>();
+
+  /**
+   * Update the pending transitions of a resource from its pending messages.
+   * @param resource
+   * @param currentStateOutput
+   * @return the partitions of the resource with pending messages, mapped to the instances with a
+   *         pending transition to a state other than their current state
+   */
+  synchronized Map<Partition, Set<String>> update(Resource resource,
+      CurrentStateOutput currentStateOutput) {
+    String resourceName = resource.getResourceName();
+    Map<Partition, Map<String, Message>> pendingMessages =
+        currentStateOutput.getPendingMessageMap(resourceName);
+    Map<Partition, Set<String>> pendingTransitions = _pendingTransitions.get(resourceName);
+    if (pendingTransitions == null) {
+      if (pendingMessages.isEmpty()) {
+        return Collections.emptyMap();
+      }
+      pendingTransitions = new HashMap<>();
+      _pendingTransitions.put(resourceName, pendingTransitions);
+    }
+
+    // the transitions completed since the last update
+    Iterator<Map.Entry<Partition, Set<String>>> iter = pendingTransitions.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry<Partition, Set<String>> entry = iter.next();
+      Map<String, Message> partitionMessages = pendingMessages.get(entry.getKey());
+      if (partitionMessages == null || partitionMessages.isEmpty()
+          || resource.getPartition(entry.getKey().getPartitionName()) == null) {
+        removeInstanceTransitions(entry.getValue());
+        iter.remove();
+      }
+    }
+
+    // the transitions requested or completed on some replicas since the last update
+    for (Map.Entry<Partition, Map<String, Message>> entry : pendingMessages.entrySet()) {
+      Partition partition = entry.getKey();
+      if (entry.getValue().isEmpty()
+          || resource.getPartition(partition.getPartitionName()) == null) {
+        continue;
+      }
+      Map<String, String> currentStateMap =
+          currentStateOutput.getCurrentStateMap(resourceName, partition);
+      Set<String> instances = new HashSet<>();
+      for (Map.Entry<String, Message> message : entry.getValue().entrySet()) {
+        String pendingState = message.getValue().getToState();
+        if (pendingState != null && !pendingState.equals(currentStateMap.get(message.getKey()))) {
+          instances.add(message.getKey());
+        }
+      }
+      Set<String> recorded = pendingTransitions.get(partition);
+      if (!instances.equals(recorded)) {
+        if (recorded != null) {
+          removeInstanceTransitions(recorded);
+        }
+        addInstanceTransitions(instances);
+        pendingTransitions.put(partition, instances);
+      }
+    }
+
+    if (pendingTransitions.isEmpty()) {
+      _pendingTransitions.remove(resourceName);
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap(pendingTransitions);
+  }
+
+  /**
+   * Forget the pending transitions of a resource that is not throttled any more.
+   * @param resourceName
+   * @return true if the resource had pending transitions
+   */
+  synchronized boolean remove(String resourceName) {
+    Map<Partition, Set<String>> pendingTransitions = _pendingTransitions.remove(resourceName);
+    if (pendingTransitions == null) {
+      return false;
+    }
+    for (Set<String> instances : pendingTransitions.values()) {
+      removeInstanceTransitions(instances);
+    }
+    return true;
+  }
+
+  /**
+   * Forget the pending transitions of the resources that are not rebalanced any more.
+   * @param resourceNames the resources to keep
+   */
+  synchronized void retain(Collection<String> resourceNames) {
+    if (resourceNames.containsAll(_pendingTransitions.keySet())) {
+      return;
+    }
+    for (String resourceName : new HashSet<>(_pendingTransitions.keySet())) {
+      if (!resourceNames.contains(resourceName)) {
+        remove(resourceName);
+      }
+    }
+  }
+
+  /**
+   * @return a copy of the number of pending transitions per instance, over all resources
+   */
+  synchronized Map<String, Integer> getInstancePendingTransitionCounts() {
+    return new HashMap<>(_instancePendingTransitions);
+  }
+
+  private void addInstanceTransitions(Set<String> instances) {
+    for (String instance : instances) {
+      Integer count = _instancePendingTransitions.get(instance);
+      _instancePendingTransitions.put(instance, count == null ? 1 : count + 1);
+    }
+  }
+
+  private void removeInstanceTransitions(Set<String> instances) {
+    for (String instance : instances) {
+      Integer count = _instancePendingTransitions.get(instance);
+      if (count == null || count <= 1) {
+        _instancePendingTransitions.remove(instance);
+      } else {
+        _instancePendingTransitions.put(instance, count - 1);
+      }
+    }
+  }
+}
@@ -23,26 +23,101 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.Striped;
 import org.apache.helix.store.zk.ZNode;
 import org.apache.helix.util.HelixUtil;
 import org.apache.zookeeper.data.Stat;
 
+/**
+ * The cached znodes of a ZkCacheBaseDataAccessor.
+ * <p>
+ * The cache may be bounded by the number of cached znodes or by their total data length. Only the
+ * znodes without children are evicted, in LRU order: the znodes with children keep the structure
+ * of the cached tree, so child names are still served from the cache. A read of an evicted znode
+ * falls through to zk and caches it again.
+ * <p>
+ * Operations on a single path lock the path, so reads and writes of other paths are not blocked
+ * meanwhile, e.g. by the zk read of a cache miss. Operations that change the structure of the
+ * cached tree lock the whole cache.
+ */
 public abstract class Cache<T> {
+  private static final int PATH_LOCK_STRIPES = 64;
+
+  // held shared by operations on paths, and exclusively by operations on the whole cache
   final ReadWriteLock _lock;
-  final ConcurrentHashMap<String, ZNode> _cache;
+  private final Striped<ReadWriteLock> _pathLocks;
+  final ConcurrentMap<String, ZNode> _cache;
+  private final boolean _bounded;
+
+  private final AtomicLong _hitCount = new AtomicLong();
+  private final AtomicLong _missCount = new AtomicLong();
+  private final AtomicLong _evictionCount = new AtomicLong();
 
   public Cache() {
+    this(0, 0);
+  }
+
+  /**
+   * @param maxEntries max number of cached znodes without children, 0 for no limit
+   * @param maxWeightBytes max total length of the paths and data of the cached znodes without
+   *          children, 0 for no limit. Only one of the limits can be set.
+   */
+  public Cache(long maxEntries, long maxWeightBytes) {
+    if (maxEntries > 0 && maxWeightBytes > 0) {
+      throw new IllegalArgumentException(
+          "Cache can be bounded by either entries or weight, but not both");
+    }
     _lock = new ReentrantReadWriteLock();
-    _cache = new ConcurrentHashMap<String, ZNode>();
+    _pathLocks = Striped.readWriteLock(PATH_LOCK_STRIPES);
+
+    if (maxEntries > 0 || maxWeightBytes > 0) {
+      final boolean weighBytes = maxWeightBytes > 0;
+      _cache = CacheBuilder.newBuilder()
+          .maximumWeight(weighBytes ? maxWeightBytes : maxEntries)
+          .weigher(new Weigher<String, ZNode>() {
+            @Override
+            public int weigh(String path, ZNode znode) {
+              // znodes with children are never evicted
+              if (!znode.getChildSet().isEmpty()) {
+                return 0;
+              }
+              Stat stat = znode.getStat();
+              return weighBytes ? path.length() + (stat == null ? 0 : stat.getDataLength()) : 1;
+            }
+          })
+          .removalListener(new RemovalListener<String, ZNode>() {
+            @Override
+            public void onRemoval(RemovalNotification<String, ZNode> notification) {
+              if (notification.wasEvicted()) {
+                _evictionCount.incrementAndGet();
+              }
+            }
+          })
+          .<String, ZNode>build().asMap();
+      _bounded = true;
+    } else {
+      _cache = new ConcurrentHashMap<String, ZNode>();
+      _bounded = false;
+    }
   }
 
   public void addToParentChildSet(String parentPath, String childName) {
     ZNode znode = _cache.get(parentPath);
     if (znode != null) {
+      boolean wasLeaf = znode.getChildSet().isEmpty();
       znode.addChild(childName);
+      if (wasLeaf) {
+        reweigh(parentPath, znode);
+      }
     }
   }
 
@@ -50,7 +125,11 @@ public abstract class Cache<T> {
     if (childNames != null && !childNames.isEmpty()) {
       ZNode znode = _cache.get(parentPath);
       if (znode != null) {
+        boolean wasLeaf = znode.getChildSet().isEmpty();
         znode.addChildren(childNames);
+        if (wasLeaf) {
+          reweigh(parentPath, znode);
+        }
       }
     }
   }
@@ -59,18 +138,51 @@ public abstract class Cache<T> {
     ZNode zNode = _cache.get(parentPath);
     if (zNode != null) {
       zNode.removeChild(name);
+      if (zNode.getChildSet().isEmpty()) {
+        reweigh(parentPath, zNode);
+      }
     }
   }
 
+  /**
+   * A bounded cache weighs an entry when it is put, so put the znode again once its data or
+   * children changed. Does nothing if the znode is evicted meanwhile.
+   */
+  void reweigh(String path, ZNode znode) {
+    if (_bounded) {
+      _cache.replace(path, znode, znode);
+    }
+  }
+
+  /**
+   * @return true if the znode was cached before but is evicted, i.e. its parent still lists it
+   */
+  boolean isEvicted(String path) {
+    if (!_bounded) {
+      return false;
+    }
+    ZNode parent = _cache.get(HelixUtil.getZkParentPath(path));
+    return parent != null && parent.hasChild(HelixUtil.getZkName(path));
+  }
+
   public boolean exists(String path) {
     return _cache.containsKey(path);
   }
 
   public ZNode get(String path) {
+    ReadWriteLock pathLock = _pathLocks.get(path);
     try {
       _lock.readLock().lock();
-      return _cache.get(path);
+      pathLock.readLock().lock();
+      ZNode znode = _cache.get(path);
+      if (znode != null) {
+        _hitCount.incrementAndGet();
+      } else {
+        _missCount.incrementAndGet();
+      }
+      return znode;
     } finally {
+      pathLock.readLock().unlock();
       _lock.readLock().unlock();
     }
   }
@@ -91,6 +203,55 @@ public abstract class Cache<T> {
     _lock.readLock().unlock();
   }
 
+  /**
+   * Lock the path for writing, see {@link #lockWrite(List)}.
+   */
+  public void lockWrite(String path) {
+    _lock.readLock().lock();
+    _pathLocks.get(path).writeLock().lock();
+  }
+
+  public void unlockWrite(String path) {
+    _pathLocks.get(path).writeLock().unlock();
+    _lock.readLock().unlock();
+  }
+
+  /**
+   * Lock the paths for writing. Operations on other paths proceed meanwhile, so the holder must
+   * not change the structure of the cached tree, e.g. by {@link #updateRecursive(String)} or
+   * {@link #purgeRecursive(String)}, before {@link #unlockWrite(List)}.
+   */
+  public void lockWrite(List<String> paths) {
+    _lock.readLock().lock();
+    for (ReadWriteLock pathLock : _pathLocks.bulkGet(paths)) {
+      pathLock.writeLock().lock();
+    }
+  }
+
+  public void unlockWrite(List<String> paths) {
+    for (ReadWriteLock pathLock : _pathLocks.bulkGet(paths)) {
+      pathLock.writeLock().unlock();
+    }
+    _lock.readLock().unlock();
+  }
+
+  /**
+   * Lock the paths for reading, so the data and stat of their znodes are consistent.
+   */
+  public void lockRead(List<String> paths) {
+    _lock.readLock().lock();
+    for (ReadWriteLock pathLock : _pathLocks.bulkGet(paths)) {
+      pathLock.readLock().lock();
+    }
+  }
+
+  public void unlockRead(List<String> paths) {
+    for (ReadWriteLock pathLock : _pathLocks.bulkGet(paths)) {
+      pathLock.readLock().unlock();
+    }
+    _lock.readLock().unlock();
+  }
+
   public void purgeRecursive(String path) {
     try {
       _lock.writeLock().lock();
@@ -126,6 +287,34 @@ public abstract class Cache<T> {
 
   public abstract void updateRecursive(String path);
 
+  /**
+   * @return number of lookups that found the znode in the cache
+   */
+  public long getHitCount() {
+    return _hitCount.get();
+  }
+
+  /**
+   * @return number of lookups that fell through to zk
+   */
+  public long getMissCount() {
+    return _missCount.get();
+  }
+
+  /**
+   * @return number of znodes evicted from a bounded cache
+   */
+  public long getEvictionCount() {
+    return _evictionCount.get();
+  }
+
+  /**
+   * @return number of cached znodes
+   */
+  public int size() {
+    return _cache.size();
+  }
+
   // debug
   public Map<String, ZNode> getCache() {
     return _cache;
@@ -19,29 +19,51 @@ package org.apache.helix.manager.zk;
  * under the License.
  */
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import org.I0Itec.zkclient.DataUpdater;
 import org.I0Itec.zkclient.exception.ZkBadVersionException;
 import org.I0Itec.zkclient.exception.ZkNoNodeException;
+import org.apache.helix.SystemPropertyKeys;
+import org.apache.helix.monitoring.mbeans.HelixGroupCommitMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.zookeeper.data.Stat;
 
+/**
+ * Commits concurrent updates in batches. Updates are queued by path hash; the thread that takes a
+ * queue over merges all the updates pending in it, so several updates to one znode cost a single
+ * write, and the znodes of a batch that already exist are written together in zk multi()
+ * transactions. When updates keep arriving while a batch is committed, the committing thread
+ * waits a little before collecting the next batch so more updates get merged; the wait doubles
+ * while that keeps happening, up to a maximum, and halves back to zero once it stops.
+ */
 public class HelixGroupCommit<T> {
   private static Logger LOG = LoggerFactory.getLogger(HelixGroupCommit.class);
 
+  private static final long MIN_BATCH_WINDOW_NS = TimeUnit.MICROSECONDS.toNanos(50);
+  private static final long DEFAULT_MAX_BATCH_WINDOW_US = 2000;
+
   private static class Queue<T> {
     final AtomicReference<Thread> _running = new AtomicReference<Thread>();
     final ConcurrentLinkedQueue<Entry<T>> _pending = new ConcurrentLinkedQueue<Entry<T>>();
+    // only changed by the thread running the queue
+    volatile long _batchWindowNs = 0;
   }
 
   private static class Entry<T> {
     final String _key;
     final DataUpdater<T> _updater;
+    final long _startTime = System.currentTimeMillis();
     AtomicBoolean _sent = new AtomicBoolean(false);
     boolean _isSuccess;
 
@@ -53,12 +75,25 @@ public class HelixGroupCommit<T> {
   }
 
   private final Queue<T>[] _queues = new Queue[100];
+  private final long _maxBatchWindowNs;
+  private final AtomicLong _pendingUpdates = new AtomicLong();
+  private final HelixGroupCommitMonitor _monitor;
 
   public HelixGroupCommit() {
+    this(null);
+  }
+
+  /**
+   * @param monitor monitor to report to, may be null
+   */
+  public HelixGroupCommit(HelixGroupCommitMonitor monitor) {
     // Don't use Arrays.fill();
     for (int i = 0; i < _queues.length; ++i) {
       _queues[i] = new Queue<T>();
     }
+    _maxBatchWindowNs = TimeUnit.MICROSECONDS.toNanos(Long
+        .getLong(SystemPropertyKeys.GROUP_COMMIT_MAX_BATCH_WINDOW_US, DEFAULT_MAX_BATCH_WINDOW_US));
+    _monitor = monitor;
   }
 
   private Queue<T> getQueue(String key) {
@@ -71,80 +106,69 @@ public class HelixGroupCommit<T> {
     Entry<T> entry = new Entry<T>(key, updater);
 
     queue._pending.add(entry);
+    _pendingUpdates.incrementAndGet();
 
     while (!entry._sent.get()) {
       if (queue._running.compareAndSet(null, Thread.currentThread())) {
         ArrayList<Entry<T>> processed = new ArrayList<Entry<T>>();
-        boolean success = true;
+        Map<String, Boolean> results = new HashMap<>();
         try {
-          Entry<T> first = queue._pending.peek();
-          if (first == null) {
-            return true;
+          if (queue._pending.peek() == null) {
+            // our entry has been committed by another thread
+            continue;
+          }
+
+          if (queue._batchWindowNs > 0) {
+            LockSupport.parkNanos(queue._batchWindowNs);
           }
 
-          String mergedKey = first._key;
-
-          boolean retry;
-          do {
-            retry = false;
-
-            try {
-              T merged = null;
-
-              Stat readStat = new Stat();
-
-              // to create a new znode, we need set version to -1
-              readStat.setVersion(-1);
-              try {
-                // accessor will fallback to zk if not found in cache
-                merged = accessor.get(mergedKey, readStat, options);
-              } catch (ZkNoNodeException e) {
-                // OK
-              }
-
-              // iterate over processed if we are retrying
-              Iterator<Entry<T>> it = processed.iterator();
-              while (it.hasNext()) {
-                Entry<T> ent = it.next();
-                if (!ent._key.equals(mergedKey)) {
-                  continue;
-                }
-                merged = ent._updater.update(merged);
-                if (LOG.isDebugEnabled()) {
-                  LOG.debug("After merging processed entry. path: " + mergedKey + ", value: " + merged);
-                }
-              }
-
-              // iterate over queue._pending for newly coming requests
-              it = queue._pending.iterator();
-              while (it.hasNext()) {
-                Entry<T> ent = it.next();
-                if (!ent._key.equals(mergedKey)) {
-                  continue;
-                }
-                processed.add(ent);
-                merged = ent._updater.update(merged);
-                if (LOG.isDebugEnabled()) {
-                  LOG.debug("After merging pending entry. path: " + mergedKey + ", value: " + merged);
-                }
-
-                it.remove();
-              }
-              success = accessor.set(mergedKey, merged, readStat.getVersion(), options);
-              if (!success) {
-                LOG.error("Fail to group commit. path: " + mergedKey + ", value: " + merged
-                    + ", version: " + readStat.getVersion());
-              }
-            } catch (ZkBadVersionException e) {
-              retry = true;
+          // take all pending updates, grouped by path in arrival order
+          Map<String, List<Entry<T>>> batch = new LinkedHashMap<>();
+          Entry<T> ent;
+          while ((ent = queue._pending.poll()) != null) {
+            processed.add(ent);
+            List<Entry<T>> entries = batch.get(ent._key);
+            if (entries == null) {
+              entries = new ArrayList<>();
+              batch.put(ent._key, entries);
             }
-          } while (retry);
+            entries.add(ent);
+          }
+          long pendingUpdates = _pendingUpdates.addAndGet(-processed.size());
+
+          int multiWrites = 0;
+          if (batch.size() > 1) {
+            results.putAll(multiCommit(accessor, options, batch));
+            multiWrites = results.size();
+          }
+          for (Map.Entry<String, List<Entry<T>>> e : batch.entrySet()) {
+            if (!results.containsKey(e.getKey())) {
+              results.put(e.getKey(), commit(accessor, options, e.getKey(), e.getValue()));
+            }
+          }
+
+          // widen the batch window while more than one update per path is merged or updates
+          // arrive faster than they are committed, and narrow it back otherwise
+          long window = queue._batchWindowNs;
+          if (processed.size() > batch.size() || !queue._pending.isEmpty()) {
+            window = Math.min(_maxBatchWindowNs, Math.max(MIN_BATCH_WINDOW_NS, window * 2));
+          } else {
+            window = window / 2 < MIN_BATCH_WINDOW_NS ? 0 : window / 2;
+          }
+          queue._batchWindowNs = window;
+
+          if (_monitor != null) {
+            _monitor.updatePendingUpdateGauge(pendingUpdates);
+            _monitor.recordBatch(processed.size(), batch.size(), multiWrites,
+                TimeUnit.NANOSECONDS.toMicros(window));
+          }
         } finally {
           queue._running.set(null);
           for (Entry<T> e : processed) {
             synchronized (e) {
+              Boolean success = results.get(e._key);
+              e._isSuccess = success != null && success;
               e._sent.set(true);
-              e._isSuccess = success;
               e.notify();
             }
           }
@@ -160,6 +184,91 @@ public class HelixGroupCommit<T> {
         }
       }
     }
+
+    if (_monitor != null) {
+      _monitor.recordUpdate(System.currentTimeMillis() - entry._startTime, entry._isSuccess);
+    }
     return entry._isSuccess;
   }
+
+  /**
+   * Apply the updates of the paths that exist and write them in multi() transactions.
+   * @return results of the paths that are written, the other paths need to be committed one by one
+   */
+  private Map<String, Boolean> multiCommit(ZkBaseDataAccessor<T> accessor, int options,
+      Map<String, List<Entry<T>>> batch) {
+    List<String> keys = new ArrayList<>(batch.keySet());
+    List<Stat> readStats = new ArrayList<>();
+    List<T> records = accessor.get(keys, readStats, options);
+
+    List<String> paths = new ArrayList<>();
+    List<T> mergedRecords = new ArrayList<>();
+    List<Integer> versions = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i++) {
+      Stat readStat = readStats.get(i);
+      if (readStat == null) {
+        // the znode needs to be created, possibly with its parents
+        continue;
+      }
+      T merged = records.get(i);
+      for (Entry<T> ent : batch.get(keys.get(i))) {
+        merged = ent._updater.update(merged);
+      }
+      if (merged != null) {
+        paths.add(keys.get(i));
+        mergedRecords.add(merged);
+        versions.add(readStat.getVersion());
+      }
+    }
+
+    Map<String, Boolean> results = new HashMap<>();
+    if (paths.size() > 1) {
+      Stat[] stats = accessor.multiSet(paths, mergedRecords, versions);
+      for (int i = 0; i < paths.size(); i++) {
+        if (stats[i] != null) {
+          results.put(paths.get(i), true);
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Apply the updates of a path and write it, retrying if the znode changes in between.
+   */
+  private boolean commit(ZkBaseDataAccessor<T> accessor, int options, String key,
+      List<Entry<T>> entries) {
+    while (true) {
+      try {
+        T merged = null;
+
+        Stat readStat = new Stat();
+
+        // to create a new znode, we need set version to -1
+        readStat.setVersion(-1);
+        try {
+          // accessor will fallback to zk if not found in cache
+          merged = accessor.get(key, readStat, options);
+        } catch (ZkNoNodeException e) {
+          // OK
+        }
+
+        for (Entry<T> ent : entries) {
+          merged = ent._updater.update(merged);
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("After merging entry. path: " + key + ", value: " + merged);
+          }
+        }
+
+        boolean success = accessor.set(key, merged, readStat.getVersion(), options);
+        if (!success) {
+          LOG.error("Fail to group commit. path: " + key + ", value: " + merged + ", version: "
+              + readStat.getVersion());
+        }
+        return success;
+      } catch (ZkBadVersionException e) {
+        // retry
+      }
+    }
+  }
 }
@@ -36,7 +36,15 @@ public class WriteThroughCache<T> extends Cache<T> {
   final BaseDataAccessor<T> _accessor;
 
   public WriteThroughCache(BaseDataAccessor<T> accessor, List<String> paths) {
-    super();
+    this(accessor, paths, 0, 0);
+  }
+
+  /**
+   * @see Cache#Cache(long, long)
+   */
+  public WriteThroughCache(BaseDataAccessor<T> accessor, List<String> paths, long maxEntries,
+      long maxWeightBytes) {
+    super(maxEntries, maxWeightBytes);
     _accessor = accessor;
 
     // init cache
@@ -59,6 +67,7 @@ public class WriteThroughCache<T> extends Cache<T> {
     } else {
       znode.setData(data);
       znode.setStat(stat);
+      reweigh(path, znode);
     }
   }
 
@@ -79,13 +88,19 @@ public class WriteThroughCache<T> extends Cache<T> {
 
       // recursively update children nodes if not exists
       ZNode znode = _cache.get(path);
+      if (znode == null) {
+        // evicted right away by a bounded cache, read all the children
+        znode = new ZNode(path, readData, stat);
+      }
       List<String> childNames = _accessor.getChildNames(path, 0);
       if (childNames != null && childNames.size() > 0) {
         for (String childName : childNames) {
           String childPath = path + "/" + childName;
           if (!znode.hasChild(childName)) {
-            znode.addChild(childName);
+            // read the child before listing it, so the parent is reweighed as a znode with
+            // children and never evicted
             updateRecursive(childPath);
+            znode.addChild(childName);
           }
         }
       }
@@ -506,6 +506,38 @@ public class ZKHelixDataAccessor implements HelixDataAccessor {
     return _baseDataAccessor.createChildren(paths, records, options);
   }
 
+  /**
+   * Create properties in zk multi() transactions. The properties of a transaction are either all
+   * created or none of them are, so a failed transaction can be retried with createChildren.
+   * @param keys keys of the properties of each transaction
+   * @param children properties of each transaction
+   * @return whether each transaction succeeded, all false if the base data accessor does not
+   *         write to zk directly
+   */
+  public <T extends HelixProperty> boolean[] createChildrenInTransactions(
+      List<List<PropertyKey>> keys, List<List<T>> children) {
+    if (!(_baseDataAccessor instanceof ZkBaseDataAccessor)) {
+      return new boolean[keys.size()];
+    }
+    int options = -1;
+    List<List<String>> paths = new ArrayList<>(keys.size());
+    List<List<ZNRecord>> records = new ArrayList<>(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      List<String> txnPaths = new ArrayList<>(keys.get(i).size());
+      List<ZNRecord> txnRecords = new ArrayList<>(keys.get(i).size());
+      for (int j = 0; j < keys.get(i).size(); j++) {
+        PropertyKey key = keys.get(i).get(j);
+        txnPaths.add(key.getPath());
+        txnRecords.add(children.get(i).get(j).getRecord());
+        options = constructOptions(key.getType());
+      }
+      paths.add(txnPaths);
+      records.add(txnRecords);
+    }
+    return ((ZkBaseDataAccessor<ZNRecord>) _baseDataAccessor)
+        .createInTransactions(paths, records, options);
+  }
+
   @Override
   public <T extends HelixProperty> boolean[] setChildren(List<PropertyKey> keys, List<T> children) {
     int options = -1;
@@ -53,6 +53,7 @@ import org.apache.helix.participant.StateMachineEngine;
 import org.apache.helix.store.zk.AutoFallbackPropertyStore;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import org.apache.helix.util.HelixUtil;
+import org.apache.helix.util.StatusUpdateUtil;
 import org.apache.zookeeper.Watcher.Event.EventType;
 import org.apache.zookeeper.Watcher.Event.KeeperState;
 import org.slf4j.Logger;
@@ -593,8 +594,23 @@ public class ZKHelixManager implements HelixManager, IZkStateListener {
   }
 
   void createClient() throws Exception {
-    PathBasedZkSerializer zkSerializer =
-        ChainedPathZkSerializer.builder(new ZNRecordSerializer()).build();
+    ChainedPathZkSerializer.Builder serializerBuilder =
+        ChainedPathZkSerializer.builder(new ZNRecordSerializer());
+    // all serializers read both formats, so paths can be moved to the binary format one by one
+    String binaryPaths = System.getProperty(SystemPropertyKeys.ZNRECORD_BINARY_PATHS);
+    if (binaryPaths != null) {
+      ZNRecordBinarySerializer binarySerializer = new ZNRecordBinarySerializer();
+      for (String path : binaryPaths.split(",")) {
+        path = path.trim();
+        if (path.startsWith("/")) {
+          path = path.substring(1);
+        }
+        if (!path.isEmpty()) {
+          serializerBuilder.serialize("/" + _clusterName + "/" + path, binarySerializer);
+        }
+      }
+    }
+    PathBasedZkSerializer zkSerializer = serializerBuilder.build();
 
     HelixZkClient.ZkConnectionConfig connectionConfig = new HelixZkClient.ZkConnectionConfig(_zkAddress);
     connectionConfig.setSessionTimeout(_sessionTimeout);
@@ -742,6 +758,9 @@ public class ZKHelixManager implements HelixManager, IZkStateListener {
         callbackMonitor.unregister();
       }
 
+      // write out the buffered status updates while the zkclient is still connected
+      StatusUpdateUtil.flushStatusUpdateSink();
+
       _helixPropertyStore = null;
 
       synchronized (this) {
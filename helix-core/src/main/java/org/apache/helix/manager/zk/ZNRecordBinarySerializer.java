@@ -0,0 +1,435 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.I0Itec.zkclient.exception.ZkMarshallingError;
+import org.I0Itec.zkclient.serialize.ZkSerializer;
+import org.apache.helix.HelixException;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.util.CompactStringMap;
+import org.apache.helix.util.GZipCompressionUtil;
+import org.apache.helix.util.StringInterner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes ZNRecords in a compact binary format and reads both that format and the JSON written by
+ * {@link ZNRecordSerializer}, so paths can be switched to binary one at a time (e.g. through a
+ * {@link ChainedPathZkSerializer}) while older data is still JSON. {@link ZNRecordSerializer} and
+ * {@link ZNRecordStreamingSerializer} read the binary format as well, so readers can be upgraded
+ * before any writer starts producing it.
+ * <p>
+ * Layout (version 1), all integers are unsigned varints:
+ * <pre>
+ * magic "\0ZNR", format version byte
+ * string table: count, then (UTF-8 length, UTF-8 bytes) per distinct string
+ * id
+ * simple fields: count, then (key, value)
+ * list fields: count, then (key, size + 1, values), size 0 encodes a null list
+ * map fields: count, then (key, size + 1, (key, value)), size 0 encodes a null map
+ * raw payload: length + 1, then the bytes, length 0 encodes a null payload
+ * </pre>
+ * Every string is written as its index in the string table plus one, 0 encodes null. Partition
+ * names, instance names and states repeat many times in a record, so each one is stored, decoded
+ * and interned only once; small map fields are read into {@link CompactStringMap}s. Records that
+ * are compressed (see "enableCompression") or larger than {@link ZNRecord#SIZE_LIMIT} are gzipped
+ * like the JSON ones.
+ */
+public class ZNRecordBinarySerializer implements ZkSerializer {
+  private static Logger LOG = LoggerFactory.getLogger(ZNRecordBinarySerializer.class);
+
+  private static final byte[] MAGIC = { 0, 'Z', 'N', 'R' };
+  private static final byte FORMAT_VERSION = 1;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final ZNRecordSerializer JSON_SERIALIZER = new ZNRecordSerializer();
+
+  private static int getListFieldBound(ZNRecord record) {
+    int max = Integer.MAX_VALUE;
+    if (record.getSimpleFields().containsKey(ZNRecord.LIST_FIELD_BOUND)) {
+      String maxStr = record.getSimpleField(ZNRecord.LIST_FIELD_BOUND);
+      try {
+        max = Integer.parseInt(maxStr);
+      } catch (Exception e) {
+        LOG.error("IllegalNumberFormat for list field bound: " + maxStr);
+      }
+    }
+    return max;
+  }
+
+  @Override
+  public byte[] serialize(Object data) throws ZkMarshallingError {
+    if (!(data instanceof ZNRecord)) {
+      // null is NOT an instance of any class
+      LOG.error("Input object must be of type ZNRecord but it is " + data
+          + ". Will not write to zk");
+      throw new HelixException("Input object is not of type ZNRecord (was " + data + ")");
+    }
+
+    // apply retention policy on list field
+    ZNRecord record = (ZNRecord) data;
+    int max = getListFieldBound(record);
+    if (max < Integer.MAX_VALUE) {
+      Map<String, List<String>> listMap = record.getListFields();
+      for (String key : listMap.keySet()) {
+        List<String> list = listMap.get(key);
+        if (list.size() > max) {
+          listMap.put(key, list.subList(0, max));
+        }
+      }
+    }
+
+    byte[] serializedBytes;
+    try {
+      serializedBytes = encode(record);
+      // apply compression if needed
+      if (record.getBooleanField("enableCompression", false)
+          || serializedBytes.length > ZNRecord.SIZE_LIMIT) {
+        serializedBytes = GZipCompressionUtil.compress(serializedBytes);
+      }
+    } catch (Exception e) {
+      LOG.error("Exception during data serialization. Will not write to zk. ZNRecord.id: "
+          + record.getId(), e);
+      throw new HelixException(e);
+    }
+    if (serializedBytes.length > ZNRecord.SIZE_LIMIT) {
+      LOG.error("Data size larger than 1M, ZNRecord.id: " + record.getId()
+          + ". Will not write to zk.");
+      throw new HelixException("Data size larger than 1M, ZNRecord.id: " + record.getId());
+    }
+    return serializedBytes;
+  }
+
+  @Override
+  public Object deserialize(byte[] bytes) throws ZkMarshallingError {
+    if (bytes == null || bytes.length == 0) {
+      // reading a parent/null node
+      return null;
+    }
+
+    byte[] recordBytes = bytes;
+    try {
+      // decompress the data if its already compressed
+      if (GZipCompressionUtil.isCompressed(bytes)) {
+        recordBytes = GZipCompressionUtil.uncompress(new ByteArrayInputStream(bytes));
+      }
+      if (!isBinary(recordBytes)) {
+        return JSON_SERIALIZER.deserialize(recordBytes);
+      }
+      return decode(recordBytes);
+    } catch (Exception e) {
+      LOG.error("Exception during deserialization of " + bytes.length + " bytes", e);
+      return null;
+    }
+  }
+
+  /**
+   * @param bytes uncompressed znode data
+   * @return true if the data starts with the binary format header
+   */
+  static boolean isBinary(byte[] bytes) {
+    if (bytes == null || bytes.length <= MAGIC.length) {
+      return false;
+    }
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (bytes[i] != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Encode a record in the binary format, without the retention policy or compression.
+   */
+  static byte[] encode(ZNRecord record) {
+    // collect the distinct strings in the order they are written
+    Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+    List<String> strings = new ArrayList<String>();
+    addString(record.getId(), stringIndex, strings);
+    for (Map.Entry<String, String> entry : record.getSimpleFields().entrySet()) {
+      addString(entry.getKey(), stringIndex, strings);
+      addString(entry.getValue(), stringIndex, strings);
+    }
+    for (Map.Entry<String, List<String>> entry : record.getListFields().entrySet()) {
+      addString(entry.getKey(), stringIndex, strings);
+      if (entry.getValue() != null) {
+        for (String value : entry.getValue()) {
+          addString(value, stringIndex, strings);
+        }
+      }
+    }
+    for (Map.Entry<String, Map<String, String>> entry : record.getMapFields().entrySet()) {
+      addString(entry.getKey(), stringIndex, strings);
+      if (entry.getValue() != null) {
+        for (Map.Entry<String, String> mapEntry : entry.getValue().entrySet()) {
+          addString(mapEntry.getKey(), stringIndex, strings);
+          addString(mapEntry.getValue(), stringIndex, strings);
+        }
+      }
+    }
+
+    int stringTableLength = 0;
+    for (String string : strings) {
+      stringTableLength += string.length() + 1;
+    }
+    // the string table usually dominates, every other entry is a 1-3 byte reference
+    Output out = new Output(stringTableLength + 4 * strings.size() + 64);
+    out.writeBytes(MAGIC, 0, MAGIC.length);
+    out.writeByte(FORMAT_VERSION);
+    out.writeVarInt(strings.size());
+    for (String string : strings) {
+      out.writeUtf8(string);
+    }
+
+    out.writeString(record.getId(), stringIndex);
+    out.writeVarInt(record.getSimpleFields().size());
+    for (Map.Entry<String, String> entry : record.getSimpleFields().entrySet()) {
+      out.writeString(entry.getKey(), stringIndex);
+      out.writeString(entry.getValue(), stringIndex);
+    }
+    out.writeVarInt(record.getListFields().size());
+    for (Map.Entry<String, List<String>> entry : record.getListFields().entrySet()) {
+      out.writeString(entry.getKey(), stringIndex);
+      List<String> list = entry.getValue();
+      out.writeVarInt(list == null ? 0 : list.size() + 1);
+      if (list != null) {
+        for (String value : list) {
+          out.writeString(value, stringIndex);
+        }
+      }
+    }
+    out.writeVarInt(record.getMapFields().size());
+    for (Map.Entry<String, Map<String, String>> entry : record.getMapFields().entrySet()) {
+      out.writeString(entry.getKey(), stringIndex);
+      Map<String, String> map = entry.getValue();
+      out.writeVarInt(map == null ? 0 : map.size() + 1);
+      if (map != null) {
+        for (Map.Entry<String, String> mapEntry : map.entrySet()) {
+          out.writeString(mapEntry.getKey(), stringIndex);
+          out.writeString(mapEntry.getValue(), stringIndex);
+        }
+      }
+    }
+    byte[] rawPayload = record.getRawPayload();
+    out.writeVarInt(rawPayload == null ? 0 : rawPayload.length + 1);
+    if (rawPayload != null) {
+      out.writeBytes(rawPayload, 0, rawPayload.length);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decode uncompressed data in the binary format.
+   */
+  static ZNRecord decode(byte[] bytes) {
+    Input in = new Input(bytes, MAGIC.length);
+    byte version = in.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new HelixException("Unsupported ZNRecord binary format version: " + version);
+    }
+    String[] strings = new String[in.readVarInt()];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = StringInterner.intern(in.readUtf8(in.readVarInt()));
+    }
+
+    String id = in.readString(strings);
+    if (id == null) {
+      throw new IllegalStateException("ZNRecord id field is required!");
+    }
+    ZNRecord record = new ZNRecord(id);
+    int numSimpleFields = in.readVarInt();
+    for (int i = 0; i < numSimpleFields; i++) {
+      String key = in.readString(strings);
+      record.setSimpleField(key, in.readString(strings));
+    }
+    int numListFields = in.readVarInt();
+    for (int i = 0; i < numListFields; i++) {
+      String key = in.readString(strings);
+      int size = in.readVarInt() - 1;
+      List<String> list = null;
+      if (size >= 0) {
+        list = new ArrayList<String>(size);
+        for (int j = 0; j < size; j++) {
+          list.add(in.readString(strings));
+        }
+      }
+      record.setListField(key, list);
+    }
+    int numMapFields = in.readVarInt();
+    for (int i = 0; i < numMapFields; i++) {
+      String key = in.readString(strings);
+      int size = in.readVarInt() - 1;
+      Map<String, String> map = null;
+      if (size >= 0) {
+        CompactStringMap.Builder builder = new CompactStringMap.Builder(size, false);
+        for (int j = 0; j < size; j++) {
+          String mapKey = in.readString(strings);
+          builder.put(mapKey, in.readString(strings));
+        }
+        map = builder.build();
+      }
+      record.setMapField(key, map);
+    }
+    int payloadLength = in.readVarInt() - 1;
+    if (payloadLength >= 0) {
+      record.setRawPayload(in.readBytes(payloadLength));
+    }
+    return record;
+  }
+
+  private static void addString(String string, Map<String, Integer> stringIndex,
+      List<String> strings) {
+    if (string != null && !stringIndex.containsKey(string)) {
+      stringIndex.put(string, strings.size());
+      strings.add(string);
+    }
+  }
+
+  /**
+   * Growable byte buffer; unlike ByteArrayOutputStream it is not synchronized.
+   */
+  private static class Output {
+    private byte[] _buf;
+    private int _size;
+
+    Output(int initialCapacity) {
+      _buf = new byte[initialCapacity];
+    }
+
+    void writeByte(int b) {
+      ensureCapacity(1);
+      _buf[_size++] = (byte) b;
+    }
+
+    void writeBytes(byte[] bytes, int offset, int length) {
+      ensureCapacity(length);
+      System.arraycopy(bytes, offset, _buf, _size, length);
+      _size += length;
+    }
+
+    void writeVarInt(int value) {
+      ensureCapacity(5);
+      while ((value & ~0x7F) != 0) {
+        _buf[_size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      _buf[_size++] = (byte) value;
+    }
+
+    void writeUtf8(String string) {
+      int length = string.length();
+      for (int i = 0; i < length; i++) {
+        if (string.charAt(i) >= 0x80) {
+          byte[] utf8 = string.getBytes(UTF_8);
+          writeVarInt(utf8.length);
+          writeBytes(utf8, 0, utf8.length);
+          return;
+        }
+      }
+      // ASCII only, which is the common case for ids, names and states
+      writeVarInt(length);
+      ensureCapacity(length);
+      for (int i = 0; i < length; i++) {
+        _buf[_size++] = (byte) string.charAt(i);
+      }
+    }
+
+    void writeString(String string, Map<String, Integer> stringIndex) {
+      writeVarInt(string == null ? 0 : stringIndex.get(string) + 1);
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(_buf, _size);
+    }
+
+    private void ensureCapacity(int length) {
+      if (_size + length > _buf.length) {
+        _buf = Arrays.copyOf(_buf, Math.max(_buf.length << 1, _size + length));
+      }
+    }
+  }
+
+  private static class Input {
+    private final byte[] _buf;
+    private int _pos;
+
+    Input(byte[] buf, int pos) {
+      _buf = buf;
+      _pos = pos;
+    }
+
+    byte readByte() {
+      checkAvailable(1);
+      return _buf[_pos++];
+    }
+
+    int readVarInt() {
+      int value = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+        byte b = readByte();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new HelixException("Malformed varint at offset " + _pos);
+    }
+
+    String readUtf8(int length) {
+      checkAvailable(length);
+      String string = new String(_buf, _pos, length, UTF_8);
+      _pos += length;
+      return string;
+    }
+
+    String readString(String[] strings) {
+      int ref = readVarInt();
+      if (ref == 0) {
+        return null;
+      }
+      if (ref > strings.length) {
+        throw new HelixException("String reference " + ref + " is out of the string table");
+      }
+      return strings[ref - 1];
+    }
+
+    byte[] readBytes(int length) {
+      checkAvailable(length);
+      byte[] bytes = Arrays.copyOfRange(_buf, _pos, _pos + length);
+      _pos += length;
+      return bytes;
+    }
+
+    private void checkAvailable(int length) {
+      if (length < 0 || _pos + length > _buf.length) {
+        throw new HelixException("Truncated ZNRecord binary data at offset " + _pos);
+      }
+    }
+  }
+}
@@ -20,7 +20,6 @@ package org.apache.helix.manager.zk;
  */
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -32,11 +31,31 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.map.ObjectWriter;
 import org.codehaus.jackson.map.SerializationConfig;
 
 public class ZNRecordSerializer implements ZkSerializer {
   private static Logger logger = LoggerFactory.getLogger(ZNRecordSerializer.class);
 
+  // ObjectReader and ObjectWriter are immutable and thread-safe, so they are built once and shared.
+  // Sharing the mapper also lets Jackson cache the ZNRecord (de)serializers and recycle its
+  // buffers.
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ObjectWriter WRITER;
+  private static final ObjectReader READER;
+
+  static {
+    MAPPER.configure(SerializationConfig.Feature.INDENT_OUTPUT, true);
+    MAPPER.configure(SerializationConfig.Feature.AUTO_DETECT_FIELDS, true);
+    MAPPER.configure(SerializationConfig.Feature.CAN_OVERRIDE_ACCESS_MODIFIERS, true);
+    MAPPER.configure(DeserializationConfig.Feature.AUTO_DETECT_FIELDS, true);
+    MAPPER.configure(DeserializationConfig.Feature.AUTO_DETECT_SETTERS, true);
+    MAPPER.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+    WRITER = MAPPER.writer();
+    READER = MAPPER.reader(ZNRecord.class);
+  }
+
   private static int getListFieldBound(ZNRecord record) {
     int max = Integer.MAX_VALUE;
     if (record.getSimpleFields().containsKey(ZNRecord.LIST_FIELD_BOUND)) {
@@ -74,23 +93,16 @@ public class ZNRecordSerializer implements ZkSerializer {
     }
 
     // do serialization
-    ObjectMapper mapper = new ObjectMapper();
-    SerializationConfig serializationConfig = mapper.getSerializationConfig();
-    serializationConfig.set(SerializationConfig.Feature.INDENT_OUTPUT, true);
-    serializationConfig.set(SerializationConfig.Feature.AUTO_DETECT_FIELDS, true);
-    serializationConfig.set(SerializationConfig.Feature.CAN_OVERRIDE_ACCESS_MODIFIERS, true);
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
     byte[] serializedBytes;
     try {
-      mapper.writeValue(baos, data);
-      serializedBytes = baos.toByteArray();
+      serializedBytes = WRITER.writeValueAsBytes(data);
       // apply compression if needed
       if (record.getBooleanField("enableCompression", false) || serializedBytes.length > ZNRecord.SIZE_LIMIT) {
         serializedBytes = GZipCompressionUtil.compress(serializedBytes);
       }
     } catch (Exception e) {
-      logger.error("Exception during data serialization. Will not write to zk. Data (first 1k): "
-          + new String(baos.toByteArray()).substring(0, 1024), e);
+      logger.error("Exception during data serialization. Will not write to zk. ZNRecord.id: "
+          + record.getId(), e);
       throw new HelixException(e);
     }
     if (serializedBytes.length > ZNRecord.SIZE_LIMIT) {
@@ -109,20 +121,17 @@ public class ZNRecordSerializer implements ZkSerializer {
       return null;
     }
 
-    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-
-    ObjectMapper mapper = new ObjectMapper();
-    DeserializationConfig deserializationConfig = mapper.getDeserializationConfig();
-    deserializationConfig.set(DeserializationConfig.Feature.AUTO_DETECT_FIELDS, true);
-    deserializationConfig.set(DeserializationConfig.Feature.AUTO_DETECT_SETTERS, true);
-    deserializationConfig.set(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, true);
     try {
       //decompress the data if its already compressed
+      byte[] jsonBytes = bytes;
       if (GZipCompressionUtil.isCompressed(bytes)) {
-        byte[] uncompressedBytes = GZipCompressionUtil.uncompress(bais);
-        bais = new ByteArrayInputStream(uncompressedBytes);
+        jsonBytes = GZipCompressionUtil.uncompress(new ByteArrayInputStream(bytes));
+      }
+      // accept records written by ZNRecordBinarySerializer
+      if (ZNRecordBinarySerializer.isBinary(jsonBytes)) {
+        return ZNRecordBinarySerializer.decode(jsonBytes);
       }
-      ZNRecord zn = mapper.readValue(bais, ZNRecord.class);
+      ZNRecord zn = READER.readValue(jsonBytes);
 
       return zn;
     } catch (Exception e) {
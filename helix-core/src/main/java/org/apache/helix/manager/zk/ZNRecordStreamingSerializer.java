@@ -20,8 +20,6 @@ package org.apache.helix.manager.zk;
  */
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -34,19 +32,25 @@ import org.I0Itec.zkclient.serialize.ZkSerializer;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.helix.HelixException;
 import org.apache.helix.ZNRecord;
+import org.apache.helix.util.CompactStringMap;
 import org.apache.helix.util.GZipCompressionUtil;
+import org.apache.helix.util.StringInterner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.util.ByteArrayBuilder;
 
 import com.google.common.collect.Maps;
 
 public class ZNRecordStreamingSerializer implements ZkSerializer {
   private static Logger LOG = LoggerFactory.getLogger(ZNRecordStreamingSerializer.class);
 
+  // JsonFactory is thread-safe. Sharing it lets generators and parsers recycle their buffers.
+  private static final JsonFactory FACTORY = new JsonFactory();
+
   private static int getListFieldBound(ZNRecord record) {
     int max = Integer.MAX_VALUE;
     if (record.getSimpleFields().containsKey(ZNRecord.LIST_FIELD_BOUND)) {
@@ -81,11 +85,10 @@ public class ZNRecordStreamingSerializer implements ZkSerializer {
         }
       }
     }
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ByteArrayBuilder baos = new ByteArrayBuilder(FACTORY._getBufferRecycler());
     byte[] serializedBytes = null;
     try {
-      JsonFactory f = new JsonFactory();
-      JsonGenerator g = f.createJsonGenerator(baos);
+      JsonGenerator g = FACTORY.createJsonGenerator(baos);
 
       g.writeStartObject();
 
@@ -161,9 +164,12 @@ public class ZNRecordStreamingSerializer implements ZkSerializer {
         serializedBytes = GZipCompressionUtil.compress(serializedBytes);
       }
     } catch (Exception e) {
-      LOG.error("Exception during data serialization. Will not write to zk. Data (first 1k): "
-          + new String(baos.toByteArray()).substring(0, 1024), e);
+      LOG.error("Exception during data serialization. Will not write to zk. ZNRecord.id: "
+          + record.getId(), e);
       throw new HelixException(e);
+    } finally {
+      // return the buffers to the recycler
+      baos.release();
     }
     // check size
     if (serializedBytes.length > ZNRecord.SIZE_LIMIT) {
@@ -183,8 +189,6 @@ public class ZNRecordStreamingSerializer implements ZkSerializer {
       return null;
     }
 
-    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-
     ZNRecord record = null;
     String id = null;
     Map<String, String> simpleFields = Maps.newHashMap();
@@ -194,12 +198,15 @@ public class ZNRecordStreamingSerializer implements ZkSerializer {
 
     try {
       // decompress the data if its already compressed
+      byte[] jsonBytes = bytes;
       if (GZipCompressionUtil.isCompressed(bytes)) {
-        byte[] uncompressedBytes = GZipCompressionUtil.uncompress(bais);
-        bais = new ByteArrayInputStream(uncompressedBytes);
+        jsonBytes = GZipCompressionUtil.uncompress(new ByteArrayInputStream(bytes));
+      }
+      // accept records written by ZNRecordBinarySerializer
+      if (ZNRecordBinarySerializer.isBinary(jsonBytes)) {
+        return ZNRecordBinarySerializer.decode(jsonBytes);
       }
-      JsonFactory f = new JsonFactory();
-      JsonParser jp = f.createJsonParser(bais);
+      JsonParser jp = FACTORY.createJsonParser(jsonBytes);
 
       jp.nextToken(); // will return JsonToken.START_OBJECT (verify?)
       while (jp.nextToken() != JsonToken.END_OBJECT) {
@@ -217,25 +224,28 @@ public class ZNRecordStreamingSerializer implements ZkSerializer {
         } else if ("mapFields".equals(fieldname)) {
           // user.setVerified(jp.getCurrentToken() == JsonToken.VALUE_TRUE);
           while (jp.nextToken() != JsonToken.END_OBJECT) {
-            String key = jp.getCurrentName();
-            mapFields.put(key, new TreeMap<String, String>());
+            String key = StringInterner.intern(jp.getCurrentName());
+            // sorted, as the TreeMaps this serializer used to read the map fields into
+            CompactStringMap.Builder map = new CompactStringMap.Builder(0, true);
             jp.nextToken(); // move to value
 
             while (jp.nextToken() != JsonToken.END_OBJECT) {
-              String mapKey = jp.getCurrentName();
+              String mapKey = StringInterner.intern(jp.getCurrentName());
               jp.nextToken(); // move to value
-              mapFields.get(key).put(mapKey, jp.getText());
+              map.put(mapKey, StringInterner.intern(jp.getText()));
             }
+            mapFields.put(key, map.build());
           }
 
         } else if ("listFields".equals(fieldname)) {
           // user.setUserImage(jp.getBinaryValue());
           while (jp.nextToken() != JsonToken.END_OBJECT) {
-            String key = jp.getCurrentName();
-            listFields.put(key, new ArrayList<String>());
+            String key = StringInterner.intern(jp.getCurrentName());
+            List<String> list = new ArrayList<String>();
+            listFields.put(key, list);
             jp.nextToken(); // move to value
             while (jp.nextToken() != JsonToken.END_ARRAY) {
-              listFields.get(key).add(jp.getText());
+              list.add(StringInterner.intern(jp.getText()));
             }
 
           }
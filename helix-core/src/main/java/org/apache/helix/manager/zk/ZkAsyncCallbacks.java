@@ -19,16 +19,19 @@ package org.apache.helix.manager.zk;
  * under the License.
  */
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.helix.monitoring.mbeans.ZkClientMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.zookeeper.AsyncCallback.DataCallback;
+import org.apache.zookeeper.AsyncCallback.MultiCallback;
 import org.apache.zookeeper.AsyncCallback.StatCallback;
 import org.apache.zookeeper.AsyncCallback.StringCallback;
 import org.apache.zookeeper.AsyncCallback.VoidCallback;
 import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.data.Stat;
 
 public class ZkAsyncCallbacks {
@@ -120,6 +123,25 @@ public class ZkAsyncCallbacks {
     }
   }
 
+  public static class MultiCallbackHandler extends DefaultCallback implements MultiCallback {
+    List<OpResult> _results;
+
+    @Override
+    public void processResult(int rc, String path, Object ctx, List<OpResult> opResults) {
+      _results = opResults;
+      callback(rc, path, ctx);
+    }
+
+    @Override
+    public void handle() {
+      // the results are read by the caller once waitForSuccess() returns
+    }
+
+    public List<OpResult> getResults() {
+      return _results;
+    }
+  }
+
   /**
    * Default callback for zookeeper async api
    */
@@ -134,7 +156,10 @@ public class ZkAsyncCallbacks {
 
       if (ctx != null && ctx instanceof ZkAsyncCallContext) {
         ZkAsyncCallContext zkCtx = (ZkAsyncCallContext) ctx;
-        if (zkCtx._monitor != null) {
+        if (path == null) {
+          path = zkCtx._path;
+        }
+        if (zkCtx._monitor != null && path != null) {
           if (zkCtx._isRead) {
             zkCtx._monitor.record(path, zkCtx._bytes, zkCtx._startTimeMilliSec,
                 ZkClientMonitor.AccessType.READ);
@@ -179,13 +204,24 @@ public class ZkAsyncCallbacks {
     private int _bytes;
     private ZkClientMonitor _monitor;
     private boolean _isRead;
+    private String _path;
 
     public ZkAsyncCallContext(final ZkClientMonitor monitor, long startTimeMilliSec, int bytes,
         boolean isRead) {
+      this(monitor, startTimeMilliSec, bytes, isRead, null);
+    }
+
+    /**
+     * @param path the path to record the access under if the callback is given none, as the
+     *          multi() callbacks are not
+     */
+    public ZkAsyncCallContext(final ZkClientMonitor monitor, long startTimeMilliSec, int bytes,
+        boolean isRead, String path) {
       _monitor = monitor;
       _startTimeMilliSec = startTimeMilliSec;
       _bytes = bytes;
       _isRead = isRead;
+      _path = path;
     }
   }
 
@@ -41,12 +41,16 @@ import org.apache.helix.manager.zk.ZkAsyncCallbacks.CreateCallbackHandler;
 import org.apache.helix.manager.zk.ZkAsyncCallbacks.DeleteCallbackHandler;
 import org.apache.helix.manager.zk.ZkAsyncCallbacks.ExistsCallbackHandler;
 import org.apache.helix.manager.zk.ZkAsyncCallbacks.GetDataCallbackHandler;
+import org.apache.helix.manager.zk.ZkAsyncCallbacks.MultiCallbackHandler;
 import org.apache.helix.manager.zk.ZkAsyncCallbacks.SetDataCallbackHandler;
 import org.apache.helix.manager.zk.client.HelixZkClient;
 import org.apache.helix.store.zk.ZNode;
 import org.apache.helix.util.HelixUtil;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
+import org.apache.zookeeper.ZooDefs;
 import org.apache.zookeeper.data.Stat;
 import org.apache.zookeeper.server.DataTree;
 import org.slf4j.Logger;
@@ -83,6 +87,9 @@ public class ZkBaseDataAccessor<T> implements BaseDataAccessor<T> {
 
   private static Logger LOG = LoggerFactory.getLogger(ZkBaseDataAccessor.class);
 
+  // zk rejects requests larger than jute.maxbuffer, 1MB by default
+  private static final int MAX_MULTI_BYTES = 512 * 1024;
+
   private final HelixZkClient _zkClient;
 
   public ZkBaseDataAccessor(HelixZkClient zkClient) {
@@ -997,6 +1004,112 @@ public class ZkBaseDataAccessor<T> implements BaseDataAccessor<T> {
     return exists;
   }
 
+  /**
+   * set the records of existing znodes in zk multi() transactions, each transaction writing at
+   * most MAX_MULTI_BYTES so it stays within the zk request size limit. The znodes of a
+   * transaction are either all written or none of them are.
+   * @param paths paths of existing znodes
+   * @param records records to write
+   * @param expectVersions expected znode versions, -1 matches any version
+   * @return stats of the written znodes, null for those whose transaction failed
+   */
+  Stat[] multiSet(List<String> paths, List<T> records, List<Integer> expectVersions) {
+    Stat[] stats = new Stat[paths.size()];
+    int start = 0;
+    while (start < paths.size()) {
+      List<Op> ops = new ArrayList<>();
+      int bytes = 0;
+      int end = start;
+      while (end < paths.size()) {
+        byte[] data = _zkClient.serialize(records.get(end), paths.get(end));
+        int size = data == null ? 0 : data.length;
+        if (!ops.isEmpty() && bytes + size > MAX_MULTI_BYTES) {
+          break;
+        }
+        ops.add(Op.setData(paths.get(end), data, expectVersions.get(end)));
+        bytes += size;
+        end++;
+      }
+
+      try {
+        List<OpResult> results = _zkClient.multi(ops);
+        for (int i = 0; i < results.size(); i++) {
+          stats[start + i] = ((OpResult.SetDataResult) results.get(i)).getStat();
+        }
+      } catch (Exception e) {
+        LOG.debug("Fail to set " + ops.size() + " paths in one transaction, from " + paths
+            .get(start), e);
+      }
+      start = end;
+    }
+    return stats;
+  }
+
+  /**
+   * async create in zk multi() transactions, all transactions are sent before waiting for any of
+   * them. The znodes of a transaction are either all created or none of them are: a transaction
+   * fails if any of its znodes exists or has no parent, or if its records are larger than
+   * MAX_MULTI_BYTES in total, which is not sent at all.
+   * @param paths paths of the znodes of each transaction
+   * @param records records of the znodes of each transaction
+   * @param options
+   * @return whether each transaction succeeded
+   */
+  public boolean[] createInTransactions(List<List<String>> paths, List<List<T>> records,
+      int options) {
+    if (records.size() != paths.size()) {
+      throw new IllegalArgumentException("paths and records should be of same size");
+    }
+    boolean[] success = new boolean[paths.size()];
+
+    CreateMode mode = AccessOption.getMode(options);
+    if (mode == null) {
+      LOG.error("Invalid async create mode. options: " + options);
+      return success;
+    }
+
+    long startT = System.nanoTime();
+    try {
+      MultiCallbackHandler[] cbList = new MultiCallbackHandler[paths.size()];
+      for (int i = 0; i < paths.size(); i++) {
+        List<String> txnPaths = paths.get(i);
+        List<T> txnRecords = records.get(i);
+        if (txnRecords.size() != txnPaths.size()) {
+          throw new IllegalArgumentException("paths and records should be of same size");
+        }
+        List<Op> ops = new ArrayList<>(txnPaths.size());
+        int bytes = 0;
+        for (int j = 0; j < txnPaths.size(); j++) {
+          byte[] data = _zkClient.serialize(txnRecords.get(j), txnPaths.get(j));
+          bytes += data == null ? 0 : data.length;
+          ops.add(Op.create(txnPaths.get(j), data, ZooDefs.Ids.OPEN_ACL_UNSAFE, mode));
+        }
+        if (bytes > MAX_MULTI_BYTES) {
+          LOG.warn("Transaction of " + ops.size() + " paths from " + txnPaths.get(0) + " is "
+              + bytes + " bytes, larger than " + MAX_MULTI_BYTES + ", not sent");
+          continue;
+        }
+        cbList[i] = new MultiCallbackHandler();
+        _zkClient.asyncMulti(ops, cbList[i]);
+      }
+
+      for (int i = 0; i < cbList.length; i++) {
+        MultiCallbackHandler cb = cbList[i];
+        if (cb != null) {
+          cb.waitForSuccess();
+          success[i] = (Code.get(cb.getRc()) == Code.OK);
+        }
+      }
+      return success;
+    } finally {
+      long endT = System.nanoTime();
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("create_multi_async, transactions: " + paths.size() + ", time: " + (endT
+            - startT) + " ns");
+      }
+    }
+  }
+
   /**
    * async getStat
    */
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import javax.management.JMException;
 
 import org.I0Itec.zkclient.DataUpdater;
 import org.I0Itec.zkclient.IZkChildListener;
@@ -36,10 +37,13 @@ import org.I0Itec.zkclient.exception.ZkNoNodeException;
 import org.I0Itec.zkclient.serialize.ZkSerializer;
 import org.apache.helix.AccessOption;
 import org.apache.helix.HelixException;
+import org.apache.helix.SystemPropertyKeys;
 import org.apache.helix.manager.zk.ZkAsyncCallbacks.CreateCallbackHandler;
 import org.apache.helix.manager.zk.ZkBaseDataAccessor.RetCode;
 import org.apache.helix.manager.zk.client.HelixZkClient;
 import org.apache.helix.manager.zk.client.SharedZkClientFactory;
+import org.apache.helix.monitoring.mbeans.HelixGroupCommitMonitor;
+import org.apache.helix.monitoring.mbeans.ZkCacheMonitor;
 import org.apache.helix.store.HelixPropertyListener;
 import org.apache.helix.store.HelixPropertyStore;
 import org.apache.helix.store.zk.ZNode;
@@ -63,7 +67,12 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
   final List<String> _wtCachePaths;
   final List<String> _zkCachePaths;
 
-  final HelixGroupCommit<T> _groupCommit = new HelixGroupCommit<T>();
+  final HelixGroupCommit<T> _groupCommit;
+  private HelixGroupCommitMonitor _groupCommitMonitor;
+
+  private String _monitorType;
+  private String _monitorKey;
+  private final List<ZkCacheMonitor> _cacheMonitors = new ArrayList<>();
 
   // fire listeners
   private final ReentrantLock _eventLock = new ReentrantLock();
@@ -78,6 +87,7 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
   public ZkCacheBaseDataAccessor(ZkBaseDataAccessor<T> baseAccessor, String chrootPath,
       List<String> wtCachePaths, List<String> zkCachePaths) {
     _baseAccessor = baseAccessor;
+    _groupCommit = new HelixGroupCommit<>();
 
     if (chrootPath == null || chrootPath.equals("/")) {
       _chrootPath = null;
@@ -121,6 +131,17 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
     _zkclient.waitUntilConnected(HelixZkClient.DEFAULT_CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS);
     _baseAccessor = new ZkBaseDataAccessor<>(_zkclient);
 
+    if (monitorType != null && monitorkey != null) {
+      _monitorType = monitorType;
+      _monitorKey = monitorkey;
+      try {
+        _groupCommitMonitor = new HelixGroupCommitMonitor(monitorType, monitorkey).register();
+      } catch (JMException e) {
+        LOG.error("Error in creating HelixGroupCommitMonitor", e);
+      }
+    }
+    _groupCommit = new HelixGroupCommit<>(_groupCommitMonitor);
+
     if (chrootPath == null || chrootPath.equals("/")) {
       _chrootPath = null;
     } else {
@@ -208,17 +229,25 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
     return cache;
   }
 
-  private void updateCache(Cache<T> cache, List<String> createPaths, boolean success,
+  /**
+   * Update the cache with a written znode. If parent znodes were created, the cache must be updated
+   * recursively, which is left to the caller once the path locks are released.
+   * @return the created path to update recursively, or null
+   */
+  private String updateCache(Cache<T> cache, List<String> createPaths, boolean success,
       String updatePath, T data, Stat stat) {
     if (createPaths == null || createPaths.isEmpty()) {
       if (success) {
         cache.update(updatePath, data, stat);
       }
-    } else {
-      String firstPath = firstCachePath(createPaths);
-      if (firstPath != null) {
-        cache.updateRecursive(firstPath);
-      }
+      return null;
+    }
+    return firstCachePath(createPaths);
+  }
+
+  private void updateRecursive(Cache<T> cache, String path) {
+    if (path != null) {
+      cache.updateRecursive(path);
     }
   }
 
@@ -229,18 +258,21 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
 
     Cache<T> cache = getCache(serverPath);
     if (cache != null) {
+      String recursivePath;
+      boolean success;
       try {
-        cache.lockWrite();
+        cache.lockWrite(serverPath);
         ZkBaseDataAccessor<T>.AccessResult result =
             _baseAccessor.doCreate(serverPath, data, options);
-        boolean success = (result._retCode == RetCode.OK);
-
-        updateCache(cache, result._pathCreated, success, serverPath, data, ZNode.ZERO_STAT);
+        success = (result._retCode == RetCode.OK);
 
-        return success;
+        recursivePath =
+            updateCache(cache, result._pathCreated, success, serverPath, data, ZNode.ZERO_STAT);
       } finally {
-        cache.unlockWrite();
+        cache.unlockWrite(serverPath);
       }
+      updateRecursive(cache, recursivePath);
+      return success;
     }
 
     // no cache
@@ -259,14 +291,16 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
 
     Cache<T> cache = getCache(serverPath);
     boolean success = false;
+    String recursivePath = null;
     try {
       if (cache != null) {
-        cache.lockWrite();
+        cache.lockWrite(serverPath);
         ZkBaseDataAccessor<T>.AccessResult result =
             _baseAccessor.doSet(serverPath, data, expectVersion, options);
         success = result._retCode == RetCode.OK;
 
-        updateCache(cache, result._pathCreated, success, serverPath, data, result._stat);
+        recursivePath =
+            updateCache(cache, result._pathCreated, success, serverPath, data, result._stat);
       } else {
         // no cache
         success = _baseAccessor.set(serverPath, data, expectVersion, options);
@@ -274,9 +308,12 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
     } catch (Exception e) {
     } finally {
       if (cache != null) {
-        cache.unlockWrite();
+        cache.unlockWrite(serverPath);
       }
     }
+    if (cache != null) {
+      updateRecursive(cache, recursivePath);
+    }
     return success;
   }
 
@@ -288,18 +325,20 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
     Cache<T> cache = getCache(serverPath);
 
     if (cache != null) {
+      String recursivePath;
+      boolean success;
       try {
-        cache.lockWrite();
+        cache.lockWrite(serverPath);
         ZkBaseDataAccessor<T>.AccessResult result =
             _baseAccessor.doUpdate(serverPath, updater, options);
-        boolean success = (result._retCode == RetCode.OK);
-        updateCache(cache, result._pathCreated, success, serverPath, result._updatedValue,
-            result._stat);
-
-        return success;
+        success = (result._retCode == RetCode.OK);
+        recursivePath = updateCache(cache, result._pathCreated, success, serverPath,
+            result._updatedValue, result._stat);
       } finally {
-        cache.unlockWrite();
+        cache.unlockWrite(serverPath);
       }
+      updateRecursive(cache, recursivePath);
+      return success;
     }
 
     // no cache
@@ -370,7 +409,7 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
       } else {
         // if cache miss, fall back to zk and update cache
         try {
-          cache.lockWrite();
+          cache.lockWrite(serverPath);
           record = _baseAccessor
               .get(serverPath, stat, options | AccessOption.THROW_EXCEPTION_IFNOTEXIST);
           cache.update(serverPath, record, stat);
@@ -379,7 +418,7 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
             throw e;
           }
         } finally {
-          cache.unlockWrite();
+          cache.unlockWrite(serverPath);
         }
 
         return record;
@@ -406,13 +445,13 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
       } else {
         // if cache miss, fall back to zk and update cache
         try {
-          cache.lockWrite();
+          cache.lockWrite(serverPath);
           T data = _baseAccessor.get(serverPath, stat, options);
           cache.update(serverPath, data, stat);
         } catch (ZkNoNodeException e) {
           return null;
         } finally {
-          cache.unlockWrite();
+          cache.unlockWrite(serverPath);
         }
 
         return stat;
@@ -430,8 +469,10 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
 
     Cache<T> cache = getCache(serverPaths);
     if (cache != null) {
+      List<String> recursivePaths = new ArrayList<>();
+      boolean[] success = new boolean[size];
       try {
-        cache.lockWrite();
+        cache.lockWrite(serverPaths);
         boolean[] needCreate = new boolean[size];
         Arrays.fill(needCreate, true);
         List<List<String>> pathsCreatedList =
@@ -439,19 +480,20 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
         CreateCallbackHandler[] createCbList =
             _baseAccessor.create(serverPaths, records, needCreate, pathsCreatedList, options);
 
-        boolean[] success = new boolean[size];
         for (int i = 0; i < size; i++) {
           CreateCallbackHandler cb = createCbList[i];
           success[i] = (Code.get(cb.getRc()) == Code.OK);
 
-          updateCache(cache, pathsCreatedList.get(i), success[i], serverPaths.get(i),
-              records.get(i), ZNode.ZERO_STAT);
+          recursivePaths.add(updateCache(cache, pathsCreatedList.get(i), success[i],
+              serverPaths.get(i), records.get(i), ZNode.ZERO_STAT));
         }
-
-        return success;
       } finally {
-        cache.unlockWrite();
+        cache.unlockWrite(serverPaths);
+      }
+      for (String recursivePath : recursivePaths) {
+        updateRecursive(cache, recursivePath);
       }
+      return success;
     }
 
     // no cache
@@ -465,23 +507,26 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
 
     Cache<T> cache = getCache(serverPaths);
     if (cache != null) {
+      List<String> recursivePaths = new ArrayList<>();
+      boolean[] success;
       try {
-        cache.lockWrite();
+        cache.lockWrite(serverPaths);
         List<Stat> setStats = new ArrayList<Stat>();
         List<List<String>> pathsCreatedList =
             new ArrayList<List<String>>(Collections.<List<String>>nCopies(size, null));
-        boolean[] success =
-            _baseAccessor.set(serverPaths, records, pathsCreatedList, setStats, options);
+        success = _baseAccessor.set(serverPaths, records, pathsCreatedList, setStats, options);
 
         for (int i = 0; i < size; i++) {
-          updateCache(cache, pathsCreatedList.get(i), success[i], serverPaths.get(i),
-              records.get(i), setStats.get(i));
+          recursivePaths.add(updateCache(cache, pathsCreatedList.get(i), success[i],
+              serverPaths.get(i), records.get(i), setStats.get(i)));
         }
-
-        return success;
       } finally {
-        cache.unlockWrite();
+        cache.unlockWrite(serverPaths);
       }
+      for (String recursivePath : recursivePaths) {
+        updateRecursive(cache, recursivePath);
+      }
+      return success;
     }
 
     return _baseAccessor.setChildren(serverPaths, records, options);
@@ -494,11 +539,12 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
 
     Cache<T> cache = getCache(serverPaths);
     if (cache != null) {
+      List<String> recursivePaths = new ArrayList<>();
+      boolean[] success = new boolean[size];
       try {
-        cache.lockWrite();
+        cache.lockWrite(serverPaths);
 
         List<Stat> setStats = new ArrayList<Stat>();
-        boolean[] success = new boolean[size];
         List<List<String>> pathsCreatedList =
             new ArrayList<List<String>>(Collections.<List<String>>nCopies(size, null));
         List<T> updateData =
@@ -512,13 +558,16 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
 
         for (int i = 0; i < size; i++) {
           success[i] = (updateData.get(i) != null);
-          updateCache(cache, pathsCreatedList.get(i), success[i], serverPaths.get(i),
-              updateData.get(i), setStats.get(i));
+          recursivePaths.add(updateCache(cache, pathsCreatedList.get(i), success[i],
+              serverPaths.get(i), updateData.get(i), setStats.get(i)));
         }
-        return success;
       } finally {
-        cache.unlockWrite();
+        cache.unlockWrite(serverPaths);
+      }
+      for (String recursivePath : recursivePaths) {
+        updateRecursive(cache, recursivePath);
       }
+      return success;
     }
 
     // no cache
@@ -588,7 +637,7 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
     Cache<T> cache = getCache(serverPaths);
     if (cache != null) {
       try {
-        cache.lockRead();
+        cache.lockRead(serverPaths);
         for (int i = 0; i < size; i++) {
           ZNode zNode = cache.get(serverPaths.get(i));
           if (zNode != null) {
@@ -601,12 +650,12 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
           }
         }
       } finally {
-        cache.unlockRead();
+        cache.unlockRead(serverPaths);
       }
 
       // cache miss, fall back to zk and update cache
       if (needRead) {
-        cache.lockWrite();
+        cache.lockWrite(serverPaths);
         try {
           List<T> readRecords =
               _baseAccessor.get(serverPaths, readStats, needReads, throwException);
@@ -617,7 +666,7 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
             }
           }
         } finally {
-          cache.unlockWrite();
+          cache.unlockWrite(serverPaths);
         }
       }
 
@@ -657,7 +706,7 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
       } else {
         // System.out.println("zk-cache-miss");
         try {
-          cache.lockWrite();
+          cache.lockWrite(serverParentPath);
 
           List<String> childNames = _baseAccessor.getChildNames(serverParentPath, options);
           // System.out.println("\t--" + childNames);
@@ -665,7 +714,7 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
 
           return childNames;
         } finally {
-          cache.unlockWrite();
+          cache.unlockWrite(serverParentPath);
         }
       }
     }
@@ -765,8 +814,13 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
     }
     LOG.debug("Start ZkCacheEventThread...done");
 
-    _wtCache = new WriteThroughCache<T>(_baseAccessor, _wtCachePaths);
-    _zkCache = new ZkCallbackCache<T>(_baseAccessor, _chrootPath, _zkCachePaths, _eventThread);
+    long maxEntries = Long.getLong(SystemPropertyKeys.ZK_CACHE_MAX_ENTRIES, 0L);
+    long maxWeightBytes = Long.getLong(SystemPropertyKeys.ZK_CACHE_MAX_WEIGHT_BYTES, 0L);
+    _wtCache = new WriteThroughCache<T>(_baseAccessor, _wtCachePaths, maxEntries, maxWeightBytes);
+    _zkCache = new ZkCallbackCache<T>(_baseAccessor, _chrootPath, _zkCachePaths, _eventThread,
+        maxEntries, maxWeightBytes);
+    registerCacheMonitor("WriteThrough", _wtCachePaths, _wtCache);
+    registerCacheMonitor("ZkCallback", _zkCachePaths, _zkCache);
 
     if (_wtCachePaths != null && !_wtCachePaths.isEmpty()) {
       for (String path : _wtCachePaths) {
@@ -781,16 +835,38 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
     }
   }
 
+  private void registerCacheMonitor(String cacheType, List<String> cachePaths, Cache<T> cache) {
+    if (_monitorType == null || cachePaths == null || cachePaths.isEmpty()) {
+      return;
+    }
+    try {
+      _cacheMonitors
+          .add(new ZkCacheMonitor(_monitorType, _monitorKey, cacheType, cache).register());
+    } catch (JMException e) {
+      LOG.error("Error in creating ZkCacheMonitor", e);
+    }
+  }
+
   @Override
   public void stop() {
     try {
       _eventLock.lockInterruptibly();
 
+      for (ZkCacheMonitor cacheMonitor : _cacheMonitors) {
+        cacheMonitor.unregister();
+      }
+      _cacheMonitors.clear();
+
       if (_zkclient != null) {
         _zkclient.close();
         _zkclient = null;
       }
 
+      if (_groupCommitMonitor != null) {
+        _groupCommitMonitor.unregister();
+        _groupCommitMonitor = null;
+      }
+
       if (_eventThread == null) {
         LOG.warn(_eventThread + " has already stopped");
         return;
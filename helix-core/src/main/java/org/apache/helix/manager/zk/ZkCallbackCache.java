@@ -53,7 +53,15 @@ public class ZkCallbackCache<T> extends Cache<T> implements IZkChildListener, IZ
 
   public ZkCallbackCache(BaseDataAccessor<T> accessor, String chrootPath, List<String> paths,
       ZkCacheEventThread eventThread) {
-    super();
+    this(accessor, chrootPath, paths, eventThread, 0, 0);
+  }
+
+  /**
+   * @see Cache#Cache(long, long)
+   */
+  public ZkCallbackCache(BaseDataAccessor<T> accessor, String chrootPath, List<String> paths,
+      ZkCacheEventThread eventThread, long maxEntries, long maxWeightBytes) {
+    super(maxEntries, maxWeightBytes);
     _accessor = accessor;
     _chrootPath = chrootPath;
 
@@ -74,16 +82,21 @@ public class ZkCallbackCache<T> extends Cache<T> implements IZkChildListener, IZ
     String parentPath = HelixUtil.getZkParentPath(path);
     String childName = HelixUtil.getZkName(path);
 
-    addToParentChildSet(parentPath, childName);
     ZNode znode = _cache.get(path);
+    // an evicted znode is read again, it is not created
+    boolean evicted = znode == null && isEvicted(path);
+    addToParentChildSet(parentPath, childName);
     if (znode == null) {
       _cache.put(path, new ZNode(path, data, stat));
-      fireEvents(path, EventType.NodeCreated);
+      if (!evicted) {
+        fireEvents(path, EventType.NodeCreated);
+      }
     } else {
       Stat oldStat = znode.getStat();
 
       znode.setData(data);
       znode.setStat(stat);
+      reweigh(path, znode);
       // System.out.println("\t\t--setData. path: " + path + ", data: " + data);
 
       if (oldStat.getCzxid() != stat.getCzxid()) {
@@ -125,11 +138,16 @@ public class ZkCallbackCache<T> extends Cache<T> implements IZkChildListener, IZ
       ZNode znode = _cache.get(path);
       List<String> childNames = _accessor.subscribeChildChanges(path, this);
       if (childNames != null && !childNames.isEmpty()) {
+        if (znode == null) {
+          // evicted right away by a bounded cache, read all the children
+          znode = new ZNode(path, null, ZNode.ZERO_STAT);
+        }
         for (String childName : childNames) {
           if (!znode.hasChild(childName)) {
             String childPath = path + "/" + childName;
-            znode.addChild(childName);
+            // read the child before listing it, so it is not taken as an evicted znode
             updateRecursive(childPath);
+            znode.addChild(childName);
           }
         }
       }
@@ -154,7 +172,7 @@ public class ZkCallbackCache<T> extends Cache<T> implements IZkChildListener, IZ
   public void handleDataChange(String dataPath, Object data) throws Exception {
     // System.out.println("handleDataChange: " + dataPath);
     try {
-      _lock.writeLock().lock();
+      lockWrite(dataPath);
 
       // TODO: optimize it by get stat from callback
       Stat stat = new Stat();
@@ -171,6 +189,7 @@ public class ZkCallbackCache<T> extends Cache<T> implements IZkChildListener, IZ
         // stat.getVersion());
         znode.setData(readData);
         znode.setStat(stat);
+        reweigh(dataPath, znode);
 
         // if create right after delete, and zkCallback comes after create
         // no DataDelete() will be fired, instead will fire 2 DataChange()
@@ -183,12 +202,16 @@ public class ZkCallbackCache<T> extends Cache<T> implements IZkChildListener, IZ
           // oldStat.getVersion() + ", newVersion: " + stat.getVersion());
           fireEvents(dataPath, EventType.NodeDataChanged);
         }
+      } else if (isEvicted(dataPath)) {
+        // the znode is evicted from a bounded cache, but its listeners are still notified
+        _cache.put(dataPath, new ZNode(dataPath, readData, stat));
+        fireEvents(dataPath, EventType.NodeDataChanged);
       } else {
         // we may see dataChange on child before childChange on parent
         // in this case, let childChange update cache
       }
     } finally {
-      _lock.writeLock().unlock();
+      unlockWrite(dataPath);
     }
 
   }
@@ -198,7 +221,7 @@ public class ZkCallbackCache<T> extends Cache<T> implements IZkChildListener, IZ
     // System.out.println("handleDataDeleted: " + dataPath);
 
     try {
-      _lock.writeLock().lock();
+      lockWrite(dataPath);
       _accessor.unsubscribeDataChanges(dataPath, this);
       _accessor.unsubscribeChildChanges(dataPath, this);
 
@@ -209,7 +232,7 @@ public class ZkCallbackCache<T> extends Cache<T> implements IZkChildListener, IZ
 
       fireEvents(dataPath, EventType.NodeDeleted);
     } finally {
-      _lock.writeLock().unlock();
+      unlockWrite(dataPath);
     }
   }
 
@@ -126,6 +126,8 @@ public interface HelixZkClient {
 
   List<OpResult> multi(final Iterable<Op> ops);
 
+  void asyncMulti(final Iterable<Op> ops, final ZkAsyncCallbacks.MultiCallbackHandler cb);
+
   // ZK state control
   boolean waitUntilConnected(long time, TimeUnit timeUnit);
 
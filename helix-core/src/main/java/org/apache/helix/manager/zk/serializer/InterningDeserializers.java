@@ -0,0 +1,100 @@
+package org.apache.helix.manager.zk.serializer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.helix.util.CompactStringMap;
+import org.apache.helix.util.StringInterner;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.DeserializationContext;
+import org.codehaus.jackson.map.JsonDeserializer;
+import org.codehaus.jackson.map.KeyDeserializer;
+
+/**
+ * Jackson deserializers for the ZNRecord list and map fields. They intern every key and value
+ * through {@link StringInterner} and read per-key maps into {@link CompactStringMap}s, so records
+ * held by the controller caches share the instance, partition and state names and do not pay for
+ * a TreeMap per partition.
+ */
+public class InterningDeserializers {
+  private InterningDeserializers() {
+  }
+
+  /**
+   * Interns the keys of the list and map fields, i.e. partition names.
+   */
+  public static class Key extends KeyDeserializer {
+    @Override
+    public Object deserializeKey(String key, DeserializationContext ctxt) throws IOException {
+      return StringInterner.intern(key);
+    }
+  }
+
+  /**
+   * Reads a map field value of interned strings, into a {@link CompactStringMap} if it is small,
+   * see {@link CompactStringMap.Builder}. The entries keep their JSON order.
+   */
+  public static class MapField extends JsonDeserializer<Map<String, String>> {
+    @Override
+    public Map<String, String> deserialize(JsonParser jp, DeserializationContext ctxt)
+        throws IOException {
+      if (jp.getCurrentToken() != JsonToken.START_OBJECT) {
+        throw ctxt.mappingException(Map.class);
+      }
+      CompactStringMap.Builder map = new CompactStringMap.Builder(0, false);
+      while (jp.nextToken() != JsonToken.END_OBJECT) {
+        String key = StringInterner.intern(jp.getCurrentName());
+        jp.nextToken(); // move to value
+        map.put(key, readString(jp));
+      }
+      return map.build();
+    }
+  }
+
+  /**
+   * Reads a list field value into an ArrayList of interned strings.
+   */
+  public static class ListField extends JsonDeserializer<List<String>> {
+    @Override
+    public List<String> deserialize(JsonParser jp, DeserializationContext ctxt)
+        throws IOException {
+      if (jp.getCurrentToken() != JsonToken.START_ARRAY) {
+        throw ctxt.mappingException(List.class);
+      }
+      List<String> list = new ArrayList<String>();
+      while (jp.nextToken() != JsonToken.END_ARRAY) {
+        list.add(readString(jp));
+      }
+      return list;
+    }
+  }
+
+  private static String readString(JsonParser jp) throws IOException {
+    if (jp.getCurrentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    return StringInterner.intern(jp.getText());
+  }
+}
@@ -19,15 +19,13 @@ package org.apache.helix.manager.zk.serializer;
  * under the License.
  */
 
-import java.io.ByteArrayInputStream;
-import java.io.StringWriter;
-
 import org.apache.helix.HelixException;
 import org.apache.helix.manager.zk.serializer.PayloadSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectWriter;
 import org.codehaus.jackson.map.SerializationConfig;
 
 /**
@@ -37,25 +35,32 @@ public class JacksonPayloadSerializer implements PayloadSerializer {
 
   private static Logger logger = LoggerFactory.getLogger(JacksonPayloadSerializer.class);
 
+  // Shared and thread-safe once configured; readers are created per call since the type varies
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ObjectWriter WRITER;
+
+  static {
+    MAPPER.configure(SerializationConfig.Feature.INDENT_OUTPUT, true);
+    MAPPER.configure(SerializationConfig.Feature.AUTO_DETECT_FIELDS, true);
+    MAPPER.configure(SerializationConfig.Feature.CAN_OVERRIDE_ACCESS_MODIFIERS, true);
+    MAPPER.configure(DeserializationConfig.Feature.AUTO_DETECT_FIELDS, true);
+    MAPPER.configure(DeserializationConfig.Feature.AUTO_DETECT_SETTERS, true);
+    MAPPER.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+    WRITER = MAPPER.writer();
+  }
+
   @Override
   public <T> byte[] serialize(final T data) {
     if (data == null) {
       return null;
     }
 
-    ObjectMapper mapper = new ObjectMapper();
-    SerializationConfig serializationConfig = mapper.getSerializationConfig();
-    serializationConfig.set(SerializationConfig.Feature.INDENT_OUTPUT, true);
-    serializationConfig.set(SerializationConfig.Feature.AUTO_DETECT_FIELDS, true);
-    serializationConfig.set(SerializationConfig.Feature.CAN_OVERRIDE_ACCESS_MODIFIERS, true);
-    StringWriter sw = new StringWriter();
     try {
-      mapper.writeValue(sw, data);
+      return WRITER.writeValueAsBytes(data);
     } catch (Exception e) {
       logger.error("Exception during payload data serialization.", e);
       throw new HelixException(e);
     }
-    return sw.toString().getBytes();
   }
 
   @Override
@@ -64,15 +69,8 @@ public class JacksonPayloadSerializer implements PayloadSerializer {
       return null;
     }
 
-    ObjectMapper mapper = new ObjectMapper();
-    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-
-    DeserializationConfig deserializationConfig = mapper.getDeserializationConfig();
-    deserializationConfig.set(DeserializationConfig.Feature.AUTO_DETECT_FIELDS, true);
-    deserializationConfig.set(DeserializationConfig.Feature.AUTO_DETECT_SETTERS, true);
-    deserializationConfig.set(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, true);
     try {
-      T payload = mapper.readValue(bais, clazz);
+      T payload = MAPPER.readValue(bytes, clazz);
       return payload;
     } catch (Exception e) {
       logger.error("Exception during deserialization of payload bytes: " + new String(bytes), e);
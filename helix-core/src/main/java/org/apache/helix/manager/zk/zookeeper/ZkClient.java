@@ -38,6 +38,7 @@ import org.I0Itec.zkclient.exception.ZkNodeExistsException;
 import org.I0Itec.zkclient.exception.ZkTimeoutException;
 import org.I0Itec.zkclient.serialize.ZkSerializer;
 import org.apache.helix.HelixException;
+import org.apache.helix.SystemPropertyKeys;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.api.listeners.PreFetch;
 import org.apache.helix.manager.zk.BasicZkSerializer;
@@ -46,6 +47,7 @@ import org.apache.helix.manager.zk.ZkAsyncCallbacks;
 import org.apache.helix.manager.zk.zookeeper.ZkEventThread.ZkEvent;
 import org.apache.helix.monitoring.mbeans.ZkClientMonitor;
 import org.apache.helix.util.ExponentialBackoffStrategy;
+import org.apache.jute.Record;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.KeeperException.ConnectionLossException;
@@ -60,6 +62,8 @@ import org.apache.zookeeper.ZooDefs;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.ACL;
 import org.apache.zookeeper.data.Stat;
+import org.apache.zookeeper.proto.CreateRequest;
+import org.apache.zookeeper.proto.SetDataRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -150,6 +154,7 @@ public class ZkClient implements Watcher {
             new ZkClientMonitor(monitorType, monitorKey, monitorInstanceName, monitorRootPathOnly,
                 _eventThread);
         _monitor.register();
+        _eventThread.setMonitor(_monitor);
       } else {
         LOG.info("ZkClient monitor key or type is not provided. Skip monitoring.");
       }
@@ -948,7 +953,7 @@ public class ZkClient implements Watcher {
 
   private void fireDataChangedEvents(final String path, Set<IZkDataListenerEntry> listeners) {
     for (final IZkDataListenerEntry listener : listeners) {
-      _eventThread.send(new ZkEvent(
+      _eventThread.send(path, new ZkEvent(
           "Data of " + path + " changed sent to " + listener.getDataListener() + " prefetch data: "
               + listener.isPrefetchData()) {
 
@@ -980,7 +985,8 @@ public class ZkClient implements Watcher {
     try {
       // reinstall the watch
       for (final IZkChildListener listener : childListeners) {
-        _eventThread.send(new ZkEvent("Children of " + path + " changed sent to " + listener) {
+        String description = "Children of " + path + " changed sent to " + listener;
+        _eventThread.send(path, new ZkEvent(description) {
 
           @Override public void run() throws Exception {
             try {
@@ -1357,6 +1363,34 @@ public class ZkClient implements Watcher {
     });
   }
 
+  public void asyncMulti(final Iterable<Op> ops, final ZkAsyncCallbacks.MultiCallbackHandler cb) {
+    final long startT = System.currentTimeMillis();
+    // the write is recorded as one access to the path of its first op, with the bytes of all ops
+    String firstPath = null;
+    int bytes = 0;
+    for (Op op : ops) {
+      if (firstPath == null) {
+        firstPath = op.getPath();
+      }
+      Record request = op.toRequestRecord();
+      byte[] data = null;
+      if (request instanceof CreateRequest) {
+        data = ((CreateRequest) request).getData();
+      } else if (request instanceof SetDataRequest) {
+        data = ((SetDataRequest) request).getData();
+      }
+      bytes += data == null ? 0 : data.length;
+    }
+    final ZkAsyncCallbacks.ZkAsyncCallContext ctx =
+        new ZkAsyncCallbacks.ZkAsyncCallContext(_monitor, startT, bytes, false, firstPath);
+    retryUntilConnected(new Callable<Object>() {
+      @Override public Object call() throws Exception {
+        ((ZkConnection) getConnection()).getZookeeper().multi(ops, cb, ctx);
+        return null;
+      }
+    });
+  }
+
   // Async Data Accessors
   public void asyncSetData(final String path, Object datat, final int version,
       final ZkAsyncCallbacks.SetDataCallbackHandler cb) {
@@ -1484,7 +1518,8 @@ public class ZkClient implements Watcher {
       setShutdownTrigger(false);
 
       IZkConnection zkConnection = getConnection();
-      _eventThread = new ZkEventThread(zkConnection.getServers());
+      _eventThread = new ZkEventThread(zkConnection.getServers(),
+          Integer.getInteger(SystemPropertyKeys.ZK_EVENT_DISPATCH_THREADS, 1));
       _eventThread.start();
 
       if (isManagingZkConnection()) {
@@ -13,8 +13,10 @@ package org.apache.helix.manager.zk.zookeeper;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.I0Itec.zkclient.exception.ZkInterruptedException;
+import org.apache.helix.monitoring.mbeans.ZkClientMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,14 +27,25 @@ import org.slf4j.LoggerFactory;
  * would stop the ZkClient from receiving events from {@link ZooKeeper} as soon as one of the listeners blocks (because
  * it is waiting for something). {@link ZkClient} would then for instance not be able to maintain it's connection state
  * anymore.
+ *
+ * Optionally the events can be dispatched by more than one thread. Then the events of a path are
+ * always delivered by the same thread, picked by the hash of the path, so they are still delivered
+ * in order, while a slow listener of one path does not delay the events of the other paths. The
+ * state events are delivered by this thread. Events of different paths, and the state events
+ * relative to the path events, may be delivered in a different order than they happened, and
+ * listeners subscribed to several paths may be called concurrently.
  */
 public class ZkEventThread extends Thread {
   private static Logger LOG = LoggerFactory.getLogger(ZkClient.class);
 
-  private BlockingQueue<ZkEvent> _events = new LinkedBlockingQueue<>();
+  // the events of each lane, the first lane is dispatched by this thread
+  private final BlockingQueue<QueuedEvent>[] _lanes;
+  private final Thread[] _workers;
 
-  private long _totalEventCount = 0L;
-  private long _totalEventCountHandled = 0L;
+  private final AtomicLong _totalEventCount = new AtomicLong();
+  private final AtomicLong _totalEventCountHandled = new AtomicLong();
+
+  private volatile ZkClientMonitor _monitor;
 
   private static AtomicInteger _eventId = new AtomicInteger(0);
 
@@ -52,26 +65,76 @@ public class ZkEventThread extends Thread {
   }
 
   ZkEventThread(String name) {
+    this(name, 1);
+  }
+
+  /**
+   * @param dispatchThreads the number of threads delivering the events, including this one
+   */
+  @SuppressWarnings("unchecked")
+  ZkEventThread(String name, int dispatchThreads) {
     setDaemon(true);
     setName("ZkClient-EventThread-" + getId() + "-" + name);
+
+    int lanes = Math.max(dispatchThreads, 1);
+    _lanes = new BlockingQueue[lanes];
+    _workers = new Thread[lanes - 1];
+    for (int i = 0; i < lanes; i++) {
+      _lanes[i] = new LinkedBlockingQueue<>();
+    }
+    for (int i = 1; i < lanes; i++) {
+      final BlockingQueue<QueuedEvent> lane = _lanes[i];
+      Thread worker = new Thread(getName() + "-" + i) {
+        @Override public void run() {
+          dispatch(lane);
+        }
+      };
+      worker.setDaemon(true);
+      _workers[i - 1] = worker;
+    }
+  }
+
+  @Override public synchronized void start() {
+    super.start();
+    for (Thread worker : _workers) {
+      worker.start();
+    }
+  }
+
+  @Override public void interrupt() {
+    super.interrupt();
+    for (Thread worker : _workers) {
+      worker.interrupt();
+    }
   }
 
   @Override public void run() {
+    dispatch(_lanes[0]);
+  }
+
+  private void dispatch(BlockingQueue<QueuedEvent> lane) {
     LOG.info("Starting ZkClient event thread.");
+    Thread thread = Thread.currentThread();
     try {
-      while (!isInterrupted()) {
-        ZkEvent zkEvent = _events.take();
+      while (!thread.isInterrupted()) {
+        QueuedEvent queuedEvent = lane.take();
+        ZkEvent zkEvent = queuedEvent._event;
+        ZkClientMonitor monitor = _monitor;
+        if (monitor != null) {
+          monitor.recordEventDispatchLatency(
+              System.currentTimeMillis() - queuedEvent._enqueueTime);
+        }
         int eventId = _eventId.incrementAndGet();
         if (LOG.isDebugEnabled()) {
           LOG.debug("Delivering event #" + eventId + " " + zkEvent);
         }
         try {
           zkEvent.run();
-          _totalEventCountHandled ++;
+          _totalEventCountHandled.incrementAndGet();
         } catch (InterruptedException e) {
-          interrupt();
+          thread.interrupt();
         } catch (ZkInterruptedException e) {
-          interrupt();
+          thread.interrupt();
         } catch (Throwable e) {
           LOG.error("Error handling event " + zkEvent, e);
         }
@@ -86,21 +149,61 @@ public class ZkEventThread extends Thread {
     LOG.info("Terminate ZkClient event thread.");
   }
 
+  /**
+   * Send an event that is not about a path, e.g. a state change. It is delivered by this thread.
+   */
   public void send(ZkEvent event) {
+    send(0, event);
+  }
+
+  /**
+   * Send an event about the path. The events of the same path are delivered in order.
+   */
+  public void send(String path, ZkEvent event) {
+    send(_lanes.length == 1 ? 0 : (path.hashCode() & Integer.MAX_VALUE) % _lanes.length, event);
+  }
+
+  private void send(int laneIndex, ZkEvent event) {
     if (!isInterrupted()) {
       if (LOG.isDebugEnabled()) {
         LOG.debug("New event: " + event);
       }
-      _events.add(event);
-      _totalEventCount ++;
+      BlockingQueue<QueuedEvent> lane = _lanes[laneIndex];
+      lane.add(new QueuedEvent(event));
+      _totalEventCount.incrementAndGet();
+      ZkClientMonitor monitor = _monitor;
+      if (monitor != null) {
+        monitor.recordEventQueueDepth(lane.size());
+      }
     }
   }
 
+  void setMonitor(ZkClientMonitor monitor) {
+    _monitor = monitor;
+  }
+
+  public int getDispatchThreadCount() {
+    return _lanes.length;
+  }
+
   public long getPendingEventsCount() {
-    return _events.size();
+    long pending = 0;
+    for (BlockingQueue<QueuedEvent> lane : _lanes) {
+      pending += lane.size();
+    }
+    return pending;
   }
 
-  public long getTotalEventCount() { return _totalEventCount; }
+  public long getTotalEventCount() { return _totalEventCount.get(); }
+
+  public long getTotalHandledEventCount() { return _totalEventCountHandled.get(); }
 
-  public long getTotalHandledEventCount() { return _totalEventCountHandled; }
+  private static class QueuedEvent {
+    private final ZkEvent _event;
+    private final long _enqueueTime = System.currentTimeMillis();
+
+    QueuedEvent(ZkEvent event) {
+      _event = event;
+    }
+  }
 }
@@ -48,6 +48,7 @@ import org.apache.helix.NotificationContext.MapKey;
 import org.apache.helix.NotificationContext.Type;
 import org.apache.helix.PropertyKey;
 import org.apache.helix.PropertyKey.Builder;
+import org.apache.helix.SystemPropertyKeys;
 import org.apache.helix.api.listeners.MessageListener;
 import org.apache.helix.api.listeners.PreFetch;
 import org.apache.helix.controller.GenericHelixController;
@@ -58,6 +59,7 @@ import org.apache.helix.model.LiveInstance;
 import org.apache.helix.model.Message;
 import org.apache.helix.model.Message.MessageState;
 import org.apache.helix.model.Message.MessageType;
+import org.apache.helix.model.StateModelDefinition;
 import org.apache.helix.model.builder.HelixConfigScopeBuilder;
 import org.apache.helix.monitoring.mbeans.MessageQueueMonitor;
 import org.apache.helix.monitoring.mbeans.ParticipantMessageMonitor;
@@ -126,6 +128,13 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
 
   final ConcurrentHashMap<String, ExecutorService> _executorMap;
 
+  // whether the state transitions are scheduled by transition priority and resource instead of
+  // arrival order
+  final boolean _transitionPrioritySchedulingEnabled;
+
+  // state model definitions read for the transition priorities
+  final ConcurrentHashMap<String, StateModelDefinition> _stateModelDefs;
+
   final ExecutorService _batchMessageExecutorService;
 
   final ConcurrentHashMap<String, String> _messageTaskMap;
@@ -158,6 +167,9 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
 
     _hdlrFtyRegistry = new ConcurrentHashMap<>();
     _executorMap = new ConcurrentHashMap<>();
+    _transitionPrioritySchedulingEnabled =
+        Boolean.getBoolean(SystemPropertyKeys.STATE_TRANSITION_PRIORITY_SCHEDULING_ENABLED);
+    _stateModelDefs = new ConcurrentHashMap<>();
     _messageTaskMap = new ConcurrentHashMap<>();
     _knownMessageIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     _batchMessageExecutorService = Executors.newCachedThreadPool();
@@ -203,11 +215,12 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     MsgHandlerFactoryRegistryItem newItem = new MsgHandlerFactoryRegistryItem(factory, threadpoolSize);
     MsgHandlerFactoryRegistryItem prevItem = _hdlrFtyRegistry.putIfAbsent(type, newItem);
     if (prevItem == null) {
-      ExecutorService newPool = Executors.newFixedThreadPool(threadpoolSize, new ThreadFactory() {
-        @Override public Thread newThread(Runnable r) {
-          return new Thread(r, "HelixTaskExecutor-message_handle_thread");
-        }
-      });
+      ExecutorService newPool =
+          createMessageHandlingPool(type, threadpoolSize, new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+              return new Thread(r, "HelixTaskExecutor-message_handle_thread");
+            }
+          });
       ExecutorService prevExecutor = _executorMap.putIfAbsent(type, newPool);
       if (prevExecutor != null) {
         LOG.warn("Skip creating a new thread pool for type: " + type + ", already existing pool: "
@@ -297,11 +310,12 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
       }
       final String key = getPerResourceStateTransitionPoolName(resourceName);
       if (threadpoolSize > 0) {
-        _executorMap.put(key, Executors.newFixedThreadPool(threadpoolSize, new ThreadFactory() {
-          @Override public Thread newThread(Runnable r) {
-            return new Thread(r, "GerenricHelixController-message_handle_" + key);
-          }
-        }));
+        _executorMap.put(key, createMessageHandlingPool(message.getMsgType(), threadpoolSize,
+            new ThreadFactory() {
+              @Override public Thread newThread(Runnable r) {
+                return new Thread(r, "GerenricHelixController-message_handle_" + key);
+              }
+            }));
         LOG.info("Added dedicate threadpool for resource: " + resourceName + " with size: "
             + threadpoolSize);
       } else {
@@ -323,6 +337,59 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     }
   }
 
+  /**
+   * Create the thread pool handling the messages of a type. State transitions are queued by
+   * transition priority if enabled, other messages in arrival order.
+   */
+  private ExecutorService createMessageHandlingPool(String msgType, int threadpoolSize,
+      ThreadFactory threadFactory) {
+    if (_transitionPrioritySchedulingEnabled && MessageType.STATE_TRANSITION.name()
+        .equals(msgType)) {
+      return new PrioritizedThreadPoolExecutor(threadpoolSize, threadFactory);
+    }
+    return Executors.newFixedThreadPool(threadpoolSize, threadFactory);
+  }
+
+  /**
+   * Get the scheduling priority of a state transition from its state model definition, lower
+   * values first. Transitions are ranked by the state transition priority list of the definition,
+   * or else by the highest priority state they leave or enter, so the transitions to and from the
+   * top state, which restore the partitions without a top state replica, run before bootstraps.
+   */
+  int getTransitionPriority(Message message, HelixManager manager) {
+    String stateModelName = message.getStateModelDef();
+    if (stateModelName == null) {
+      return PrioritizedThreadPoolExecutor.DEFAULT_PRIORITY;
+    }
+    StateModelDefinition stateModelDef = _stateModelDefs.get(stateModelName);
+    if (stateModelDef == null) {
+      HelixDataAccessor accessor = manager.getHelixDataAccessor();
+      stateModelDef = accessor.getProperty(accessor.keyBuilder().stateModelDef(stateModelName));
+      if (stateModelDef == null) {
+        return PrioritizedThreadPoolExecutor.DEFAULT_PRIORITY;
+      }
+      _stateModelDefs.put(stateModelName, stateModelDef);
+    }
+
+    List<String> transitions = stateModelDef.getStateTransitionPriorityList();
+    if (transitions != null && !transitions.isEmpty()) {
+      int index = transitions.indexOf(message.getFromState() + "-" + message.getToState());
+      return index < 0 ? transitions.size() : index;
+    }
+    List<String> states = stateModelDef.getStatesPriorityList();
+    if (states == null) {
+      return PrioritizedThreadPoolExecutor.DEFAULT_PRIORITY;
+    }
+    int priority = states.size();
+    for (String state : new String[] { message.getFromState(), message.getToState() }) {
+      int index = states.indexOf(state);
+      if (index >= 0 && index < priority) {
+        priority = index;
+      }
+    }
+    return priority;
+  }
+
   /**
    * Find the executor service for the message. A message can have a per-statemodelfactory
    * executor service, or per-message type executor service.
@@ -426,7 +493,13 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
           }
 
           LOG.info("Submit task: " + taskId + " to pool: " + exeSvc);
-          Future<HelixTaskResult> future = exeSvc.submit(task);
+          Future<HelixTaskResult> future;
+          if (exeSvc instanceof PrioritizedThreadPoolExecutor) {
+            future = ((PrioritizedThreadPoolExecutor) exeSvc)
+                .submit(task, getTransitionPriority(message, manager), message.getResourceName());
+          } else {
+            future = exeSvc.submit(task);
+          }
 
           _messageTaskMap
               .putIfAbsent(getMessageTarget(message.getResourceName(), message.getPartitionName()),
@@ -615,6 +688,7 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     _messageTaskMap.clear();
 
     _knownMessageIds.clear();
+    _stateModelDefs.clear();
 
     _lastSessionSyncTime = null;
   }
@@ -632,7 +706,7 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     for (final String msgType : _hdlrFtyRegistry.keySet()) {
       MsgHandlerFactoryRegistryItem item = _hdlrFtyRegistry.get(msgType);
       ExecutorService newPool =
-          Executors.newFixedThreadPool(item.threadPoolSize(), new ThreadFactory() {
+          createMessageHandlingPool(msgType, item.threadPoolSize(), new ThreadFactory() {
             @Override public Thread newThread(Runnable r) {
               return new Thread(r, "HelixTaskExecutor-message_handle_" + msgType);
             }
@@ -0,0 +1,157 @@
+package org.apache.helix.messaging.handling;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed size thread pool whose queued tasks run by priority instead of arrival order. A task
+ * submitted with a higher priority (a lower value) runs before all queued tasks of lower
+ * priorities, whenever they were queued.
+ * <p>
+ * Tasks of the same priority are shared fairly among groups, e.g. resources: each task gets the
+ * next round of its group, and the tasks of a round run before those of the next round. A group
+ * that starts submitting joins the round being run, so it does not wait behind the whole backlog
+ * of another group. Tasks of the same group, priority and round run in submission order.
+ */
+class PrioritizedThreadPoolExecutor extends ThreadPoolExecutor {
+  // priority of the tasks submitted without one, after all others
+  static final int DEFAULT_PRIORITY = Integer.MAX_VALUE;
+
+  private long _sequence = 0;
+  // priority -> group -> round of the last task of the group queued with the priority
+  private final Map<Integer, Map<String, Long>> _queuedRounds = new HashMap<>();
+  // priority -> round of the last task started with the priority
+  private final Map<Integer, Long> _startedRounds = new HashMap<>();
+
+  PrioritizedThreadPoolExecutor(int poolSize, ThreadFactory threadFactory) {
+    super(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(),
+        threadFactory);
+  }
+
+  /**
+   * Submit a task with a priority.
+   * @param task
+   * @param priority lower values run first
+   * @param group the group whose tasks are shared fairly with the other groups of the same
+   *              priority, null for no group
+   * @return the future of the task
+   */
+  <T> Future<T> submit(Callable<T> task, int priority, String group) {
+    if (task == null) {
+      throw new NullPointerException();
+    }
+    PrioritizedTask<T> futureTask = newPrioritizedTask(task, priority, group);
+    execute(futureTask);
+    return futureTask;
+  }
+
+  @Override
+  protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+    return newPrioritizedTask(callable, DEFAULT_PRIORITY, null);
+  }
+
+  @Override
+  protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+    return newPrioritizedTask(Executors.callable(runnable, value), DEFAULT_PRIORITY, null);
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    if (command == null) {
+      throw new NullPointerException();
+    }
+    // the queue only orders prioritized tasks
+    if (!(command instanceof PrioritizedTask)) {
+      command = newPrioritizedTask(Executors.callable(command, null), DEFAULT_PRIORITY, null);
+    }
+    super.execute(command);
+  }
+
+  @Override
+  protected void beforeExecute(Thread t, Runnable r) {
+    super.beforeExecute(t, r);
+    PrioritizedTask<?> task = (PrioritizedTask<?>) r;
+    synchronized (this) {
+      Long startedRound = _startedRounds.get(task._priority);
+      if (startedRound == null || startedRound < task._round) {
+        _startedRounds.put(task._priority, task._round);
+      }
+    }
+  }
+
+  private synchronized <T> PrioritizedTask<T> newPrioritizedTask(Callable<T> callable,
+      int priority, String group) {
+    if (getQueue().isEmpty()) {
+      // nothing waits, the rounds start over
+      _queuedRounds.clear();
+      _startedRounds.clear();
+    }
+    long round = 0;
+    if (group != null) {
+      Map<String, Long> queuedRounds = _queuedRounds.get(priority);
+      if (queuedRounds == null) {
+        queuedRounds = new HashMap<>();
+        _queuedRounds.put(priority, queuedRounds);
+      }
+      Long lastRound = queuedRounds.get(group);
+      Long startedRound = _startedRounds.get(priority);
+      round = Math.max(lastRound == null ? 0 : lastRound + 1,
+          startedRound == null ? 0 : startedRound);
+      queuedRounds.put(group, round);
+    }
+    return new PrioritizedTask<>(callable, priority, round, _sequence++);
+  }
+
+  private static class PrioritizedTask<T> extends FutureTask<T>
+      implements Comparable<PrioritizedTask<?>> {
+    private final int _priority;
+    private final long _round;
+    private final long _sequence;
+
+    PrioritizedTask(Callable<T> callable, int priority, long round, long sequence) {
+      super(callable);
+      _priority = priority;
+      _round = round;
+      _sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(PrioritizedTask<?> o) {
+      if (_priority != o._priority) {
+        return _priority < o._priority ? -1 : 1;
+      }
+      if (_round != o._round) {
+        return _round < o._round ? -1 : 1;
+      }
+      return Long.compare(_sequence, o._sequence);
+    }
+  }
+}
@@ -76,6 +76,14 @@ public class ClusterConfig extends HelixProperty {
     VIEW_CLUSTER_SOURCES, // Map field, key is the name of source cluster, value is
     // ViewClusterSourceConfig JSON string
     VIEW_CLUSTER_REFRESH_PERIOD, // In second
+    BEST_POSSIBLE_CALC_PARALLELISM, // Number of threads computing best possible states of
+    // resources concurrently, 1 or less means serial computation
+    INCREMENTAL_REBALANCE_ENABLED, // Reuse the previous rebalance result of converged resources
+    // whose IdealState, CurrentStates and messages did not change
+    REBALANCE_PIPELINE_SHARDS, // Number of resource shards rebalanced concurrently by the
+    // controller, 1 or less means a single rebalance pipeline
+    MESSAGE_DISPATCH_TRANSACTION_SIZE, // Max number of messages to an instance sent in one zk
+    // multi() transaction by the controller, 1 or less means one create per message
 
     // Specifies job types and used for quota allocation
     QUOTA_TYPES
@@ -90,6 +98,9 @@ public class ClusterConfig extends HelixProperty {
   private final static int DEFAULT_ERROR_OR_RECOVERY_PARTITION_THRESHOLD_FOR_LOAD_BALANCE = -1;
   private static final String IDEAL_STATE_RULE_PREFIX = "IdealStateRule!";
   private final static int DEFAULT_VIEW_CLUSTER_REFRESH_PERIOD = 30;
+  private final static int DEFAULT_BEST_POSSIBLE_CALC_PARALLELISM = 1;
+  private final static int DEFAULT_REBALANCE_PIPELINE_SHARDS = 1;
+  private final static int DEFAULT_MESSAGE_DISPATCH_TRANSACTION_SIZE = 1;
 
   public final static String TASK_QUOTA_RATIO_NOT_SET = "-1";
 
@@ -437,6 +448,100 @@ public class ClusterConfig extends HelixProperty {
     return _record.getLongField(ClusterConfigProperty.REBALANCE_TIMER_PERIOD.name(), -1);
   }
 
+  /**
+   * Set the number of threads the controller uses to compute the best possible states of
+   * resources concurrently. The result is identical to the serial computation, so this only
+   * trades controller CPU for pipeline latency on clusters with many resources.
+   *
+   * @param parallelism the number of threads, 1 or less to compute serially
+   */
+  public void setBestPossibleCalcParallelism(int parallelism) {
+    _record.setIntField(ClusterConfigProperty.BEST_POSSIBLE_CALC_PARALLELISM.name(), parallelism);
+  }
+
+  /**
+   * Get the number of threads the controller uses to compute the best possible states of
+   * resources concurrently.
+   *
+   * @return the number of threads, 1 (serial computation) if not set
+   */
+  public int getBestPossibleCalcParallelism() {
+    return _record.getIntField(ClusterConfigProperty.BEST_POSSIBLE_CALC_PARALLELISM.name(),
+        DEFAULT_BEST_POSSIBLE_CALC_PARALLELISM);
+  }
+
+  /**
+   * Set the number of shards the controller partitions resources into. Each shard runs its own
+   * rebalance pipeline concurrently on the same cluster data, so one slow resource only delays
+   * the resources of its shard. Resources of the same resource group are in the same shard, and
+   * message constraints still apply to the whole cluster. A cluster with state transition throttle
+   * configs or a resource priority field is not sharded, so the throttle quota still goes to the
+   * resources in order of their priority.
+   *
+   * @param shards the number of shards, 1 or less to rebalance all resources in one pipeline
+   */
+  public void setRebalancePipelineShards(int shards) {
+    _record.setIntField(ClusterConfigProperty.REBALANCE_PIPELINE_SHARDS.name(), shards);
+  }
+
+  /**
+   * Get the number of shards the controller partitions resources into.
+   *
+   * @return the number of shards, 1 (a single rebalance pipeline) if not set
+   */
+  public int getRebalancePipelineShards() {
+    return _record.getIntField(ClusterConfigProperty.REBALANCE_PIPELINE_SHARDS.name(),
+        DEFAULT_REBALANCE_PIPELINE_SHARDS);
+  }
+
+  /**
+   * Set the max number of messages to the same instance the controller sends in one zk multi()
+   * transaction. All transactions of a pipeline run are sent at once, so a rebalance generating
+   * many messages, e.g. after losing an instance, only waits for a few round trips to zk. The
+   * messages of a failed transaction are sent again one by one.
+   *
+   * @param transactionSize the max number of messages in a transaction, 1 or less to create each
+   *                        message separately
+   */
+  public void setMessageDispatchTransactionSize(int transactionSize) {
+    _record.setIntField(ClusterConfigProperty.MESSAGE_DISPATCH_TRANSACTION_SIZE.name(),
+        transactionSize);
+  }
+
+  /**
+   * Get the max number of messages to the same instance the controller sends in one zk multi()
+   * transaction.
+   *
+   * @return the max number of messages in a transaction, 1 (each message created separately) if
+   *         not set
+   */
+  public int getMessageDispatchTransactionSize() {
+    return _record.getIntField(ClusterConfigProperty.MESSAGE_DISPATCH_TRANSACTION_SIZE.name(),
+        DEFAULT_MESSAGE_DISPATCH_TRANSACTION_SIZE);
+  }
+
+  /**
+   * Enable/disable incremental rebalance. When enabled, resources that have converged to their
+   * best possible states are not rebalanced again until their IdealState, CurrentStates or pending
+   * messages change. Any other cluster change, or a periodic rebalance, still rebalances all
+   * resources.
+   *
+   * @param enabled
+   */
+  public void enableIncrementalRebalance(boolean enabled) {
+    _record.setBooleanField(ClusterConfigProperty.INCREMENTAL_REBALANCE_ENABLED.name(), enabled);
+  }
+
+  /**
+   * Whether incremental rebalance is enabled
+   *
+   * @return true if enabled, false by default
+   */
+  public boolean isIncrementalRebalanceEnabled() {
+    return _record
+        .getBooleanField(ClusterConfigProperty.INCREMENTAL_REBALANCE_ENABLED.name(), false);
+  }
+
   public boolean isStateTransitionCancelEnabled() {
     return _record
         .getBooleanField(ClusterConfigProperty.STATE_TRANSITION_CANCELLATION_ENABLED.name(), false);
@@ -93,6 +93,8 @@ public class ClusterStatusMonitor implements ClusterStatusMonitorMBean {
   protected final ConcurrentHashMap<String, ClusterEventMonitor> _clusterEventMbeanMap =
       new ConcurrentHashMap<>();
 
+  private volatile MessageDispatchMonitor _messageDispatchMonitor;
+
   /**
    * PerInstanceResource bean map: beanName->bean
    */
@@ -319,6 +321,46 @@ public class ClusterStatusMonitor implements ClusterStatusMonitorMBean {
     return _clusterEventMbeanMap.get(phase);
   }
 
+  /**
+   * Update the metrics of the messages sent in a pipeline run.
+   * @param messages number of messages to send
+   * @param failedMessages number of messages not sent
+   * @param latencyMs time to send all the messages
+   */
+  public void updateMessageDispatch(long messages, long failedMessages, long latencyMs) {
+    MessageDispatchMonitor monitor = getOrCreateMessageDispatchMonitor();
+    if (monitor != null) {
+      monitor.recordDispatch(messages, failedMessages, latencyMs);
+    }
+  }
+
+  /**
+   * Update the metrics of a zk multi() transaction of messages.
+   * @param size number of messages in the transaction
+   * @param success whether the messages are created, or sent again one by one
+   */
+  public void updateMessageTransaction(long size, boolean success) {
+    MessageDispatchMonitor monitor = getOrCreateMessageDispatchMonitor();
+    if (monitor != null) {
+      monitor.recordTransaction(size, success);
+    }
+  }
+
+  private MessageDispatchMonitor getOrCreateMessageDispatchMonitor() {
+    if (_messageDispatchMonitor == null) {
+      synchronized (this) {
+        if (_messageDispatchMonitor == null) {
+          try {
+            _messageDispatchMonitor = new MessageDispatchMonitor(this).register();
+          } catch (JMException e) {
+            LOG.error("Failed to register MessageDispatchMonitor for cluster " + _clusterName, e);
+          }
+        }
+      }
+    }
+    return _messageDispatchMonitor;
+  }
+
   /**
    * Update message count per instance and per resource
    * @param messages a list of messages
@@ -488,6 +530,34 @@ public class ClusterStatusMonitor implements ClusterStatusMonitorMBean {
     }
   }
 
+  /**
+   * Update the partitions of a resource with pending state transitions charged against the state
+   * transition throttles
+   * @param resourceName
+   * @param partitionCount
+   */
+  public void updatePendingTransitionPartitions(String resourceName, long partitionCount) {
+    ResourceMonitor resourceMonitor = getOrCreateResourceMonitor(resourceName);
+
+    if (resourceMonitor != null) {
+      resourceMonitor.updatePendingTransitionPartitions(partitionCount);
+    }
+  }
+
+  /**
+   * Update the pending state transitions charged against the state transition throttles per
+   * instance
+   * @param pendingTransitionsPerInstance instance -> pending transitions, the other instances have
+   *          none
+   */
+  public void updateInstancePendingTransitions(Map<String, Integer> pendingTransitionsPerInstance) {
+    for (Map.Entry<String, InstanceMonitor> entry : _instanceMbeanMap.entrySet()) {
+      Integer pendingTransitions = pendingTransitionsPerInstance.get(entry.getKey());
+      entry.getValue()
+          .updatePendingTransitions(pendingTransitions == null ? 0 : pendingTransitions);
+    }
+  }
+
   private ResourceMonitor getOrCreateResourceMonitor(String resourceName) {
     try {
       if (!_resourceMbeanMap.containsKey(resourceName)) {
@@ -540,6 +610,12 @@ public class ClusterStatusMonitor implements ClusterStatusMonitorMBean {
       unregisterPerInstanceResources(_perInstanceResourceMap.keySet());
       unregister(getObjectName(clusterBeanName()));
       unregisterEventMonitors(_clusterEventMbeanMap.values());
+      synchronized (this) {
+        if (_messageDispatchMonitor != null) {
+          _messageDispatchMonitor.unregister();
+          _messageDispatchMonitor = null;
+        }
+      }
       unregisterWorkflows(_perTypeWorkflowMonitorMap.keySet());
       unregisterJobs(_perTypeJobMonitorMap.keySet());
 
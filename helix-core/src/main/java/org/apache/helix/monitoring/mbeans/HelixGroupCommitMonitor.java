@@ -0,0 +1,144 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
+import org.apache.helix.HelixException;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.DynamicMBeanProvider;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.DynamicMetric;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.HistogramDynamicMetric;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.SimpleDynamicMetric;
+
+/**
+ * Monitor of the updates committed through a HelixGroupCommit.
+ */
+public class HelixGroupCommitMonitor extends DynamicMBeanProvider {
+  public static final String MONITOR_TYPE = "Type";
+  public static final String MONITOR_KEY = "Key";
+  private static final String MBEAN_DESCRIPTION = "Helix Group Commit Monitor";
+
+  private final String _sensorName;
+  private final String _monitorType;
+  private final String _monitorKey;
+
+  private SimpleDynamicMetric<Long> _pendingUpdateGauge;
+  private SimpleDynamicMetric<Long> _updateCounter;
+  private SimpleDynamicMetric<Long> _updateFailureCounter;
+  private SimpleDynamicMetric<Long> _writeCounter;
+  private SimpleDynamicMetric<Long> _multiWriteCounter;
+  private SimpleDynamicMetric<Long> _batchWindowGauge;
+  private HistogramDynamicMetric _commitLatencyGauge;
+  private HistogramDynamicMetric _batchSizeGauge;
+
+  public HelixGroupCommitMonitor(String monitorType, String monitorKey) {
+    if (monitorKey == null || monitorKey.isEmpty() || monitorType == null || monitorType
+        .isEmpty()) {
+      throw new HelixException(
+          "Cannot create HelixGroupCommitMonitor without monitor key and type.");
+    }
+    _monitorType = monitorType;
+    _monitorKey = monitorKey;
+    _sensorName = String
+        .format("%s.%s.%s", MonitorDomainNames.HelixGroupCommit.name(), monitorType, monitorKey);
+
+    _pendingUpdateGauge = new SimpleDynamicMetric("PendingUpdateGauge", 0l);
+    _updateCounter = new SimpleDynamicMetric("UpdateCounter", 0l);
+    _updateFailureCounter = new SimpleDynamicMetric("UpdateFailureCounter", 0l);
+    _writeCounter = new SimpleDynamicMetric("WriteCounter", 0l);
+    _multiWriteCounter = new SimpleDynamicMetric("MultiWriteCounter", 0l);
+    _batchWindowGauge = new SimpleDynamicMetric("BatchWindowGauge", 0l);
+    _commitLatencyGauge = new HistogramDynamicMetric("CommitLatencyGauge", new Histogram(
+        new SlidingTimeWindowArrayReservoir(DEFAULT_RESET_INTERVAL_MS, TimeUnit.MILLISECONDS)));
+    _batchSizeGauge = new HistogramDynamicMetric("BatchSizeGauge", new Histogram(
+        new SlidingTimeWindowArrayReservoir(DEFAULT_RESET_INTERVAL_MS, TimeUnit.MILLISECONDS)));
+  }
+
+  @Override
+  public String getSensorName() {
+    return _sensorName;
+  }
+
+  private ObjectName getMBeanName() throws MalformedObjectNameException {
+    return MBeanRegistrar
+        .buildObjectName(MonitorDomainNames.HelixGroupCommit.name(), MONITOR_TYPE, _monitorType,
+            MONITOR_KEY, _monitorKey);
+  }
+
+  /**
+   * @param pendingUpdates number of updates waiting to be committed
+   */
+  public void updatePendingUpdateGauge(long pendingUpdates) {
+    _pendingUpdateGauge.updateValue(pendingUpdates);
+  }
+
+  /**
+   * Record an update once it is committed.
+   * @param latencyMs time from the update being submitted to it being committed
+   * @param success whether it is written to zk
+   */
+  public void recordUpdate(long latencyMs, boolean success) {
+    synchronized (_updateCounter) {
+      _updateCounter.updateValue(_updateCounter.getValue() + 1);
+      if (!success) {
+        _updateFailureCounter.updateValue(_updateFailureCounter.getValue() + 1);
+      }
+    }
+    _commitLatencyGauge.updateValue(latencyMs);
+  }
+
+  /**
+   * Record a batch of merged updates.
+   * @param batchSize number of updates in the batch
+   * @param writes number of znodes written
+   * @param multiWrites number of znodes written in multi() transactions
+   * @param batchWindowUs the batch window that will be used for the next batch
+   */
+  public void recordBatch(long batchSize, long writes, long multiWrites, long batchWindowUs) {
+    synchronized (_writeCounter) {
+      _writeCounter.updateValue(_writeCounter.getValue() + writes);
+      _multiWriteCounter.updateValue(_multiWriteCounter.getValue() + multiWrites);
+    }
+    _batchWindowGauge.updateValue(batchWindowUs);
+    _batchSizeGauge.updateValue(batchSize);
+  }
+
+  @Override
+  public HelixGroupCommitMonitor register() throws JMException {
+    List<DynamicMetric<?, ?>> attributeList = new ArrayList<>();
+    attributeList.add(_pendingUpdateGauge);
+    attributeList.add(_updateCounter);
+    attributeList.add(_updateFailureCounter);
+    attributeList.add(_writeCounter);
+    attributeList.add(_multiWriteCounter);
+    attributeList.add(_batchWindowGauge);
+    attributeList.add(_commitLatencyGauge);
+    attributeList.add(_batchSizeGauge);
+    doRegister(attributeList, MBEAN_DESCRIPTION, getMBeanName());
+    return this;
+  }
+}
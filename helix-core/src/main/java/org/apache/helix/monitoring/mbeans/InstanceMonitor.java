@@ -39,6 +39,7 @@ public class InstanceMonitor implements InstanceMonitorMBean {
   private boolean _isUp;
   private boolean _isEnabled;
   private long _totalMessageReceived;
+  private long _pendingTransitions;
 
   /**
    * Initialize the bean
@@ -53,6 +54,7 @@ public class InstanceMonitor implements InstanceMonitorMBean {
     _isUp = false;
     _isEnabled = false;
     _totalMessageReceived = 0;
+    _pendingTransitions = 0;
   }
 
   @Override
@@ -81,6 +83,11 @@ public class InstanceMonitor implements InstanceMonitorMBean {
     return _disabledPartitions;
   }
 
+  @Override
+  public long getPendingTransitions() {
+    return _pendingTransitions;
+  }
+
   /**
    * Get all the tags currently on this instance
    * @return list of tags
@@ -141,4 +148,12 @@ public class InstanceMonitor implements InstanceMonitorMBean {
     _totalMessageReceived += messageReceived;
   }
 
+  /**
+   * Update the pending state transitions charged against the state transition throttles
+   * @param pendingTransitions pending state transitions on this instance
+   */
+  public synchronized void updatePendingTransitions(long pendingTransitions) {
+    _pendingTransitions = pendingTransitions;
+  }
+
 }
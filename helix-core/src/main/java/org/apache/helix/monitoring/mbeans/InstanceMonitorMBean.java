@@ -48,4 +48,10 @@ public interface InstanceMonitorMBean extends SensorNameProvider {
    * @return The total number of disabled partitions
    */
   public long getDisabledPartitions();
+
+  /**
+   * Get the pending state transitions charged against the state transition throttles
+   * @return The number of replicas on this instance with a pending state transition
+   */
+  public long getPendingTransitions();
 }
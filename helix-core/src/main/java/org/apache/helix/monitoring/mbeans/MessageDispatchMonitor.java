@@ -0,0 +1,111 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.DynamicMBeanProvider;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.DynamicMetric;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.HistogramDynamicMetric;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.SimpleDynamicMetric;
+
+/**
+ * Monitor of the messages sent by the controller in each pipeline run.
+ */
+public class MessageDispatchMonitor extends DynamicMBeanProvider {
+  private static final String MESSAGE_DISPATCH_DN_KEY = "MessageDispatchStatus";
+  private static final String DISPATCH_DN_KEY = "messageDispatch";
+
+  private final ClusterStatusMonitor _clusterStatusMonitor;
+
+  private SimpleDynamicMetric<Long> _messageCounter;
+  private SimpleDynamicMetric<Long> _messageFailureCounter;
+  private SimpleDynamicMetric<Long> _transactionCounter;
+  private SimpleDynamicMetric<Long> _transactionFailureCounter;
+  private HistogramDynamicMetric _dispatchLatencyGauge;
+  private HistogramDynamicMetric _transactionSizeGauge;
+
+  public MessageDispatchMonitor(ClusterStatusMonitor clusterStatusMonitor) {
+    _clusterStatusMonitor = clusterStatusMonitor;
+
+    _messageCounter = new SimpleDynamicMetric("MessageCounter", 0l);
+    _messageFailureCounter = new SimpleDynamicMetric("MessageFailureCounter", 0l);
+    _transactionCounter = new SimpleDynamicMetric("TransactionCounter", 0l);
+    _transactionFailureCounter = new SimpleDynamicMetric("TransactionFailureCounter", 0l);
+    _dispatchLatencyGauge = new HistogramDynamicMetric("DispatchLatencyGauge", new Histogram(
+        new SlidingTimeWindowArrayReservoir(DEFAULT_RESET_INTERVAL_MS, TimeUnit.MILLISECONDS)));
+    _transactionSizeGauge = new HistogramDynamicMetric("TransactionSizeGauge", new Histogram(
+        new SlidingTimeWindowArrayReservoir(DEFAULT_RESET_INTERVAL_MS, TimeUnit.MILLISECONDS)));
+  }
+
+  /**
+   * Record the messages sent in a pipeline run.
+   * @param messages number of messages to send
+   * @param failedMessages number of messages not sent
+   * @param latencyMs time to send all the messages
+   */
+  public synchronized void recordDispatch(long messages, long failedMessages, long latencyMs) {
+    _messageCounter.updateValue(_messageCounter.getValue() + messages);
+    _messageFailureCounter.updateValue(_messageFailureCounter.getValue() + failedMessages);
+    _dispatchLatencyGauge.updateValue(latencyMs);
+  }
+
+  /**
+   * Record a zk multi() transaction of messages.
+   * @param size number of messages in the transaction
+   * @param success whether the messages are created, or sent again one by one
+   */
+  public synchronized void recordTransaction(long size, boolean success) {
+    _transactionCounter.updateValue(_transactionCounter.getValue() + 1);
+    if (!success) {
+      _transactionFailureCounter.updateValue(_transactionFailureCounter.getValue() + 1);
+    }
+    _transactionSizeGauge.updateValue(size);
+  }
+
+  @Override
+  public String getSensorName() {
+    return String.format("%s.%s.%s", MESSAGE_DISPATCH_DN_KEY,
+        _clusterStatusMonitor.getClusterName(), ClusterStatusMonitor.DEFAULT_TAG);
+  }
+
+  private String getBeanName() {
+    return String.format("%s,%s=%s", _clusterStatusMonitor.clusterBeanName(), DISPATCH_DN_KEY,
+        "Controller");
+  }
+
+  @Override
+  public MessageDispatchMonitor register() throws JMException {
+    List<DynamicMetric<?, ?>> attributeList = new ArrayList<>();
+    attributeList.add(_messageCounter);
+    attributeList.add(_messageFailureCounter);
+    attributeList.add(_transactionCounter);
+    attributeList.add(_transactionFailureCounter);
+    attributeList.add(_dispatchLatencyGauge);
+    attributeList.add(_transactionSizeGauge);
+    doRegister(attributeList, _clusterStatusMonitor.getObjectName(getBeanName()));
+    return this;
+  }
+}
@@ -28,5 +28,7 @@ public enum MonitorDomainNames {
   HelixThreadPoolExecutor,
   HelixCallback,
   RoutingTableProvider,
-  CLMParticipantReport
+  CLMParticipantReport,
+  HelixGroupCommit,
+  HelixZkCache
 }
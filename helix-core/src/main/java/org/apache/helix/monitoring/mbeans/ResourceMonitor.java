@@ -61,6 +61,7 @@ public class ResourceMonitor extends DynamicMBeanProvider {
   private SimpleDynamicMetric<Long> _numRecoveryRebalanceThrottledPartitions;
   private SimpleDynamicMetric<Long> _numLoadRebalanceThrottledPartitions;
   private SimpleDynamicMetric<Long> _numPendingStateTransitions;
+  private SimpleDynamicMetric<Long> _numPendingTransitionPartitions;
 
   // Counters
   private SimpleDynamicMetric<Long> _successfulTopStateHandoffDurationCounter;
@@ -105,6 +106,7 @@ public class ResourceMonitor extends DynamicMBeanProvider {
     attributeList.add(_partitionTopStateNonGracefulHandoffDurationGauge);
     attributeList.add(_totalMessageReceived);
     attributeList.add(_numPendingStateTransitions);
+    attributeList.add(_numPendingTransitionPartitions);
     attributeList.add(_rebalanceState);
     doRegister(attributeList, _initObjectName);
     return this;
@@ -137,6 +139,8 @@ public class ResourceMonitor extends DynamicMBeanProvider {
     _numOfPartitionsInExternalView = new SimpleDynamicMetric("ExternalViewPartitionGauge", 0L);
     _numOfPartitions = new SimpleDynamicMetric("PartitionGauge", 0L);
     _numPendingStateTransitions = new SimpleDynamicMetric("PendingStateTransitionGauge", 0L);
+    _numPendingTransitionPartitions =
+        new SimpleDynamicMetric("PendingTransitionPartitionGauge", 0L);
 
     _partitionTopStateHandoffDurationGauge =
         new HistogramDynamicMetric("PartitionTopStateHandoffDurationGauge", new Histogram(
@@ -344,6 +348,14 @@ public class ResourceMonitor extends DynamicMBeanProvider {
     _numPendingStateTransitions.updateValue((long) messageCount);
   }
 
+  /**
+   * @param partitionCount the partitions with pending state transitions charged against the state
+   *          transition throttles
+   */
+  public void updatePendingTransitionPartitions(long partitionCount) {
+    _numPendingTransitionPartitions.updateValue(partitionCount);
+  }
+
   public void updateStateHandoffStats(MonitorState monitorState, long totalDuration,
       long helixLatency, boolean isGraceful, boolean succeeded) {
     switch (monitorState) {
@@ -417,6 +429,10 @@ public class ResourceMonitor extends DynamicMBeanProvider {
     return _numPendingStateTransitions.getValue();
   }
 
+  public long getPendingTransitionPartitionGauge() {
+    return _numPendingTransitionPartitions.getValue();
+  }
+
   public String getRebalanceState() {
     return _rebalanceState.getValue();
   }
@@ -0,0 +1,130 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.helix.HelixException;
+import org.apache.helix.manager.zk.Cache;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.DynamicMBeanProvider;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.DynamicMetric;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.SimpleDynamicMetric;
+
+/**
+ * Monitor of a cache of a ZkCacheBaseDataAccessor. The metrics are read from the cache when the
+ * MBean attributes are read, so lookups do not update any metric.
+ */
+public class ZkCacheMonitor extends DynamicMBeanProvider {
+  public static final String MONITOR_TYPE = "Type";
+  public static final String MONITOR_KEY = "Key";
+  public static final String MONITOR_CACHE_TYPE = "CacheType";
+  private static final String MBEAN_DESCRIPTION = "Helix Zk Cache Monitor";
+
+  private final String _sensorName;
+  private final String _monitorType;
+  private final String _monitorKey;
+  private final String _cacheType;
+
+  private final List<DynamicMetric<?, ?>> _attributeList = new ArrayList<>();
+
+  /**
+   * @param cacheType the kind of the cache, e.g. WriteThrough or ZkCallback
+   */
+  public ZkCacheMonitor(String monitorType, String monitorKey, String cacheType,
+      final Cache<?> cache) {
+    if (monitorKey == null || monitorKey.isEmpty() || monitorType == null || monitorType
+        .isEmpty()) {
+      throw new HelixException("Cannot create ZkCacheMonitor without monitor key and type.");
+    }
+    _monitorType = monitorType;
+    _monitorKey = monitorKey;
+    _cacheType = cacheType;
+    _sensorName = String
+        .format("%s.%s.%s.%s", MonitorDomainNames.HelixZkCache.name(), monitorType, monitorKey,
+            cacheType);
+
+    _attributeList.add(new CacheMetric("HitCounter") {
+      @Override
+      long read() {
+        return cache.getHitCount();
+      }
+    });
+    _attributeList.add(new CacheMetric("MissCounter") {
+      @Override
+      long read() {
+        return cache.getMissCount();
+      }
+    });
+    _attributeList.add(new CacheMetric("EvictionCounter") {
+      @Override
+      long read() {
+        return cache.getEvictionCount();
+      }
+    });
+    _attributeList.add(new CacheMetric("CachedZNodeGauge") {
+      @Override
+      long read() {
+        return cache.size();
+      }
+    });
+  }
+
+  @Override
+  public String getSensorName() {
+    return _sensorName;
+  }
+
+  private ObjectName getMBeanName() throws MalformedObjectNameException {
+    return MBeanRegistrar
+        .buildObjectName(MonitorDomainNames.HelixZkCache.name(), MONITOR_TYPE, _monitorType,
+            MONITOR_KEY, _monitorKey, MONITOR_CACHE_TYPE, _cacheType);
+  }
+
+  @Override
+  public ZkCacheMonitor register() throws JMException {
+    doRegister(_attributeList, MBEAN_DESCRIPTION, getMBeanName());
+    return this;
+  }
+
+  /**
+   * A metric that reads its value from the cache.
+   */
+  private static abstract class CacheMetric extends SimpleDynamicMetric<Long> {
+    CacheMetric(String metricName) {
+      super(metricName, 0L);
+    }
+
+    abstract long read();
+
+    @Override
+    public Long getAttributeValue(String attributeName) {
+      return super.getAttributeValue(attributeName) == null ? null : read();
+    }
+
+    @Override
+    public Long getValue() {
+      return read();
+    }
+  }
+}
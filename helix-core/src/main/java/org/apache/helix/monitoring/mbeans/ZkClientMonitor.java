@@ -29,11 +29,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
 import org.apache.helix.HelixException;
 import org.apache.helix.manager.zk.zookeeper.ZkEventThread;
 import org.apache.helix.monitoring.mbeans.dynamicMBeans.DynamicMBeanProvider;
 import org.apache.helix.monitoring.mbeans.dynamicMBeans.DynamicMetric;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.HistogramDynamicMetric;
 import org.apache.helix.monitoring.mbeans.dynamicMBeans.SimpleDynamicMetric;
 
 public class ZkClientMonitor extends DynamicMBeanProvider {
@@ -54,6 +58,8 @@ public class ZkClientMonitor extends DynamicMBeanProvider {
   private SimpleDynamicMetric<Long> _stateChangeEventCounter;
   private SimpleDynamicMetric<Long> _dataChangeEventCounter;
   private SimpleDynamicMetric<Long> _outstandingRequestGauge;
+  private HistogramDynamicMetric _eventQueueDepthGauge;
+  private HistogramDynamicMetric _eventDispatchLatencyGauge;
 
   private ZkThreadMetric _zkEventThreadMetric;
 
@@ -77,6 +83,11 @@ public class ZkClientMonitor extends DynamicMBeanProvider {
     _stateChangeEventCounter = new SimpleDynamicMetric("StateChangeEventCounter", 0l);
     _dataChangeEventCounter = new SimpleDynamicMetric("DataChangeEventCounter", 0l);
     _outstandingRequestGauge = new SimpleDynamicMetric("OutstandingRequestGauge", 0l);
+    _eventQueueDepthGauge = new HistogramDynamicMetric("EventQueueDepthGauge", new Histogram(
+        new SlidingTimeWindowArrayReservoir(DEFAULT_RESET_INTERVAL_MS, TimeUnit.MILLISECONDS)));
+    _eventDispatchLatencyGauge = new HistogramDynamicMetric("EventDispatchLatencyGauge",
+        new Histogram(
+            new SlidingTimeWindowArrayReservoir(DEFAULT_RESET_INTERVAL_MS, TimeUnit.MILLISECONDS)));
     if (zkEventThread != null) {
       _zkEventThreadMetric = new ZkThreadMetric(zkEventThread);
     }
@@ -96,6 +107,8 @@ public class ZkClientMonitor extends DynamicMBeanProvider {
     attributeList.add(_dataChangeEventCounter);
     attributeList.add(_outstandingRequestGauge);
     attributeList.add(_stateChangeEventCounter);
+    attributeList.add(_eventQueueDepthGauge);
+    attributeList.add(_eventDispatchLatencyGauge);
     if (_zkEventThreadMetric != null) {
       attributeList.add(_zkEventThreadMetric);
     }
@@ -152,6 +165,21 @@ public class ZkClientMonitor extends DynamicMBeanProvider {
     }
   }
 
+  /**
+   * @param queueDepth number of events waiting in the queue of the dispatch thread an event is
+   *                   sent to, including the event
+   */
+  public void recordEventQueueDepth(long queueDepth) {
+    _eventQueueDepthGauge.updateValue(queueDepth);
+  }
+
+  /**
+   * @param latencyMs time from an event being sent to it being delivered to its listener
+   */
+  public void recordEventDispatchLatency(long latencyMs) {
+    _eventDispatchLatencyGauge.updateValue(latencyMs);
+  }
+
   private void record(String path, int bytes, long latencyMilliSec, boolean isFailure,
       boolean isRead) {
     for (ZkClientPathMonitor.PredefinedPath predefinedPath : ZkClientPathMonitor.PredefinedPath
@@ -39,6 +39,8 @@ import org.slf4j.LoggerFactory;
 /**
  * A class to consume ExternalViews of a cluster and provide {resource, partition, state} to
  * {instances} map function.
+ * A routing table is read-only once built, so it can be read by any thread without locking, and
+ * the entries of unchanged resources are shared with the routing table built after it.
  */
 class RoutingTable {
   private static final Logger logger = LoggerFactory.getLogger(RoutingTable.class);
@@ -51,6 +53,9 @@ class RoutingTable {
   private final Collection<LiveInstance> _liveInstances;
   private final Collection<InstanceConfig> _instanceConfigs;
   private final Collection<ExternalView> _externalViews;
+  // the ExternalView each resource was built from, by resource name
+  private final Map<String, ExternalView> _externalViewMap;
+  private final Map<String, InstanceConfig> _instanceConfigMap;
 
   public RoutingTable() {
     this(Collections.<ExternalView>emptyList(), Collections.<InstanceConfig>emptyList(),
@@ -62,60 +67,143 @@ class RoutingTable {
     // TODO Aggregate currentState to an ExternalView in the RoutingTable, so there is no need to refresh according to the currentStateMap. - jjwang
     this(Collections.<ExternalView>emptyList(), instanceConfigs, liveInstances);
     refresh(currentStateMap);
+    freeze();
   }
 
   public RoutingTable(Collection<ExternalView> externalViews,
       Collection<InstanceConfig> instanceConfigs, Collection<LiveInstance> liveInstances) {
+    this(externalViews, instanceConfigs, liveInstances, null);
+  }
+
+  /**
+   * Build the routing table of the given ExternalViews on top of a previous routing table. The
+   * routing entries of a resource are taken over from the previous table if its ExternalView is
+   * the same object and no instance config changed, so only the changed ExternalViews are read.
+   * @param previous the routing table to build on, or null to build from scratch
+   */
+  public RoutingTable(Collection<ExternalView> externalViews,
+      Collection<InstanceConfig> instanceConfigs, Collection<LiveInstance> liveInstances,
+      RoutingTable previous) {
     _resourceInfoMap = new HashMap<>();
     _resourceGroupInfoMap = new HashMap<>();
     _liveInstances = new HashSet<>(liveInstances);
     _instanceConfigs = new HashSet<>(instanceConfigs);
     _externalViews = new HashSet<>(externalViews);
-    refresh(externalViews);
+    _externalViewMap = new HashMap<>();
+    _instanceConfigMap = new HashMap<>();
+    for (InstanceConfig config : _instanceConfigs) {
+      _instanceConfigMap.put(config.getId(), config);
+    }
+    refresh(externalViews, previous);
+    freeze();
   }
 
-  private void refresh(Collection<ExternalView> externalViewList) {
-    Map<String, InstanceConfig> instanceConfigMap = new HashMap<>();
-    if (externalViewList != null && !externalViewList.isEmpty()) {
-      for (InstanceConfig config : _instanceConfigs) {
-        instanceConfigMap.put(config.getId(), config);
+  private void refresh(Collection<ExternalView> externalViewList, RoutingTable previous) {
+    if (externalViewList == null || externalViewList.isEmpty()) {
+      return;
+    }
+    for (ExternalView extView : externalViewList) {
+      _externalViewMap.put(extView.getId(), extView);
+    }
+    boolean reuse = previous != null && hasSameInstanceConfigs(previous);
+
+    // a resource group is rebuilt if any of its resources changed, was added or was removed
+    Set<String> changedResourceGroups = new HashSet<>();
+    if (reuse) {
+      for (ExternalView prevExtView : previous._externalViewMap.values()) {
+        if (prevExtView.isGroupRoutingEnabled()
+            && _externalViewMap.get(prevExtView.getId()) != prevExtView) {
+          changedResourceGroups.add(prevExtView.getResourceGroupName());
+        }
+      }
+    }
+    for (ExternalView extView : externalViewList) {
+      String resourceName = extView.getId();
+      if (reuse && previous._externalViewMap.get(resourceName) == extView) {
+        ResourceInfo resourceInfo = previous._resourceInfoMap.get(resourceName);
+        if (resourceInfo != null) {
+          _resourceInfoMap.put(resourceName, resourceInfo);
+        }
+      } else {
+        if (extView.isGroupRoutingEnabled()) {
+          changedResourceGroups.add(extView.getResourceGroupName());
+        }
+        addExternalView(extView, true, false);
+      }
+    }
+    for (ExternalView extView : externalViewList) {
+      if (extView.isGroupRoutingEnabled() && (!reuse || changedResourceGroups
+          .contains(extView.getResourceGroupName()))) {
+        addExternalView(extView, false, true);
       }
-      for (ExternalView extView : externalViewList) {
-        String resourceName = extView.getId();
-        for (String partitionName : extView.getPartitionSet()) {
-          Map<String, String> stateMap = extView.getStateMap(partitionName);
-          for (String instanceName : stateMap.keySet()) {
-            String currentState = stateMap.get(instanceName);
-            if (instanceConfigMap.containsKey(instanceName)) {
-              InstanceConfig instanceConfig = instanceConfigMap.get(instanceName);
-              if (extView.isGroupRoutingEnabled()) {
-                addEntry(resourceName, extView.getResourceGroupName(),
-                    extView.getInstanceGroupTag(), partitionName, currentState, instanceConfig);
-              } else {
-                addEntry(resourceName, partitionName, currentState, instanceConfig);
-              }
-            } else {
-              logger.warn(
-                  "Participant {} is not found with proper configuration information. It might already be removed from the cluster. "
-                      + "Skip recording partition assignment entry: Partition {}, Participant {}, State {}.",
-                  instanceName, partitionName, instanceName, stateMap.get(instanceName));
-            }
+    }
+    if (reuse) {
+      for (Map.Entry<String, ResourceGroupInfo> entry : previous._resourceGroupInfoMap
+          .entrySet()) {
+        if (!changedResourceGroups.contains(entry.getKey())) {
+          _resourceGroupInfoMap.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+  }
+
+  private void addExternalView(ExternalView extView, boolean addResource,
+      boolean addResourceGroup) {
+    String resourceName = extView.getId();
+    for (String partitionName : extView.getPartitionSet()) {
+      Map<String, String> stateMap = extView.getStateMap(partitionName);
+      for (String instanceName : stateMap.keySet()) {
+        String currentState = stateMap.get(instanceName);
+        InstanceConfig instanceConfig = _instanceConfigMap.get(instanceName);
+        if (instanceConfig != null) {
+          if (addResource) {
+            addEntry(resourceName, partitionName, currentState, instanceConfig);
+          }
+          if (addResourceGroup) {
+            addEntry(extView.getResourceGroupName(), extView.getInstanceGroupTag(), partitionName,
+                currentState, instanceConfig);
           }
+        } else if (addResource) {
+          logger.warn(
+              "Participant {} is not found with proper configuration information. It might already be removed from the cluster. "
+                  + "Skip recording partition assignment entry: Partition {}, Participant {}, State {}.",
+              instanceName, partitionName, instanceName, currentState);
         }
       }
     }
   }
 
+  private boolean hasSameInstanceConfigs(RoutingTable previous) {
+    if (previous._instanceConfigMap.size() != _instanceConfigMap.size()) {
+      return false;
+    }
+    for (Map.Entry<String, InstanceConfig> entry : _instanceConfigMap.entrySet()) {
+      if (previous._instanceConfigMap.get(entry.getKey()) != entry.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Sort the instances of every partition and state and make the entries read-only, so lookups
+   * return them as they are and the entries can be shared with the next routing table.
+   */
+  private void freeze() {
+    for (ResourceInfo resourceInfo : _resourceInfoMap.values()) {
+      resourceInfo.freeze();
+    }
+    for (ResourceGroupInfo resourceGroupInfo : _resourceGroupInfoMap.values()) {
+      resourceGroupInfo.freeze();
+    }
+  }
+
   private void refresh(Map<String, Map<String, Map<String, CurrentState>>> currentStateMap) {
-    Map<String, InstanceConfig> instanceConfigMap = new HashMap<>();
     if (currentStateMap != null && !currentStateMap.isEmpty()) {
-      for (InstanceConfig config : _instanceConfigs) {
-        instanceConfigMap.put(config.getId(), config);
-      }
       for (LiveInstance liveInstance : _liveInstances) {
         String instanceName = liveInstance.getInstanceName();
         String sessionId = liveInstance.getSessionId();
-        InstanceConfig instanceConfig = instanceConfigMap.get(instanceName);
+        InstanceConfig instanceConfig = _instanceConfigMap.get(instanceName);
         if (instanceConfig == null) {
           logger.warn(
               "Participant {} is not found with proper configuration information. It might already be removed from the cluster. "
@@ -153,12 +241,10 @@ class RoutingTable {
   }
 
   /**
-   * add an entry with a resource with resourceGrouping enabled.
+   * add an entry to the resource group of a resource with resourceGrouping enabled.
    */
-  private void addEntry(String resourceName, String resourceGroupName, String resourceTag,
-      String partitionName, String state, InstanceConfig config) {
-    addEntry(resourceName, partitionName, state, config);
-
+  private void addEntry(String resourceGroupName, String resourceTag, String partitionName,
+      String state, InstanceConfig config) {
     if (!_resourceGroupInfoMap.containsKey(resourceGroupName)) {
       _resourceGroupInfoMap.put(resourceGroupName, new ResourceGroupInfo());
     }
@@ -291,7 +377,7 @@ class RoutingTable {
     if (instanceList == null) {
       instanceList = Collections.emptyList();
     }
-    return Collections.unmodifiableList(instanceList);
+    return instanceList;
   }
 
   /**
@@ -367,6 +453,7 @@ class RoutingTable {
     Map<String, PartitionInfo> partitionInfoMap;
     // stores the Set of Instances in a given state
     Map<String, Set<InstanceConfig>> stateInfoMap;
+    boolean frozen = false;
 
     public ResourceInfo() {
       partitionInfoMap = new HashMap<>();
@@ -394,6 +481,20 @@ class RoutingTable {
     PartitionInfo get(String stateUnitKey) {
       return partitionInfoMap.get(stateUnitKey);
     }
+
+    void freeze() {
+      // entries taken over from the previous routing table are frozen already, and may be read
+      if (frozen) {
+        return;
+      }
+      frozen = true;
+      for (Map.Entry<String, Set<InstanceConfig>> entry : stateInfoMap.entrySet()) {
+        entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+      }
+      for (PartitionInfo partitionInfo : partitionInfoMap.values()) {
+        partitionInfo.freeze();
+      }
+    }
   }
 
   /**
@@ -450,10 +551,24 @@ class RoutingTable {
 
       return resourceInfo.get(stateUnitKey);
     }
+
+    void freeze() {
+      aggregatedResourceInfo.freeze();
+      for (ResourceInfo resourceInfo : tagToResourceMap.values()) {
+        resourceInfo.freeze();
+      }
+    }
   }
 
+  /**
+   * Class to store the instances in each state of a partition. Once frozen, the states and the
+   * read-only lists of their instances, sorted by instance id, are kept in arrays. A partition has
+   * only a few states, so a lookup scans the states without hashing or allocating.
+   */
   class PartitionInfo {
     Map<String, List<InstanceConfig>> stateInfoMap;
+    String[] states;
+    List<InstanceConfig>[] instances;
 
     public PartitionInfo() {
       stateInfoMap = new HashMap<>();
@@ -467,12 +582,35 @@ class RoutingTable {
       list.add(config);
     }
 
+    @SuppressWarnings("unchecked")
+    void freeze() {
+      if (stateInfoMap == null) {
+        return;
+      }
+      states = new String[stateInfoMap.size()];
+      instances = new List[stateInfoMap.size()];
+      int i = 0;
+      for (Map.Entry<String, List<InstanceConfig>> entry : stateInfoMap.entrySet()) {
+        List<InstanceConfig> list = entry.getValue();
+        Collections.sort(list, INSTANCE_CONFIG_COMPARATOR);
+        states[i] = entry.getKey();
+        instances[i] = Collections.unmodifiableList(list);
+        i++;
+      }
+      stateInfoMap = null;
+    }
+
     List<InstanceConfig> get(String state) {
-      return stateInfoMap.get(state);
+      for (int i = 0; i < states.length; i++) {
+        if (states[i].equals(state)) {
+          return instances[i];
+        }
+      }
+      return null;
     }
 
     boolean containsState(String state) {
-      return stateInfoMap.containsKey(state);
+      return get(state) != null;
     }
   }
 
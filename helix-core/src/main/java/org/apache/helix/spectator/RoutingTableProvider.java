@@ -545,7 +545,8 @@ public class RoutingTableProvider
   protected void refresh(Collection<ExternalView> externalViews,
       Collection<InstanceConfig> instanceConfigs, Collection<LiveInstance> liveInstances) {
     long startTime = System.currentTimeMillis();
-    RoutingTable newRoutingTable = new RoutingTable(externalViews, instanceConfigs, liveInstances);
+    RoutingTable newRoutingTable = new RoutingTable(externalViews, instanceConfigs, liveInstances,
+        _routingTableRef.get());
     resetRoutingTableAndNotify(startTime, newRoutingTable);
   }
 
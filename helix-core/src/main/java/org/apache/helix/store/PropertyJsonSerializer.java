@@ -19,46 +19,51 @@ package org.apache.helix.store;
  * under the License.
  */
 
-import java.io.ByteArrayInputStream;
-import java.io.StringWriter;
-
 import org.apache.helix.HelixException;
 import org.apache.helix.ZNRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.map.ObjectWriter;
 import org.codehaus.jackson.map.SerializationConfig;
 
 public class PropertyJsonSerializer<T> implements PropertySerializer<T> {
   static private Logger LOG = LoggerFactory.getLogger(PropertyJsonSerializer.class);
-  private final Class<T> _clazz;
+
+  // Shared and thread-safe once configured
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ObjectWriter WRITER;
+
+  static {
+    MAPPER.configure(SerializationConfig.Feature.INDENT_OUTPUT, true);
+    MAPPER.configure(SerializationConfig.Feature.AUTO_DETECT_FIELDS, true);
+    MAPPER.configure(SerializationConfig.Feature.CAN_OVERRIDE_ACCESS_MODIFIERS, true);
+    MAPPER.configure(DeserializationConfig.Feature.AUTO_DETECT_FIELDS, true);
+    MAPPER.configure(DeserializationConfig.Feature.AUTO_DETECT_SETTERS, true);
+    MAPPER.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+    WRITER = MAPPER.writer();
+  }
+
+  private final ObjectReader _reader;
 
   public PropertyJsonSerializer(Class<T> clazz) {
-    _clazz = clazz;
+    _reader = MAPPER.reader(clazz);
   }
 
   @Override
   public byte[] serialize(T data) throws PropertyStoreException {
-    ObjectMapper mapper = new ObjectMapper();
-
-    SerializationConfig serializationConfig = mapper.getSerializationConfig();
-    serializationConfig.set(SerializationConfig.Feature.INDENT_OUTPUT, true);
-    serializationConfig.set(SerializationConfig.Feature.AUTO_DETECT_FIELDS, true);
-    serializationConfig.set(SerializationConfig.Feature.CAN_OVERRIDE_ACCESS_MODIFIERS, true);
-    StringWriter sw = new StringWriter();
-
     try {
-      mapper.writeValue(sw, data);
+      byte[] bytes = WRITER.writeValueAsBytes(data);
 
-      if (sw.toString().getBytes().length > ZNRecord.SIZE_LIMIT) {
+      if (bytes.length > ZNRecord.SIZE_LIMIT) {
         throw new HelixException("Data size larger than 1M. Write empty string to zk.");
       }
-      return sw.toString().getBytes();
+      return bytes;
 
     } catch (Exception e) {
-      LOG.error("Error during serialization of data (first 1k): "
-          + sw.toString().substring(0, 1024), e);
+      LOG.error("Error during serialization of data: " + data, e);
     }
 
     return new byte[] {};
@@ -66,15 +71,8 @@ public class PropertyJsonSerializer<T> implements PropertySerializer<T> {
 
   @Override
   public T deserialize(byte[] bytes) throws PropertyStoreException {
-    ObjectMapper mapper = new ObjectMapper();
-    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-
-    DeserializationConfig deserializationConfig = mapper.getDeserializationConfig();
-    deserializationConfig.set(DeserializationConfig.Feature.AUTO_DETECT_FIELDS, true);
-    deserializationConfig.set(DeserializationConfig.Feature.AUTO_DETECT_SETTERS, true);
-    deserializationConfig.set(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, true);
     try {
-      T value = mapper.readValue(bais, _clazz);
+      T value = _reader.readValue(bytes);
       return value;
     } catch (Exception e) {
       LOG.error("Error during deserialization of bytes: " + new String(bytes), e);
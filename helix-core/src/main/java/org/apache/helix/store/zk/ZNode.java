@@ -20,9 +20,9 @@ package org.apache.helix.store.zk;
  */
 
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.zookeeper.data.Stat;
 
@@ -32,9 +32,10 @@ public class ZNode {
   public static final Stat ZERO_STAT = new Stat();
 
   final String _zkPath;
-  private Stat _stat;
-  Object _data;
-  Set<String> _childSet;
+  private volatile Stat _stat;
+  volatile Object _data;
+  // the children of a znode are updated under the lock of the child path, so the set is concurrent
+  volatile Set<String> _childSet;
 
   public ZNode(String zkPath, Object data, Stat stat) {
     _zkPath = zkPath;
@@ -50,21 +51,20 @@ public class ZNode {
   }
 
   public void addChild(String child) {
-    if (_childSet == Collections.<String> emptySet()) {
-      _childSet = new HashSet<String>();
-    }
-
-    _childSet.add(child);
+    initChildSet().add(child);
   }
 
   public void addChildren(List<String> children) {
     if (children != null && !children.isEmpty()) {
-      if (_childSet == Collections.<String> emptySet()) {
-        _childSet = new HashSet<String>();
-      }
+      initChildSet().addAll(children);
+    }
+  }
 
-      _childSet.addAll(children);
+  private synchronized Set<String> initChildSet() {
+    if (_childSet == Collections.<String> emptySet()) {
+      _childSet = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     }
+    return _childSet;
   }
 
   public boolean hasChild(String child) {
@@ -94,12 +94,9 @@ public class ZNode {
 
   public void setChildSet(List<String> childNames) {
     if (childNames != null && !childNames.isEmpty()) {
-      if (_childSet == Collections.<String> emptySet()) {
-        _childSet = new HashSet<String>();
-      }
-
-      _childSet.clear();
-      _childSet.addAll(childNames);
+      Set<String> childSet = initChildSet();
+      childSet.clear();
+      childSet.addAll(childNames);
     }
   }
 
@@ -19,6 +19,9 @@ package org.apache.helix.task;
  * under the License.
  */
 
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -27,6 +30,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.I0Itec.zkclient.DataUpdater;
 import org.apache.helix.AccessOption;
 import org.apache.helix.BaseDataAccessor;
@@ -92,6 +98,7 @@ public class TaskDriver {
   private final HelixPropertyStore<ZNRecord> _propertyStore;
   private final HelixAdmin _admin;
   private final String _clusterName;
+  private WorkflowContextWatcher _contextWatcher;
 
 
   public TaskDriver(HelixManager manager) {
@@ -621,22 +628,24 @@ public class TaskDriver {
    */
   public void waitToStop(String workflow, long timeout) throws InterruptedException {
     setWorkflowTargetState(workflow, TargetState.STOP);
-    long endTime = System.currentTimeMillis() + timeout;
-
-    while (System.currentTimeMillis() <= endTime) {
-      WorkflowContext workflowContext = getWorkflowContext(workflow);
+    ListenableFuture<TaskState> future = getContextWatcher()
+        .watch(workflow, new WorkflowContextWatcher.Condition<TaskState>() {
+          @Override
+          public TaskState check(WorkflowContext context) {
+            if (context == null || context.getWorkflowState() == null || TaskState.IN_PROGRESS
+                .equals(context.getWorkflowState())) {
+              return null;
+            }
+            return context.getWorkflowState();
+          }
+        });
 
-      if (workflowContext == null || TaskState.IN_PROGRESS.equals(workflowContext.getWorkflowState())) {
-        Thread.sleep(1000);
-      } else {
-        // Successfully stopped
-        return;
-      }
+    if (waitFor(future, timeout) == null) {
+      // Failed to stop with timeout
+      throw new HelixException(String
+          .format("Fail to stop the workflow/queue %s with in %d milliseconds.", workflow,
+              timeout));
     }
-
-    // Failed to stop with timeout
-    throw new HelixException(String
-        .format("Fail to stop the workflow/queue %s with in %d milliseconds.", workflow, timeout));
   }
 
   /**
@@ -715,6 +724,16 @@ public class TaskDriver {
     String workflowConfigPath = keyBuilder.resourceConfig(workflow).getPath();
     String workflowContextPath = keyBuilder.workflowContext(workflow).getPath();
 
+    // the workflow context is removed last, wait for it without polling
+    ListenableFuture<Boolean> contextRemoved = getContextWatcher()
+        .watch(workflow, new WorkflowContextWatcher.Condition<Boolean>() {
+          @Override
+          public Boolean check(WorkflowContext context) {
+            return context == null ? Boolean.TRUE : null;
+          }
+        });
+    waitFor(contextRemoved, timeout);
+
     while (System.currentTimeMillis() <= endTime) {
       if (baseDataAccessor.exists(idealStatePath, AccessOption.PERSISTENT)
           || baseDataAccessor.exists(workflowConfigPath, AccessOption.PERSISTENT)
@@ -864,26 +883,41 @@ public class TaskDriver {
    */
   public TaskState pollForWorkflowState(String workflowName, long timeout,
       TaskState... targetStates) throws InterruptedException {
-    // Wait for completion.
-    long st = System.currentTimeMillis();
-    WorkflowContext ctx;
-    Set<TaskState> allowedStates = new HashSet<TaskState>(Arrays.asList(targetStates));
-
-    long timeToSleep = timeout > 100L ? 100L : timeout;
-    do {
-      Thread.sleep(timeToSleep);
-      ctx = getWorkflowContext(workflowName);
-    } while ((ctx == null || ctx.getWorkflowState() == null || !allowedStates
-        .contains(ctx.getWorkflowState())) && System.currentTimeMillis() < st + timeout);
-
-    if (ctx == null || !allowedStates.contains(ctx.getWorkflowState())) {
-      throw new HelixException(String.format(
-          "Workflow \"%s\" context is empty or not in states: \"%s\", current state: \"%s\"",
-          workflowName, Arrays.asList(targetStates),
-          ctx == null ? "null" : ctx.getWorkflowState().toString()));
+    TaskState state = waitFor(asyncPollForWorkflowState(workflowName, targetStates), timeout);
+    if (state != null) {
+      return state;
     }
 
-    return ctx.getWorkflowState();
+    WorkflowContext ctx = getWorkflowContext(workflowName);
+    throw new HelixException(String.format(
+        "Workflow \"%s\" context is empty or not in states: \"%s\", current state: \"%s\"",
+        workflowName, Arrays.asList(targetStates),
+        ctx == null ? "null" : String.valueOf(ctx.getWorkflowState())));
+  }
+
+  /**
+   * Returns a future that is completed with the workflow state once the workflow reaches one of
+   * the target states. Waiting does not poll zookeeper: all the waiters of a workflow share one
+   * watch on its context. Callbacks of the future run on the zookeeper event thread if no executor
+   * is given, so they must not block. Cancel the future to stop waiting.
+   *
+   * @param workflowName The workflow to be monitored
+   * @param targetStates Specified states that user would like to stop monitoring
+   * @return A future of the workflow state
+   */
+  public ListenableFuture<TaskState> asyncPollForWorkflowState(String workflowName,
+      TaskState... targetStates) {
+    final Set<TaskState> allowedStates = new HashSet<>(Arrays.asList(targetStates));
+    return getContextWatcher()
+        .watch(workflowName, new WorkflowContextWatcher.Condition<TaskState>() {
+          @Override
+          public TaskState check(WorkflowContext context) {
+            if (context == null || !allowedStates.contains(context.getWorkflowState())) {
+              return null;
+            }
+            return context.getWorkflowState();
+          }
+        });
   }
 
   /**
@@ -915,6 +949,28 @@ public class TaskDriver {
    */
   public TaskState pollForJobState(String workflowName, String jobName, long timeout,
       TaskState... states) throws InterruptedException {
+    TaskState state = waitFor(asyncPollForJobState(workflowName, jobName, states), timeout);
+    if (state != null) {
+      return state;
+    }
+
+    throw new HelixException(
+        String.format("Workflow \"%s\" context is null or job \"%s\" is not in states: %s",
+            workflowName, jobName, new HashSet<>(Arrays.asList(states))));
+  }
+
+  /**
+   * Returns a future that is completed with the job state once the job reaches one of the target
+   * states. For a recurring workflow, the job of its last scheduled workflow is monitored. See
+   * {@link #asyncPollForWorkflowState(String, TaskState...)} on how the future is completed.
+   *
+   * @param workflowName The workflow that contains the job to monitor
+   * @param jobName The specified job to monitor
+   * @param states Specified states that user would like to stop monitoring
+   * @return A future of the job state
+   */
+  public ListenableFuture<TaskState> asyncPollForJobState(final String workflowName,
+      final String jobName, TaskState... states) {
     // Get workflow config
     WorkflowConfig workflowConfig = getWorkflowConfig(workflowName);
 
@@ -922,36 +978,64 @@ public class TaskDriver {
       throw new HelixException(String.format("Workflow \"%s\" does not exists!", workflowName));
     }
 
-    long timeToSleep = timeout > 50L ? 50L : timeout;
-
-    WorkflowContext ctx;
-    if (workflowConfig.isRecurring()) {
-      // if it's recurring, need to reconstruct workflow and job name
-      do {
-        Thread.sleep(timeToSleep);
-        ctx = getWorkflowContext(workflowName);
-      } while ((ctx == null || ctx.getLastScheduledSingleWorkflow() == null));
-
-      jobName = jobName.substring(workflowName.length() + 1);
-      workflowName = ctx.getLastScheduledSingleWorkflow();
+    final Set<TaskState> allowedStates = new HashSet<>(Arrays.asList(states));
+    if (!workflowConfig.isRecurring()) {
+      return watchJobState(workflowName, jobName, allowedStates);
     }
 
-    Set<TaskState> allowedStates = new HashSet<>(Arrays.asList(states));
-    // Wait for state
-    long st = System.currentTimeMillis();
-    do {
-      Thread.sleep(timeToSleep);
-      ctx = getWorkflowContext(workflowName);
-    } while ((ctx == null || ctx.getJobState(jobName) == null || !allowedStates
-        .contains(ctx.getJobState(jobName))) && System.currentTimeMillis() < st + timeout);
+    // if it's recurring, need to reconstruct workflow and job name
+    ListenableFuture<String> scheduledWorkflow = getContextWatcher()
+        .watch(workflowName, new WorkflowContextWatcher.Condition<String>() {
+          @Override
+          public String check(WorkflowContext context) {
+            return context != null ? context.getLastScheduledSingleWorkflow() : null;
+          }
+        });
+    return Futures.transform(scheduledWorkflow, new AsyncFunction<String, TaskState>() {
+      @Override
+      public ListenableFuture<TaskState> apply(String scheduledWorkflowName) {
+        return watchJobState(scheduledWorkflowName,
+            jobName.substring(workflowName.length() + 1), allowedStates);
+      }
+    });
+  }
 
-    if (ctx == null || !allowedStates.contains(ctx.getJobState(jobName))) {
-      throw new HelixException(
-          String.format("Workflow \"%s\" context is null or job \"%s\" is not in states: %s",
-              workflowName, jobName, allowedStates));
+  private ListenableFuture<TaskState> watchJobState(String workflowName, final String jobName,
+      final Set<TaskState> allowedStates) {
+    return getContextWatcher()
+        .watch(workflowName, new WorkflowContextWatcher.Condition<TaskState>() {
+          @Override
+          public TaskState check(WorkflowContext context) {
+            if (context == null || !allowedStates.contains(context.getJobState(jobName))) {
+              return null;
+            }
+            return context.getJobState(jobName);
+          }
+        });
+  }
+
+  /**
+   * Wait for the future until the timeout, and cancel it if it is not done by then.
+   * @return the result of the future, or null on timeout
+   */
+  private static <T> T waitFor(ListenableFuture<T> future, long timeout)
+      throws InterruptedException {
+    try {
+      return future.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      return null;
+    } catch (ExecutionException e) {
+      throw new HelixException(e.getCause());
+    } finally {
+      future.cancel(false);
     }
+  }
 
-    return ctx.getJobState(jobName);
+  private synchronized WorkflowContextWatcher getContextWatcher() {
+    if (_contextWatcher == null) {
+      _contextWatcher = new WorkflowContextWatcher(_propertyStore);
+    }
+    return _contextWatcher;
   }
 
   /**
@@ -0,0 +1,164 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.I0Itec.zkclient.IZkDataListener;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.store.HelixPropertyStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Completes futures when the WorkflowContext of a workflow meets a condition, see
+ * {@link TaskDriver#asyncPollForWorkflowState(String, TaskState...)}. All the waiters of a workflow
+ * share one data watch on its context, which is removed once no one waits for the workflow. Each
+ * change of the context is read once and checked against all of its waiters.
+ */
+class WorkflowContextWatcher {
+  private static final Logger LOG = LoggerFactory.getLogger(WorkflowContextWatcher.class);
+
+  /**
+   * A condition on the context of a workflow.
+   * @param <T> the result of a waiter
+   */
+  interface Condition<T> {
+    /**
+     * @param context the context of the workflow, null if the workflow has no context
+     * @return the result to complete the waiter with, or null if the condition is not met yet
+     */
+    T check(WorkflowContext context);
+  }
+
+  private final HelixPropertyStore<ZNRecord> _propertyStore;
+  private final Map<String, ContextListener> _listeners = new HashMap<>();
+
+  WorkflowContextWatcher(HelixPropertyStore<ZNRecord> propertyStore) {
+    _propertyStore = propertyStore;
+  }
+
+  /**
+   * Wait for the context of the workflow to meet the condition.
+   * @return a future completed with the result of the condition. Cancel it to stop waiting.
+   */
+  <T> ListenableFuture<T> watch(String workflow, Condition<T> condition) {
+    final Waiter<T> waiter = new Waiter<>(condition);
+    final ContextListener listener;
+    synchronized (this) {
+      ContextListener existing = _listeners.get(workflow);
+      if (existing == null) {
+        existing = new ContextListener(workflow);
+        _listeners.put(workflow, existing);
+        _propertyStore.subscribeDataChanges(existing._path, existing);
+      }
+      listener = existing;
+      listener._waiters.add(waiter);
+    }
+    waiter._future.addListener(new Runnable() {
+      @Override
+      public void run() {
+        remove(listener, waiter);
+      }
+    }, MoreExecutors.sameThreadExecutor());
+
+    // the watch is set, so any change after this read is checked as well
+    waiter.check(TaskUtil.getWorkflowContext(_propertyStore, workflow));
+    return waiter._future;
+  }
+
+  /**
+   * @return the number of workflows that have waiters
+   */
+  synchronized int getWatchedWorkflowCount() {
+    return _listeners.size();
+  }
+
+  private synchronized void remove(ContextListener listener, Waiter<?> waiter) {
+    listener._waiters.remove(waiter);
+    if (listener._waiters.isEmpty() && _listeners.get(listener._workflow) == listener) {
+      _listeners.remove(listener._workflow);
+      _propertyStore.unsubscribeDataChanges(listener._path, listener);
+    }
+  }
+
+  private class ContextListener implements IZkDataListener {
+    private final String _workflow;
+    private final String _path;
+    private final List<Waiter<?>> _waiters = new ArrayList<>();
+
+    ContextListener(String workflow) {
+      _workflow = workflow;
+      _path = TaskUtil.getWorkflowContextKey(workflow) + "/" + TaskConstants.CONTEXT_NODE;
+    }
+
+    @Override
+    public void handleDataChange(String dataPath, Object data) {
+      WorkflowContext context = data instanceof ZNRecord
+          ? new WorkflowContext((ZNRecord) data)
+          : TaskUtil.getWorkflowContext(_propertyStore, _workflow);
+      check(context);
+    }
+
+    @Override
+    public void handleDataDeleted(String dataPath) {
+      check(null);
+    }
+
+    private void check(WorkflowContext context) {
+      List<Waiter<?>> waiters;
+      synchronized (WorkflowContextWatcher.this) {
+        waiters = new ArrayList<>(_waiters);
+      }
+      for (Waiter<?> waiter : waiters) {
+        waiter.check(context);
+      }
+    }
+  }
+
+  private static class Waiter<T> {
+    private final Condition<T> _condition;
+    private final SettableFuture<T> _future = SettableFuture.create();
+
+    Waiter(Condition<T> condition) {
+      _condition = condition;
+    }
+
+    void check(WorkflowContext context) {
+      if (_future.isDone()) {
+        return;
+      }
+      try {
+        T result = _condition.check(context);
+        if (result != null) {
+          _future.set(result);
+        }
+      } catch (RuntimeException e) {
+        LOG.warn("Failed to check the workflow context", e);
+        _future.setException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,285 @@
+package org.apache.helix.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixProperty;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.ZNRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers the status update and error records in a bounded queue and writes them to another sink
+ * from a background thread, so logging a record never waits for ZooKeeper. The buffer is flushed
+ * periodically, and as soon as it is half full. The records of the same path buffered between two
+ * flushes are merged, and written once.
+ * <p>
+ * When the buffer is full, records are dropped according to the {@link DropPolicy}. The records
+ * are for diagnostics only, dropping them never blocks or fails a state transition.
+ */
+public class AsyncStatusUpdateSink implements StatusUpdateSink {
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncStatusUpdateSink.class);
+
+  public static final int DEFAULT_BUFFER_SIZE = 10000;
+  public static final long DEFAULT_FLUSH_INTERVAL_MS = 1000L;
+
+  public enum DropPolicy {
+    // drop the record being logged
+    DROP_NEWEST,
+    // drop the oldest buffered record to make room for the one being logged
+    DROP_OLDEST
+  }
+
+  private final StatusUpdateSink _sink;
+  private final BlockingQueue<BufferedUpdate> _buffer;
+  private final int _flushThreshold;
+  private final DropPolicy _dropPolicy;
+  private final ScheduledExecutorService _flushExecutor;
+  private final AtomicBoolean _flushScheduled = new AtomicBoolean(false);
+  private volatile boolean _shutdown = false;
+  private final Runnable _flushTask = new Runnable() {
+    @Override
+    public void run() {
+      _flushScheduled.set(false);
+      flush();
+    }
+  };
+
+  private final AtomicLong _droppedCount = new AtomicLong();
+  private final AtomicLong _writtenCount = new AtomicLong();
+  private final AtomicLong _failedCount = new AtomicLong();
+
+  public AsyncStatusUpdateSink(StatusUpdateSink sink) {
+    this(sink, DEFAULT_BUFFER_SIZE, DEFAULT_FLUSH_INTERVAL_MS, DropPolicy.DROP_OLDEST);
+  }
+
+  /**
+   * @param sink the sink the buffered records are written to
+   * @param bufferSize the max number of buffered records
+   * @param flushIntervalMs the interval of the periodic flushes
+   * @param dropPolicy the records to drop when the buffer is full
+   */
+  public AsyncStatusUpdateSink(StatusUpdateSink sink, int bufferSize, long flushIntervalMs,
+      DropPolicy dropPolicy) {
+    this(sink, bufferSize, flushIntervalMs, Math.max(1, bufferSize / 2), dropPolicy);
+  }
+
+  AsyncStatusUpdateSink(StatusUpdateSink sink, int bufferSize, long flushIntervalMs,
+      int flushThreshold, DropPolicy dropPolicy) {
+    if (bufferSize <= 0 || flushIntervalMs <= 0) {
+      throw new IllegalArgumentException(String
+          .format("Invalid buffer size %d or flush interval %d ms", bufferSize, flushIntervalMs));
+    }
+    _sink = sink;
+    _buffer = new ArrayBlockingQueue<>(bufferSize);
+    _flushThreshold = flushThreshold;
+    _dropPolicy = dropPolicy;
+    _flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "StatusUpdateFlusher");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    _flushExecutor.scheduleWithFixedDelay(_flushTask, flushIntervalMs, flushIntervalMs,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void update(HelixDataAccessor accessor, PropertyKey key, HelixProperty value) {
+    if (_shutdown) {
+      // nothing flushes the buffer any more, write through
+      _sink.update(accessor, key, value);
+    } else {
+      buffer(new BufferedUpdate(accessor, key, value, true));
+    }
+  }
+
+  @Override
+  public void set(HelixDataAccessor accessor, PropertyKey key, HelixProperty value) {
+    if (_shutdown) {
+      _sink.set(accessor, key, value);
+    } else {
+      buffer(new BufferedUpdate(accessor, key, value, false));
+    }
+  }
+
+  private void buffer(BufferedUpdate update) {
+    boolean buffered = _buffer.offer(update);
+    if (!buffered && _dropPolicy == DropPolicy.DROP_OLDEST) {
+      if (_buffer.poll() != null) {
+        _droppedCount.incrementAndGet();
+      }
+      buffered = _buffer.offer(update);
+    }
+    if (!buffered) {
+      _droppedCount.incrementAndGet();
+    }
+    if (_buffer.size() >= _flushThreshold && _flushScheduled.compareAndSet(false, true)) {
+      try {
+        _flushExecutor.execute(_flushTask);
+      } catch (RejectedExecutionException e) {
+        // shut down concurrently, flushed below
+      }
+    }
+    if (_shutdown) {
+      // shut down while buffering, the shutdown flush may have missed the record
+      flush();
+    }
+  }
+
+  /**
+   * Write out all the buffered records. Records of the same path are merged and written once.
+   */
+  @Override
+  public synchronized void flush() {
+    List<BufferedUpdate> updates = new ArrayList<>();
+    _buffer.drainTo(updates);
+    if (updates.isEmpty()) {
+      return;
+    }
+
+    // accessor -> path -> the updates of the path merged, in the order they were buffered
+    Map<HelixDataAccessor, Map<String, BufferedUpdate>> mergedUpdates = new IdentityHashMap<>();
+    for (BufferedUpdate update : updates) {
+      Map<String, BufferedUpdate> accessorUpdates = mergedUpdates.get(update._accessor);
+      if (accessorUpdates == null) {
+        accessorUpdates = new LinkedHashMap<>();
+        mergedUpdates.put(update._accessor, accessorUpdates);
+      }
+      String path = update._key.getPath();
+      BufferedUpdate merged = accessorUpdates.get(path);
+      if (merged == null || !update._merge) {
+        accessorUpdates.put(path, update);
+      } else {
+        accessorUpdates.put(path, merged.merge(update));
+      }
+    }
+
+    for (Map<String, BufferedUpdate> accessorUpdates : mergedUpdates.values()) {
+      for (BufferedUpdate update : accessorUpdates.values()) {
+        try {
+          if (update._merge) {
+            _sink.update(update._accessor, update._key, update._value);
+          } else {
+            _sink.set(update._accessor, update._key, update._value);
+          }
+          _writtenCount.incrementAndGet();
+        } catch (Exception e) {
+          _failedCount.incrementAndGet();
+          LOG.warn("Failed to write status update " + update._key.getPath(), e);
+        }
+      }
+    }
+    _sink.flush();
+  }
+
+  /**
+   * Flush the buffered records and stop the background flushes. The records written afterwards go
+   * directly to the underlying sink.
+   */
+  public void shutdown() {
+    _shutdown = true;
+    _flushExecutor.shutdown();
+    flush();
+  }
+
+  boolean isShutdown() {
+    return _shutdown;
+  }
+
+  /**
+   * @return the number of records dropped because the buffer was full
+   */
+  public long getDroppedCount() {
+    return _droppedCount.get();
+  }
+
+  /**
+   * @return the number of merged records written to the sink
+   */
+  public long getWrittenCount() {
+    return _writtenCount.get();
+  }
+
+  /**
+   * @return the number of merged records that failed to be written to the sink
+   */
+  public long getFailedCount() {
+    return _failedCount.get();
+  }
+
+  private static class BufferedUpdate {
+    private final HelixDataAccessor _accessor;
+    private final PropertyKey _key;
+    private final HelixProperty _value;
+    // merge into the existing record, or replace it
+    private final boolean _merge;
+
+    BufferedUpdate(HelixDataAccessor accessor, PropertyKey key, HelixProperty value,
+        boolean merge) {
+      _accessor = accessor;
+      _key = key;
+      _value = value;
+      _merge = merge;
+    }
+
+    /**
+     * @return the record of this update merged with the record of a later update of the same path
+     */
+    BufferedUpdate merge(BufferedUpdate later) {
+      // ZNRecord.merge shares and modifies the maps and lists of the fields, merge copies only
+      ZNRecord record = copy(_value.getRecord());
+      record.merge(copy(later._value.getRecord()));
+      return new BufferedUpdate(_accessor, _key, new HelixProperty(record), _merge);
+    }
+
+    private static ZNRecord copy(ZNRecord record) {
+      ZNRecord copy = new ZNRecord(record.getId());
+      copy.setSimpleFields(new HashMap<>(record.getSimpleFields()));
+      for (Map.Entry<String, Map<String, String>> entry : record.getMapFields().entrySet()) {
+        copy.setMapField(entry.getKey(), new TreeMap<>(entry.getValue()));
+      }
+      for (Map.Entry<String, List<String>> entry : record.getListFields().entrySet()) {
+        copy.setListField(entry.getKey(), new ArrayList<>(entry.getValue()));
+      }
+      return copy;
+    }
+  }
+}
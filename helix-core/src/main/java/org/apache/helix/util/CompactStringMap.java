@@ -0,0 +1,284 @@
+package org.apache.helix.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A Map from String to String backed by two sorted arrays. It is meant for the small per-partition
+ * maps of ZNRecord map fields (instance -> state, usually a handful of entries): one entry costs
+ * two array slots instead of a TreeMap node, while iteration stays in key order like the
+ * TreeMaps ZNRecord uses elsewhere. Lookups are binary searches and updates shift the arrays, so
+ * it is not suited for large maps, see {@link Builder}. Null keys cannot be put, looking them up
+ * finds nothing. Null values are permitted. Not thread-safe.
+ */
+public class CompactStringMap extends AbstractMap<String, String> {
+  /**
+   * The largest map field {@link Builder} reads into a CompactStringMap.
+   */
+  public static final int MAX_COMPACT_SIZE = 16;
+
+  private static final String[] EMPTY = new String[0];
+
+  private String[] _keys;
+  private String[] _values;
+  private int _size;
+
+  public CompactStringMap() {
+    _keys = EMPTY;
+    _values = EMPTY;
+  }
+
+  public CompactStringMap(int initialCapacity) {
+    _keys = initialCapacity == 0 ? EMPTY : new String[initialCapacity];
+    _values = initialCapacity == 0 ? EMPTY : new String[initialCapacity];
+  }
+
+  public CompactStringMap(Map<String, String> map) {
+    this(map.size());
+    putAll(map);
+  }
+
+  @Override
+  public int size() {
+    return _size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public String get(Object key) {
+    int index = indexOf(key);
+    return index >= 0 ? _values[index] : null;
+  }
+
+  @Override
+  public String put(String key, String value) {
+    if (key == null) {
+      throw new NullPointerException("CompactStringMap does not permit null keys");
+    }
+    // appending in key order, as deserialization of a sorted map does, needs no search
+    if (_size == 0 || _keys[_size - 1].compareTo(key) < 0) {
+      insertAt(_size, key, value);
+      return null;
+    }
+    int index = Arrays.binarySearch(_keys, 0, _size, key);
+    if (index >= 0) {
+      String previous = _values[index];
+      _values[index] = value;
+      return previous;
+    }
+    insertAt(-index - 1, key, value);
+    return null;
+  }
+
+  @Override
+  public String remove(Object key) {
+    int index = indexOf(key);
+    if (index < 0) {
+      return null;
+    }
+    String previous = _values[index];
+    removeAt(index);
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(_keys, 0, _size, null);
+    Arrays.fill(_values, 0, _size, null);
+    _size = 0;
+  }
+
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    return new AbstractSet<Entry<String, String>>() {
+      @Override
+      public Iterator<Entry<String, String>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return _size;
+      }
+    };
+  }
+
+  private int indexOf(Object key) {
+    if (!(key instanceof String)) {
+      return -1;
+    }
+    return Arrays.binarySearch(_keys, 0, _size, key);
+  }
+
+  private void insertAt(int index, String key, String value) {
+    if (_size == _keys.length) {
+      int capacity = Math.max(4, _size + (_size >> 1));
+      _keys = Arrays.copyOf(_keys, capacity);
+      _values = Arrays.copyOf(_values, capacity);
+    }
+    System.arraycopy(_keys, index, _keys, index + 1, _size - index);
+    System.arraycopy(_values, index, _values, index + 1, _size - index);
+    _keys[index] = key;
+    _values[index] = value;
+    _size++;
+  }
+
+  private void removeAt(int index) {
+    int moved = _size - index - 1;
+    System.arraycopy(_keys, index + 1, _keys, index, moved);
+    System.arraycopy(_values, index + 1, _values, index, moved);
+    _size--;
+    _keys[_size] = null;
+    _values[_size] = null;
+  }
+
+  /**
+   * Reads a map field of a serialized record. A small field is read into a CompactStringMap. A
+   * larger one is read into a TreeMap if the field is sorted, or else into a LinkedHashMap, which
+   * keeps the order the entries are read in. An unsorted field stays compact only while its keys
+   * come in key order, so it iterates in the order it was read either way.
+   */
+  public static class Builder {
+    private final boolean _sorted;
+    private Map<String, String> _map;
+
+    /**
+     * @param expectedSize the number of entries if known, otherwise 0
+     * @param sorted true to iterate the field in key order, false for the order it is read in
+     */
+    public Builder(int expectedSize, boolean sorted) {
+      _sorted = sorted;
+      _map = expectedSize > MAX_COMPACT_SIZE ? newMap(expectedSize)
+          : new CompactStringMap(expectedSize);
+    }
+
+    public Builder put(String key, String value) {
+      if (_map instanceof CompactStringMap) {
+        CompactStringMap map = (CompactStringMap) _map;
+        if (key != null && map._size < MAX_COMPACT_SIZE && (_sorted || map._size == 0
+            || map._keys[map._size - 1].compareTo(key) < 0)) {
+          map.put(key, value);
+          return this;
+        }
+        // the entries read so far are in key order, which is their read order
+        _map = newMap(map._size + 1);
+        _map.putAll(map);
+      }
+      _map.put(key, value);
+      return this;
+    }
+
+    public Map<String, String> build() {
+      return _map;
+    }
+
+    private Map<String, String> newMap(int expectedSize) {
+      return _sorted ? new TreeMap<String, String>()
+          : new LinkedHashMap<String, String>(expectedSize * 4 / 3 + 1);
+    }
+  }
+
+  private class EntryIterator implements Iterator<Entry<String, String>> {
+    private int _next;
+    private int _last = -1;
+
+    @Override
+    public boolean hasNext() {
+      return _next < _size;
+    }
+
+    @Override
+    public Entry<String, String> next() {
+      if (_next >= _size) {
+        throw new NoSuchElementException();
+      }
+      _last = _next++;
+      return new IndexEntry(_last);
+    }
+
+    @Override
+    public void remove() {
+      if (_last < 0) {
+        throw new IllegalStateException();
+      }
+      removeAt(_last);
+      _next = _last;
+      _last = -1;
+    }
+  }
+
+  private class IndexEntry implements Entry<String, String> {
+    private final int _index;
+
+    IndexEntry(int index) {
+      _index = index;
+    }
+
+    @Override
+    public String getKey() {
+      return _keys[_index];
+    }
+
+    @Override
+    public String getValue() {
+      return _values[_index];
+    }
+
+    @Override
+    public String setValue(String value) {
+      String previous = _values[_index];
+      _values[_index] = value;
+      return previous;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      Entry<?, ?> e = (Entry<?, ?>) o;
+      return getKey().equals(e.getKey())
+          && (getValue() == null ? e.getValue() == null : getValue().equals(e.getValue()));
+    }
+
+    @Override
+    public int hashCode() {
+      return getKey().hashCode() ^ (getValue() == null ? 0 : getValue().hashCode());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package org.apache.helix.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixException;
+import org.apache.helix.HelixProperty;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.ZNRecord;
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends the status update and error records to a local file instead of writing them to
+ * ZooKeeper. Each line is an entry of the journal: the operation, the ZooKeeper path the record
+ * would have been written to and the record as JSON, separated by tabs. {@link #read(File, String)}
+ * replays the journal into the records ZooKeeper would hold, for the diagnostics tools to read on
+ * demand.
+ */
+public class FileStatusUpdateSink implements StatusUpdateSink {
+  private static final Logger LOG = LoggerFactory.getLogger(FileStatusUpdateSink.class);
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String UPDATE = "UPDATE";
+  private static final String SET = "SET";
+
+  // one record per line, without indentation
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  static {
+    MAPPER.configure(SerializationConfig.Feature.AUTO_DETECT_FIELDS, true);
+    MAPPER.configure(SerializationConfig.Feature.CAN_OVERRIDE_ACCESS_MODIFIERS, true);
+    MAPPER.configure(DeserializationConfig.Feature.AUTO_DETECT_FIELDS, true);
+    MAPPER.configure(DeserializationConfig.Feature.AUTO_DETECT_SETTERS, true);
+  }
+
+  private final File _file;
+  private final Writer _writer;
+
+  /**
+   * @param file the journal file, appended to if it exists
+   */
+  public FileStatusUpdateSink(File file) {
+    _file = file;
+    try {
+      File parent = file.getAbsoluteFile().getParentFile();
+      if (parent != null && !parent.exists() && !parent.mkdirs()) {
+        throw new IOException("Failed to create directory " + parent);
+      }
+      _writer = new BufferedWriter(
+          new OutputStreamWriter(new FileOutputStream(file, true), UTF_8));
+    } catch (IOException e) {
+      throw new HelixException("Failed to open status update journal " + file, e);
+    }
+  }
+
+  @Override
+  public void update(HelixDataAccessor accessor, PropertyKey key, HelixProperty value) {
+    append(UPDATE, key.getPath(), value.getRecord());
+  }
+
+  @Override
+  public void set(HelixDataAccessor accessor, PropertyKey key, HelixProperty value) {
+    append(SET, key.getPath(), value.getRecord());
+  }
+
+  private synchronized void append(String operation, String path, ZNRecord record) {
+    try {
+      _writer.write(operation + "\t" + path + "\t" + MAPPER.writeValueAsString(record) + "\n");
+      // visible to the readers of the journal right away
+      _writer.flush();
+    } catch (IOException e) {
+      LOG.warn("Failed to append status update " + path + " to " + _file, e);
+    }
+  }
+
+  @Override
+  public synchronized void flush() {
+    try {
+      _writer.flush();
+    } catch (IOException e) {
+      LOG.warn("Failed to flush status update journal " + _file, e);
+    }
+  }
+
+  /**
+   * Flush and close the journal file.
+   */
+  public synchronized void close() {
+    try {
+      _writer.close();
+    } catch (IOException e) {
+      LOG.warn("Failed to close status update journal " + _file, e);
+    }
+  }
+
+  /**
+   * Replay a journal into the records ZooKeeper would hold.
+   * @param file the journal file
+   * @param pathPrefix only the records of the paths starting with the prefix are read
+   * @return the path -> the record of the path, sorted by path
+   * @throws IOException if the journal cannot be read
+   */
+  public static Map<String, ZNRecord> read(File file, String pathPrefix) throws IOException {
+    Map<String, ZNRecord> records = new TreeMap<>();
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new FileInputStream(file), UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] entry = line.split("\t", 3);
+        if (entry.length < 3 || !entry[1].startsWith(pathPrefix)) {
+          // a line truncated by a crash is skipped
+          continue;
+        }
+        ZNRecord record;
+        try {
+          record = MAPPER.readValue(entry[2], ZNRecord.class);
+        } catch (IOException e) {
+          LOG.warn("Skip invalid status update of " + entry[1] + " in " + file, e);
+          continue;
+        }
+        ZNRecord current = records.get(entry[1]);
+        if (current == null || SET.equals(entry[0])) {
+          records.put(entry[1], record);
+        } else {
+          current.merge(record);
+        }
+      }
+    }
+    return records;
+  }
+}
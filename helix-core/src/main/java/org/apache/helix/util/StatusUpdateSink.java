@@ -0,0 +1,56 @@
+package org.apache.helix.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixProperty;
+import org.apache.helix.PropertyKey;
+
+/**
+ * Where {@link StatusUpdateUtil} writes the status update and error records of the messages. The
+ * records are for diagnostics only, a sink may buffer them or keep them out of ZooKeeper.
+ * <p>
+ * Implementations must be thread-safe, they are shared by all the message handling threads of the
+ * process.
+ */
+public interface StatusUpdateSink {
+  /**
+   * Merge a record into the record of a property key, as
+   * {@link HelixDataAccessor#updateProperty(PropertyKey, HelixProperty)} does.
+   * @param accessor the accessor of the cluster of the record
+   * @param key
+   * @param value
+   */
+  void update(HelixDataAccessor accessor, PropertyKey key, HelixProperty value);
+
+  /**
+   * Replace the record of a property key, as
+   * {@link HelixDataAccessor#setProperty(PropertyKey, HelixProperty)} does.
+   * @param accessor the accessor of the cluster of the record
+   * @param key
+   * @param value
+   */
+  void set(HelixDataAccessor accessor, PropertyKey key, HelixProperty value);
+
+  /**
+   * Write out the buffered records, if any.
+   */
+  void flush();
+}
@@ -19,6 +19,7 @@ package org.apache.helix.util;
  * under the License.
  */
 
+import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.DateFormat;
@@ -38,6 +39,7 @@ import org.apache.helix.HelixProperty;
 import org.apache.helix.InstanceType;
 import org.apache.helix.PropertyKey;
 import org.apache.helix.PropertyKey.Builder;
+import org.apache.helix.SystemPropertyKeys;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.model.Error;
 import org.apache.helix.model.Message;
@@ -49,11 +51,113 @@ import org.slf4j.LoggerFactory;
 /**
  * Util class to create statusUpdates ZK records and error ZK records. These message
  * records are for diagnostics only, and they are stored on the "StatusUpdates" and
- * "errors" ZNodes in the zookeeper instances.
+ * "errors" ZNodes in the zookeeper instances, or wherever the {@link StatusUpdateSink} of the
+ * process writes them.
  */
 public class StatusUpdateUtil {
   static Logger _logger = LoggerFactory.getLogger(StatusUpdateUtil.class);
 
+  static final String DEFAULT_STATUS_UPDATE_FILE = "helix-status-updates.log";
+
+  // shared by all the StatusUpdateUtil instances of the process, see
+  // SystemPropertyKeys.STATUS_UPDATE_SINK
+  private static volatile StatusUpdateSink _statusUpdateSink;
+  // flushes the records buffered by the sink when the JVM exits, registered once a sink buffers
+  private static Thread _flushShutdownHook;
+
+  /**
+   * @return the sink the status updates and errors are written to
+   */
+  public static StatusUpdateSink getStatusUpdateSink() {
+    if (_statusUpdateSink == null) {
+      synchronized (StatusUpdateUtil.class) {
+        if (_statusUpdateSink == null) {
+          _statusUpdateSink = createStatusUpdateSink(
+              System.getProperty(SystemPropertyKeys.STATUS_UPDATE_SINK, "ZK"));
+          registerFlushShutdownHook(_statusUpdateSink);
+        }
+      }
+    }
+    return _statusUpdateSink;
+  }
+
+  /**
+   * Replace the sink the status updates and errors are written to. The records buffered by the
+   * previous sink are flushed, and its background flushes are stopped.
+   * @param statusUpdateSink
+   */
+  public static void setStatusUpdateSink(StatusUpdateSink statusUpdateSink) {
+    StatusUpdateSink previous;
+    synchronized (StatusUpdateUtil.class) {
+      previous = _statusUpdateSink;
+      _statusUpdateSink = statusUpdateSink;
+      registerFlushShutdownHook(statusUpdateSink);
+    }
+    if (previous instanceof AsyncStatusUpdateSink) {
+      ((AsyncStatusUpdateSink) previous).shutdown();
+    } else if (previous != null) {
+      previous.flush();
+    }
+  }
+
+  /**
+   * Write out the records buffered by the sink, if the process has created one. Called when a
+   * manager disconnects, while its accessor can still write them.
+   */
+  public static void flushStatusUpdateSink() {
+    StatusUpdateSink statusUpdateSink = _statusUpdateSink;
+    if (statusUpdateSink != null) {
+      try {
+        statusUpdateSink.flush();
+      } catch (Exception e) {
+        _logger.warn("Failed to flush the status updates", e);
+      }
+    }
+  }
+
+  private static synchronized void registerFlushShutdownHook(StatusUpdateSink statusUpdateSink) {
+    if (_flushShutdownHook != null || !(statusUpdateSink instanceof AsyncStatusUpdateSink)) {
+      return;
+    }
+    _flushShutdownHook = new Thread("StatusUpdateFlushShutdownHook") {
+      @Override
+      public void run() {
+        flushStatusUpdateSink();
+      }
+    };
+    try {
+      Runtime.getRuntime().addShutdownHook(_flushShutdownHook);
+    } catch (IllegalStateException e) {
+      // the JVM is already exiting
+      _logger.warn("Failed to register the status update flush shutdown hook", e);
+    }
+  }
+
+  static StatusUpdateSink createStatusUpdateSink(String sinkType) {
+    switch (sinkType.toUpperCase()) {
+    case "ZK":
+      return new ZkStatusUpdateSink();
+    case "ASYNC":
+      return new AsyncStatusUpdateSink(new ZkStatusUpdateSink(),
+          Integer.getInteger(SystemPropertyKeys.STATUS_UPDATE_BUFFER_SIZE,
+              AsyncStatusUpdateSink.DEFAULT_BUFFER_SIZE),
+          Long.getLong(SystemPropertyKeys.STATUS_UPDATE_FLUSH_INTERVAL_MS,
+              AsyncStatusUpdateSink.DEFAULT_FLUSH_INTERVAL_MS),
+          AsyncStatusUpdateSink.DropPolicy.DROP_OLDEST);
+    case "FILE":
+      return new FileStatusUpdateSink(new File(
+          System.getProperty(SystemPropertyKeys.STATUS_UPDATE_FILE, DEFAULT_STATUS_UPDATE_FILE)));
+    default:
+      try {
+        return (StatusUpdateSink) Class.forName(sinkType).newInstance();
+      } catch (Exception e) {
+        _logger.error("Failed to create status update sink " + sinkType
+            + ", write status updates to ZooKeeper", e);
+        return new ZkStatusUpdateSink();
+      }
+    }
+  }
+
   public static class Transition implements Comparable<Transition> {
     private final String _msgID;
     private final long _timeStamp;
@@ -464,7 +568,7 @@ public class StatusUpdateUtil {
   }
 
   /**
-   * Write a status update record to zookeeper to the zookeeper store.
+   * Write a status update record to the status update sink, the zookeeper store by default.
    * @param record
    *          the status update record
    * @param message
@@ -492,9 +596,9 @@ public class StatusUpdateUtil {
     Builder keyBuilder = accessor.keyBuilder();
     if (!_recordedMessages.containsKey(message.getMsgId())) {
       if (isController) {
-        accessor
-            .updateProperty(keyBuilder.controllerTaskStatus(statusUpdateSubPath, statusUpdateKey),
-                new StatusUpdate(createMessageLogRecord(message)));
+        getStatusUpdateSink().update(accessor,
+            keyBuilder.controllerTaskStatus(statusUpdateSubPath, statusUpdateKey),
+            new StatusUpdate(createMessageLogRecord(message)));
 
       } else {
 
@@ -510,16 +614,16 @@ public class StatusUpdateUtil {
           _logger.trace("StatusUpdate path:" + propertyKey.getPath() + ", updates:"
               + statusUpdateRecord);
         }
-        accessor.updateProperty(propertyKey, new StatusUpdate(statusUpdateRecord));
+        getStatusUpdateSink().update(accessor, propertyKey, new StatusUpdate(statusUpdateRecord));
 
       }
       _recordedMessages.put(message.getMsgId(), message.getMsgId());
     }
 
     if (isController) {
-      accessor.updateProperty(
-          keyBuilder.controllerTaskStatus(statusUpdateSubPath, statusUpdateKey), new StatusUpdate(
-              record));
+      getStatusUpdateSink().update(accessor,
+          keyBuilder.controllerTaskStatus(statusUpdateSubPath, statusUpdateKey),
+          new StatusUpdate(record));
     } else {
 
       PropertyKey propertyKey =
@@ -530,7 +634,7 @@ public class StatusUpdateUtil {
       if (_logger.isTraceEnabled()) {
         _logger.trace("StatusUpdate path:" + propertyKey.getPath() + ", updates:" + record);
       }
-      accessor.updateProperty(propertyKey, new StatusUpdate(record));
+      getStatusUpdateSink().update(accessor, propertyKey, new StatusUpdate(record));
     }
 
     // If the error level is ERROR, also write the record to "ERROR" ZNode
@@ -541,7 +645,7 @@ public class StatusUpdateUtil {
   }
 
   /**
-   * Write an error record to zookeeper to the zookeeper store.
+   * Write an error record to the status update sink, the zookeeper store by default.
    * @param record
    *          the status update record
    * @param instanceName
@@ -563,10 +667,11 @@ public class StatusUpdateUtil {
     if (isController) {
       // TODO need to fix: ERRORS_CONTROLLER doesn't have a form of
       // ../{sessionId}/{subPath}
-      accessor.setProperty(keyBuilder.controllerTaskError(updateSubPath), new Error(record));
+      getStatusUpdateSink()
+          .set(accessor, keyBuilder.controllerTaskError(updateSubPath), new Error(record));
     } else {
-      accessor.updateProperty(keyBuilder.stateTransitionError(instanceName, sessionId,
-          updateSubPath, updateKey), new Error(record));
+      getStatusUpdateSink().update(accessor, keyBuilder.stateTransitionError(instanceName,
+          sessionId, updateSubPath, updateKey), new Error(record));
     }
   }
 }
@@ -0,0 +1,43 @@
+package org.apache.helix.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Process-wide pool of the strings that repeat across ZNRecords, such as instance, partition and
+ * state names. Entries are weakly referenced, so names of removed instances and resources are
+ * garbage collected once no record uses them.
+ */
+public class StringInterner {
+  private static final Interner<String> INTERNER = Interners.newWeakInterner();
+
+  private StringInterner() {
+  }
+
+  /**
+   * @param string a string, may be null
+   * @return the canonical instance equal to the given string, or null
+   */
+  public static String intern(String string) {
+    return string == null ? null : INTERNER.intern(string);
+  }
+}
@@ -123,8 +123,13 @@ public class MockAccessor implements HelixDataAccessor {
   public <T extends HelixProperty> T getProperty(PropertyKey key) {
     String path = key.getPath();
     Stat stat = new Stat();
-    return (T) HelixProperty.convertToTypedInstance(key.getTypeClass(),
-        (ZNRecord) _baseDataAccessor.get(path, stat, 0));
+    ZNRecord record = (ZNRecord) _baseDataAccessor.get(path, stat, 0);
+    if (record != null) {
+      record.setCreationTime(stat.getCtime());
+      record.setModifiedTime(stat.getMtime());
+      record.setVersion(stat.getVersion());
+    }
+    return (T) HelixProperty.convertToTypedInstance(key.getTypeClass(), record);
   }
 
   @Override
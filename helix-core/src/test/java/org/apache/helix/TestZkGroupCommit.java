@@ -0,0 +1,79 @@
+package org.apache.helix;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Date;
+import java.util.HashMap;
+
+import org.apache.helix.manager.zk.ZkBaseDataAccessor;
+import org.apache.zookeeper.data.Stat;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestZkGroupCommit extends ZkUnitTestBase {
+
+  /**
+   * GroupCommit writes on top of the record it committed last, and falls back to the record in zk
+   * if someone else changed or removed it in between.
+   */
+  @Test
+  public void testCommitOnTopOfLastRecord() {
+    String className = TestHelper.getTestClassName();
+    String methodName = TestHelper.getTestMethodName();
+    String testName = className + "_" + methodName;
+    System.out.println("START " + testName + " at " + new Date(System.currentTimeMillis()));
+
+    String path = "/" + testName + "/CURRENTSTATE";
+    BaseDataAccessor<ZNRecord> accessor = new ZkBaseDataAccessor<ZNRecord>(_gZkClient);
+    GroupCommit groupCommit = new GroupCommit();
+
+    Assert.assertTrue(groupCommit.commit(accessor, AccessOption.PERSISTENT, path, delta("p0")));
+    Assert.assertTrue(groupCommit.commit(accessor, AccessOption.PERSISTENT, path, delta("p1")));
+    Stat stat = new Stat();
+    ZNRecord record = accessor.get(path, stat, 0);
+    Assert.assertEquals(record.getMapFields().keySet().size(), 2);
+    Assert.assertEquals(stat.getVersion(), 1);
+
+    // another writer replaces the record
+    accessor.set(path, delta("p9"), AccessOption.PERSISTENT);
+    Assert.assertTrue(groupCommit.commit(accessor, AccessOption.PERSISTENT, path, delta("p2")));
+    record = accessor.get(path, null, 0);
+    Assert.assertEquals(record.getMapFields().keySet().size(), 2);
+    Assert.assertNotNull(record.getMapField("p9"));
+    Assert.assertNotNull(record.getMapField("p2"));
+
+    // another writer removes the record
+    accessor.remove(path, 0);
+    Assert.assertTrue(groupCommit.commit(accessor, AccessOption.PERSISTENT, path, delta("p3")));
+    record = accessor.get(path, null, 0);
+    Assert.assertEquals(record.getMapFields().keySet().size(), 1);
+    Assert.assertNotNull(record.getMapField("p3"));
+
+    _gZkClient.deleteRecursively("/" + testName);
+    System.out.println("END " + testName + " at " + new Date(System.currentTimeMillis()));
+  }
+
+  private static ZNRecord delta(String partition) {
+    ZNRecord record = new ZNRecord("TestDB");
+    record.setMapField(partition, new HashMap<String, String>());
+    record.getMapField(partition).put("CURRENT_STATE", "ONLINE");
+    return record;
+  }
+}
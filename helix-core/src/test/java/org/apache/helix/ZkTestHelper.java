@@ -30,7 +30,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -46,6 +45,7 @@ import org.apache.helix.manager.zk.ZKHelixDataAccessor;
 import org.apache.helix.manager.zk.ZkBaseDataAccessor;
 import org.apache.helix.manager.zk.ZkClient;
 import org.apache.helix.manager.zk.client.HelixZkClient;
+import org.apache.helix.manager.zk.zookeeper.ZkEventThread;
 import org.apache.helix.model.ExternalView;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
@@ -449,22 +449,18 @@ public class ZkTestHelper {
     Object eventThread = field.get(zkclient);
     // System.out.println("field: " + eventThread);
 
-    java.lang.reflect.Field field2 = getField(eventThread.getClass(), "_events");
-    field2.setAccessible(true);
-    BlockingQueue queue = (BlockingQueue) field2.get(eventThread);
-    // System.out.println("field2: " + queue + ", " + queue.size());
-
-    if (queue == null) {
-      LOG.error("fail to get event-queue from zkclient. skip waiting");
+    if (eventThread == null) {
+      LOG.error("fail to get event-thread from zkclient. skip waiting");
       return false;
     }
+    ZkEventThread zkEventThread = (ZkEventThread) eventThread;
 
     for (int i = 0; i < 20; i++) {
-      if (queue.size() == 0) {
+      if (zkEventThread.getPendingEventsCount() == 0) {
         return true;
       }
       Thread.sleep(100);
-      System.out.println("pending zk-events in queue: " + queue);
+      System.out.println("pending zk-events: " + zkEventThread.getPendingEventsCount());
     }
     return false;
   }
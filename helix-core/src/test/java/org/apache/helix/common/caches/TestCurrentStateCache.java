@@ -0,0 +1,110 @@
+package org.apache.helix.common.caches;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.ZNRecordBucketizer;
+import org.apache.helix.manager.zk.ZKHelixDataAccessor;
+import org.apache.helix.mock.MockBaseDataAccessor;
+import org.apache.helix.model.CurrentState;
+import org.apache.helix.model.LiveInstance;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestCurrentStateCache {
+  private static final String CLUSTER = "TestCurrentStateCache";
+  private static final String INSTANCE = "localhost_12918";
+  private static final String SESSION = "session_0";
+
+  /**
+   * Bucketized CurrentStates are refreshed bucket by bucket, and kept as the same object when no
+   * bucket changed.
+   */
+  @Test
+  public void testBucketizedRefresh() {
+    MockBaseDataAccessor baseAccessor = new MockBaseDataAccessor();
+    HelixDataAccessor accessor = new ZKHelixDataAccessor(CLUSTER, baseAccessor);
+    PropertyKey.Builder keyBuilder = accessor.keyBuilder();
+
+    LiveInstance liveInstance = new LiveInstance(INSTANCE);
+    liveInstance.setSessionId(SESSION);
+
+    // participants create the parent node and update the buckets, see HelixStateTransitionHandler
+    CurrentState bucketized = new CurrentState("BucketDB");
+    bucketized.setSessionId(SESSION);
+    bucketized.setStateModelDefRef("OnlineOffline");
+    bucketized.setBucketSize(2);
+    accessor.setProperty(keyBuilder.currentState(INSTANCE, SESSION, "BucketDB"), bucketized);
+    ZNRecordBucketizer bucketizer = new ZNRecordBucketizer(2);
+    for (int p = 0; p < 6; p++) {
+      updatePartition(accessor, bucketizer, "BucketDB_" + p, "OFFLINE");
+      bucketized.setState("BucketDB_" + p, "OFFLINE");
+    }
+    CurrentState plain = new CurrentState("PlainDB");
+    plain.setSessionId(SESSION);
+    plain.setStateModelDefRef("OnlineOffline");
+    plain.setState("PlainDB_0", "OFFLINE");
+    accessor.setProperty(keyBuilder.currentState(INSTANCE, SESSION, "PlainDB"), plain);
+
+    Map<String, LiveInstance> liveInstances = Collections.singletonMap(INSTANCE, liveInstance);
+    CurrentStateCache cache = new CurrentStateCache(CLUSTER);
+    cache.refresh(accessor, liveInstances);
+    Assert.assertEquals(getCurrentState(cache, "BucketDB").getPartitionStateMap(),
+        bucketized.getPartitionStateMap());
+
+    // the first refresh of a cached bucketized CurrentState reads all of its buckets
+    cache.refresh(accessor, liveInstances);
+    CurrentState cached = getCurrentState(cache, "BucketDB");
+    cache.refresh(accessor, liveInstances);
+    Assert.assertSame(getCurrentState(cache, "BucketDB"), cached);
+    Assert.assertTrue(cache.getChangedResources().isEmpty());
+
+    // participants only write the bucket of the updated partition
+    updatePartition(accessor, bucketizer, "BucketDB_3", "ONLINE");
+
+    cache.refresh(accessor, liveInstances);
+    CurrentState refreshed = getCurrentState(cache, "BucketDB");
+    Assert.assertNotSame(refreshed, cached);
+    Assert.assertEquals(cache.getChangedResources(), Collections.singleton("BucketDB"));
+    Assert.assertEquals(refreshed.getState("BucketDB_3"), "ONLINE");
+    Assert.assertEquals(refreshed.getPartitionStateMap().size(), 6);
+    Assert.assertEquals(refreshed.getState("BucketDB_0"), "OFFLINE");
+    CurrentState assembled =
+        accessor.getProperty(keyBuilder.currentState(INSTANCE, SESSION, "BucketDB"));
+    Assert.assertEquals(refreshed.getRecord(), assembled.getRecord());
+    Assert.assertEquals(getCurrentState(cache, "PlainDB").getState("PlainDB_0"), "OFFLINE");
+  }
+
+  private static void updatePartition(HelixDataAccessor accessor, ZNRecordBucketizer bucketizer,
+      String partition, String state) {
+    CurrentState delta = new CurrentState("BucketDB");
+    delta.setState(partition, state);
+    accessor.updateProperty(accessor.keyBuilder()
+        .currentState(INSTANCE, SESSION, "BucketDB", bucketizer.getBucketName(partition)), delta);
+  }
+
+  private static CurrentState getCurrentState(CurrentStateCache cache, String resource) {
+    return cache.getCurrentState(INSTANCE, SESSION).get(resource);
+  }
+}
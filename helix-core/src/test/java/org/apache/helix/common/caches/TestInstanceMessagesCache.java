@@ -0,0 +1,115 @@
+package org.apache.helix.common.caches;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.TestHelper;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.ZkUnitTestBase;
+import org.apache.helix.manager.zk.ZKHelixDataAccessor;
+import org.apache.helix.manager.zk.ZkBaseDataAccessor;
+import org.apache.helix.model.LiveInstance;
+import org.apache.helix.model.Message;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestInstanceMessagesCache extends ZkUnitTestBase {
+
+  /**
+   * The messages of an instance are only listed if a message was created or removed since the
+   * last refresh.
+   */
+  @Test
+  public void testSkipUnchangedMessageFolders() {
+    String className = TestHelper.getTestClassName();
+    String methodName = TestHelper.getTestMethodName();
+    String clusterName = className + "_" + methodName;
+    System.out.println("START " + clusterName + " at " + new Date(System.currentTimeMillis()));
+
+    final AtomicInteger listCount = new AtomicInteger();
+    ZkBaseDataAccessor<ZNRecord> baseAccessor = new ZkBaseDataAccessor<ZNRecord>(_gZkClient) {
+      @Override
+      public List<String> getChildNames(String parentPath, int options) {
+        listCount.incrementAndGet();
+        return super.getChildNames(parentPath, options);
+      }
+    };
+    HelixDataAccessor accessor = new ZKHelixDataAccessor(clusterName, baseAccessor);
+    PropertyKey.Builder keyBuilder = accessor.keyBuilder();
+
+    Map<String, LiveInstance> liveInstances = new HashMap<>();
+    for (int i = 0; i < 2; i++) {
+      String instanceName = "localhost_" + i;
+      liveInstances.put(instanceName, new LiveInstance(instanceName));
+    }
+    for (String instanceName : liveInstances.keySet()) {
+      _gZkClient.createPersistent(keyBuilder.messages(instanceName).getPath(), true);
+    }
+    accessor.setProperty(keyBuilder.message("localhost_0", "msg_0"),
+        newMessage("msg_0", "localhost_0", "TestDB0"));
+
+    InstanceMessagesCache cache = new InstanceMessagesCache(clusterName);
+    cache.refresh(accessor, liveInstances);
+    Assert.assertEquals(listCount.get(), 2);
+    Assert.assertEquals(cache.getMessages("localhost_0").keySet(),
+        Collections.singleton("msg_0"));
+    Assert.assertEquals(cache.getChangedResources(), Collections.singleton("TestDB0"));
+
+    listCount.set(0);
+    cache.refresh(accessor, liveInstances);
+    Assert.assertEquals(listCount.get(), 0);
+    Assert.assertEquals(cache.getMessages("localhost_0").keySet(),
+        Collections.singleton("msg_0"));
+    Assert.assertTrue(cache.getChangedResources().isEmpty());
+
+    accessor.setProperty(keyBuilder.message("localhost_1", "msg_1"),
+        newMessage("msg_1", "localhost_1", "TestDB1"));
+    cache.refresh(accessor, liveInstances);
+    Assert.assertEquals(listCount.get(), 1);
+    Assert.assertEquals(cache.getMessages("localhost_1").keySet(),
+        Collections.singleton("msg_1"));
+    Assert.assertEquals(cache.getChangedResources(), Collections.singleton("TestDB1"));
+
+    listCount.set(0);
+    accessor.removeProperty(keyBuilder.message("localhost_0", "msg_0"));
+    cache.refresh(accessor, liveInstances);
+    Assert.assertEquals(listCount.get(), 1);
+    Assert.assertTrue(cache.getMessages("localhost_0").isEmpty());
+    Assert.assertEquals(cache.getChangedResources(), Collections.singleton("TestDB0"));
+
+    _gZkClient.deleteRecursively("/" + clusterName);
+    System.out.println("END " + clusterName + " at " + new Date(System.currentTimeMillis()));
+  }
+
+  private static Message newMessage(String msgId, String instanceName, String resourceName) {
+    Message message = new Message(Message.MessageType.USER_DEFINE_MSG, msgId);
+    message.setTgtName(instanceName);
+    message.setResourceName(resourceName);
+    return message;
+  }
+}
@@ -0,0 +1,109 @@
+package org.apache.helix.common.caches;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.helix.AccessOption;
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.PropertyType;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.manager.zk.ZKHelixDataAccessor;
+import org.apache.helix.mock.MockBaseDataAccessor;
+import org.apache.helix.model.ResourceConfig;
+import org.apache.helix.task.JobContext;
+import org.apache.helix.task.TaskConstants;
+import org.apache.zookeeper.data.Stat;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestTaskDataCache {
+  private static final String CLUSTER = "TestTaskDataCache";
+  private static final String WORKFLOW = "Workflow";
+  private static final String JOB = "Workflow_Job";
+
+  /**
+   * Contexts are only read when their znode version changed, and the changes the pipeline
+   * persists are written through to the cache.
+   */
+  @Test
+  public void testIncrementalContextRefresh() {
+    final int[] readCount = new int[1];
+    MockBaseDataAccessor baseAccessor = new MockBaseDataAccessor() {
+      @Override
+      public List<ZNRecord> get(List<String> paths, List<Stat> stats, int options) {
+        readCount[0] += paths.size();
+        return super.get(paths, stats, options);
+      }
+    };
+    HelixDataAccessor accessor = new ZKHelixDataAccessor(CLUSTER, baseAccessor);
+    baseAccessor.set(contextPath(WORKFLOW), context(WORKFLOW), AccessOption.PERSISTENT);
+    baseAccessor.set(contextPath(JOB), context(JOB), AccessOption.PERSISTENT);
+
+    TaskDataCache cache = new TaskDataCache(CLUSTER);
+    cache.refresh(accessor, Collections.<String, ResourceConfig>emptyMap());
+    Assert.assertEquals(readCount[0], 2);
+    Assert.assertEquals(cache.getContexts().keySet().size(), 2);
+
+    // changes that are not persisted do not stay in the cache
+    cache.getJobContext(JOB).getRecord().setSimpleField("key", "dropped");
+    readCount[0] = 0;
+    cache.refresh(accessor, Collections.<String, ResourceConfig>emptyMap());
+    Assert.assertEquals(readCount[0], 0);
+    Assert.assertNull(cache.getJobContext(JOB).getRecord().getSimpleField("key"));
+
+    JobContext jobContext = cache.getJobContext(JOB);
+    jobContext.getRecord().setSimpleField("key", "persisted");
+    cache.updateJobContext(JOB, jobContext);
+    cache.persistDataChanges(accessor);
+    cache.refresh(accessor, Collections.<String, ResourceConfig>emptyMap());
+    Assert.assertEquals(readCount[0], 0);
+    Assert.assertEquals(cache.getJobContext(JOB).getRecord().getSimpleField("key"), "persisted");
+    Assert.assertEquals(baseAccessor.get(contextPath(JOB), null, 0).getSimpleField("key"),
+        "persisted");
+
+    // the contexts written by others are read again
+    ZNRecord workflowContext = context(WORKFLOW);
+    workflowContext.setSimpleField("key", "external");
+    baseAccessor.set(contextPath(WORKFLOW), workflowContext, AccessOption.PERSISTENT);
+    cache.refresh(accessor, Collections.<String, ResourceConfig>emptyMap());
+    Assert.assertEquals(readCount[0], 1);
+    Assert.assertEquals(cache.getWorkflowContext(WORKFLOW).getRecord().getSimpleField("key"),
+        "external");
+
+    cache.removeContext(JOB);
+    cache.persistDataChanges(accessor);
+    cache.refresh(accessor, Collections.<String, ResourceConfig>emptyMap());
+    Assert.assertEquals(cache.getContexts().keySet(), Collections.singleton(WORKFLOW));
+    Assert.assertNull(cache.getJobContext(JOB));
+  }
+
+  private static ZNRecord context(String name) {
+    ZNRecord record = new ZNRecord(TaskConstants.CONTEXT_NODE);
+    record.setSimpleField("NAME", name);
+    return record;
+  }
+
+  private static String contextPath(String name) {
+    return String.format("/%s/%s%s/%s/%s", CLUSTER, PropertyType.PROPERTYSTORE.name(),
+        TaskConstants.REBALANCER_CONTEXT_ROOT, name, TaskConstants.CONTEXT_NODE);
+  }
+}
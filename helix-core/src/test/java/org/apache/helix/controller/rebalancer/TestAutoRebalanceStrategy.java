@@ -42,6 +42,7 @@ import org.apache.helix.MockAccessor;
 import org.apache.helix.PropertyKey.Builder;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.controller.rebalancer.strategy.AutoRebalanceStrategy;
+import org.apache.helix.controller.rebalancer.strategy.LegacyAutoRebalanceStrategy;
 import org.apache.helix.controller.rebalancer.strategy.RebalanceStrategy;
 import org.apache.helix.controller.stages.ClusterDataCache;
 import org.apache.helix.controller.stages.CurrentStateOutput;
@@ -58,6 +59,7 @@ import org.testng.annotations.Test;
 
 public class TestAutoRebalanceStrategy {
   private static Logger logger = LoggerFactory.getLogger(TestAutoRebalanceStrategy.class);
+  private static final String RESOURCE_NAME = "TestDB";
 
   /**
    * Sanity test for a basic Master-Slave model
@@ -594,6 +596,160 @@ public class TestAutoRebalanceStrategy {
    * lists should prefer nodes in the current mapping at all times, but when all nodes are in the
    * current mapping, then it should distribute states as evenly as possible.
    */
+  /**
+   * The indexed strategy computes the same assignments as the strategy it replaced, for seeded
+   * random numbers of nodes, partitions and replicas, offline nodes, node capacities and current
+   * mappings.
+   */
+  @Test
+  public void testSameAssignmentsAsLegacyStrategy() {
+    Random random = new Random(1200L);
+    StateModelDefinition[] stateModels = {
+        new StateModelDefinition(StateModelConfigGenerator.generateConfigForMasterSlave()),
+        new StateModelDefinition(StateModelConfigGenerator.generateConfigForOnlineOffline())
+    };
+    for (int i = 0; i < 1200; i++) {
+      StateModelDefinition stateModel = stateModels[random.nextInt(stateModels.length)];
+      List<String> allNodes = createNodes(1 + random.nextInt(20));
+      List<String> liveNodes = new ArrayList<>();
+      for (String node : allNodes) {
+        if (random.nextInt(5) > 0) {
+          liveNodes.add(node);
+        }
+      }
+      if (liveNodes.isEmpty()) {
+        liveNodes.add(allNodes.get(0));
+      }
+      List<String> partitions = createPartitions(1 + random.nextInt(40));
+      int numReplicas = 1 + random.nextInt(4);
+      int maxPerNode = random.nextBoolean()
+          ? Integer.MAX_VALUE
+          : 1 + random.nextInt(partitions.size() * numReplicas);
+      LinkedHashMap<String, Integer> stateCount =
+          stateModel.getStateCountMap(liveNodes.size(), numReplicas);
+
+      // a random current mapping over all nodes, in any state of the state model
+      List<String> states = stateModel.getStatesPriorityList();
+      Map<String, Map<String, String>> currentMapping = new HashMap<>();
+      for (String partition : partitions) {
+        Map<String, String> stateMap = new HashMap<>();
+        for (String node : allNodes) {
+          if (random.nextInt(allNodes.size()) < numReplicas) {
+            stateMap.put(node, states.get(random.nextInt(states.size())));
+          }
+        }
+        currentMapping.put(partition, stateMap);
+      }
+
+      String scenario = String.format(
+          "scenario %d: %d nodes, %d live, %d partitions, %d replicas, max %d per node", i,
+          allNodes.size(), liveNodes.size(), partitions.size(), numReplicas, maxPerNode);
+      ZNRecord expected =
+          new LegacyAutoRebalanceStrategy(RESOURCE_NAME, partitions, stateCount, maxPerNode)
+              .computePartitionAssignment(allNodes, liveNodes, copy(currentMapping), null);
+      ZNRecord actual =
+          new AutoRebalanceStrategy(RESOURCE_NAME, partitions, stateCount, maxPerNode)
+              .computePartitionAssignment(allNodes, liveNodes, copy(currentMapping), null);
+      Assert.assertEquals(actual.getListFields(), expected.getListFields(), scenario);
+      Assert.assertEquals(actual.getMapFields(), expected.getMapFields(), scenario);
+    }
+  }
+
+  /**
+   * Adding a node moves no more replicas than the new node takes, and removing a node only moves
+   * the replicas of the removed node.
+   */
+  @Test
+  public void testMinimalMovementOnNodeChange() {
+    Random random = new Random(17L);
+    StateModelDefinition stateModel =
+        new StateModelDefinition(StateModelConfigGenerator.generateConfigForMasterSlave());
+    for (int i = 0; i < 100; i++) {
+      List<String> nodes = createNodes(3 + random.nextInt(13));
+      List<String> partitions = createPartitions(10 + random.nextInt(41));
+      int numReplicas = 1 + random.nextInt(3);
+      String scenario = String.format("scenario %d: %d nodes, %d partitions, %d replicas", i,
+          nodes.size(), partitions.size(), numReplicas);
+      Map<String, Map<String, String>> currentMapping =
+          computeAssignment(stateModel, partitions, numReplicas, nodes,
+              new HashMap<String, Map<String, String>>()).getMapFields();
+
+      // add a node
+      List<String> grownNodes = new ArrayList<>(nodes);
+      grownNodes.add("newNode");
+      ZNRecord assignment =
+          computeAssignment(stateModel, partitions, numReplicas, grownNodes, currentMapping);
+      int moved = 0;
+      for (String partition : partitions) {
+        List<String> preferenceList = assignment.getListField(partition);
+        Assert.assertEquals(preferenceList.size(), numReplicas, scenario);
+        int movedReplicas = 0;
+        for (String node : preferenceList) {
+          if (!currentMapping.get(partition).containsKey(node)) {
+            movedReplicas++;
+          }
+        }
+        Assert.assertTrue(movedReplicas <= 1, scenario + ": " + partition + " moved");
+        moved += movedReplicas;
+      }
+      // the replicas moved are the share of the new node, plus one if the remainder of the
+      // capacities moves the ceiling capacity from one existing node to another
+      int totalReplicas = partitions.size() * numReplicas;
+      Assert.assertTrue(moved <= (totalReplicas + grownNodes.size() - 1) / grownNodes.size() + 1,
+          scenario + ": " + moved + " replicas moved");
+
+      // remove a node
+      String removedNode = nodes.get(random.nextInt(nodes.size()));
+      List<String> liveNodes = new ArrayList<>(nodes);
+      liveNodes.remove(removedNode);
+      assignment =
+          computeAssignment(stateModel, partitions, numReplicas, liveNodes, currentMapping);
+      for (String partition : partitions) {
+        List<String> preferenceList = assignment.getListField(partition);
+        Assert.assertEquals(preferenceList.size(), Math.min(numReplicas, liveNodes.size()),
+            scenario);
+        for (String node : currentMapping.get(partition).keySet()) {
+          if (!node.equals(removedNode)) {
+            Assert.assertTrue(preferenceList.contains(node),
+                scenario + ": " + partition + " moved from " + node);
+          }
+        }
+      }
+    }
+  }
+
+  private ZNRecord computeAssignment(StateModelDefinition stateModel, List<String> partitions,
+      int numReplicas, List<String> liveNodes, Map<String, Map<String, String>> currentMapping) {
+    return new AutoRebalanceStrategy(RESOURCE_NAME, partitions,
+        stateModel.getStateCountMap(liveNodes.size(), numReplicas))
+        .computePartitionAssignment(liveNodes, liveNodes, copy(currentMapping), null);
+  }
+
+  private static List<String> createNodes(int numNodes) {
+    List<String> nodes = new ArrayList<>();
+    for (int i = 0; i < numNodes; i++) {
+      nodes.add("node_" + i);
+    }
+    return nodes;
+  }
+
+  private static List<String> createPartitions(int numPartitions) {
+    List<String> partitions = new ArrayList<>();
+    for (int i = 0; i < numPartitions; i++) {
+      partitions.add(RESOURCE_NAME + "_" + i);
+    }
+    return partitions;
+  }
+
+  private static Map<String, Map<String, String>> copy(
+      Map<String, Map<String, String>> mapping) {
+    Map<String, Map<String, String>> copy = new HashMap<>();
+    for (Map.Entry<String, Map<String, String>> entry : mapping.entrySet()) {
+      copy.put(entry.getKey(), new HashMap<>(entry.getValue()));
+    }
+    return copy;
+  }
+
   @Test
   public void testOrphansNotPreferred() {
     final String RESOURCE_NAME = "resource";
@@ -19,12 +19,19 @@ package org.apache.helix.controller.stages;
  * under the License.
  */
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import org.apache.helix.model.BuiltInStateModelDefinitions;
+import org.apache.helix.model.ClusterConfig;
+import org.apache.helix.model.CurrentState;
 import org.apache.helix.model.IdealState.RebalanceMode;
 import org.apache.helix.model.Partition;
 import org.apache.helix.model.Resource;
+import org.testng.Assert;
 import org.testng.AssertJUnit;
 import org.testng.annotations.Test;
 
@@ -69,4 +76,132 @@ public class TestBestPossibleStateCalcStage extends BaseStageTest {
     System.out.println("END TestBestPossibleStateCalcStage at "
         + new Date(System.currentTimeMillis()));
   }
+
+  @Test
+  public void testParallelCalculation() {
+    String[] resources = new String[] {
+        "testResource0", "testResource1", "testResource2", "testResource3"
+    };
+    int numPartition = 10;
+    int numReplica = 3;
+
+    setupIdealState(5, resources, numPartition, numReplica, RebalanceMode.FULL_AUTO,
+        BuiltInStateModelDefinitions.MasterSlave.name());
+    setupInstances(5);
+    setupLiveInstances(5);
+    setupStateModel();
+
+    Map<String, Resource> resourceMap =
+        getResourceMap(resources, numPartition, BuiltInStateModelDefinitions.MasterSlave.name());
+    event.addAttribute(AttributeName.RESOURCES.name(), resourceMap);
+    event.addAttribute(AttributeName.RESOURCES_TO_REBALANCE.name(), resourceMap);
+    event.addAttribute(AttributeName.CURRENT_STATE.name(), new CurrentStateOutput());
+    runStage(event, new ReadClusterDataStage());
+    ClusterDataCache cache = event.getAttribute(AttributeName.ClusterDataCache.name());
+
+    runStage(event, new BestPossibleStateCalcStage());
+    BestPossibleStateOutput serialOutput =
+        event.getAttribute(AttributeName.BEST_POSSIBLE_STATE.name());
+
+    cache.clearCachedResourceAssignments();
+    cache.getClusterConfig().setBestPossibleCalcParallelism(4);
+    BestPossibleComputePool computePool = new BestPossibleComputePool();
+    cache.setBestPossibleComputePool(computePool);
+    runStage(event, new BestPossibleStateCalcStage());
+    computePool.shutdown();
+    BestPossibleStateOutput parallelOutput =
+        event.getAttribute(AttributeName.BEST_POSSIBLE_STATE.name());
+
+    Assert.assertNotSame(parallelOutput, serialOutput);
+    Assert.assertEquals(parallelOutput.getResourceStatesMap().size(), resources.length);
+    Assert.assertEquals(parallelOutput.getStateMap(), serialOutput.getStateMap());
+    Assert.assertEquals(parallelOutput.getPreferenceLists(), serialOutput.getPreferenceLists());
+  }
+
+  @Test
+  public void testComputePool() {
+    BestPossibleComputePool computePool = new BestPossibleComputePool();
+    ForkJoinPool pool = computePool.getPool(4);
+    Assert.assertSame(computePool.getPool(4), pool);
+
+    // a changed parallelism replaces the pool
+    ForkJoinPool resizedPool = computePool.getPool(2);
+    Assert.assertTrue(pool.isShutdown());
+    Assert.assertEquals(resizedPool.getParallelism(), 2);
+
+    // a shut down pool is recreated on next use, as when the controller regains the leadership
+    computePool.shutdown();
+    Assert.assertTrue(resizedPool.isShutdown());
+    Assert.assertFalse(computePool.getPool(2).isShutdown());
+    computePool.shutdown();
+  }
+
+  @Test
+  public void testIncrementalRebalance() {
+    String[] resources = new String[] {
+        "testResource0", "testResource1"
+    };
+    int numPartition = 2;
+
+    setupIdealState(5, resources, numPartition, 2, RebalanceMode.SEMI_AUTO,
+        BuiltInStateModelDefinitions.MasterSlave.name());
+    setupLiveInstances(5);
+    setupStateModel();
+    ClusterConfig clusterConfig = new ClusterConfig(_clusterName);
+    clusterConfig.enableIncrementalRebalance(true);
+    setClusterConfig(clusterConfig);
+
+    // testResource0 is at its best possible states, testResource1 has no replica yet
+    Map<String, CurrentState> currentStates = new HashMap<>();
+    for (int p = 0; p < numPartition; p++) {
+      addCurrentState(currentStates, "testResource0", p, HOSTNAME_PREFIX + (p + 1), "MASTER");
+      addCurrentState(currentStates, "testResource0", p, HOSTNAME_PREFIX + (p + 2), "SLAVE");
+    }
+    setupCurrentStates(currentStates);
+
+    ClusterDataCache cache = new ClusterDataCache(_clusterName);
+    BestPossibleStateOutput output = runIncrementalRebalance(cache);
+    Set<String> convergedResources = event.getAttribute(AttributeName.CONVERGED_RESOURCES.name());
+    Assert.assertTrue(convergedResources.isEmpty());
+    Assert.assertEquals(cache.getConvergedBestPossibleStates().keySet(),
+        Collections.singleton("testResource0"));
+
+    // Nothing changed, testResource0 reuses its best possible states
+    BestPossibleStateOutput reusedOutput = runIncrementalRebalance(cache);
+    convergedResources = event.getAttribute(AttributeName.CONVERGED_RESOURCES.name());
+    Assert.assertEquals(convergedResources, Collections.singleton("testResource0"));
+    Assert.assertEquals(reusedOutput.getStateMap(), output.getStateMap());
+    Assert.assertEquals(reusedOutput.getPreferenceLists(), output.getPreferenceLists());
+
+    // A CurrentState update of testResource0 makes it rebalance again
+    CurrentState currentState = currentStates.get(HOSTNAME_PREFIX + 2);
+    currentState.setState("testResource0_0", "OFFLINE");
+    setupCurrentStates(Collections.singletonMap(HOSTNAME_PREFIX + 2, currentState));
+    runIncrementalRebalance(cache);
+    convergedResources = event.getAttribute(AttributeName.CONVERGED_RESOURCES.name());
+    Assert.assertTrue(convergedResources.isEmpty());
+    Assert.assertTrue(cache.getConvergedBestPossibleStates().isEmpty());
+  }
+
+  private void addCurrentState(Map<String, CurrentState> currentStates, String resource,
+      int partition, String instance, String state) {
+    CurrentState currentState = currentStates.get(instance);
+    if (currentState == null) {
+      currentState = new CurrentState(resource);
+      currentState.setSessionId(SESSION_PREFIX + instance.substring(HOSTNAME_PREFIX.length()));
+      currentState.setStateModelDefRef(BuiltInStateModelDefinitions.MasterSlave.name());
+      currentStates.put(instance, currentState);
+    }
+    currentState.setState(resource + "_" + partition, state);
+  }
+
+  private BestPossibleStateOutput runIncrementalRebalance(ClusterDataCache cache) {
+    event = new ClusterEvent(_clusterName, ClusterEventType.CurrentStateChange);
+    event.addAttribute(AttributeName.ClusterDataCache.name(), cache);
+    runStage(event, new ReadClusterDataStage());
+    runStage(event, new ResourceComputationStage());
+    runStage(event, new CurrentStateComputationStage());
+    runStage(event, new BestPossibleStateCalcStage());
+    return event.getAttribute(AttributeName.BEST_POSSIBLE_STATE.name());
+  }
 }
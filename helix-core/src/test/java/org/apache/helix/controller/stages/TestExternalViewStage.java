@@ -1,6 +1,13 @@
 package org.apache.helix.controller.stages;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.helix.HelixConstants;
 import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.HelixManager;
 import org.apache.helix.TestHelper;
@@ -9,6 +16,8 @@ import org.apache.helix.ZkUnitTestBase;
 import org.apache.helix.controller.pipeline.Pipeline;
 import org.apache.helix.manager.zk.ZKHelixDataAccessor;
 import org.apache.helix.manager.zk.ZkBaseDataAccessor;
+import org.apache.helix.model.ClusterConfig;
+import org.apache.helix.model.CurrentState;
 import org.apache.helix.model.ExternalView;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -62,4 +71,101 @@ public class TestExternalViewStage extends ZkUnitTestBase {
     }
   }
 
+  @Test
+  public void testIncrementalExternalViews() throws Exception {
+    String clusterName = "CLUSTER_" + TestHelper.getTestMethodName();
+    HelixDataAccessor accessor =
+        new ZKHelixDataAccessor(clusterName, new ZkBaseDataAccessor<ZNRecord>(_gZkClient));
+    HelixManager manager = new DummyClusterManager(clusterName, accessor);
+    setupIdealState(clusterName, new int[] {
+        0, 1
+    }, new String[] {
+        "TestDB", "MyDB"
+    }, 2, 2);
+    setupLiveInstances(clusterName, new int[] {
+        0, 1
+    });
+    setupStateModel(clusterName);
+    accessor.setProperty(accessor.keyBuilder().clusterConfig(), new ClusterConfig(clusterName));
+
+    ClusterDataCache cache = new ClusterDataCache(clusterName);
+    ExternalViewComputeStage externalViewComputeStage = new ExternalViewComputeStage();
+
+    // the first computation writes all external views
+    setCurrentState(accessor, "localhost_0", "session_0", "TestDB", "TestDB_0", "MASTER");
+    ClusterEvent event = computeExternalViews(manager, cache, externalViewComputeStage);
+    Assert.assertNotNull(cache.getClusterConfig());
+    Assert.assertEquals(getChangedPartitions(event), ImmutableMap.of("TestDB",
+        ImmutableSet.of("TestDB_0"), "MyDB", Collections.<String>emptySet()));
+    ExternalView testDBView = accessor.getProperty(accessor.keyBuilder().externalView("TestDB"));
+    ExternalView myDBView = accessor.getProperty(accessor.keyBuilder().externalView("MyDB"));
+    Assert.assertEquals(testDBView.getStateMap("TestDB_0"),
+        Collections.singletonMap("localhost_0", "MASTER"));
+
+    // only the external view of the resource with changed current states is written
+    setCurrentState(accessor, "localhost_1", "session_1", "MyDB", "MyDB_1", "SLAVE");
+    event = computeExternalViews(manager, cache, externalViewComputeStage);
+    Assert.assertEquals(getChangedPartitions(event),
+        Collections.singletonMap("MyDB", Collections.singleton("MyDB_1")));
+    Assert.assertEquals(
+        accessor.getProperty(accessor.keyBuilder().externalView("TestDB")).getStat().getVersion(),
+        testDBView.getStat().getVersion());
+    ExternalView newMyDBView = accessor.getProperty(accessor.keyBuilder().externalView("MyDB"));
+    Assert.assertEquals(newMyDBView.getStat().getVersion(), myDBView.getStat().getVersion() + 1);
+    Assert.assertEquals(newMyDBView.getStateMap("MyDB_1"),
+        Collections.singletonMap("localhost_1", "SLAVE"));
+    Assert.assertEquals(cache.getExternalViews().get("MyDB").getRecord(),
+        newMyDBView.getRecord());
+
+    // nothing changed
+    event = computeExternalViews(manager, cache, externalViewComputeStage);
+    Assert.assertTrue(getChangedPartitions(event).isEmpty());
+
+    // a resource marked changed is computed again, its view is not changed
+    cache.markResourcesChanged(Collections.singleton("TestDB"));
+    Assert.assertEquals(cache.getExternalViewChangedResources(), Collections.singleton("TestDB"));
+    event = computeExternalViews(manager, cache, externalViewComputeStage);
+    Assert.assertTrue(getChangedPartitions(event).isEmpty());
+    Assert.assertTrue(cache.getExternalViewChangedResources().isEmpty());
+
+    // a dropped resource has all its partitions changed
+    accessor.removeProperty(accessor.keyBuilder().idealStates("TestDB"));
+    accessor.removeProperty(
+        accessor.keyBuilder().currentState("localhost_0", "session_0", "TestDB"));
+    cache.notifyDataChange(HelixConstants.ChangeType.IDEAL_STATE);
+    event = computeExternalViews(manager, cache, externalViewComputeStage);
+    Assert.assertEquals(getChangedPartitions(event),
+        Collections.singletonMap("TestDB", Collections.singleton("TestDB_0")));
+    Assert.assertNull(accessor.getProperty(accessor.keyBuilder().externalView("TestDB")));
+    Assert.assertFalse(cache.getExternalViews().containsKey("TestDB"));
+  }
+
+  private ClusterEvent computeExternalViews(HelixManager manager, ClusterDataCache cache,
+      ExternalViewComputeStage externalViewComputeStage) throws Exception {
+    ClusterEvent event = new ClusterEvent(ClusterEventType.Unknown);
+    event.addAttribute(AttributeName.helixmanager.name(), manager);
+    event.addAttribute(AttributeName.ClusterDataCache.name(), cache);
+    // run the refresh as a stage so that its failures fail the test
+    runStage(event, new ReadClusterDataStage());
+    runStage(event, new ResourceComputationStage());
+    runStage(event, new CurrentStateComputationStage());
+    // as process() does before queueing the computation on the async worker
+    event.addAttribute(AttributeName.ClusterDataVersion.name(), cache.getRefreshVersion());
+    externalViewComputeStage.execute(event);
+    return event;
+  }
+
+  private static Map<String, Set<String>> getChangedPartitions(ClusterEvent event) {
+    return event.getAttribute(AttributeName.CHANGED_EXTERNAL_VIEW_PARTITIONS.name());
+  }
+
+  private static void setCurrentState(HelixDataAccessor accessor, String instance,
+      String sessionId, String resource, String partition, String state) {
+    CurrentState currentState = new CurrentState(resource);
+    currentState.setSessionId(sessionId);
+    currentState.setStateModelDefRef("MasterSlave");
+    currentState.setState(partition, state);
+    accessor.setProperty(accessor.keyBuilder().currentState(instance, sessionId, resource),
+        currentState);
+  }
 }
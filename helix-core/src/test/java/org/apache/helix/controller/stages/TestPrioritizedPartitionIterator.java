@@ -0,0 +1,143 @@
+package org.apache.helix.controller.stages;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.helix.api.config.StateTransitionThrottleConfig;
+import org.apache.helix.api.config.StateTransitionThrottleConfig.RebalanceType;
+import org.apache.helix.api.config.StateTransitionThrottleConfig.ThrottleScope;
+import org.apache.helix.controller.stages.IntermediateStateCalcStage.PartitionPriority;
+import org.apache.helix.controller.stages.IntermediateStateCalcStage.PrioritizedPartitionIterator;
+import org.apache.helix.model.ClusterConfig;
+import org.apache.helix.model.Partition;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestPrioritizedPartitionIterator {
+  private static final String RESOURCE = "TestDB";
+  private static final Map<String, String> BEST_POSSIBLE =
+      ImmutableMap.of("localhost_0", "MASTER", "localhost_1", "SLAVE");
+
+  @Test
+  public void testRecoveryPriority() {
+    StateTransitionThrottleController throttleController =
+        createThrottleController(RebalanceType.RECOVERY_BALANCE, 10);
+    List<Partition> partitions = iterate(new PrioritizedPartitionIterator(
+        createRecoveryPriorities(), throttleController, RebalanceType.RECOVERY_BALANCE, RESOURCE),
+        throttleController, RebalanceType.RECOVERY_BALANCE);
+    // no top state first, then fewer active replicas first, then by name
+    Assert.assertEquals(partitions, Arrays.asList(new Partition("TestDB_1"),
+        new Partition("TestDB_0"), new Partition("TestDB_3"), new Partition("TestDB_2")));
+  }
+
+  @Test
+  public void testLoadBalancePriority() {
+    List<PartitionPriority> priorities = new ArrayList<>();
+    priorities.add(PartitionPriority.forLoadBalance(new Partition("TestDB_0"), BEST_POSSIBLE,
+        ImmutableMap.of("localhost_0", "MASTER", "localhost_2", "SLAVE")));
+    priorities.add(PartitionPriority.forLoadBalance(new Partition("TestDB_1"), BEST_POSSIBLE,
+        ImmutableMap.of("localhost_2", "MASTER", "localhost_3", "SLAVE")));
+    priorities.add(PartitionPriority.forLoadBalance(new Partition("TestDB_2"), BEST_POSSIBLE,
+        null));
+    StateTransitionThrottleController throttleController =
+        createThrottleController(RebalanceType.LOAD_BALANCE, 10);
+    List<Partition> partitions = iterate(new PrioritizedPartitionIterator(priorities,
+        throttleController, RebalanceType.LOAD_BALANCE, RESOURCE), throttleController,
+        RebalanceType.LOAD_BALANCE);
+    // fewer replicas matching the best possible states first, then by name
+    Assert.assertEquals(partitions, Arrays.asList(new Partition("TestDB_1"),
+        new Partition("TestDB_2"), new Partition("TestDB_0")));
+  }
+
+  @Test
+  public void testTopPartitionsWithinQuota() {
+    StateTransitionThrottleController throttleController =
+        createThrottleController(RebalanceType.RECOVERY_BALANCE, 2);
+    List<Partition> partitions = iterate(new PrioritizedPartitionIterator(
+        createRecoveryPriorities(), throttleController, RebalanceType.RECOVERY_BALANCE, RESOURCE),
+        throttleController, RebalanceType.RECOVERY_BALANCE);
+    // the partitions within the quota come in priority order, the throttled ones in any order
+    Assert.assertEquals(partitions.subList(0, 2),
+        Arrays.asList(new Partition("TestDB_1"), new Partition("TestDB_0")));
+    Assert.assertEquals(new HashSet<>(partitions.subList(2, 4)),
+        ImmutableSet.of(new Partition("TestDB_2"), new Partition("TestDB_3")));
+  }
+
+  @Test
+  public void testThrottleDisabled() {
+    StateTransitionThrottleController throttleController =
+        new StateTransitionThrottleController(Collections.singleton(RESOURCE),
+            new ClusterConfig("TestCluster"), Collections.singleton("localhost_0"));
+    Set<Partition> partitions = new HashSet<>(iterate(new PrioritizedPartitionIterator(
+        createRecoveryPriorities(), throttleController, RebalanceType.RECOVERY_BALANCE, RESOURCE),
+        throttleController, RebalanceType.RECOVERY_BALANCE));
+    Assert.assertEquals(partitions.size(), 4);
+  }
+
+  private static List<PartitionPriority> createRecoveryPriorities() {
+    List<PartitionPriority> priorities = new ArrayList<>();
+    // no top state, 1 active replica
+    priorities.add(PartitionPriority.forRecovery(new Partition("TestDB_0"), BEST_POSSIBLE,
+        ImmutableMap.of("localhost_0", "SLAVE"), "MASTER"));
+    // no current state
+    priorities.add(PartitionPriority.forRecovery(new Partition("TestDB_1"), BEST_POSSIBLE, null,
+        "MASTER"));
+    // top state, 1 active replica
+    priorities.add(PartitionPriority.forRecovery(new Partition("TestDB_2"), BEST_POSSIBLE,
+        ImmutableMap.of("localhost_0", "MASTER"), "MASTER"));
+    // no top state, 1 active replica out of 2 SLAVE replicas
+    priorities.add(PartitionPriority.forRecovery(new Partition("TestDB_3"), BEST_POSSIBLE,
+        ImmutableMap.of("localhost_0", "SLAVE", "localhost_1", "SLAVE"), "MASTER"));
+    return priorities;
+  }
+
+  private static StateTransitionThrottleController createThrottleController(
+      RebalanceType rebalanceType, int resourceLimit) {
+    ClusterConfig clusterConfig = new ClusterConfig("TestCluster");
+    clusterConfig.setStateTransitionThrottleConfigs(Collections.singletonList(
+        new StateTransitionThrottleConfig(rebalanceType, ThrottleScope.RESOURCE, resourceLimit)));
+    return new StateTransitionThrottleController(Collections.singleton(RESOURCE), clusterConfig,
+        Collections.singleton("localhost_0"));
+  }
+
+  /**
+   * Iterate all partitions, charging the resource for each one as the throttled rebalance does.
+   */
+  private static List<Partition> iterate(Iterator<Partition> iterator,
+      StateTransitionThrottleController throttleController, RebalanceType rebalanceType) {
+    List<Partition> partitions = new ArrayList<>();
+    while (iterator.hasNext()) {
+      partitions.add(iterator.next());
+      throttleController.chargeResource(rebalanceType, RESOURCE);
+    }
+    return partitions;
+  }
+}
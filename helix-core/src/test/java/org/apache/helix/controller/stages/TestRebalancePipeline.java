@@ -20,17 +20,28 @@ package org.apache.helix.controller.stages;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import org.apache.helix.HelixAdmin;
 import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.HelixManager;
 import org.apache.helix.PropertyKey.Builder;
+import org.apache.helix.PropertyPathBuilder;
 import org.apache.helix.TestHelper;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.ZkUnitTestBase;
+import org.apache.helix.api.config.StateTransitionThrottleConfig;
+import org.apache.helix.api.config.StateTransitionThrottleConfig.RebalanceType;
+import org.apache.helix.api.config.StateTransitionThrottleConfig.ThrottleScope;
 import org.apache.helix.controller.pipeline.Pipeline;
+import org.apache.helix.controller.pipeline.ResourceShardedPipeline;
 import org.apache.helix.controller.stages.resource.ResourceMessageDispatchStage;
 import org.apache.helix.controller.stages.resource.ResourceMessageGenerationPhase;
 import org.apache.helix.integration.manager.ClusterControllerManager;
@@ -40,8 +51,10 @@ import org.apache.helix.manager.zk.ZkBaseDataAccessor;
 import org.apache.helix.model.ClusterConfig;
 import org.apache.helix.model.CurrentState;
 import org.apache.helix.model.IdealState;
+import org.apache.helix.model.InstanceConfig;
 import org.apache.helix.model.Message;
 import org.apache.helix.model.Partition;
+import org.apache.helix.monitoring.mbeans.ClusterStatusMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
@@ -492,6 +505,217 @@ public class TestRebalancePipeline extends ZkUnitTestBase {
     accessor.setProperty(keyBuilder.currentState(instance, sessionId, resourceGroupName), curState);
   }
 
+  /**
+   * Resource shards rebalance concurrently, and the messages of all shards are sent and cached.
+   */
+  @Test
+  public void testShardedRebalance() {
+    String clusterName = "CLUSTER_" + _className + "_sharded";
+    System.out.println("START " + clusterName + " at " + new Date(System.currentTimeMillis()));
+
+    ClusterConfig clusterConfig = new ClusterConfig(clusterName);
+    clusterConfig.setRebalancePipelineShards(3);
+    Map<String, Set<String>> partitionsInTransition =
+        runShardedRebalance(clusterName, clusterConfig, 8);
+
+    // every partition has an OFFLINE->SLAVE message for both replicas
+    Assert.assertEquals(partitionsInTransition.size(), 8);
+    for (Set<String> partitions : partitionsInTransition.values()) {
+      Assert.assertEquals(partitions.size(), 2);
+    }
+
+    deleteCluster(clusterName);
+    System.out.println("END " + clusterName + " at " + new Date(System.currentTimeMillis()));
+  }
+
+  /**
+   * A throttled cluster is not sharded, so the cluster level quota goes to the resources in order
+   * of decreasing priority.
+   */
+  @Test
+  public void testShardedRebalanceWithThrottlePriority() {
+    String clusterName = "CLUSTER_" + _className + "_shardedPriority";
+    System.out.println("START " + clusterName + " at " + new Date(System.currentTimeMillis()));
+
+    ClusterConfig clusterConfig = new ClusterConfig(clusterName);
+    clusterConfig.setRebalancePipelineShards(2);
+    clusterConfig.setStateTransitionThrottleConfigs(Collections.singletonList(
+        new StateTransitionThrottleConfig(RebalanceType.RECOVERY_BALANCE, ThrottleScope.CLUSTER,
+            5)));
+    clusterConfig.setResourcePriorityField("priority");
+    // the higher the index of a resource, the higher its priority
+    Map<String, Set<String>> partitionsInTransition =
+        runShardedRebalance(clusterName, clusterConfig, 8);
+
+    Assert.assertEquals(partitionsInTransition.keySet(),
+        new HashSet<>(Arrays.asList("TestDB_7", "TestDB_6", "TestDB_5")));
+    Assert.assertEquals(partitionsInTransition.get("TestDB_7").size(), 2);
+    Assert.assertEquals(partitionsInTransition.get("TestDB_6").size(), 2);
+    Assert.assertEquals(partitionsInTransition.get("TestDB_5").size(), 1);
+
+    deleteCluster(clusterName);
+    System.out.println("END " + clusterName + " at " + new Date(System.currentTimeMillis()));
+  }
+
+  /**
+   * Run the sharded rebalance pipeline on a cluster of FULL_AUTO resources of 2 partitions and 2
+   * replicas on 2 instances, the resource "TestDB_i" has priority i.
+   * @return the partitions with messages, per resource
+   */
+  private Map<String, Set<String>> runShardedRebalance(String clusterName,
+      ClusterConfig clusterConfig, int numResources) {
+    HelixDataAccessor accessor =
+        new ZKHelixDataAccessor(clusterName, new ZkBaseDataAccessor<ZNRecord>(_gZkClient));
+    HelixManager manager = new DummyClusterManager(clusterName, accessor);
+    ClusterEvent event = new ClusterEvent(ClusterEventType.Unknown);
+    event.addAttribute(AttributeName.helixmanager.name(), manager);
+    accessor.setProperty(accessor.keyBuilder().clusterConfig(), clusterConfig);
+
+    String[] resources = new String[numResources];
+    for (int i = 0; i < resources.length; i++) {
+      resources[i] = "TestDB_" + i;
+    }
+    Builder keyBuilder = accessor.keyBuilder();
+    // throttling only applies to FULL_AUTO resources
+    for (IdealState idealState : setupIdealState(clusterName, new int[] {
+        0, 1
+    }, resources, 2, 2)) {
+      idealState.setRebalanceMode(IdealState.RebalanceMode.FULL_AUTO);
+      String resourceName = idealState.getResourceName();
+      idealState.getRecord()
+          .setSimpleField("priority", resourceName.substring(resourceName.indexOf('_') + 1));
+      accessor.setProperty(keyBuilder.idealStates(resourceName), idealState);
+    }
+    for (String instance : new String[] { "localhost_0", "localhost_1" }) {
+      accessor.setProperty(keyBuilder.instanceConfig(instance), new InstanceConfig(instance));
+    }
+    setupLiveInstances(clusterName, new int[] {
+        0, 1
+    });
+    setupStateModel(clusterName);
+
+    Pipeline dataRefresh = new Pipeline();
+    dataRefresh.addStage(new ReadClusterDataStage());
+    dataRefresh.addStage(new ResourceComputationStage());
+    dataRefresh.addStage(new CurrentStateComputationStage());
+
+    Pipeline rebalancePipeline =
+        new ResourceShardedPipeline("", new ResourceShardedPipeline.PipelineFactory() {
+          @Override
+          public Pipeline createPipeline() {
+            Pipeline pipeline = new Pipeline();
+            pipeline.addStage(new BestPossibleStateCalcStage());
+            pipeline.addStage(new IntermediateStateCalcStage());
+            pipeline.addStage(new ResourceMessageGenerationPhase());
+            pipeline.addStage(new MessageSelectionStage());
+            pipeline.addStage(new MessageThrottleStage());
+            pipeline.addStage(new ResourceMessageDispatchStage());
+            return pipeline;
+          }
+        });
+
+    runPipeline(event, dataRefresh);
+    runPipeline(event, rebalancePipeline);
+
+    // every partition in transition has an OFFLINE->SLAVE message for both replicas
+    Map<String, Set<String>> partitionsInTransition = new HashMap<>();
+    int numMessages = 0;
+    for (String instance : new String[] { "localhost_0", "localhost_1" }) {
+      for (Message message : accessor.<Message>getChildValues(keyBuilder.messages(instance))) {
+        Set<String> partitions = partitionsInTransition.get(message.getResourceName());
+        if (partitions == null) {
+          partitions = new HashSet<>();
+          partitionsInTransition.put(message.getResourceName(), partitions);
+        }
+        partitions.add(message.getPartitionName());
+        numMessages++;
+      }
+    }
+    int numPartitions = 0;
+    for (Set<String> partitions : partitionsInTransition.values()) {
+      numPartitions += partitions.size();
+    }
+    Assert.assertEquals(numMessages, 2 * numPartitions);
+
+    // the messages of all shards are cached for the next run
+    ClusterDataCache cache = event.getAttribute(AttributeName.ClusterDataCache.name());
+    Assert.assertEquals(
+        cache.getMessages("localhost_0").size() + cache.getMessages("localhost_1").size(),
+        numMessages);
+    return partitionsInTransition;
+  }
+
+  /**
+   * Messages are sent in multi() transactions per instance, and the messages of the failed
+   * transactions are sent one by one.
+   */
+  @Test
+  public void testTransactionalMessageDispatch() {
+    String clusterName = "CLUSTER_" + _className + "_txn";
+    System.out.println("START " + clusterName + " at " + new Date(System.currentTimeMillis()));
+
+    HelixDataAccessor accessor =
+        new ZKHelixDataAccessor(clusterName, new ZkBaseDataAccessor<ZNRecord>(_gZkClient));
+    HelixManager manager = new DummyClusterManager(clusterName, accessor);
+    ClusterEvent event = new ClusterEvent(ClusterEventType.Unknown);
+    event.addAttribute(AttributeName.helixmanager.name(), manager);
+    final List<String> transactions = new ArrayList<>();
+    event.addAttribute(AttributeName.clusterStatusMonitor.name(),
+        new ClusterStatusMonitor(clusterName) {
+          @Override
+          public void updateMessageTransaction(long size, boolean success) {
+            transactions.add(size + ":" + success);
+          }
+        });
+
+    ClusterConfig clusterConfig = new ClusterConfig(clusterName);
+    clusterConfig.setMessageDispatchTransactionSize(3);
+    accessor.setProperty(accessor.keyBuilder().clusterConfig(), clusterConfig);
+
+    String resourceName = "TestDB";
+    setupIdealState(clusterName, new int[] {
+        0, 1
+    }, new String[] { resourceName }, 4, 2);
+    setupLiveInstances(clusterName, new int[] {
+        0, 1
+    });
+    setupStateModel(clusterName);
+    // the message folder of localhost_1 does not exist, so its transactions fail
+    _gZkClient.createPersistent(PropertyPathBuilder.instanceMessage(clusterName, "localhost_0"),
+        true);
+    _gZkClient.deleteRecursively(PropertyPathBuilder.instanceMessage(clusterName, "localhost_1"));
+
+    Pipeline dataRefresh = new Pipeline();
+    dataRefresh.addStage(new ReadClusterDataStage());
+    Pipeline rebalancePipeline = new Pipeline();
+    rebalancePipeline.addStage(new ResourceComputationStage());
+    rebalancePipeline.addStage(new CurrentStateComputationStage());
+    rebalancePipeline.addStage(new BestPossibleStateCalcStage());
+    rebalancePipeline.addStage(new IntermediateStateCalcStage());
+    rebalancePipeline.addStage(new ResourceMessageGenerationPhase());
+    rebalancePipeline.addStage(new MessageSelectionStage());
+    rebalancePipeline.addStage(new MessageThrottleStage());
+    rebalancePipeline.addStage(new ResourceMessageDispatchStage());
+
+    runPipeline(event, dataRefresh);
+    runPipeline(event, rebalancePipeline);
+
+    // an OFFLINE->SLAVE message for each replica
+    Builder keyBuilder = accessor.keyBuilder();
+    for (String instance : new String[] { "localhost_0", "localhost_1" }) {
+      Assert.assertEquals(accessor.getChildNames(keyBuilder.messages(instance)).size(), 4);
+    }
+    Collections.sort(transactions);
+    Assert.assertEquals(transactions,
+        Arrays.asList("1:false", "1:true", "3:false", "3:true"));
+    ClusterDataCache cache = event.getAttribute(AttributeName.ClusterDataCache.name());
+    Assert.assertEquals(
+        cache.getMessages("localhost_0").size() + cache.getMessages("localhost_1").size(), 8);
+
+    deleteCluster(clusterName);
+    System.out.println("END " + clusterName + " at " + new Date(System.currentTimeMillis()));
+  }
+
   private void refreshClusterConfig(String clusterName, HelixDataAccessor accessor) {
     accessor.setProperty(accessor.keyBuilder().clusterConfig(), new ClusterConfig(clusterName));
   }
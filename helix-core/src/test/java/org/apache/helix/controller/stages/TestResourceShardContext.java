@@ -0,0 +1,103 @@
+package org.apache.helix.controller.stages;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.model.ClusterConfig;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.Resource;
+import org.apache.helix.monitoring.mbeans.ClusterStatusMonitor;
+import org.apache.helix.monitoring.mbeans.ResourceMonitor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestResourceShardContext {
+  private static final String CLUSTER_NAME = "TestCluster";
+
+  @Test
+  public void testRebalanceStatusReportedOnce() throws InterruptedException {
+    ExecutorService asyncTasksThreadPool = Executors.newSingleThreadExecutor();
+    ClusterDataCache cache = new ClusterDataCache(CLUSTER_NAME);
+    cache.setAsyncTasksThreadPool(asyncTasksThreadPool);
+    final List<Boolean> failureGauges = Collections.synchronizedList(new ArrayList<Boolean>());
+    final List<String> failedResources = Collections.synchronizedList(new ArrayList<String>());
+    ClusterStatusMonitor clusterStatusMonitor = new ClusterStatusMonitor(CLUSTER_NAME) {
+      @Override
+      public void setRebalanceFailureGauge(boolean isFailure) {
+        failureGauges.add(isFailure);
+      }
+
+      @Override
+      public void setResourceRebalanceStates(Collection<String> resources,
+          ResourceMonitor.RebalanceStatus state) {
+        failedResources.addAll(resources);
+      }
+    };
+    ClusterEvent event = new ClusterEvent(CLUSTER_NAME, ClusterEventType.Unknown);
+    event.addAttribute(AttributeName.ClusterDataCache.name(), cache);
+    event.addAttribute(AttributeName.clusterStatusMonitor.name(), clusterStatusMonitor);
+    event.addAttribute(AttributeName.RESOURCES_TO_REBALANCE.name(),
+        Collections.<String, Resource>emptyMap());
+
+    // a shard without failures does not clear the failure of another shard
+    ResourceShardContext shardContext = new ResourceShardContext(Arrays.asList("db_0", "db_1"));
+    shardContext.addRebalanceFailures(false, Collections.singletonList("db_0"));
+    shardContext.addRebalanceFailures(false, Collections.<String>emptyList());
+    shardContext.apply(event);
+
+    asyncTasksThreadPool.shutdown();
+    Assert.assertTrue(asyncTasksThreadPool.awaitTermination(10, TimeUnit.SECONDS));
+    Assert.assertEquals(failureGauges, Collections.singletonList(true));
+    Assert.assertEquals(failedResources, Collections.singletonList("db_0"));
+  }
+
+  @Test
+  public void testOfflineInstancesLimitValidatedOnce() {
+    // no instance is live
+    ClusterDataCache cache = new ClusterDataCache(CLUSTER_NAME) {
+      @Override
+      public Set<String> getEnabledLiveInstances() {
+        return Collections.emptySet();
+      }
+    };
+    ClusterConfig clusterConfig = new ClusterConfig(CLUSTER_NAME);
+    clusterConfig.setMaxOfflineInstancesAllowed(0);
+    cache.setClusterConfig(clusterConfig);
+    cache.setInstanceConfigMap(
+        Collections.singletonMap("localhost_0", new InstanceConfig("localhost_0")));
+
+    ResourceShardContext shardContext = new ResourceShardContext(Arrays.asList("db_0", "db_1"));
+    Assert.assertFalse(shardContext.validateOfflineInstancesLimit(cache, null, "event"));
+    // the other shards get the result of the first check
+    clusterConfig.setMaxOfflineInstancesAllowed(1);
+    Assert.assertFalse(shardContext.validateOfflineInstancesLimit(cache, null, "event"));
+    Assert.assertTrue(
+        BestPossibleStateCalcStage.validateOfflineInstancesLimit(cache, null, "event"));
+  }
+}
@@ -0,0 +1,154 @@
+package org.apache.helix.controller.stages;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.helix.api.config.StateTransitionThrottleConfig;
+import org.apache.helix.api.config.StateTransitionThrottleConfig.RebalanceType;
+import org.apache.helix.api.config.StateTransitionThrottleConfig.ThrottleScope;
+import org.apache.helix.model.ClusterConfig;
+import org.apache.helix.model.Message;
+import org.apache.helix.model.Partition;
+import org.apache.helix.model.Resource;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestStateTransitionThrottleLedger {
+  private static final String RESOURCE = "TestDB";
+
+  @Test
+  public void testLedgerUpdates() {
+    Resource resource = new Resource(RESOURCE);
+    for (int i = 0; i < 3; i++) {
+      resource.addPartition(RESOURCE + "_" + i);
+    }
+    Partition p0 = new Partition(RESOURCE + "_0");
+    Partition p1 = new Partition(RESOURCE + "_1");
+    StateTransitionThrottleLedger ledger = new StateTransitionThrottleLedger();
+
+    // transitions requested
+    CurrentStateOutput currentStateOutput = new CurrentStateOutput();
+    currentStateOutput.setCurrentState(RESOURCE, p0, "localhost_0", "SLAVE");
+    setPendingMessage(currentStateOutput, p0, "localhost_0", "MASTER");
+    setPendingMessage(currentStateOutput, p0, "localhost_1", "SLAVE");
+    setPendingMessage(currentStateOutput, p1, "localhost_1", "SLAVE");
+    // not a partition of the resource any more
+    setPendingMessage(currentStateOutput, new Partition(RESOURCE + "_9"), "localhost_1", "SLAVE");
+    Map<Partition, Set<String>> pendingTransitions = ledger.update(resource, currentStateOutput);
+    Assert.assertEquals(pendingTransitions, ImmutableMap.of(p0,
+        ImmutableSet.of("localhost_0", "localhost_1"), p1, ImmutableSet.of("localhost_1")));
+    Assert.assertEquals(ledger.getInstancePendingTransitionCounts(),
+        ImmutableMap.of("localhost_0", 1, "localhost_1", 2));
+
+    // the transition of localhost_0 completed, its message is not removed yet
+    currentStateOutput = new CurrentStateOutput();
+    currentStateOutput.setCurrentState(RESOURCE, p0, "localhost_0", "MASTER");
+    setPendingMessage(currentStateOutput, p0, "localhost_0", "MASTER");
+    setPendingMessage(currentStateOutput, p0, "localhost_1", "SLAVE");
+    setPendingMessage(currentStateOutput, p1, "localhost_1", "SLAVE");
+    pendingTransitions = ledger.update(resource, currentStateOutput);
+    Assert.assertEquals(pendingTransitions, ImmutableMap.of(p0,
+        ImmutableSet.of("localhost_1"), p1, ImmutableSet.of("localhost_1")));
+    Assert.assertEquals(ledger.getInstancePendingTransitionCounts(),
+        ImmutableMap.of("localhost_1", 2));
+
+    // the messages of p0 are removed
+    currentStateOutput = new CurrentStateOutput();
+    setPendingMessage(currentStateOutput, p1, "localhost_1", "SLAVE");
+    pendingTransitions = ledger.update(resource, currentStateOutput);
+    Assert.assertEquals(pendingTransitions,
+        ImmutableMap.of(p1, ImmutableSet.of("localhost_1")));
+    Assert.assertEquals(ledger.getInstancePendingTransitionCounts(),
+        ImmutableMap.of("localhost_1", 1));
+
+    // the resource is deleted
+    ledger.retain(Collections.singleton("OtherDB"));
+    Assert.assertTrue(ledger.getInstancePendingTransitionCounts().isEmpty());
+    Assert.assertFalse(ledger.remove(RESOURCE));
+    Assert.assertTrue(ledger.update(resource, new CurrentStateOutput()).isEmpty());
+  }
+
+  @Test
+  public void testThrottleLimits() {
+    ClusterConfig clusterConfig = new ClusterConfig("TestCluster");
+    clusterConfig.setStateTransitionThrottleConfigs(Arrays.asList(
+        new StateTransitionThrottleConfig(RebalanceType.RECOVERY_BALANCE, ThrottleScope.CLUSTER,
+            3),
+        new StateTransitionThrottleConfig(RebalanceType.ANY, ThrottleScope.RESOURCE, 2),
+        new StateTransitionThrottleConfig(RebalanceType.LOAD_BALANCE, ThrottleScope.RESOURCE, 5),
+        new StateTransitionThrottleConfig(RebalanceType.LOAD_BALANCE, ThrottleScope.INSTANCE,
+            1)));
+    Set<String> resources = new HashSet<>(Arrays.asList(RESOURCE, "OtherDB"));
+    Set<String> liveInstances = Collections.singleton("localhost_0");
+    StateTransitionThrottleController controller =
+        new StateTransitionThrottleController(resources, clusterConfig, liveInstances);
+    Assert.assertTrue(controller.isThrottleEnabled());
+
+    // ANY only counts the rebalance types limited in the same scope
+    controller.chargeResource(RebalanceType.RECOVERY_BALANCE, RESOURCE);
+    controller.chargeResource(RebalanceType.RECOVERY_BALANCE, RESOURCE);
+    Assert.assertFalse(controller.shouldThrottleForResource(RebalanceType.LOAD_BALANCE, RESOURCE));
+    controller.chargeResource(RebalanceType.LOAD_BALANCE, RESOURCE);
+    Assert.assertFalse(controller.shouldThrottleForResource(RebalanceType.LOAD_BALANCE, RESOURCE));
+    controller.chargeResource(RebalanceType.LOAD_BALANCE, RESOURCE);
+    Assert.assertTrue(controller.shouldThrottleForResource(RebalanceType.LOAD_BALANCE, RESOURCE));
+    Assert.assertTrue(
+        controller.shouldThrottleForResource(RebalanceType.RECOVERY_BALANCE, RESOURCE));
+    Assert.assertFalse(controller.shouldThrottleForResource(RebalanceType.LOAD_BALANCE, "OtherDB"));
+
+    // only the live instances are limited
+    controller.chargeInstance(RebalanceType.LOAD_BALANCE, "localhost_0");
+    controller.chargeInstance(RebalanceType.LOAD_BALANCE, "localhost_1");
+    controller.chargeInstance(RebalanceType.LOAD_BALANCE, "localhost_1");
+    Assert.assertTrue(controller.shouldThrottleForInstance(RebalanceType.LOAD_BALANCE,
+        "localhost_0"));
+    Assert.assertFalse(controller.shouldThrottleForInstance(RebalanceType.RECOVERY_BALANCE,
+        "localhost_0"));
+    Assert.assertFalse(controller.shouldThrottleForInstance(RebalanceType.LOAD_BALANCE,
+        "localhost_1"));
+
+    // the cluster limit applies to every resource and instance
+    for (int i = 0; i < 3; i++) {
+      Assert.assertFalse(controller.shouldThrottleForCluster(RebalanceType.RECOVERY_BALANCE));
+      controller.chargeCluster(RebalanceType.RECOVERY_BALANCE);
+    }
+    controller.chargeCluster(RebalanceType.NONE);
+    Assert.assertTrue(
+        controller.shouldThrottleForInstance(RebalanceType.RECOVERY_BALANCE, "localhost_1"));
+    Assert.assertTrue(
+        controller.shouldThrottleForResource(RebalanceType.RECOVERY_BALANCE, "OtherDB"));
+    Assert.assertFalse(controller.shouldThrottleForCluster(RebalanceType.LOAD_BALANCE));
+  }
+
+  private static void setPendingMessage(CurrentStateOutput currentStateOutput,
+      Partition partition, String instance, String toState) {
+    Message message = new Message(Message.MessageType.STATE_TRANSITION,
+        partition.getPartitionName() + "_" + instance);
+    message.setToState(toState);
+    currentStateOutput.setPendingMessage(RESOURCE, partition, instance, message);
+  }
+}
@@ -0,0 +1,137 @@
+package org.apache.helix.controller.strategy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Predicate;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.controller.rebalancer.strategy.CrushRebalanceStrategy;
+import org.apache.helix.controller.rebalancer.strategy.crushMapping.CRUSHPlacementAlgorithm;
+import org.apache.helix.controller.rebalancer.topology.Node;
+import org.apache.helix.controller.rebalancer.topology.Topology;
+import org.apache.helix.controller.stages.ClusterDataCache;
+import org.apache.helix.model.ClusterConfig;
+import org.apache.helix.model.InstanceConfig;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class TestCrushPlacement {
+  private static final int NUM_INSTANCES = 100;
+
+  private final List<String> _allNodes = new ArrayList<>();
+  private final List<String> _liveNodes = new ArrayList<>();
+  private final Map<String, InstanceConfig> _instanceConfigMap = new HashMap<>();
+  private ClusterConfig _clusterConfig;
+
+  @BeforeClass
+  public void beforeClass() {
+    _clusterConfig = new ClusterConfig("Test_Cluster");
+    _clusterConfig.setTopology("/Rack/Sub-Rack/Host/Instance");
+    _clusterConfig.setFaultZoneType("Sub-Rack");
+    _clusterConfig.setTopologyAwareEnabled(true);
+
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      String instance = "localhost_" + i;
+      InstanceConfig config = new InstanceConfig(instance);
+      config.setDomain(String
+          .format("Rack=rack_%d, Sub-Rack=subrack-%d, Host=%s", i / 25, i / 5, instance));
+      config.setHostName(instance);
+      config.setPort("9000");
+      if (i % 3 == 0) {
+        config.setWeight((i + 1) * 100);
+      }
+      _allNodes.add(instance);
+      if (i % 10 != 0) {
+        _liveNodes.add(instance);
+      }
+      _instanceConfigMap.put(instance, config);
+    }
+  }
+
+  /**
+   * The selections in a precomputed tree are the same as the ones computing the straws each time.
+   */
+  @Test
+  public void testPrecomputedTreeSelection() {
+    Node root = new Topology(_allNodes, _liveNodes, _instanceConfigMap, _clusterConfig)
+        .getRootNode();
+    CRUSHPlacementAlgorithm algorithm = new CRUSHPlacementAlgorithm();
+    CRUSHPlacementAlgorithm precomputed = new CRUSHPlacementAlgorithm(root);
+    Predicate<Node> notFirstRack = new Predicate<Node>() {
+      @Override
+      public boolean apply(Node node) {
+        return !node.getName().equals("subrack-0");
+      }
+    };
+
+    for (long input = 0; input < 2000; input++) {
+      Assert.assertEquals(precomputed.select(root, input, 3, "Sub-Rack"),
+          algorithm.select(root, input, 3, "Sub-Rack"));
+      Assert.assertEquals(precomputed.select(root, input, 3, "Sub-Rack", notFirstRack),
+          algorithm.select(root, input, 3, "Sub-Rack", notFirstRack));
+      Assert.assertEquals(precomputed.select(root, input, 5, "Instance"),
+          algorithm.select(root, input, 5, "Instance"));
+    }
+  }
+
+  /**
+   * The partitions of a large resource are placed in parallel to the same instances as when they
+   * are placed one by one.
+   */
+  @Test
+  public void testParallelPlacement() {
+    ClusterDataCache cache = new ClusterDataCache("Test_Cluster");
+    cache.setClusterConfig(_clusterConfig);
+    cache.setInstanceConfigMap(_instanceConfigMap);
+    LinkedHashMap<String, Integer> states = new LinkedHashMap<>();
+    states.put("MASTER", 1);
+    states.put("SLAVE", 2);
+
+    List<String> partitions = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      partitions.add("TestDB_" + i);
+    }
+    CrushRebalanceStrategy strategy = new CrushRebalanceStrategy();
+    strategy.init("TestDB", partitions, states, Integer.MAX_VALUE);
+    ZNRecord record = strategy.computePartitionAssignment(_allNodes, _liveNodes,
+        Collections.<String, Map<String, String>>emptyMap(), cache);
+    Assert.assertEquals(record.getListFields().size(), partitions.size());
+
+    // small batches are placed by the calling thread
+    for (int i = 0; i < partitions.size(); i += 100) {
+      List<String> batch = partitions.subList(i, i + 100);
+      CrushRebalanceStrategy sequential = new CrushRebalanceStrategy();
+      sequential.init("TestDB", batch, states, Integer.MAX_VALUE);
+      ZNRecord batchRecord = sequential.computePartitionAssignment(_allNodes, _liveNodes,
+          Collections.<String, Map<String, String>>emptyMap(), cache);
+      for (String partition : batch) {
+        Assert.assertEquals(record.getListField(partition), batchRecord.getListField(partition));
+        Assert.assertEquals(record.getListField(partition).size(), 3);
+      }
+    }
+  }
+}
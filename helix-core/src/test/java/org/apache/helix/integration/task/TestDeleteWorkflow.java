@@ -68,8 +68,8 @@ public class TestDeleteWorkflow extends TaskTestBase  {
   }
 
   @Test
-  public void testDeleteWorkflowForcefully() throws InterruptedException {
-    String jobQueueName = TestHelper.getTestMethodName();
+  public void testDeleteWorkflowForcefully() throws Exception {
+    final String jobQueueName = TestHelper.getTestMethodName();
     JobConfig.Builder jobBuilder = JobConfig.Builder.fromMap(WorkflowGenerator.DEFAULT_JOB_CONFIG)
         .setMaxAttemptsPerTask(1)
         .setWorkflow(jobQueueName)
@@ -80,6 +80,13 @@ public class TestDeleteWorkflow extends TaskTestBase  {
     _driver.start(jobQueue.build());
     _driver.pollForJobState(jobQueueName, TaskUtil.getNamespacedJobName(jobQueueName, "job1"),
         TaskState.IN_PROGRESS);
+    // the job context is written along with the workflow context, but not necessarily before it
+    Assert.assertTrue(TestHelper.verify(new TestHelper.Verifier() {
+      @Override
+      public boolean verify() {
+        return _driver.getJobContext(TaskUtil.getNamespacedJobName(jobQueueName, "job1")) != null;
+      }
+    }, 5000L));
 
     // Check that WorkflowConfig, WorkflowContext, and IdealState are indeed created for this job queue
     Assert.assertNotNull(_driver.getWorkflowConfig(jobQueueName));
@@ -113,8 +120,8 @@ public class TestDeleteWorkflow extends TaskTestBase  {
   }
 
   @Test
-  public void testDeleteHangingJobs() throws InterruptedException {
-    String jobQueueName = TestHelper.getTestMethodName();
+  public void testDeleteHangingJobs() throws Exception {
+    final String jobQueueName = TestHelper.getTestMethodName();
     JobConfig.Builder jobBuilder = JobConfig.Builder.fromMap(WorkflowGenerator.DEFAULT_JOB_CONFIG)
         .setMaxAttemptsPerTask(1)
         .setWorkflow(jobQueueName)
@@ -125,6 +132,13 @@ public class TestDeleteWorkflow extends TaskTestBase  {
     _driver.start(jobQueue.build());
     _driver.pollForJobState(jobQueueName, TaskUtil.getNamespacedJobName(jobQueueName, "job1"),
         TaskState.IN_PROGRESS);
+    // the job context is written along with the workflow context, but not necessarily before it
+    Assert.assertTrue(TestHelper.verify(new TestHelper.Verifier() {
+      @Override
+      public boolean verify() {
+        return _driver.getJobContext(TaskUtil.getNamespacedJobName(jobQueueName, "job1")) != null;
+      }
+    }, 5000L));
 
     // Check that WorkflowConfig, WorkflowContext, and IdealState are indeed created for this job queue
     Assert.assertNotNull(_driver.getWorkflowConfig(jobQueueName));
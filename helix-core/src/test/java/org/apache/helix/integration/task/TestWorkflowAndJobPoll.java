@@ -19,6 +19,9 @@ package org.apache.helix.integration.task;
  * under the License.
  */
 
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.helix.HelixException;
 import org.apache.helix.TestHelper;
 import org.apache.helix.task.TaskState;
 import org.apache.helix.task.Workflow;
@@ -56,4 +59,28 @@ public class TestWorkflowAndJobPoll extends TaskTestBase {
             TaskState.COMPLETED, TaskState.FAILED);
     Assert.assertEquals(TaskState.COMPLETED, polledState);
   }
+
+  @Test public void testAsyncPoll() throws Exception {
+    String jobResource = TestHelper.getTestMethodName();
+    Workflow.Builder builder =
+        WorkflowGenerator.generateDefaultSingleJobWorkflowBuilder(jobResource);
+    _driver.start(builder.build());
+
+    // the futures are completed by the watch on the workflow context
+    ListenableFuture<TaskState> jobState = _driver
+        .asyncPollForJobState(jobResource, String.format("%s_%s", jobResource, jobResource),
+            TaskState.COMPLETED, TaskState.FAILED);
+    ListenableFuture<TaskState> workflowState =
+        _driver.asyncPollForWorkflowState(jobResource, TaskState.COMPLETED, TaskState.FAILED);
+    Assert.assertEquals(jobState.get(4000L, TimeUnit.MILLISECONDS), TaskState.COMPLETED);
+    Assert.assertEquals(workflowState.get(4000L, TimeUnit.MILLISECONDS), TaskState.COMPLETED);
+
+    // already in the state
+    Assert.assertTrue(_driver.asyncPollForWorkflowState(jobResource, TaskState.COMPLETED).isDone());
+  }
+
+  @Test(expectedExceptions = HelixException.class)
+  public void testPollTimeout() throws InterruptedException {
+    _driver.pollForWorkflowState(TestHelper.getTestMethodName(), 500L, TaskState.COMPLETED);
+  }
 }
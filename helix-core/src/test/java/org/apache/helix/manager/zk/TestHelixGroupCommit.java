@@ -0,0 +1,164 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.I0Itec.zkclient.DataUpdater;
+import org.apache.helix.AccessOption;
+import org.apache.helix.TestHelper;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.ZkUnitTestBase;
+import org.apache.helix.monitoring.mbeans.HelixGroupCommitMonitor;
+import org.apache.helix.monitoring.mbeans.MonitorDomainNames;
+import org.apache.zookeeper.data.Stat;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestHelixGroupCommit extends ZkUnitTestBase {
+
+  /**
+   * Concurrent updates to existing and new znodes are all applied exactly once, whether they are
+   * written one by one or in multi() transactions.
+   */
+  @Test
+  public void testConcurrentUpdates() throws Exception {
+    String className = TestHelper.getTestClassName();
+    String methodName = TestHelper.getTestMethodName();
+    String testName = className + "_" + methodName;
+    System.out.println("START " + testName + " at " + new Date(System.currentTimeMillis()));
+
+    final String root = "/" + testName;
+    final ZkBaseDataAccessor<ZNRecord> accessor = new ZkBaseDataAccessor<>(_gZkClient);
+    final int numPaths = 10;
+    final int numUpdates = 50;
+    // paths that share a commit queue, so their updates are batched together
+    final List<String> paths = new ArrayList<>();
+    for (int i = 0; paths.size() < numPaths; i++) {
+      String path = root + "/node_" + i;
+      if ((path.hashCode() & Integer.MAX_VALUE) % 100 == 0) {
+        paths.add(path);
+      }
+    }
+    // half of the znodes exist, the others are created by the first update
+    for (int i = 0; i < numPaths; i += 2) {
+      accessor.create(paths.get(i), new ZNRecord("node"), AccessOption.PERSISTENT);
+    }
+
+    HelixGroupCommitMonitor monitor =
+        new HelixGroupCommitMonitor("TestType", testName).register();
+    final HelixGroupCommit<ZNRecord> groupCommit = new HelixGroupCommit<>(monitor);
+    ExecutorService executor = Executors.newFixedThreadPool(20);
+    List<Future<Boolean>> futures = new ArrayList<>();
+    for (int u = 0; u < numUpdates; u++) {
+      for (int i = 0; i < numPaths; i++) {
+        final String path = paths.get(i);
+        final String field = "update_" + u;
+        futures.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            return groupCommit.commit(accessor, AccessOption.PERSISTENT, path,
+                new DataUpdater<ZNRecord>() {
+                  @Override
+                  public ZNRecord update(ZNRecord current) {
+                    ZNRecord record = current == null ? new ZNRecord("node") : current;
+                    record.setSimpleField(field, "true");
+                    return record;
+                  }
+                });
+          }
+        }));
+      }
+    }
+    for (Future<Boolean> future : futures) {
+      Assert.assertTrue(future.get());
+    }
+    executor.shutdown();
+
+    for (int i = 0; i < numPaths; i++) {
+      ZNRecord record = accessor.get(paths.get(i), null, 0);
+      Assert.assertEquals(record.getSimpleFields().size(), numUpdates);
+    }
+
+    MBeanServer beanServer = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(String
+        .format("%s:%s=%s,%s=%s", MonitorDomainNames.HelixGroupCommit.name(),
+            HelixGroupCommitMonitor.MONITOR_TYPE, "TestType", HelixGroupCommitMonitor.MONITOR_KEY,
+            testName));
+    Assert.assertEquals(beanServer.getAttribute(name, "UpdateCounter"),
+        (long) (numPaths * numUpdates));
+    Assert.assertEquals(beanServer.getAttribute(name, "UpdateFailureCounter"), 0L);
+    Assert.assertEquals(beanServer.getAttribute(name, "PendingUpdateGauge"), 0L);
+    long writes = (long) beanServer.getAttribute(name, "WriteCounter");
+    Assert.assertTrue(writes > 0 && writes <= numPaths * numUpdates);
+    monitor.unregister();
+
+    _gZkClient.deleteRecursively(root);
+    System.out.println("END " + testName + " at " + new Date(System.currentTimeMillis()));
+  }
+
+  /**
+   * A multi() set writes all the znodes or none of them.
+   */
+  @Test
+  public void testMultiSet() {
+    String className = TestHelper.getTestClassName();
+    String methodName = TestHelper.getTestMethodName();
+    String testName = className + "_" + methodName;
+    System.out.println("START " + testName + " at " + new Date(System.currentTimeMillis()));
+
+    String root = "/" + testName;
+    ZkBaseDataAccessor<ZNRecord> accessor = new ZkBaseDataAccessor<>(_gZkClient);
+    List<String> paths = new ArrayList<>();
+    List<ZNRecord> records = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      paths.add(root + "/node_" + i);
+      records.add(new ZNRecord("node_" + i));
+      accessor.create(paths.get(i), records.get(i), AccessOption.PERSISTENT);
+      records.get(i).setSimpleField("key", "value");
+    }
+
+    // node_2 has version 0, so the transaction fails
+    Stat[] stats = accessor.multiSet(paths, records, Arrays.asList(0, -1, 1));
+    Assert.assertEquals(stats, new Stat[3]);
+    for (String path : paths) {
+      Assert.assertNull(accessor.get(path, null, 0).getSimpleField("key"));
+    }
+
+    stats = accessor.multiSet(paths, records, Arrays.asList(0, -1, 0));
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(stats[i].getVersion(), 1);
+      Assert.assertEquals(accessor.get(paths.get(i), null, 0).getSimpleField("key"), "value");
+    }
+
+    _gZkClient.deleteRecursively(root);
+    System.out.println("END " + testName + " at " + new Date(System.currentTimeMillis()));
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.helix.manager.zk;
  */
 
 import java.lang.management.ManagementFactory;
+import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -42,6 +43,8 @@ import org.apache.helix.monitoring.mbeans.MonitorDomainNames;
 import org.apache.helix.monitoring.mbeans.ZkClientMonitor;
 import org.apache.helix.monitoring.mbeans.ZkClientPathMonitor;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.Watcher.Event.KeeperState;
@@ -272,6 +275,21 @@ public class TestRawZkClient extends ZkUnitTestBase {
     Assert.assertTrue((long) beanServer.getAttribute(idealStatename, "WriteTotalLatencyCounter")
         >= origIdealStatesWriteTotalLatencyCounter);
 
+    // Test async multi write
+    ZkAsyncCallbacks.MultiCallbackHandler multiCallbackHandler =
+        new ZkAsyncCallbacks.MultiCallbackHandler();
+    zkClient.asyncMulti(Arrays.asList(Op.check(TEST_PATH, -1),
+        Op.setData(TEST_PATH, zkClient.serialize(TEST_DATA, TEST_PATH), -1)),
+        multiCallbackHandler);
+    multiCallbackHandler.waitForSuccess();
+    Assert.assertEquals(multiCallbackHandler.getRc(), KeeperException.Code.OK.intValue());
+    Assert.assertEquals((long) beanServer.getAttribute(rootname, "WriteCounter"), 3);
+    Assert.assertEquals((long) beanServer.getAttribute(rootname, "WriteBytesCounter"),
+        TEST_DATA_SIZE * 3);
+    Assert.assertEquals((long) beanServer.getAttribute(idealStatename, "WriteCounter"), 3);
+    Assert.assertEquals((long) beanServer.getAttribute(idealStatename, "WriteBytesCounter"),
+        TEST_DATA_SIZE * 3);
+
     // Test data change count
     final Lock lock = new ReentrantLock();
     final Condition callbackFinish = lock.newCondition();
@@ -0,0 +1,212 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.I0Itec.zkclient.serialize.ZkSerializer;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.util.CompactStringMap;
+import org.apache.helix.util.GZipCompressionUtil;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class TestZNRecordBinarySerializer {
+  @Test
+  public void basicTest() {
+    ZNRecord record = new ZNRecord("testId");
+    record.setMapField("k1", ImmutableMap.of("a", "b", "c", "d"));
+    record.setMapField("k2", ImmutableMap.of("e", "f", "g", "h"));
+    record.setListField("k3", ImmutableList.of("a", "b", "c", "d"));
+    record.setListField("k4", ImmutableList.of("d", "e", "f", "g"));
+    record.setSimpleField("k5", "a");
+    record.setSimpleField("k6", "é中文");
+    record.setRawPayload(new byte[] { 0, 1, 2, -1 });
+
+    ZNRecordBinarySerializer serializer = new ZNRecordBinarySerializer();
+    byte[] bytes = serializer.serialize(record);
+    Assert.assertTrue(ZNRecordBinarySerializer.isBinary(bytes));
+    ZNRecord result = (ZNRecord) serializer.deserialize(bytes);
+    Assert.assertEquals(result, record);
+    Assert.assertEquals(result.getRawPayload(), record.getRawPayload());
+  }
+
+  @Test
+  public void testNullFields() {
+    ZNRecord record = new ZNRecord("testId");
+    record.setMapField("K1", null);
+    record.setListField("k2", null);
+    record.setSimpleField("k3", null);
+    record.setMapField("k4", new TreeMap<String, String>());
+    record.getMapField("k4").put("a", null);
+    record.setListField("k5", Arrays.asList("a", null));
+
+    ZNRecordBinarySerializer serializer = new ZNRecordBinarySerializer();
+    ZNRecord result = (ZNRecord) serializer.deserialize(serializer.serialize(record));
+    Assert.assertEquals(result, record);
+    Assert.assertTrue(result.getMapFields().containsKey("K1"));
+    Assert.assertNull(result.getMapField("K1"));
+    Assert.assertNull(result.getListField("k2"));
+    Assert.assertNull(result.getSimpleField("k3"));
+    Assert.assertNull(result.getRawPayload());
+  }
+
+  /**
+   * Records written in either format must be readable by every ZNRecord serializer, so a cluster
+   * can be migrated one path at a time.
+   */
+  @Test
+  public void testMixedFormats() {
+    ZNRecord record = createIdealStateRecord(100, 3);
+    ZNRecordBinarySerializer binarySerializer = new ZNRecordBinarySerializer();
+    ZNRecordSerializer jsonSerializer = new ZNRecordSerializer();
+    ZNRecordStreamingSerializer streamingSerializer = new ZNRecordStreamingSerializer();
+
+    byte[] binary = binarySerializer.serialize(record);
+    byte[] json = jsonSerializer.serialize(record);
+    Assert.assertFalse(ZNRecordBinarySerializer.isBinary(json));
+
+    Assert.assertEquals(binarySerializer.deserialize(json), record);
+    Assert.assertEquals(jsonSerializer.deserialize(binary), record);
+    Assert.assertEquals(streamingSerializer.deserialize(binary), record);
+
+    // the string table stores every partition and instance name once
+    Assert.assertTrue(binary.length * 3 < json.length,
+        "binary: " + binary.length + ", json: " + json.length);
+
+    ChainedPathZkSerializer chainedSerializer = ChainedPathZkSerializer.builder(jsonSerializer)
+        .serialize("/a/IDEALSTATES", binarySerializer).build();
+    Assert.assertTrue(ZNRecordBinarySerializer
+        .isBinary(chainedSerializer.serialize(record, "/a/IDEALSTATES/resource")));
+    Assert.assertFalse(ZNRecordBinarySerializer
+        .isBinary(chainedSerializer.serialize(record, "/a/EXTERNALVIEW/resource")));
+    Assert.assertEquals(chainedSerializer.deserialize(binary, "/a/EXTERNALVIEW/resource"), record);
+    Assert.assertEquals(chainedSerializer.deserialize(json, "/a/IDEALSTATES/resource"), record);
+  }
+
+  /**
+   * Deserialized records share their instance and state names, and use compact map fields.
+   */
+  @Test
+  public void testInternedFields() {
+    ZNRecord record = createIdealStateRecord(10, 3);
+    for (ZkSerializer serializer : new ZkSerializer[] {
+        new ZNRecordBinarySerializer(), new ZNRecordSerializer(), new ZNRecordStreamingSerializer()
+    }) {
+      byte[] bytes = serializer.serialize(record);
+      ZNRecord first = (ZNRecord) serializer.deserialize(bytes);
+      ZNRecord second = (ZNRecord) serializer.deserialize(bytes);
+      Assert.assertEquals(first, record);
+      Assert.assertTrue(first.getMapField("TestDB_0") instanceof CompactStringMap);
+
+      String instance = first.getListField("TestDB_0").get(0);
+      Assert.assertSame(second.getListField("TestDB_0").get(0), instance);
+      String mapKey = first.getMapField("TestDB_0").keySet().iterator().next();
+      Assert.assertSame(second.getMapField("TestDB_0").keySet().iterator().next(), mapKey);
+      Assert.assertSame(first.getMapField("TestDB_0").get(instance),
+          second.getMapField("TestDB_0").get(instance));
+    }
+  }
+
+  /**
+   * Large map fields, and the ones with keys out of key order, are regular maps in the order the
+   * serializer read them in before.
+   */
+  @Test
+  public void testLargeMapFields() {
+    ZNRecord record = new ZNRecord("WorkflowContext");
+    Map<String, String> jobStates = new LinkedHashMap<>();
+    for (int i = CompactStringMap.MAX_COMPACT_SIZE * 2; i >= 0; i--) {
+      jobStates.put("job_" + i, "COMPLETED");
+    }
+    record.setMapField("JOB_STATES", jobStates);
+    record.setMapField("UNSORTED", new LinkedHashMap<>(ImmutableMap.of("b", "1", "a", "2")));
+    List<String> sortedKeys = new ArrayList<>(new TreeMap<>(jobStates).keySet());
+
+    for (ZkSerializer serializer : new ZkSerializer[] {
+        new ZNRecordBinarySerializer(), new ZNRecordSerializer(), new ZNRecordStreamingSerializer()
+    }) {
+      ZNRecord deserialized = (ZNRecord) serializer.deserialize(serializer.serialize(record));
+      Assert.assertEquals(deserialized, record);
+      Map<String, String> map = deserialized.getMapField("JOB_STATES");
+      Assert.assertFalse(map instanceof CompactStringMap);
+      if (serializer instanceof ZNRecordStreamingSerializer) {
+        // it always read the map fields into TreeMaps
+        Assert.assertEquals(new ArrayList<>(map.keySet()), sortedKeys);
+      } else {
+        Assert.assertEquals(new ArrayList<>(map.keySet()), new ArrayList<>(jobStates.keySet()));
+        Assert.assertFalse(deserialized.getMapField("UNSORTED") instanceof CompactStringMap);
+        Assert.assertNull(map.get(null));
+        Assert.assertEquals(new ArrayList<>(deserialized.getMapField("UNSORTED").keySet()),
+            Arrays.asList("b", "a"));
+      }
+    }
+  }
+
+  @Test
+  public void testCompression() {
+    ZNRecord record = createIdealStateRecord(10, 3);
+    record.setBooleanField("enableCompression", true);
+
+    ZNRecordBinarySerializer serializer = new ZNRecordBinarySerializer();
+    byte[] bytes = serializer.serialize(record);
+    Assert.assertTrue(GZipCompressionUtil.isCompressed(bytes));
+    Assert.assertEquals(serializer.deserialize(bytes), record);
+    Assert.assertEquals(new ZNRecordSerializer().deserialize(bytes), record);
+  }
+
+  @Test
+  public void testCorruptedData() {
+    ZNRecordBinarySerializer serializer = new ZNRecordBinarySerializer();
+    byte[] bytes = serializer.serialize(createIdealStateRecord(10, 3));
+    Assert.assertNull(serializer.deserialize(Arrays.copyOf(bytes, bytes.length / 2)));
+
+    byte[] unknownVersion = bytes.clone();
+    unknownVersion[4] = 100;
+    Assert.assertNull(serializer.deserialize(unknownVersion));
+  }
+
+  private static ZNRecord createIdealStateRecord(int numPartitions, int numReplicas) {
+    ZNRecord record = new ZNRecord("TestDB");
+    record.setSimpleField("NUM_PARTITIONS", String.valueOf(numPartitions));
+    record.setSimpleField("STATE_MODEL_DEF_REF", "MasterSlave");
+    for (int p = 0; p < numPartitions; p++) {
+      String partition = "TestDB_" + p;
+      List<String> preferenceList = new ArrayList<String>();
+      Map<String, String> stateMap = new TreeMap<String, String>();
+      for (int r = 0; r < numReplicas; r++) {
+        String instance = "localhost_" + (12918 + (p + r) % 10);
+        preferenceList.add(instance);
+        stateMap.put(instance, r == 0 ? "MASTER" : "SLAVE");
+      }
+      record.setListField(partition, preferenceList);
+      record.setMapField(partition, stateMap);
+    }
+    return record;
+  }
+}
@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -75,6 +76,39 @@ public class TestZNRecordSerializer {
   }
 
 
+  /**
+   * The serializers share their Jackson reader and writer, make sure concurrent callers do not
+   * interfere with each other
+   */
+  @Test
+  public void testConcurrentSerialization() throws ExecutionException, InterruptedException {
+    final ZkSerializer[] serializers = new ZkSerializer[] {
+        new ZNRecordSerializer(), new ZNRecordStreamingSerializer()
+    };
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        final ZNRecord record = new ZNRecord("testId_" + i);
+        record.setSimpleField("k1", "v" + i);
+        record.setListField("k2", ImmutableList.of("a" + i, "b" + i));
+        record.setMapField("k3", ImmutableMap.of("c", "d" + i));
+        final ZkSerializer serializer = serializers[i % serializers.length];
+        futures.add(executorService.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            return record.equals(serializer.deserialize(serializer.serialize(record)));
+          }
+        }));
+      }
+      for (Future<Boolean> future : futures) {
+        Assert.assertTrue(future.get());
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
   @Test (enabled = false)
   public void testPerformance() {
     ZNRecord record = createZnRecord();
@@ -371,6 +371,42 @@ public class TestZkBaseDataAccessor extends ZkUnitTestBase {
 
   }
 
+  @Test
+  public void testCreateInTransactions() {
+    ZkBaseDataAccessor<ZNRecord> accessor = new ZkBaseDataAccessor<>(_gZkClient);
+    _gZkClient.createPersistent(PropertyPathBuilder.instanceMessage(_rootPath, "host_1"), true);
+    String existingPath = PropertyPathBuilder.instanceMessage(_rootPath, "host_1", "msg_exist");
+    _gZkClient.createPersistent(existingPath, new ZNRecord("msg_exist"));
+
+    List<List<String>> paths = new ArrayList<>();
+    List<List<ZNRecord>> records = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      List<String> txnPaths = new ArrayList<>();
+      List<ZNRecord> txnRecords = new ArrayList<>();
+      for (int j = 0; j < 2; j++) {
+        String msgId = "msg_" + i + "_" + j;
+        txnPaths.add(PropertyPathBuilder.instanceMessage(_rootPath, "host_1", msgId));
+        txnRecords.add(new ZNRecord(msgId));
+      }
+      paths.add(txnPaths);
+      records.add(txnRecords);
+    }
+    // a znode that exists fails its whole transaction
+    paths.get(1).add(existingPath);
+    records.get(1).add(new ZNRecord("msg_exist"));
+    // a znode without parent fails its whole transaction
+    paths.get(2).add(PropertyPathBuilder.instanceMessage(_rootPath, "host_2", "msg_2"));
+    records.get(2).add(new ZNRecord("msg_2"));
+
+    boolean[] success = accessor.createInTransactions(paths, records, AccessOption.PERSISTENT);
+    Assert.assertEquals(success, new boolean[] { true, false, false });
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 2; j++) {
+        Assert.assertEquals(_gZkClient.exists(paths.get(i).get(j)), i == 0);
+      }
+    }
+  }
+
   @Test
   public void testAsyncZkBaseDataAccessor() {
     System.out.println(
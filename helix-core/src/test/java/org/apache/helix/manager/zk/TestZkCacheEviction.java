@@ -0,0 +1,215 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.helix.AccessOption;
+import org.apache.helix.PropertyPathBuilder;
+import org.apache.helix.SystemPropertyKeys;
+import org.apache.helix.TestHelper;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.ZkUnitTestBase;
+import org.apache.helix.store.HelixPropertyListener;
+import org.apache.helix.store.zk.ZNode;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestZkCacheEviction extends ZkUnitTestBase {
+  private static final int MAX_ENTRIES = 5;
+  private static final int NUM_RECORDS = 20;
+
+  @BeforeMethod
+  public void beforeMethod() {
+    System.setProperty(SystemPropertyKeys.ZK_CACHE_MAX_ENTRIES, String.valueOf(MAX_ENTRIES));
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    System.clearProperty(SystemPropertyKeys.ZK_CACHE_MAX_ENTRIES);
+  }
+
+  @Test
+  public void testWriteThroughCacheEviction() {
+    String className = TestHelper.getTestClassName();
+    String methodName = TestHelper.getTestMethodName();
+    String clusterName = className + "_" + methodName;
+    System.out.println("START " + clusterName + " at " + new Date(System.currentTimeMillis()));
+
+    String curStatePath = PropertyPathBuilder.instanceCurrentState(clusterName, "localhost_8901");
+    String sessionPath = curStatePath + "/session_0";
+    ZkBaseDataAccessor<ZNRecord> baseAccessor = new ZkBaseDataAccessor<>(_gZkClient);
+    baseAccessor.create(curStatePath, null, AccessOption.PERSISTENT);
+    ZkCacheBaseDataAccessor<ZNRecord> accessor = new ZkCacheBaseDataAccessor<>(baseAccessor, null,
+        Collections.singletonList(curStatePath), null);
+
+    List<String> childNames = new ArrayList<>();
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      childNames.add("TestDB" + i);
+      Assert.assertTrue(accessor.set(sessionPath + "/TestDB" + i, new ZNRecord("TestDB" + i),
+          AccessOption.PERSISTENT));
+    }
+
+    // only the znodes without children are evicted
+    Assert.assertTrue(countLeaves(accessor._wtCache.getCache()) <= MAX_ENTRIES);
+    Assert.assertTrue(accessor._wtCache.getEvictionCount() > 0);
+    Assert.assertNotNull(accessor._wtCache.getCache().get(sessionPath));
+    Collections.sort(childNames);
+    Assert.assertEquals(accessor.getChildNames(sessionPath, 0), childNames);
+
+    // the evicted znodes are read from zk
+    long missCount = accessor._wtCache.getMissCount();
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      ZNRecord record = accessor.get(sessionPath + "/TestDB" + i, null, 0);
+      Assert.assertEquals(record.getId(), "TestDB" + i);
+    }
+    Assert.assertTrue(accessor._wtCache.getMissCount() > missCount);
+    Assert.assertTrue(countLeaves(accessor._wtCache.getCache()) <= MAX_ENTRIES);
+
+    List<ZNRecord> records = accessor.getChildren(sessionPath, null, 0);
+    Assert.assertEquals(records.size(), NUM_RECORDS);
+
+    accessor.stop();
+    System.out.println("END " + clusterName + " at " + new Date(System.currentTimeMillis()));
+  }
+
+  @Test
+  public void testWriteThroughCacheInitKeepsParents() {
+    String className = TestHelper.getTestClassName();
+    String methodName = TestHelper.getTestMethodName();
+    String clusterName = className + "_" + methodName;
+    System.out.println("START " + clusterName + " at " + new Date(System.currentTimeMillis()));
+
+    String curStatePath = PropertyPathBuilder.instanceCurrentState(clusterName, "localhost_8901");
+    ZkBaseDataAccessor<ZNRecord> baseAccessor = new ZkBaseDataAccessor<>(_gZkClient);
+    List<String> sessionPaths = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      String sessionPath = curStatePath + "/session_" + i;
+      sessionPaths.add(sessionPath);
+      for (int j = 0; j < NUM_RECORDS; j++) {
+        baseAccessor.create(sessionPath + "/TestDB" + j, new ZNRecord("TestDB" + j),
+            AccessOption.PERSISTENT);
+      }
+    }
+
+    // the tree is loaded when the cache is created, with more leaves than the cache holds
+    WriteThroughCache<ZNRecord> cache = new WriteThroughCache<>(baseAccessor,
+        Collections.singletonList(curStatePath), MAX_ENTRIES, 0);
+    Assert.assertTrue(cache.getEvictionCount() > 0);
+    Assert.assertTrue(countLeaves(cache.getCache()) <= MAX_ENTRIES);
+    Assert.assertNotNull(cache.getCache().get(curStatePath));
+    for (String sessionPath : sessionPaths) {
+      ZNode znode = cache.getCache().get(sessionPath);
+      Assert.assertNotNull(znode, sessionPath + " is evicted");
+      Assert.assertEquals(znode.getChildSet().size(), NUM_RECORDS);
+    }
+
+    System.out.println("END " + clusterName + " at " + new Date(System.currentTimeMillis()));
+  }
+
+  @Test
+  public void testZkCallbackCacheEviction() throws Exception {
+    String className = TestHelper.getTestClassName();
+    String methodName = TestHelper.getTestMethodName();
+    String clusterName = className + "_" + methodName;
+    System.out.println("START " + clusterName + " at " + new Date(System.currentTimeMillis()));
+
+    String curStatePath = PropertyPathBuilder.instanceCurrentState(clusterName, "localhost_8901");
+    String sessionPath = curStatePath + "/session_0";
+    ZkBaseDataAccessor<ZNRecord> baseAccessor = new ZkBaseDataAccessor<>(_gZkClient);
+    baseAccessor.create(curStatePath, null, AccessOption.PERSISTENT);
+    ZkCacheBaseDataAccessor<ZNRecord> accessor = new ZkCacheBaseDataAccessor<>(baseAccessor, null,
+        null, Collections.singletonList(curStatePath));
+    final ChangeListener listener = new ChangeListener();
+    accessor.subscribe(curStatePath, listener);
+
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      baseAccessor.create(sessionPath + "/TestDB" + i, new ZNRecord("TestDB" + i),
+          AccessOption.PERSISTENT);
+    }
+    Assert.assertTrue(TestHelper.verify(new TestHelper.Verifier() {
+      @Override
+      public boolean verify() {
+        return listener._createPathQueue.size() == NUM_RECORDS + 1;
+      }
+    }, 10000L));
+    Assert.assertTrue(countLeaves(accessor._zkCache.getCache()) <= MAX_ENTRIES);
+
+    // reading the evicted znodes again does not look like creating them
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      Assert.assertNotNull(accessor.get(sessionPath + "/TestDB" + i, null, 0));
+    }
+
+    // the changes of evicted znodes are still notified
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      ZNRecord record = new ZNRecord("TestDB" + i);
+      record.setSimpleField("key", "value");
+      baseAccessor.set(sessionPath + "/TestDB" + i, record, AccessOption.PERSISTENT);
+    }
+    Assert.assertTrue(TestHelper.verify(new TestHelper.Verifier() {
+      @Override
+      public boolean verify() {
+        return listener._changePathQueue.size() == NUM_RECORDS;
+      }
+    }, 10000L));
+    Assert.assertEquals(listener._createPathQueue.size(), NUM_RECORDS + 1);
+    Assert.assertEquals(
+        accessor.get(sessionPath + "/TestDB0", null, 0).getSimpleField("key"), "value");
+
+    accessor.stop();
+    System.out.println("END " + clusterName + " at " + new Date(System.currentTimeMillis()));
+  }
+
+  private static int countLeaves(Map<String, ZNode> cache) {
+    int leaves = 0;
+    for (ZNode znode : cache.values()) {
+      if (znode.getChildSet().isEmpty()) {
+        leaves++;
+      }
+    }
+    return leaves;
+  }
+
+  private static class ChangeListener implements HelixPropertyListener {
+    final ConcurrentLinkedQueue<String> _createPathQueue = new ConcurrentLinkedQueue<>();
+    final ConcurrentLinkedQueue<String> _changePathQueue = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void onDataChange(String path) {
+      _changePathQueue.add(path);
+    }
+
+    @Override
+    public void onDataCreate(String path) {
+      _createPathQueue.add(path);
+    }
+
+    @Override
+    public void onDataDelete(String path) {
+    }
+  }
+}
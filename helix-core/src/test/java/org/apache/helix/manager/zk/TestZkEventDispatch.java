@@ -0,0 +1,130 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.I0Itec.zkclient.IZkDataListener;
+import org.apache.helix.SystemPropertyKeys;
+import org.apache.helix.TestHelper;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.ZkUnitTestBase;
+import org.apache.helix.monitoring.mbeans.MBeanRegistrar;
+import org.apache.helix.monitoring.mbeans.MonitorDomainNames;
+import org.apache.helix.monitoring.mbeans.ZkClientMonitor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestZkEventDispatch extends ZkUnitTestBase {
+  private static final int NUM_UPDATES = 10;
+
+  /**
+   * With several dispatch threads, a blocked listener of one path does not delay the events of
+   * another path.
+   */
+  @Test
+  public void testParallelDispatch() throws Exception {
+    String className = TestHelper.getTestClassName();
+    final String root = "/" + className;
+    final String testKey = TestHelper.getTestMethodName();
+
+    System.setProperty(SystemPropertyKeys.ZK_EVENT_DISPATCH_THREADS, "4");
+    ZkClient zkClient;
+    try {
+      zkClient = new ZkClient.Builder().setZkServer(ZK_ADDR).setMonitorType(className)
+          .setMonitorKey(testKey).setZkSerializer(new ZNRecordSerializer()).build();
+    } finally {
+      System.clearProperty(SystemPropertyKeys.ZK_EVENT_DISPATCH_THREADS);
+    }
+
+    // find two paths that are dispatched by different threads
+    final String blockedPath = root + "/blocked";
+    String path = null;
+    for (int i = 0; path == null; i++) {
+      String candidate = root + "/node" + i;
+      if ((candidate.hashCode() & Integer.MAX_VALUE) % 4
+          != (blockedPath.hashCode() & Integer.MAX_VALUE) % 4) {
+        path = candidate;
+      }
+    }
+    zkClient.createPersistent(blockedPath, true);
+    zkClient.createPersistent(path, true);
+
+    final CountDownLatch blockedLatch = new CountDownLatch(1);
+    final CountDownLatch releaseLatch = new CountDownLatch(1);
+    zkClient.subscribeDataChanges(blockedPath, new IZkDataListener() {
+      @Override
+      public void handleDataChange(String dataPath, Object data) throws Exception {
+        blockedLatch.countDown();
+        releaseLatch.await();
+      }
+
+      @Override
+      public void handleDataDeleted(String dataPath) {
+      }
+    });
+
+    final AtomicInteger updateCount = new AtomicInteger();
+    zkClient.subscribeDataChanges(path, new IZkDataListener() {
+      @Override
+      public void handleDataChange(String dataPath, Object data) {
+        updateCount.incrementAndGet();
+      }
+
+      @Override
+      public void handleDataDeleted(String dataPath) {
+      }
+    });
+
+    try {
+      _gZkClient.writeData(blockedPath, new ZNRecord("blocked"));
+      Assert.assertTrue(blockedLatch.await(10, TimeUnit.SECONDS));
+
+      // the updates are delivered while the listener of the other path is blocked
+      for (int i = 0; i < NUM_UPDATES; i++) {
+        final int expected = i + 1;
+        _gZkClient.writeData(path, new ZNRecord(String.valueOf(i)));
+        Assert.assertTrue(TestHelper.verify(new TestHelper.Verifier() {
+          @Override
+          public boolean verify() {
+            return updateCount.get() == expected;
+          }
+        }, 10000L));
+      }
+
+      MBeanServer beanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = MBeanRegistrar
+          .buildObjectName(MonitorDomainNames.HelixZkClient.name(), ZkClientMonitor.MONITOR_TYPE,
+              className, ZkClientMonitor.MONITOR_KEY, testKey);
+      Assert.assertTrue(
+          (long) beanServer.getAttribute(name, "EventDispatchLatencyGauge.Max") >= 0);
+      Assert.assertTrue((long) beanServer.getAttribute(name, "EventQueueDepthGauge.Max") >= 1);
+    } finally {
+      releaseLatch.countDown();
+      zkClient.close();
+      _gZkClient.deleteRecursively(root);
+    }
+  }
+}
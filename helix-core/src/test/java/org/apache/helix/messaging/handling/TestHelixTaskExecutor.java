@@ -36,6 +36,9 @@ import org.apache.helix.PropertyKey;
 import org.apache.helix.mock.MockManager;
 import org.apache.helix.model.Message;
 import org.apache.helix.model.Message.MessageState;
+import org.apache.helix.model.MasterSlaveSMD;
+import org.apache.helix.model.StateModelDefinition;
+import org.apache.helix.model.StateModelDefinition.StateModelDefinitionProperty;
 import org.testng.Assert;
 import org.testng.AssertJUnit;
 import org.testng.annotations.Test;
@@ -794,4 +797,51 @@ public class TestHelixTaskExecutor {
     // After all messages are processed, _knownMessageIds should be empty.
     Assert.assertTrue(executor._knownMessageIds.isEmpty());
   }
+
+  @Test
+  public void testTransitionPriority() {
+    HelixTaskExecutor executor = new HelixTaskExecutor();
+    HelixManager manager = new MockClusterManager();
+    HelixDataAccessor accessor = manager.getHelixDataAccessor();
+    accessor.setProperty(accessor.keyBuilder().stateModelDef(MasterSlaveSMD.name),
+        MasterSlaveSMD.build());
+    StateModelDefinition noTransitionPriorities =
+        new StateModelDefinition.Builder("NoTransitionPriorities").initialState("OFFLINE")
+            .addState("LEADER", 0).addState("FOLLOWER", 1).addState("OFFLINE", 2)
+            .addTransition("OFFLINE", "FOLLOWER").addTransition("FOLLOWER", "LEADER")
+            .addTransition("LEADER", "FOLLOWER").addTransition("FOLLOWER", "OFFLINE").build();
+    noTransitionPriorities.getRecord()
+        .setListField(StateModelDefinitionProperty.STATE_TRANSITION_PRIORITYLIST.name(),
+            Collections.<String>emptyList());
+    accessor.setProperty(accessor.keyBuilder().stateModelDef("NoTransitionPriorities"),
+        noTransitionPriorities);
+
+    // the state transition priority list
+    Assert.assertEquals(executor.getTransitionPriority(
+        transitionMessage(MasterSlaveSMD.name, "MASTER", "SLAVE"), manager), 0);
+    Assert.assertEquals(executor.getTransitionPriority(
+        transitionMessage(MasterSlaveSMD.name, "SLAVE", "MASTER"), manager), 1);
+    Assert.assertEquals(executor.getTransitionPriority(
+        transitionMessage(MasterSlaveSMD.name, "OFFLINE", "SLAVE"), manager), 2);
+    Assert.assertEquals(executor.getTransitionPriority(
+        transitionMessage(MasterSlaveSMD.name, "OFFLINE", "MASTER"), manager), 5);
+    // the highest priority state of the transition
+    Assert.assertEquals(executor.getTransitionPriority(
+        transitionMessage("NoTransitionPriorities", "FOLLOWER", "LEADER"), manager), 0);
+    Assert.assertEquals(executor.getTransitionPriority(
+        transitionMessage("NoTransitionPriorities", "OFFLINE", "FOLLOWER"), manager), 1);
+    // unknown state model
+    Assert.assertEquals(executor.getTransitionPriority(
+        transitionMessage("Unknown", "OFFLINE", "FOLLOWER"), manager), Integer.MAX_VALUE);
+  }
+
+  private static Message transitionMessage(String stateModelDef, String fromState,
+      String toState) {
+    Message message = new Message(Message.MessageType.STATE_TRANSITION,
+        UUID.randomUUID().toString());
+    message.setStateModelDef(stateModelDef);
+    message.setFromState(fromState);
+    message.setToState(toState);
+    return message;
+  }
 }
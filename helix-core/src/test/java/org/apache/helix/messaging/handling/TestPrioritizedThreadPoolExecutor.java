@@ -0,0 +1,94 @@
+package org.apache.helix.messaging.handling;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestPrioritizedThreadPoolExecutor {
+
+  @Test
+  public void testPriorityAndFairness() throws Exception {
+    PrioritizedThreadPoolExecutor executor =
+        new PrioritizedThreadPoolExecutor(1, Executors.defaultThreadFactory());
+    try {
+      final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+      final CountDownLatch started = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      // occupy the only thread so the other tasks are queued
+      executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          started.countDown();
+          release.await();
+          return null;
+        }
+      });
+      Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+      // bootstraps of DB_A queued before those of DB_B
+      submit(executor, executed, "A0", 2, "DB_A");
+      submit(executor, executed, "A1", 2, "DB_A");
+      submit(executor, executed, "A2", 2, "DB_A");
+      submit(executor, executed, "B0", 2, "DB_B");
+      submit(executor, executed, "B1", 2, "DB_B");
+      // not prioritized, after all others
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          executed.add("default");
+        }
+      });
+      // top state transitions go before the queued bootstraps
+      submit(executor, executed, "A3", 0, "DB_A");
+      submit(executor, executed, "B2", 1, "DB_B");
+      Future<String> last = submit(executor, executed, "B3", 0, "DB_B");
+
+      release.countDown();
+      last.get(10, TimeUnit.SECONDS);
+      executor.shutdown();
+      Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+      Assert.assertEquals(executed,
+          Arrays.asList("A3", "B3", "B2", "A0", "B0", "A1", "B1", "A2", "default"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static Future<String> submit(PrioritizedThreadPoolExecutor executor,
+      final List<String> executed, final String name, int priority, String group) {
+    return executor.submit(new Callable<String>() {
+      @Override
+      public String call() {
+        executed.add(name);
+        return name;
+      }
+    }, priority, group);
+  }
+}
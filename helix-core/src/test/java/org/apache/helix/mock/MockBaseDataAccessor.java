@@ -145,6 +145,11 @@ public class MockBaseDataAccessor implements BaseDataAccessor<ZNRecord> {
   @Override
   public ZNRecord get(String path, Stat stat, int options) {
     ZNode zNode = _recordMap.get(path);
+    if (zNode != null && stat != null) {
+      stat.setCtime(zNode.getStat().getCtime());
+      stat.setMtime(zNode.getStat().getMtime());
+      stat.setVersion(zNode.getStat().getVersion());
+    }
     return zNode != null ? zNode.getRecord() : null;
   }
 
@@ -157,9 +162,16 @@ public class MockBaseDataAccessor implements BaseDataAccessor<ZNRecord> {
   public List<ZNRecord> get(List<String> paths, List<Stat> stats, int options,
       boolean throwException) throws HelixException {
     List<ZNRecord> records = new ArrayList<>();
+    if (stats != null) {
+      stats.clear();
+    }
     for (int i = 0; i < paths.size(); i++) {
-      ZNRecord record = get(paths.get(i), stats.get(i), options);
+      Stat stat = stats != null ? new Stat() : null;
+      ZNRecord record = get(paths.get(i), stat, options);
       records.add(record);
+      if (stats != null) {
+        stats.add(record != null ? stat : null);
+      }
     }
     return records;
   }
@@ -0,0 +1,126 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.LiveInstance;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestRoutingTableRefresh {
+  private static final List<LiveInstance> LIVE_INSTANCES = Collections.emptyList();
+
+  /**
+   * A routing table built on a previous one shares the entries of unchanged ExternalViews, and
+   * rebuilds the changed resources and the resource groups they belong to.
+   */
+  @Test
+  public void testIncrementalRefresh() {
+    List<InstanceConfig> instanceConfigs = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      instanceConfigs.add(new InstanceConfig("localhost_" + i));
+    }
+    ExternalView db0 = externalView("TestDB0", null, "localhost_2", "localhost_0");
+    ExternalView db1 = externalView("TestDB1", null, "localhost_1", "localhost_2");
+    ExternalView group0 = externalView("GroupDB$0", "GroupDB", "localhost_0", "localhost_1");
+    ExternalView group1 = externalView("GroupDB$1", "GroupDB", "localhost_2", "localhost_0");
+
+    RoutingTable routingTable = new RoutingTable(Arrays.asList(db0, db1, group0, group1),
+        instanceConfigs, LIVE_INSTANCES);
+    List<InstanceConfig> masters = routingTable.getInstancesForResource("TestDB0", "TestDB0_0",
+        "MASTER");
+    Assert.assertEquals(masters.size(), 2);
+    // sorted by instance id
+    Assert.assertEquals(masters.get(0).getId(), "localhost_0");
+    Assert.assertEquals(masters.get(1).getId(), "localhost_2");
+    Assert.assertSame(routingTable.getInstancesForResource("TestDB0", "TestDB0_0", "MASTER"),
+        masters);
+    try {
+      masters.clear();
+      Assert.fail("Routing entries must be read-only");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    // the masters of both resources of the group
+    Assert.assertEquals(
+        routingTable.getInstancesForResourceGroup("GroupDB", "GroupDB_0", "MASTER").size(), 4);
+
+    // only TestDB1 changed
+    ExternalView newDb1 = externalView("TestDB1", null, "localhost_0");
+    RoutingTable newRoutingTable = new RoutingTable(Arrays.asList(db0, newDb1, group0, group1),
+        instanceConfigs, LIVE_INSTANCES, routingTable);
+    Assert.assertSame(newRoutingTable.get("TestDB0"), routingTable.get("TestDB0"));
+    Assert.assertNotSame(newRoutingTable.get("TestDB1"), routingTable.get("TestDB1"));
+    Assert.assertEquals(newRoutingTable.getInstancesForResource("TestDB1", "TestDB1_0", "MASTER"),
+        Collections.singletonList(instanceConfigs.get(0)));
+    Assert.assertSame(newRoutingTable.getResourceGroup("GroupDB"),
+        routingTable.getResourceGroup("GroupDB"));
+    // the previous routing table is not changed
+    Assert.assertEquals(
+        routingTable.getInstancesForResource("TestDB1", "TestDB1_0", "MASTER").size(), 2);
+
+    // a resource of the group is removed
+    RoutingTable groupRoutingTable = new RoutingTable(Arrays.asList(db0, newDb1, group0),
+        instanceConfigs, LIVE_INSTANCES, newRoutingTable);
+    Assert.assertSame(groupRoutingTable.get("GroupDB$0"), newRoutingTable.get("GroupDB$0"));
+    Assert.assertNull(groupRoutingTable.get("GroupDB$1"));
+    Assert.assertEquals(
+        groupRoutingTable.getInstancesForResourceGroup("GroupDB", "GroupDB_0", "MASTER").size(),
+        2);
+
+    // all resources are rebuilt if an instance config changed
+    List<InstanceConfig> newInstanceConfigs = new ArrayList<>(instanceConfigs);
+    newInstanceConfigs.set(2, new InstanceConfig("localhost_2"));
+    RoutingTable configRoutingTable = new RoutingTable(Arrays.asList(db0, newDb1, group0),
+        newInstanceConfigs, LIVE_INSTANCES, groupRoutingTable);
+    Assert.assertNotSame(configRoutingTable.get("TestDB0"), groupRoutingTable.get("TestDB0"));
+    Assert.assertSame(
+        configRoutingTable.getInstancesForResource("TestDB0", "TestDB0_0", "MASTER").get(1),
+        newInstanceConfigs.get(2));
+  }
+
+  private static ExternalView externalView(String resource, String resourceGroup,
+      String... masters) {
+    ExternalView externalView = new ExternalView(resource);
+    if (resourceGroup != null) {
+      externalView.getRecord()
+          .setSimpleField(ExternalView.ExternalViewProperty.RESOURCE_GROUP_NAME.name(),
+              resourceGroup);
+      externalView.getRecord()
+          .setBooleanField(ExternalView.ExternalViewProperty.GROUP_ROUTING_ENABLED.name(), true);
+    }
+    // resources of a group share the partition names of the group
+    String partitionPrefix = resourceGroup != null ? resourceGroup : resource;
+    Map<String, String> stateMap = new TreeMap<>();
+    for (String master : masters) {
+      stateMap.put(master, "MASTER");
+    }
+    externalView.setStateMap(partitionPrefix + "_0", stateMap);
+    return externalView;
+  }
+}
@@ -0,0 +1,148 @@
+package org.apache.helix.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestCompactStringMap {
+  /**
+   * Apply the same random operations to a CompactStringMap and a TreeMap and compare them.
+   */
+  @Test
+  public void testAgainstTreeMap() {
+    Random random = new Random(7);
+    CompactStringMap map = new CompactStringMap();
+    TreeMap<String, String> expected = new TreeMap<String, String>();
+    for (int i = 0; i < 5000; i++) {
+      String key = "localhost_" + random.nextInt(50);
+      String value = random.nextInt(10) == 0 ? null : "state_" + random.nextInt(3);
+      switch (random.nextInt(4)) {
+      case 0:
+        Assert.assertEquals(map.remove(key), expected.remove(key));
+        break;
+      case 1:
+        Assert.assertEquals(map.get(key), expected.get(key));
+        Assert.assertEquals(map.containsKey(key), expected.containsKey(key));
+        break;
+      default:
+        Assert.assertEquals(map.put(key, value), expected.put(key, value));
+      }
+      Assert.assertEquals(map.size(), expected.size());
+    }
+    Assert.assertEquals(map, expected);
+    Assert.assertEquals(expected, map);
+    Assert.assertEquals(map.hashCode(), expected.hashCode());
+    Assert.assertEquals(new ArrayList<String>(map.keySet()),
+        new ArrayList<String>(expected.keySet()));
+    Assert.assertEquals(map.toString(), expected.toString());
+  }
+
+  @Test
+  public void testIteratorUpdates() {
+    CompactStringMap map = new CompactStringMap();
+    for (int i = 9; i >= 0; i--) {
+      map.put("p" + i, "OFFLINE");
+    }
+    Iterator<Map.Entry<String, String>> iter = map.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry<String, String> entry = iter.next();
+      if (Integer.parseInt(entry.getKey().substring(1)) % 2 == 0) {
+        iter.remove();
+      } else {
+        entry.setValue("ONLINE");
+      }
+    }
+    Assert.assertEquals(map.size(), 5);
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(map.get("p" + i), i % 2 == 0 ? null : "ONLINE");
+    }
+
+    map.clear();
+    Assert.assertTrue(map.isEmpty());
+    Assert.assertNull(map.get("p1"));
+  }
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void testNullKey() {
+    new CompactStringMap().put(null, "value");
+  }
+
+  @Test
+  public void testNullLookups() {
+    CompactStringMap map = new CompactStringMap();
+    map.put("p0", "ONLINE");
+    Assert.assertNull(map.get(null));
+    Assert.assertFalse(map.containsKey(null));
+    Assert.assertNull(map.remove(null));
+    Assert.assertEquals(map.size(), 1);
+  }
+
+  @Test
+  public void testBuilder() {
+    // small maps with keys in key order are compact
+    Map<String, String> map = build(false, "p0", "p1", "p2");
+    Assert.assertTrue(map instanceof CompactStringMap);
+    Assert.assertEquals(new ArrayList<String>(map.keySet()), keys("p0", "p1", "p2"));
+
+    // keys out of key order keep their read order
+    map = build(false, "p1", "p0", "p2");
+    Assert.assertTrue(map instanceof LinkedHashMap);
+    Assert.assertEquals(new ArrayList<String>(map.keySet()), keys("p1", "p0", "p2"));
+
+    // unless the map is sorted anyway
+    map = build(true, "p1", "p0", "p2");
+    Assert.assertTrue(map instanceof CompactStringMap);
+    Assert.assertEquals(new ArrayList<String>(map.keySet()), keys("p0", "p1", "p2"));
+
+    // large maps are regular maps
+    String[] large = new String[CompactStringMap.MAX_COMPACT_SIZE + 1];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = String.format("p%02d", i);
+    }
+    map = build(false, large);
+    Assert.assertTrue(map instanceof LinkedHashMap);
+    Assert.assertEquals(new ArrayList<String>(map.keySet()), keys(large));
+    map = build(true, large);
+    Assert.assertTrue(map instanceof TreeMap);
+    Assert.assertEquals(new ArrayList<String>(map.keySet()), keys(large));
+  }
+
+  private static Map<String, String> build(boolean sorted, String... keys) {
+    CompactStringMap.Builder builder = new CompactStringMap.Builder(0, sorted);
+    for (String key : keys) {
+      builder.put(key, "ONLINE");
+    }
+    return builder.build();
+  }
+
+  private static List<String> keys(String... keys) {
+    return Arrays.asList(keys);
+  }
+}
@@ -0,0 +1,215 @@
+package org.apache.helix.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixProperty;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.model.StatusUpdate;
+import org.apache.helix.util.AsyncStatusUpdateSink.DropPolicy;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestStatusUpdateSink {
+  private static final PropertyKey.Builder KEY_BUILDER = new PropertyKey.Builder("TestCluster");
+  private static final PropertyKey KEY_0 =
+      KEY_BUILDER.stateTransitionStatus("localhost_0", "session_0", "TestDB", "TestDB_0");
+  private static final PropertyKey KEY_1 =
+      KEY_BUILDER.stateTransitionStatus("localhost_0", "session_0", "TestDB", "TestDB_1");
+
+  @Test
+  public void testAsyncSinkMergesUpdates() {
+    RecordingSink recordingSink = new RecordingSink();
+    // no background flush during the test
+    AsyncStatusUpdateSink sink = new AsyncStatusUpdateSink(recordingSink, 10,
+        3600000L, Integer.MAX_VALUE, DropPolicy.DROP_OLDEST);
+    try {
+      sink.update(null, KEY_0, createStatusUpdate("update_0", "a", "1"));
+      sink.update(null, KEY_1, createStatusUpdate("update_1", "a", "1"));
+      sink.update(null, KEY_0, createStatusUpdate("update_0", "b", "2"));
+      Assert.assertTrue(recordingSink._paths.isEmpty());
+
+      sink.flush();
+      // one merged record per path, in the order the paths were first updated
+      Assert.assertEquals(recordingSink._paths, Arrays.asList(KEY_0.getPath(), KEY_1.getPath()));
+      Assert.assertEquals(recordingSink._records.get(0).getMapField("update_0"),
+          ImmutableMap.of("a", "1", "b", "2"));
+      Assert.assertEquals(sink.getWrittenCount(), 2);
+
+      // a set replaces the updates buffered before it
+      sink.update(null, KEY_0, createStatusUpdate("update_0", "c", "3"));
+      sink.set(null, KEY_0, createStatusUpdate("update_0", "d", "4"));
+      sink.flush();
+      Assert.assertEquals(recordingSink._operations.get(2), "SET");
+      Assert.assertEquals(recordingSink._records.get(2).getMapField("update_0"),
+          Collections.singletonMap("d", "4"));
+      Assert.assertEquals(sink.getDroppedCount(), 0);
+      Assert.assertEquals(sink.getFailedCount(), 0);
+    } finally {
+      sink.shutdown();
+    }
+  }
+
+  @Test
+  public void testAsyncSinkDropPolicy() {
+    for (DropPolicy dropPolicy : DropPolicy.values()) {
+      RecordingSink recordingSink = new RecordingSink();
+      AsyncStatusUpdateSink sink = new AsyncStatusUpdateSink(recordingSink, 2,
+          3600000L, Integer.MAX_VALUE, dropPolicy);
+      try {
+        for (int i = 0; i < 3; i++) {
+          sink.update(null, KEY_BUILDER.stateTransitionStatus("localhost_0", "session_0",
+              "TestDB", "TestDB_" + i), createStatusUpdate("update", "i", "" + i));
+        }
+        sink.flush();
+        Assert.assertEquals(sink.getDroppedCount(), 1);
+        Assert.assertEquals(sink.getWrittenCount(), 2);
+        Assert.assertEquals(recordingSink._records.get(0).getMapField("update").get("i"),
+            dropPolicy == DropPolicy.DROP_OLDEST ? "1" : "0");
+      } finally {
+        sink.shutdown();
+      }
+    }
+  }
+
+  @Test
+  public void testAsyncSinkFlushesInBackground() throws Exception {
+    RecordingSink recordingSink = new RecordingSink();
+    AsyncStatusUpdateSink sink =
+        new AsyncStatusUpdateSink(recordingSink, 10, 10L, DropPolicy.DROP_OLDEST);
+    try {
+      sink.update(null, KEY_0, createStatusUpdate("update_0", "a", "1"));
+      long deadline = System.currentTimeMillis() + 10000L;
+      while (sink.getWrittenCount() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10L);
+      }
+      Assert.assertEquals(sink.getWrittenCount(), 1);
+    } finally {
+      sink.shutdown();
+    }
+  }
+
+  @Test
+  public void testReplaceSink() {
+    StatusUpdateSink originalSink = StatusUpdateUtil.getStatusUpdateSink();
+    RecordingSink recordingSink = new RecordingSink();
+    AsyncStatusUpdateSink sink = new AsyncStatusUpdateSink(recordingSink, 10,
+        3600000L, Integer.MAX_VALUE, DropPolicy.DROP_OLDEST);
+    StatusUpdateUtil.setStatusUpdateSink(sink);
+    try {
+      // as a disconnecting manager does
+      sink.update(null, KEY_0, createStatusUpdate("update_0", "a", "1"));
+      StatusUpdateUtil.flushStatusUpdateSink();
+      Assert.assertEquals(recordingSink._paths, Collections.singletonList(KEY_0.getPath()));
+      sink.update(null, KEY_1, createStatusUpdate("update_1", "a", "1"));
+    } finally {
+      StatusUpdateUtil.setStatusUpdateSink(originalSink);
+    }
+
+    // the replaced sink is flushed and shut down, the records written afterwards go through
+    Assert.assertTrue(sink.isShutdown());
+    Assert.assertEquals(recordingSink._paths, Arrays.asList(KEY_0.getPath(), KEY_1.getPath()));
+    sink.update(null, KEY_0, createStatusUpdate("update_0", "b", "2"));
+    Assert.assertEquals(recordingSink._paths.size(), 3);
+  }
+
+  @Test
+  public void testFileSink() throws Exception {
+    File file = File.createTempFile("status-updates", ".log");
+    file.deleteOnExit();
+    FileStatusUpdateSink sink = new FileStatusUpdateSink(file);
+    try {
+      sink.update(null, KEY_0, createStatusUpdate("update_0", "a", "1"));
+      sink.update(null, KEY_1, createStatusUpdate("update_1", "a", "1"));
+      sink.update(null, KEY_0, createStatusUpdate("update_0", "b", "2"));
+      sink.set(null, KEY_1, createStatusUpdate("update_1", "c", "3\twith\ttabs\n"));
+
+      Map<String, ZNRecord> records = FileStatusUpdateSink.read(file, KEY_0.getPath());
+      Assert.assertEquals(records.keySet(), Collections.singleton(KEY_0.getPath()));
+      Assert.assertEquals(records.get(KEY_0.getPath()).getMapField("update_0"),
+          ImmutableMap.of("a", "1", "b", "2"));
+
+      records = FileStatusUpdateSink.read(file,
+          KEY_BUILDER.stateTransitionStatus("localhost_0", "session_0", "TestDB").getPath());
+      Assert.assertEquals(records.size(), 2);
+      Assert.assertEquals(records.get(KEY_1.getPath()).getMapFields(),
+          Collections.singletonMap("update_1", Collections.singletonMap("c", "3\twith\ttabs\n")));
+    } finally {
+      sink.close();
+    }
+  }
+
+  @Test
+  public void testCreateSink() {
+    Assert.assertTrue(StatusUpdateUtil.createStatusUpdateSink("zk") instanceof ZkStatusUpdateSink);
+    StatusUpdateSink sink = StatusUpdateUtil.createStatusUpdateSink("async");
+    Assert.assertTrue(sink instanceof AsyncStatusUpdateSink);
+    ((AsyncStatusUpdateSink) sink).shutdown();
+    Assert.assertTrue(StatusUpdateUtil.createStatusUpdateSink(RecordingSink.class.getName())
+        instanceof RecordingSink);
+    // unknown sinks fall back to ZooKeeper
+    Assert.assertTrue(
+        StatusUpdateUtil.createStatusUpdateSink("NoSuchSink") instanceof ZkStatusUpdateSink);
+  }
+
+  private static StatusUpdate createStatusUpdate(String mapKey, String key, String value) {
+    ZNRecord record = new ZNRecord("session_0__TestDB");
+    record.setMapField(mapKey, new TreeMap<>(Collections.singletonMap(key, value)));
+    return new StatusUpdate(record);
+  }
+
+  public static class RecordingSink implements StatusUpdateSink {
+    final List<String> _operations = new ArrayList<>();
+    final List<String> _paths = new ArrayList<>();
+    final List<ZNRecord> _records = new ArrayList<>();
+
+    @Override
+    public synchronized void update(HelixDataAccessor accessor, PropertyKey key,
+        HelixProperty value) {
+      record("UPDATE", key, value);
+    }
+
+    @Override
+    public synchronized void set(HelixDataAccessor accessor, PropertyKey key,
+        HelixProperty value) {
+      record("SET", key, value);
+    }
+
+    private void record(String operation, PropertyKey key, HelixProperty value) {
+      _operations.add(operation);
+      _paths.add(key.getPath());
+      _records.add(value.getRecord());
+    }
+
+    @Override
+    public void flush() {
+    }
+  }
+}
@@ -20,25 +20,42 @@ package org.apache.helix.rest.server;
  * under the License.
  */
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.helix.ConfigAccessor;
+import org.apache.helix.HelixException;
 import org.apache.helix.HelixAdmin;
 import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.InstanceType;
+import org.apache.helix.PropertyKey;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.manager.zk.ZKHelixAdmin;
 import org.apache.helix.manager.zk.ZKHelixDataAccessor;
 import org.apache.helix.manager.zk.ZNRecordSerializer;
+import org.apache.helix.manager.zk.ZKUtil;
 import org.apache.helix.manager.zk.ZkBaseDataAccessor;
+import org.apache.helix.manager.zk.ZkCacheBaseDataAccessor;
 import org.apache.helix.manager.zk.ZkClient;
 import org.apache.helix.manager.zk.client.HelixZkClient;
 import org.apache.helix.manager.zk.client.SharedZkClientFactory;
+import org.apache.helix.store.HelixPropertyListener;
 import org.apache.helix.task.TaskDriver;
 import org.apache.helix.tools.ClusterSetup;
+import org.apache.zookeeper.data.Stat;
 
 public class ServerContext {
+  /**
+   * Serve the IdealStates, ExternalViews, LiveInstances and configs of the clusters from a cache
+   * kept up to date by ZooKeeper watches, see {@link #getCachedDataAccessor(String)}. Disabled by
+   * default.
+   */
+  public static final String METADATA_CACHE_ENABLED = "helixrest.metadataCacheEnabled";
+
   private final String _zkAddr;
+  private final boolean _metadataCacheEnabled;
   private HelixZkClient _zkClient;
   private ZKHelixAdmin _zkHelixAdmin;
   private ClusterSetup _clusterSetup;
@@ -47,17 +64,26 @@ public class ServerContext {
   // 1 Cluster name will correspond to 1 helix data accessor
   private final Map<String, HelixDataAccessor> _helixDataAccessorPool;
 
+  // 1 Cluster name will correspond to 1 cached data accessor, created on the first request
+  private final Map<String, CachedDataAccessor> _cachedDataAccessorPool;
+
   // 1 Cluster name will correspond to 1 task driver
   private final Map<String, TaskDriver> _taskDriverPool;
 
   public ServerContext(String zkAddr) {
+    this(zkAddr, Boolean.getBoolean(METADATA_CACHE_ENABLED));
+  }
+
+  public ServerContext(String zkAddr, boolean metadataCacheEnabled) {
     _zkAddr = zkAddr;
+    _metadataCacheEnabled = metadataCacheEnabled;
 
     // We should NOT initiate _zkClient and anything that depends on _zkClient in
     // constructor, as it is reasonable to start up HelixRestServer first and then
     // ZooKeeper. In this case, initializing _zkClient will fail and HelixRestServer
     // cannot be started correctly.
     _helixDataAccessorPool = new HashMap<>();
+    _cachedDataAccessorPool = new HashMap<>();
     _taskDriverPool = new HashMap<>();
   }
 
@@ -117,9 +143,137 @@ public class ServerContext {
     }
   }
 
+  /**
+   * Get a data accessor of the cluster that reads the IdealStates, ExternalViews, LiveInstances and
+   * configs from a cache. The cache of a cluster is loaded and subscribed to ZooKeeper changes on
+   * the first call for the cluster, and is updated by the watches afterwards, so the reads may lag
+   * the writes of other ZooKeeper clients for the watch delivery time. Other paths are read from
+   * ZooKeeper.
+   * @param clusterName
+   * @return the cached data accessor, or the data accessor reading ZooKeeper if the cache is
+   *         disabled or the cluster is not set up
+   */
+  public HelixDataAccessor getCachedDataAccessor(String clusterName) {
+    if (!_metadataCacheEnabled) {
+      return getDataAccssor(clusterName);
+    }
+    synchronized (_cachedDataAccessorPool) {
+      CachedDataAccessor accessor = _cachedDataAccessorPool.get(clusterName);
+      if (accessor != null && accessor.isValid()) {
+        return accessor;
+      }
+      if (accessor != null) {
+        // the cluster was deleted, the watches of the cache root paths are gone with it
+        accessor.stop();
+        _cachedDataAccessorPool.remove(clusterName);
+      }
+      if (!ZKUtil.isClusterSetup(clusterName, getHelixZkClient())) {
+        return getDataAccssor(clusterName);
+      }
+      accessor = new CachedDataAccessor(clusterName, _zkAddr);
+      _cachedDataAccessorPool.put(clusterName, accessor);
+      return accessor;
+    }
+  }
+
   public void close() {
+    synchronized (_cachedDataAccessorPool) {
+      for (CachedDataAccessor accessor : _cachedDataAccessorPool.values()) {
+        accessor.stop();
+      }
+      _cachedDataAccessorPool.clear();
+    }
     if (_zkClient != null) {
       _zkClient.close();
     }
   }
+
+  private static class CachedDataAccessor extends ZKHelixDataAccessor
+      implements HelixPropertyListener {
+    private final ZkCacheBaseDataAccessor<ZNRecord> _cacheAccessor;
+    private final List<String> _cachePaths;
+    private volatile boolean _valid = true;
+
+    CachedDataAccessor(String clusterName, String zkAddr) {
+      this(clusterName, zkAddr, getCachePaths(clusterName));
+    }
+
+    // the cache has its own ZkClient over the shared ZooKeeper connection, so its watches are
+    // removed with the client when the cache is stopped
+    private CachedDataAccessor(String clusterName, String zkAddr, List<String> cachePaths) {
+      this(clusterName, new CopyingCacheBaseDataAccessor(zkAddr, cachePaths), cachePaths);
+    }
+
+    private CachedDataAccessor(String clusterName, ZkCacheBaseDataAccessor<ZNRecord> cacheAccessor,
+        List<String> cachePaths) {
+      super(clusterName, InstanceType.ADMINISTRATOR, cacheAccessor);
+      _cacheAccessor = cacheAccessor;
+      _cachePaths = cachePaths;
+      for (String path : cachePaths) {
+        cacheAccessor.subscribe(path, this);
+      }
+    }
+
+    private static List<String> getCachePaths(String clusterName) {
+      PropertyKey.Builder keyBuilder = new PropertyKey.Builder(clusterName);
+      return Arrays.asList(keyBuilder.idealStates().getPath(),
+          keyBuilder.externalViews().getPath(), keyBuilder.liveInstances().getPath(),
+          keyBuilder.clusterConfigs().getPath(), keyBuilder.instanceConfigs().getPath(),
+          keyBuilder.resourceConfigs().getPath());
+    }
+
+    boolean isValid() {
+      return _valid;
+    }
+
+    void stop() {
+      for (String path : _cachePaths) {
+        _cacheAccessor.unsubscribe(path, this);
+      }
+      _cacheAccessor.stop();
+    }
+
+    @Override
+    public void onDataChange(String path) {
+    }
+
+    @Override
+    public void onDataCreate(String path) {
+    }
+
+    @Override
+    public void onDataDelete(String path) {
+      if (_cachePaths.contains(path)) {
+        _valid = false;
+      }
+    }
+  }
+
+  /**
+   * Returns copies of the cached records. The records are shared by all readers of the cache, while
+   * ZKHelixDataAccessor merges the buckets of bucketized IdealStates and ExternalViews into the
+   * record it reads.
+   */
+  private static class CopyingCacheBaseDataAccessor extends ZkCacheBaseDataAccessor<ZNRecord> {
+    CopyingCacheBaseDataAccessor(String zkAddr, List<String> cachePaths) {
+      super(zkAddr, new ZNRecordSerializer(), null, null, cachePaths);
+    }
+
+    @Override
+    public ZNRecord get(String path, Stat stat, int options) {
+      ZNRecord record = super.get(path, stat, options);
+      return record == null ? null : new ZNRecord(record);
+    }
+
+    @Override
+    public List<ZNRecord> get(List<String> paths, List<Stat> stats, int options,
+        boolean throwException) throws HelixException {
+      List<ZNRecord> records = super.get(paths, stats, options, throwException);
+      List<ZNRecord> copies = new ArrayList<>(records.size());
+      for (ZNRecord record : records) {
+        copies.add(record == null ? null : new ZNRecord(record));
+      }
+      return copies;
+    }
+  }
 }
@@ -20,18 +20,28 @@ package org.apache.helix.rest.server.resources;
  */
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Application;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import org.apache.helix.HelixException;
 import org.apache.helix.rest.server.auditlog.AuditLog;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.SerializationConfig;
 import org.slf4j.Logger;
@@ -47,7 +57,9 @@ public class AbstractResource {
     disabled,
     history,
     count,
-    error
+    error,
+    total,
+    next
   }
 
   public enum Command {
@@ -73,6 +85,9 @@ public class AbstractResource {
 
   @Context
   protected HttpServletRequest _servletRequest;
+
+  @Context
+  protected Request _request;
   protected AuditLog.Builder _auditLogBuilder;
 
   protected void addExceptionToAuditLog(Exception ex) {
@@ -128,16 +143,76 @@ public class AbstractResource {
     }
   }
 
+  /**
+   * The JSON response of a GET request carries an ETag of its content, and is answered with 304
+   * Not Modified if the request has a matching If-None-Match header, so the pollers of unchanged
+   * data do not receive it again.
+   */
   protected Response JSONRepresentation(Object entity) {
     try {
       String jsonStr = toJson(entity);
-      return OK(jsonStr);
+      if (_request == null || !HttpMethod.GET.equals(_request.getMethod())) {
+        return OK(jsonStr);
+      }
+      EntityTag entityTag = getEntityTag(jsonStr);
+      Response.ResponseBuilder notModified = _request.evaluatePreconditions(entityTag);
+      if (notModified != null) {
+        return notModified.build();
+      }
+      return Response.ok(jsonStr, MediaType.APPLICATION_JSON_TYPE).tag(entityTag).build();
     } catch (IOException e) {
       _logger.error("Failed to convert " + entity + " to JSON response", e);
       return serverError();
     }
   }
 
+  /**
+   * Writes a JSON response with a JsonGenerator.
+   */
+  protected interface JSONStreamWriter {
+    void write(JsonGenerator generator) throws IOException;
+  }
+
+  /**
+   * The JSON response is written by the writer directly onto the response output stream, so it
+   * never exists as a whole in memory. Anything the response depends on must be validated before,
+   * since the status is sent before the writer runs.
+   */
+  protected Response JSONStreamingRepresentation(final JSONStreamWriter writer) {
+    StreamingOutput output = new StreamingOutput() {
+      @Override
+      public void write(OutputStream outputStream) throws IOException {
+        JsonGenerator generator =
+            OBJECT_MAPPER.getJsonFactory().createJsonGenerator(outputStream, JsonEncoding.UTF8);
+        generator.useDefaultPrettyPrinter();
+        try {
+          writer.write(generator);
+          generator.writeRaw('\n');
+        } catch (IOException | RuntimeException e) {
+          _logger.error("Failed to write the JSON response", e);
+          throw e;
+        } finally {
+          generator.close();
+        }
+      }
+    };
+    return Response.ok(output, MediaType.APPLICATION_JSON_TYPE).build();
+  }
+
+  private static EntityTag getEntityTag(String content) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      StringBuilder sb = new StringBuilder();
+      for (byte b : digest.digest(content.getBytes(StandardCharsets.UTF_8))) {
+        sb.append(String.format("%02x", b));
+      }
+      return new EntityTag(sb.toString());
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform supports MD5
+      throw new IllegalStateException(e);
+    }
+  }
+
   protected static ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
   protected static String toJson(Object object)
@@ -20,9 +20,18 @@ package org.apache.helix.rest.server.resources.helix;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import org.apache.helix.AccessOption;
 import org.apache.helix.ConfigAccessor;
 import org.apache.helix.HelixAdmin;
 import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixProperty;
+import org.apache.helix.PropertyKey;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.manager.zk.ZkClient;
 import org.apache.helix.manager.zk.client.HelixZkClient;
@@ -31,6 +40,7 @@ import org.apache.helix.rest.server.ServerContext;
 import org.apache.helix.rest.server.resources.AbstractResource;
 import org.apache.helix.task.TaskDriver;
 import org.apache.helix.tools.ClusterSetup;
+import org.codehaus.jackson.JsonGenerator;
 
 
 /**
@@ -39,6 +49,14 @@ import org.apache.helix.tools.ClusterSetup;
  * metadata store.
  */
 public class AbstractHelixResource extends AbstractResource{
+  /**
+   * Query parameter of the read requests to get the data from ZooKeeper instead of the metadata
+   * cache. A "Cache-Control: no-cache" request header does the same.
+   */
+  public static final String SKIP_CACHE = "skipCache";
+
+  // the records of a bulk response are read from the metadata store in batches of this size
+  private static final int BULK_READ_BATCH_SIZE = 100;
 
   public HelixZkClient getHelixZkClient() {
     ServerContext serverContext = getServerContext();
@@ -75,6 +93,95 @@ public class AbstractHelixResource extends AbstractResource{
     return serverContext.getDataAccssor(clusterName);
   }
 
+  /**
+   * Get the data accessor of the cluster reading the IdealStates, ExternalViews, LiveInstances and
+   * configs from the metadata cache of the server, unless the request skips the cache.
+   * @see ServerContext#getCachedDataAccessor(String)
+   */
+  public HelixDataAccessor getCachedDataAccessor(String clusterName) {
+    if (isCacheSkipped()) {
+      return getDataAccssor(clusterName);
+    }
+    ServerContext serverContext = getServerContext();
+    return serverContext.getCachedDataAccessor(clusterName);
+  }
+
+  private boolean isCacheSkipped() {
+    if (_servletRequest == null) {
+      return false;
+    }
+    String cacheControl = _servletRequest.getHeader(HttpHeaders.CACHE_CONTROL);
+    return Boolean.parseBoolean(_servletRequest.getParameter(SKIP_CACHE))
+        || (cacheControl != null && cacheControl.contains("no-cache"));
+  }
+
+  /**
+   * Get a page of the children of a parent key in the order of their names, as
+   * {"id": id, fieldName: [records], "total": number of children, "next": offset of the next page}.
+   * The records are read and streamed in batches, so a bulk response holds only one batch of
+   * records in memory.
+   * @param accessor
+   * @param id
+   * @param parentKey
+   * @param fieldName
+   * @param offset the number of children to skip
+   * @param limit the maximum number of children to return, or null to return all of them
+   * @return the streaming response, or an error response
+   */
+  protected Response getChildRecordsPage(final HelixDataAccessor accessor, final String id,
+      final PropertyKey parentKey, final String fieldName, int offset, Integer limit) {
+    if (offset < 0 || (limit != null && limit <= 0)) {
+      return badRequest(String.format("Invalid offset %d or limit %d", offset, limit));
+    }
+    if (!accessor.getBaseDataAccessor().exists(parentKey.getPath(), AccessOption.PERSISTENT)) {
+      return notFound();
+    }
+    List<String> childNames = new ArrayList<>(accessor.getChildNames(parentKey));
+    Collections.sort(childNames);
+
+    final int total = childNames.size();
+    int end = limit == null ? total : (int) Math.min((long) offset + limit, total);
+    final List<String> pageNames = childNames.subList(Math.min(offset, total), end);
+    final Integer next = end < total ? end : null;
+
+    return JSONStreamingRepresentation(new JSONStreamWriter() {
+      @Override
+      public void write(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField(Properties.id.name(), id);
+        generator.writeArrayFieldStart(fieldName);
+        for (int i = 0; i < pageNames.size(); i += BULK_READ_BATCH_SIZE) {
+          List<PropertyKey> keys = new ArrayList<>();
+          for (String childName : pageNames
+              .subList(i, Math.min(i + BULK_READ_BATCH_SIZE, pageNames.size()))) {
+            keys.add(getChildKey(parentKey, childName));
+          }
+          List<HelixProperty> properties = accessor.getProperty(keys, false);
+          for (HelixProperty property : properties) {
+            // deleted since the names were read
+            if (property != null) {
+              generator.writeObject(property.getRecord());
+            }
+          }
+          generator.flush();
+        }
+        generator.writeEndArray();
+        generator.writeNumberField(Properties.total.name(), total);
+        if (next != null) {
+          generator.writeNumberField(Properties.next.name(), next);
+        }
+        generator.writeEndObject();
+      }
+    });
+  }
+
+  private static PropertyKey getChildKey(PropertyKey parentKey, String childName) {
+    String[] params = Arrays.copyOf(parentKey.getParams(), parentKey.getParams().length + 1);
+    params[params.length - 1] = childName;
+    return new PropertyKey(parentKey.getType(), parentKey.getConfigScope(),
+        parentKey.getTypeClass(), params);
+  }
+
   protected static ZNRecord toZNRecord(String data) throws IOException {
     return OBJECT_MAPPER.reader(ZNRecord.class).readValue(data);
   }
@@ -86,7 +86,7 @@ public class ClusterAccessor extends AbstractHelixResource {
       return notFound();
     }
 
-    HelixDataAccessor dataAccessor = getDataAccssor(clusterId);
+    HelixDataAccessor dataAccessor = getCachedDataAccessor(clusterId);
     PropertyKey.Builder keyBuilder = dataAccessor.keyBuilder();
 
     Map<String, Object> clusterInfo = new HashMap<>();
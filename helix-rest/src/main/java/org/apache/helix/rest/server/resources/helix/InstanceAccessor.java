@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
@@ -73,12 +74,13 @@ public class InstanceAccessor extends AbstractHelixResource {
     total_message_count,
     read_message_count,
     healthreports,
-    instanceTags
+    instanceTags,
+    configs
   }
 
   @GET
   public Response getInstances(@PathParam("clusterId") String clusterId) {
-    HelixDataAccessor accessor = getDataAccssor(clusterId);
+    HelixDataAccessor accessor = getCachedDataAccessor(clusterId);
     ObjectNode root = JsonNodeFactory.instance.objectNode();
     root.put(Properties.id.name(), JsonNodeFactory.instance.textNode(clusterId));
 
@@ -115,6 +117,20 @@ public class InstanceAccessor extends AbstractHelixResource {
     return JSONRepresentation(root);
   }
 
+  /**
+   * Returns the InstanceConfigs of the cluster in the order of the instance names, offset and
+   * limit select a page of them. The path is under _bulk so that it does not shadow the paths of
+   * an instance named configs.
+   */
+  @GET
+  @Path("_bulk/instanceConfigs")
+  public Response getInstanceConfigs(@PathParam("clusterId") String clusterId,
+      @DefaultValue("0") @QueryParam("offset") int offset, @QueryParam("limit") Integer limit) {
+    HelixDataAccessor accessor = getCachedDataAccessor(clusterId);
+    return getChildRecordsPage(accessor, clusterId, accessor.keyBuilder().instanceConfigs(),
+        InstanceProperties.configs.name(), offset, limit);
+  }
+
   @POST
   public Response updateInstances(@PathParam("clusterId") String clusterId,
       @QueryParam("command") String command, String content) {
@@ -160,7 +176,7 @@ public class InstanceAccessor extends AbstractHelixResource {
   @Path("{instanceName}")
   public Response getInstance(@PathParam("clusterId") String clusterId,
       @PathParam("instanceName") String instanceName) throws IOException {
-    HelixDataAccessor accessor = getDataAccssor(clusterId);
+    HelixDataAccessor accessor = getCachedDataAccessor(clusterId);
     Map<String, Object> instanceMap = new HashMap<>();
     instanceMap.put(Properties.id.name(), JsonNodeFactory.instance.textNode(instanceName));
     instanceMap.put(InstanceProperties.liveInstance.name(), null);
@@ -309,7 +325,7 @@ public class InstanceAccessor extends AbstractHelixResource {
   @Path("{instanceName}/configs")
   public Response getInstanceConfig(@PathParam("clusterId") String clusterId,
       @PathParam("instanceName") String instanceName) throws IOException {
-    HelixDataAccessor accessor = getDataAccssor(clusterId);
+    HelixDataAccessor accessor = getCachedDataAccessor(clusterId);
     InstanceConfig instanceConfig =
         accessor.getProperty(accessor.keyBuilder().instanceConfig(instanceName));
 
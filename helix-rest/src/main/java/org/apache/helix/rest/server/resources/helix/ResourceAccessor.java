@@ -36,12 +36,13 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
+import org.apache.helix.AccessOption;
 import org.apache.helix.ConfigAccessor;
 import org.apache.helix.HelixAdmin;
+import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.HelixException;
-import org.apache.helix.PropertyPathBuilder;
+import org.apache.helix.PropertyKey;
 import org.apache.helix.ZNRecord;
-import org.apache.helix.manager.zk.client.HelixZkClient;
 import org.apache.helix.model.ExternalView;
 import org.apache.helix.model.HelixConfigScope;
 import org.apache.helix.model.IdealState;
@@ -77,19 +78,20 @@ public class ResourceAccessor extends AbstractHelixResource {
     ObjectNode root = JsonNodeFactory.instance.objectNode();
     root.put(Properties.id.name(), JsonNodeFactory.instance.textNode(clusterId));
 
-    HelixZkClient zkClient = getHelixZkClient();
+    HelixDataAccessor accessor = getCachedDataAccessor(clusterId);
+    PropertyKey.Builder keyBuilder = accessor.keyBuilder();
 
     ArrayNode idealStatesNode = root.putArray(ResourceProperties.idealStates.name());
     ArrayNode externalViewsNode = root.putArray(ResourceProperties.externalViews.name());
 
-    List<String> idealStates = zkClient.getChildren(PropertyPathBuilder.idealState(clusterId));
-    List<String> externalViews = zkClient.getChildren(PropertyPathBuilder.externalView(clusterId));
-
-    if (idealStates != null) {
-      idealStatesNode.addAll((ArrayNode) OBJECT_MAPPER.valueToTree(idealStates));
-    } else {
+    if (!accessor.getBaseDataAccessor()
+        .exists(keyBuilder.idealStates().getPath(), AccessOption.PERSISTENT)) {
       return notFound();
     }
+    List<String> idealStates = accessor.getChildNames(keyBuilder.idealStates());
+    List<String> externalViews = accessor.getChildNames(keyBuilder.externalViews());
+
+    idealStatesNode.addAll((ArrayNode) OBJECT_MAPPER.valueToTree(idealStates));
 
     if (externalViews != null) {
       externalViewsNode.addAll((ArrayNode) OBJECT_MAPPER.valueToTree(externalViews));
@@ -98,6 +100,43 @@ public class ResourceAccessor extends AbstractHelixResource {
     return JSONRepresentation(root);
   }
 
+  /**
+   * Returns the IdealStates of the resources in the cluster in the order of their names, offset
+   * and limit select a page of them. The path is under _bulk so that it does not shadow the paths
+   * of a resource named idealStates.
+   *
+   * @param clusterId
+   * @param offset
+   * @param limit
+   * @return JSON result
+   */
+  @GET
+  @Path("_bulk/idealStates")
+  public Response getIdealStates(@PathParam("clusterId") String clusterId,
+      @DefaultValue("0") @QueryParam("offset") int offset, @QueryParam("limit") Integer limit) {
+    HelixDataAccessor accessor = getCachedDataAccessor(clusterId);
+    return getChildRecordsPage(accessor, clusterId, accessor.keyBuilder().idealStates(),
+        ResourceProperties.idealStates.name(), offset, limit);
+  }
+
+  /**
+   * Returns the ExternalViews of the resources in the cluster in the order of their names, offset
+   * and limit select a page of them, see {@link #getIdealStates(String, int, Integer)}
+   *
+   * @param clusterId
+   * @param offset
+   * @param limit
+   * @return JSON result
+   */
+  @GET
+  @Path("_bulk/externalViews")
+  public Response getExternalViews(@PathParam("clusterId") String clusterId,
+      @DefaultValue("0") @QueryParam("offset") int offset, @QueryParam("limit") Integer limit) {
+    HelixDataAccessor accessor = getCachedDataAccessor(clusterId);
+    return getChildRecordsPage(accessor, clusterId, accessor.keyBuilder().externalViews(),
+        ResourceProperties.externalViews.name(), offset, limit);
+  }
+
   /**
    * Returns health profile of all resources in the cluster
    *
@@ -108,10 +147,12 @@ public class ResourceAccessor extends AbstractHelixResource {
   @Path("health")
   public Response getResourceHealth(@PathParam("clusterId") String clusterId) {
 
-    HelixZkClient zkClient = getHelixZkClient();
+    HelixDataAccessor accessor = getCachedDataAccessor(clusterId);
 
-    List<String> resourcesInIdealState = zkClient.getChildren(PropertyPathBuilder.idealState(clusterId));
-    List<String> resourcesInExternalView = zkClient.getChildren(PropertyPathBuilder.externalView(clusterId));
+    List<String> resourcesInIdealState =
+        accessor.getChildNames(accessor.keyBuilder().idealStates());
+    List<String> resourcesInExternalView =
+        accessor.getChildNames(accessor.keyBuilder().externalViews());
 
     Map<String, String> resourceHealthResult = new HashMap<>();
 
@@ -158,12 +199,12 @@ public class ResourceAccessor extends AbstractHelixResource {
   @Path("{resourceName}")
   public Response getResource(@PathParam("clusterId") String clusterId,
       @PathParam("resourceName") String resourceName) {
-    ConfigAccessor accessor = getConfigAccessor();
-    HelixAdmin admin = getHelixAdmin();
+    HelixDataAccessor accessor = getCachedDataAccessor(clusterId);
+    PropertyKey.Builder keyBuilder = accessor.keyBuilder();
 
-    ResourceConfig resourceConfig = accessor.getResourceConfig(clusterId, resourceName);
-    IdealState idealState = admin.getResourceIdealState(clusterId, resourceName);
-    ExternalView externalView = admin.getResourceExternalView(clusterId, resourceName);
+    ResourceConfig resourceConfig = accessor.getProperty(keyBuilder.resourceConfig(resourceName));
+    IdealState idealState = accessor.getProperty(keyBuilder.idealStates(resourceName));
+    ExternalView externalView = accessor.getProperty(keyBuilder.externalView(resourceName));
 
     Map<String, ZNRecord> resourceMap = new HashMap<>();
     if (idealState != null) {
@@ -346,8 +387,8 @@ public class ResourceAccessor extends AbstractHelixResource {
   @Path("{resourceName}/idealState")
   public Response getResourceIdealState(@PathParam("clusterId") String clusterId,
       @PathParam("resourceName") String resourceName) {
-    HelixAdmin admin = getHelixAdmin();
-    IdealState idealState = admin.getResourceIdealState(clusterId, resourceName);
+    HelixDataAccessor accessor = getCachedDataAccessor(clusterId);
+    IdealState idealState = accessor.getProperty(accessor.keyBuilder().idealStates(resourceName));
     if (idealState != null) {
       return JSONRepresentation(idealState.getRecord());
     }
@@ -407,8 +448,9 @@ public class ResourceAccessor extends AbstractHelixResource {
   @Path("{resourceName}/externalView")
   public Response getResourceExternalView(@PathParam("clusterId") String clusterId,
       @PathParam("resourceName") String resourceName) {
-    HelixAdmin admin = getHelixAdmin();
-    ExternalView externalView = admin.getResourceExternalView(clusterId, resourceName);
+    HelixDataAccessor accessor = getCachedDataAccessor(clusterId);
+    ExternalView externalView =
+        accessor.getProperty(accessor.keyBuilder().externalView(resourceName));
     if (externalView != null) {
       return JSONRepresentation(externalView.getRecord());
     }
@@ -417,10 +459,12 @@ public class ResourceAccessor extends AbstractHelixResource {
   }
 
   private Map<String, String> computePartitionHealth(String clusterId, String resourceName) {
-    HelixAdmin admin = getHelixAdmin();
-    IdealState idealState = admin.getResourceIdealState(clusterId, resourceName);
-    ExternalView externalView = admin.getResourceExternalView(clusterId, resourceName);
-    StateModelDefinition stateModelDef = admin.getStateModelDef(clusterId, idealState.getStateModelDefRef());
+    HelixDataAccessor accessor = getCachedDataAccessor(clusterId);
+    PropertyKey.Builder keyBuilder = accessor.keyBuilder();
+    IdealState idealState = accessor.getProperty(keyBuilder.idealStates(resourceName));
+    ExternalView externalView = accessor.getProperty(keyBuilder.externalView(resourceName));
+    StateModelDefinition stateModelDef =
+        accessor.getProperty(keyBuilder.stateModelDef(idealState.getStateModelDefRef()));
     String initialState = stateModelDef.getInitialState();
     List<String> statesPriorityList = stateModelDef.getStatesPriorityList();
     statesPriorityList = statesPriorityList.subList(0, statesPriorityList.indexOf(initialState)); // Trim stateList to initialState and above
@@ -63,6 +63,42 @@ public class TestInstanceAccessor extends AbstractTestClass {
             .get(CLUSTER_NAME));
   }
 
+  @Test(dependsOnMethods = "testGetInstances")
+  public void testGetInstanceConfigs() throws IOException {
+    System.out.println("Start test :" + TestHelper.getTestMethodName());
+    List<String> expectedInstances = new ArrayList<>(_instancesMap.get(CLUSTER_NAME));
+    Collections.sort(expectedInstances);
+
+    // read all the configs page by page
+    List<String> instances = new ArrayList<>();
+    Integer next = 0;
+    while (next != null) {
+      Response response =
+          target("clusters/" + CLUSTER_NAME + "/instances/_bulk/instanceConfigs")
+              .queryParam("offset", next).queryParam("limit", 2).request().get();
+      Assert.assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+      JsonNode node = OBJECT_MAPPER.readTree(response.readEntity(String.class));
+      Assert.assertEquals(node.get(AbstractResource.Properties.total.name()).getIntValue(),
+          expectedInstances.size());
+      JsonNode configs = node.get(InstanceAccessor.InstanceProperties.configs.name());
+      Assert.assertTrue(configs.size() <= 2);
+      for (JsonNode config : configs) {
+        InstanceConfig instanceConfig = new InstanceConfig(toZNRecord(config.toString()));
+        Assert.assertEquals(instanceConfig, _configAccessor
+            .getInstanceConfig(CLUSTER_NAME, instanceConfig.getInstanceName()));
+        instances.add(instanceConfig.getInstanceName());
+      }
+      JsonNode nextNode = node.get(AbstractResource.Properties.next.name());
+      next = nextNode == null ? null : nextNode.getIntValue();
+    }
+    Assert.assertEquals(instances, expectedInstances);
+
+    Response response =
+        target("clusters/" + CLUSTER_NAME + "/instances/_bulk/instanceConfigs")
+            .queryParam("limit", 0).request().get();
+    Assert.assertEquals(response.getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
+  }
+
   @Test(dependsOnMethods = "testGetInstances")
   public void testGetInstance() throws IOException {
     System.out.println("Start test :" + TestHelper.getTestMethodName());
@@ -98,6 +134,24 @@ public class TestInstanceAccessor extends AbstractTestClass {
     _configAccessor.getInstanceConfig(CLUSTER_NAME, INSTANCE_NAME + "TEST");
   }
 
+  @Test(dependsOnMethods = "testDeleteInstance")
+  public void testAddInstanceNamedAsBulkPath() throws IOException {
+    System.out.println("Start test :" + TestHelper.getTestMethodName());
+    // instances can be named as the bulk read of their configs used to be
+    InstanceConfig instanceConfig = new InstanceConfig("configs");
+    Entity entity = Entity.entity(OBJECT_MAPPER.writeValueAsString(instanceConfig.getRecord()),
+        MediaType.APPLICATION_JSON_TYPE);
+    put("clusters/" + CLUSTER_NAME + "/instances/configs", null, entity,
+        Response.Status.OK.getStatusCode());
+    Assert.assertEquals(_configAccessor.getInstanceConfig(CLUSTER_NAME, "configs"),
+        instanceConfig);
+    get("clusters/" + CLUSTER_NAME + "/instances/configs/configs",
+        Response.Status.OK.getStatusCode(), true);
+    delete("clusters/" + CLUSTER_NAME + "/instances/configs", Response.Status.OK.getStatusCode());
+    Assert.assertFalse(_gSetupTool.getClusterManagementTool().getInstancesInCluster(CLUSTER_NAME)
+        .contains("configs"));
+  }
+
   @Test(dependsOnMethods = "testGetInstance")
   public void updateInstance() throws IOException {
     System.out.println("Start test :" + TestHelper.getTestMethodName());
@@ -30,6 +30,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import org.apache.helix.AccessOption;
@@ -44,6 +46,8 @@ import org.apache.helix.model.ExternalView;
 import org.apache.helix.model.IdealState;
 import org.apache.helix.model.ResourceConfig;
 import org.apache.helix.model.builder.FullAutoModeISBuilder;
+import org.apache.helix.rest.server.resources.AbstractResource;
+import org.apache.helix.rest.server.resources.helix.AbstractHelixResource;
 import org.apache.helix.rest.server.resources.helix.ResourceAccessor;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.type.TypeReference;
@@ -89,6 +93,66 @@ public class TestResourceAccessor extends AbstractTestClass {
     Assert.assertEquals(idealState, originIdealState);
   }
 
+  @Test(dependsOnMethods = "testGetResource")
+  public void testGetExternalViews() throws IOException {
+    System.out.println("Start test :" + TestHelper.getTestMethodName());
+    List<String> resources = _baseAccessor
+        .getChildNames(PropertyPathBuilder.idealState(CLUSTER_NAME), AccessOption.PERSISTENT);
+    Collections.sort(resources);
+
+    String body = get("clusters/" + CLUSTER_NAME + "/resources/_bulk/idealStates",
+        Response.Status.OK.getStatusCode(), true);
+    JsonNode node = OBJECT_MAPPER.readTree(body);
+    JsonNode idealStates = node.get(ResourceAccessor.ResourceProperties.idealStates.name());
+    Assert.assertEquals(idealStates.size(), resources.size());
+    Assert.assertNull(node.get(AbstractResource.Properties.next.name()));
+    for (int i = 0; i < resources.size(); i++) {
+      Assert.assertEquals(new IdealState(toZNRecord(idealStates.get(i).toString())),
+          _gSetupTool.getClusterManagementTool()
+              .getResourceIdealState(CLUSTER_NAME, resources.get(i)));
+    }
+
+    Response response = target("clusters/" + CLUSTER_NAME + "/resources/_bulk/externalViews")
+        .queryParam("offset", 1).queryParam("limit", 1).request().get();
+    Assert.assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+    node = OBJECT_MAPPER.readTree(response.readEntity(String.class));
+    List<String> externalViews = _baseAccessor
+        .getChildNames(PropertyPathBuilder.externalView(CLUSTER_NAME), AccessOption.PERSISTENT);
+    Collections.sort(externalViews);
+    Assert.assertEquals(node.get(AbstractResource.Properties.total.name()).getIntValue(),
+        externalViews.size());
+    JsonNode externalViewNodes =
+        node.get(ResourceAccessor.ResourceProperties.externalViews.name());
+    Assert.assertEquals(externalViewNodes.size(), 1);
+    Assert.assertEquals(new ExternalView(toZNRecord(externalViewNodes.get(0).toString())).getId(),
+        externalViews.get(1));
+    Assert.assertEquals(node.get(AbstractResource.Properties.next.name()).getIntValue(), 2);
+
+    response = target("clusters/" + CLUSTER_NAME + "/resources/_bulk/externalViews")
+        .queryParam("offset", -1).request().get();
+    Assert.assertEquals(response.getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
+    get("clusters/NotACluster/resources/_bulk/externalViews",
+        Response.Status.NOT_FOUND.getStatusCode(), false);
+  }
+
+  @Test(dependsOnMethods = "testGetResource")
+  public void testGetResourceNotModified() {
+    System.out.println("Start test :" + TestHelper.getTestMethodName());
+    String uri = "clusters/" + CLUSTER_NAME + "/resources/" + RESOURCE_NAME + "/idealState";
+    Response response = target(uri).request().get();
+    Assert.assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+    EntityTag entityTag = response.getEntityTag();
+    Assert.assertNotNull(entityTag);
+
+    response = target(uri).request().header(HttpHeaders.IF_NONE_MATCH, entityTag.toString()).get();
+    Assert.assertEquals(response.getStatus(), Response.Status.NOT_MODIFIED.getStatusCode());
+
+    response = target(uri).queryParam(AbstractHelixResource.SKIP_CACHE, true).request()
+        .header(HttpHeaders.IF_NONE_MATCH, "\"stale\"").get();
+    Assert.assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+    Assert.assertEquals(response.getEntityTag(), entityTag);
+  }
+
   @Test(dependsOnMethods = "testGetResource")
   public void testAddResources() throws IOException {
     System.out.println("Start test :" + TestHelper.getTestMethodName());
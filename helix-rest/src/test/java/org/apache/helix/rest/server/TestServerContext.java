@@ -0,0 +1,103 @@
+package org.apache.helix.rest.server;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.List;
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.TestHelper;
+import org.apache.helix.model.IdealState;
+import org.apache.helix.model.InstanceConfig;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestServerContext extends AbstractTestClass {
+  private final static String CLUSTER_NAME = "TestServerContextCluster";
+  private final static long VERIFY_TIMEOUT = 10000L;
+
+  @Test
+  public void testCachedDataAccessor() throws Exception {
+    System.out.println("Start test :" + TestHelper.getTestMethodName());
+    _gSetupTool.addCluster(CLUSTER_NAME, true);
+    _gSetupTool.addResourceToCluster(CLUSTER_NAME, "db_0", 4, "MasterSlave");
+    _gSetupTool.addInstanceToCluster(CLUSTER_NAME, "localhost_12918");
+
+    ServerContext disabledContext = new ServerContext(ZK_ADDR, false);
+    Assert.assertSame(disabledContext.getCachedDataAccessor(CLUSTER_NAME),
+        disabledContext.getDataAccssor(CLUSTER_NAME));
+    disabledContext.close();
+
+    final ServerContext serverContext = new ServerContext(ZK_ADDR, true);
+    try {
+      // the clusters not set up are not cached
+      Assert.assertSame(serverContext.getCachedDataAccessor("NotACluster"),
+          serverContext.getDataAccssor("NotACluster"));
+
+      final HelixDataAccessor accessor = serverContext.getCachedDataAccessor(CLUSTER_NAME);
+      Assert.assertNotSame(accessor, serverContext.getDataAccssor(CLUSTER_NAME));
+      Assert.assertSame(serverContext.getCachedDataAccessor(CLUSTER_NAME), accessor);
+      Assert.assertEquals(accessor.getChildNames(accessor.keyBuilder().idealStates()),
+          Collections.singletonList("db_0"));
+      InstanceConfig instanceConfig =
+          accessor.getProperty(accessor.keyBuilder().instanceConfig("localhost_12918"));
+      Assert.assertTrue(instanceConfig.getInstanceEnabled());
+
+      // the readers get their own copies of the cached records
+      instanceConfig.setInstanceEnabled(false);
+      instanceConfig =
+          accessor.getProperty(accessor.keyBuilder().instanceConfig("localhost_12918"));
+      Assert.assertTrue(instanceConfig.getInstanceEnabled());
+      IdealState idealState = accessor.getProperty(accessor.keyBuilder().idealStates("db_0"));
+      Assert.assertNotSame(idealState.getRecord(),
+          accessor.getProperty(Collections.singletonList(accessor.keyBuilder().idealStates("db_0")))
+              .get(0).getRecord());
+
+      // the changes made by other clients are applied to the cache by the watches
+      _gSetupTool.addResourceToCluster(CLUSTER_NAME, "db_1", 4, "MasterSlave");
+      _gSetupTool.getClusterManagementTool()
+          .enableInstance(CLUSTER_NAME, "localhost_12918", false);
+      Assert.assertTrue(TestHelper.verify(new TestHelper.Verifier() {
+        @Override
+        public boolean verify() {
+          List<String> idealStates = accessor.getChildNames(accessor.keyBuilder().idealStates());
+          InstanceConfig instanceConfig =
+              accessor.getProperty(accessor.keyBuilder().instanceConfig("localhost_12918"));
+          return idealStates.contains("db_1") && !instanceConfig.getInstanceEnabled();
+        }
+      }, VERIFY_TIMEOUT));
+
+      // the cache of a deleted cluster is replaced once the cluster is set up again
+      _gSetupTool.deleteCluster(CLUSTER_NAME);
+      _gSetupTool.addCluster(CLUSTER_NAME, true);
+      Assert.assertTrue(TestHelper.verify(new TestHelper.Verifier() {
+        @Override
+        public boolean verify() {
+          return serverContext.getCachedDataAccessor(CLUSTER_NAME) != accessor;
+        }
+      }, VERIFY_TIMEOUT));
+      HelixDataAccessor newAccessor = serverContext.getCachedDataAccessor(CLUSTER_NAME);
+      Assert.assertTrue(
+          newAccessor.getChildNames(newAccessor.keyBuilder().idealStates()).isEmpty());
+    } finally {
+      serverContext.close();
+      _gSetupTool.deleteCluster(CLUSTER_NAME);
+    }
+  }
+}